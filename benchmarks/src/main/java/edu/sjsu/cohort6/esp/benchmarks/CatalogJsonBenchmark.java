@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.benchmarks;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.mongodb.DBObject;
+import edu.sjsu.cohort6.esp.common.Course;
+import edu.sjsu.cohort6.esp.dao.mongodb.codec.CourseCodec;
+import edu.sjsu.cohort6.esp.dao.mongodb.codec.CourseJsonTranscoder;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the two ways a stored course reaches the response: decoding it into a Course that Jackson then writes,
+ * and transcoding the document straight to JSON. Run with -prof gc to compare allocation rates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CatalogJsonBenchmark {
+
+    private CourseCodec codec;
+    private ObjectWriter writer;
+    private CourseJsonTranscoder transcoder;
+    private DBObject document;
+    private JsonGenerator generator;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper mapper = new ObjectMapper();
+        codec = new CourseCodec();
+        writer = mapper.writerFor(Course.class);
+        transcoder = new CourseJsonTranscoder(mapper);
+        document = codec.encode(new Course.Builder("Cloud Technologies")
+                .instructors(Arrays.asList("Watsh Rajneesh", "John Doe"))
+                .startTime(new Date())
+                .endTime(new Date())
+                .maxCapacity(20)
+                .price(200.0)
+                .location("Santa Clara, CA")
+                .keywords(Arrays.asList("Java", "REST", "Cloud"))
+                .build());
+    }
+
+    @Setup(Level.Iteration)
+    public void openGenerator() throws IOException {
+        generator = new ObjectMapper().getFactory().createGenerator(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        });
+    }
+
+    @Benchmark
+    public void entity() throws IOException {
+        writer.writeValue(generator, codec.decode(document));
+    }
+
+    @Benchmark
+    public void passthrough() throws IOException {
+        transcoder.write(generator, document);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.benchmarks;
+
+import com.mongodb.DBObject;
+import edu.sjsu.cohort6.esp.common.*;
+import edu.sjsu.cohort6.esp.dao.mongodb.codec.CourseCodec;
+import edu.sjsu.cohort6.esp.dao.mongodb.codec.EntityCodec;
+import edu.sjsu.cohort6.esp.dao.mongodb.codec.MorphiaCodec;
+import edu.sjsu.cohort6.esp.dao.mongodb.codec.UserCodec;
+import org.mongodb.morphia.Morphia;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares Morphia's reflective mapping with the hand-written codecs for documents the DAOs read and write.
+ *
+ * Student is not included: decoding a student resolves its references, which is dominated by the queries and
+ * needs a running database.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CodecBenchmark {
+
+    @Param({"MORPHIA", "DIRECT"})
+    public String codecType;
+
+    private EntityCodec<Course> courseCodec;
+    private EntityCodec<User> userCodec;
+    private Course course;
+    private User user;
+    private DBObject courseDocument;
+    private DBObject userDocument;
+
+    @Setup
+    public void setUp() {
+        Morphia morphia = new Morphia();
+        morphia.mapPackageFromClass(Student.class);
+        if ("MORPHIA".equals(codecType)) {
+            courseCodec = new MorphiaCodec<>(morphia, Course.class);
+            userCodec = new MorphiaCodec<>(morphia, User.class);
+        } else {
+            courseCodec = new CourseCodec();
+            userCodec = new UserCodec();
+        }
+
+        course = new Course.Builder("Cloud Technologies")
+                .instructors(Arrays.asList("Watsh Rajneesh", "John Doe"))
+                .startTime(new Date())
+                .endTime(new Date())
+                .maxCapacity(20)
+                .price(200.0)
+                .location("Santa Clara, CA")
+                .keywords(Arrays.asList("Java", "REST", "Cloud"))
+                .build();
+        user = new User("watsh.rajneesh@sjsu.edu", "watsh", "Watsh", "Rajneesh", new Role(RoleType.STUDENT));
+
+        // documents come from the Morphia mapper so that both codecs read the same stored format
+        courseDocument = morphia.toDBObject(course);
+        userDocument = morphia.toDBObject(user);
+    }
+
+    @Benchmark
+    public Course decodeCourse() {
+        return courseCodec.decode(courseDocument);
+    }
+
+    @Benchmark
+    public DBObject encodeCourse() {
+        return courseCodec.encode(course);
+    }
+
+    @Benchmark
+    public User decodeUser() {
+        return userCodec.decode(userDocument);
+    }
+
+    @Benchmark
+    public DBObject encodeUser() {
+        return userCodec.encode(user);
+    }
+}
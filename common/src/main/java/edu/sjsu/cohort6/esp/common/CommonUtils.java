@@ -14,8 +14,6 @@
 
 package edu.sjsu.cohort6.esp.common;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.type.TypeFactory;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 
@@ -47,10 +45,8 @@ public class CommonUtils {
      * @throws java.io.IOException
      */
     public static <T> List<T> convertJsonArrayToList(String jsonArrayStr, Class<T> clazz) throws java.io.IOException {
-        ObjectMapper mapper = new ObjectMapper();
         //jsonArrayStr = removeIdField(jsonArrayStr);
-        return mapper.readValue(jsonArrayStr,
-                TypeFactory.defaultInstance().constructCollectionType(List.class, clazz));
+        return JsonCodecs.listReader(clazz).readValue(jsonArrayStr);
     }
 
     /**
@@ -63,9 +59,8 @@ public class CommonUtils {
      * @throws IOException
      */
     public static <T> T convertJsonToObject(String jsonStr, Class<T> clazz) throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
         //jsonStr = removeIdField(jsonStr);
-        return mapper.readValue(jsonStr, clazz);
+        return JsonCodecs.reader(clazz).readValue(jsonStr);
     }
 
     /**
@@ -112,8 +107,7 @@ public class CommonUtils {
      * @throws IOException
      */
     public static <T> String convertObjectToJson(T object) throws IOException {
-        final ObjectMapper mapper = new ObjectMapper();
-        return mapper.writeValueAsString(object);
+        return JsonCodecs.writer(object != null ? object.getClass() : null).writeValueAsString(object);
     }
 
     private static String generateMD5Hash(String plaintext) throws NoSuchAlgorithmException {
@@ -69,12 +69,16 @@ public class Course extends BaseModel {
     @Indexed(unique = true)
     private String courseName;
     private List<String> instructors;
+    @Indexed
     private Date startTime;
     private Date endTime;
     private Integer availabilityStatus;
+    @Indexed
     private Integer maxCapacity;
+    @Indexed
     private Double price;
     private String location;
+    @Indexed
     private List<String> keywords;
 
     /*@Reference
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.common;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry of pre-built Jackson readers and writers for the model types.
+ *
+ * An ObjectMapper is expensive to create: its serializer and deserializer caches start empty and are filled on
+ * first use. Readers and writers built from a single mapper are immutable and thread safe, so they are created
+ * once per type and shared. The model types are registered up front, which resolves their (de)serializers before
+ * the first request needs them.
+ *
+ * By default a plain ObjectMapper is used. The web service swaps in Dropwizard's bootstrap mapper with
+ * {@link #useMapper(ObjectMapper)} so that request bodies are parsed the same way Jersey writes responses.
+ */
+public final class JsonCodecs {
+    private static final Class<?>[] MODEL_TYPES = {Course.class, Student.class, User.class, Role.class};
+
+    private static volatile Registry registry = new Registry(new ObjectMapper());
+
+    private JsonCodecs() {
+    }
+
+    /**
+     * Rebuilds the registry on top of the given mapper. The mapper must not be reconfigured afterwards.
+     *
+     * @param mapper    mapper to share, e.g. bootstrap.getObjectMapper()
+     */
+    public static void useMapper(ObjectMapper mapper) {
+        registry = new Registry(mapper);
+    }
+
+    public static ObjectMapper getMapper() {
+        return registry.mapper;
+    }
+
+    /**
+     * Builds the reader and writers for the given types ahead of first use.
+     *
+     * @param types types to register
+     */
+    public static void register(Class<?>... types) {
+        Registry r = registry;
+        for (Class<?> type : types) {
+            r.reader(type);
+            r.listReader(type);
+            r.writer(type);
+        }
+    }
+
+    /**
+     * @return reader for a single JSON object of the given type
+     */
+    public static ObjectReader reader(Class<?> type) {
+        return registry.reader(type);
+    }
+
+    /**
+     * @return reader for a JSON array of objects of the given type, producing a List
+     */
+    public static ObjectReader listReader(Class<?> type) {
+        return registry.listReader(type);
+    }
+
+    /**
+     * @return writer for objects of the given type
+     */
+    public static ObjectWriter writer(Class<?> type) {
+        return registry.writer(type);
+    }
+
+    private static final class Registry {
+        private final ObjectMapper mapper;
+        private final ObjectWriter untypedWriter;
+        private final ConcurrentMap<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+        private final ConcurrentMap<Class<?>, ObjectReader> listReaders = new ConcurrentHashMap<>();
+        private final ConcurrentMap<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+        Registry(ObjectMapper mapper) {
+            this.mapper = mapper;
+            this.untypedWriter = mapper.writer();
+            for (Class<?> type : MODEL_TYPES) {
+                reader(type);
+                listReader(type);
+                writer(type);
+            }
+        }
+
+        ObjectReader reader(Class<?> type) {
+            ObjectReader reader = readers.get(type);
+            if (reader == null) {
+                reader = mapper.reader(type);
+                readers.putIfAbsent(type, reader);
+            }
+            return reader;
+        }
+
+        ObjectReader listReader(Class<?> type) {
+            ObjectReader reader = listReaders.get(type);
+            if (reader == null) {
+                JavaType listType = mapper.getTypeFactory().constructCollectionType(List.class, type);
+                reader = mapper.reader(listType);
+                listReaders.putIfAbsent(type, reader);
+            }
+            return reader;
+        }
+
+        ObjectWriter writer(Class<?> type) {
+            if (type == null) {
+                return untypedWriter;
+            }
+            ObjectWriter writer = writers.get(type);
+            if (writer == null) {
+                writer = mapper.writerFor(type);
+                writers.putIfAbsent(type, writer);
+            }
+            return writer;
+        }
+    }
+}
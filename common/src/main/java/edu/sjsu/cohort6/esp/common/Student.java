@@ -16,10 +16,7 @@ package edu.sjsu.cohort6.esp.common;
 
 import com.fasterxml.jackson.annotation.JsonProperty;
 import org.bson.types.ObjectId;
-import org.mongodb.morphia.annotations.Entity;
-import org.mongodb.morphia.annotations.Id;
-import org.mongodb.morphia.annotations.PrePersist;
-import org.mongodb.morphia.annotations.Reference;
+import org.mongodb.morphia.annotations.*;
 
 import java.util.ArrayList;
 import java.util.Date;
@@ -45,6 +42,10 @@ import java.util.logging.Logger;
  * @author rwatsh
  */
 @Entity(value = "students" , noClassnameStored = true, concern = "SAFE")
+@Indexes({
+        @Index(fields = @Field("courseRefs.$id"), options = @IndexOptions(disableValidation = true)),
+        @Index(fields = @Field("user.$id"), options = @IndexOptions(disableValidation = true))
+})
 public class Student extends BaseModel {
     @Id
     private String id = new ObjectId().toHexString();
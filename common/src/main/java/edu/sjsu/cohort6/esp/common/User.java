@@ -45,6 +45,7 @@ import java.util.Date;
  * @author rwatsh on 9/23/15.
  */
 @Entity(value = "users" , noClassnameStored = true, concern = "SAFE")
+@Indexes(@Index(fields = {@Field("userName"), @Field("token")}))
 public class User extends BaseModel {
     @Id
     private String id = new ObjectId().toHexString();
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.common.test;
+
+import edu.sjsu.cohort6.esp.common.*;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests the shared readers and writers behind CommonUtils.
+ */
+public class JsonCodecsTest {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Course course = new Course.Builder("Cloud Technologies").maxCapacity(20).price(200.0).build();
+        String json = CommonUtils.convertObjectToJson(course);
+        Course read = CommonUtils.convertJsonToObject(json, Course.class);
+        Assert.assertEquals(read.getId(), course.getId());
+        Assert.assertEquals(read.getCourseName(), course.getCourseName());
+        Assert.assertEquals(read.getMaxCapacity(), course.getMaxCapacity());
+    }
+
+    @Test
+    public void testListRoundTrip() throws Exception {
+        User u1 = new User("a@b.com", "a", "A", "B", new Role(RoleType.STUDENT));
+        User u2 = new User("c@d.com", "c", "C", "D", new Role(RoleType.ADMIN));
+        String json = CommonUtils.convertObjectToJson(Arrays.asList(u1, u2));
+        List<User> users = CommonUtils.convertJsonArrayToList(json, User.class);
+        Assert.assertEquals(users.size(), 2);
+        Assert.assertEquals(users.get(1).getUserName(), "c");
+        Assert.assertEquals(users.get(1).getRole().getRole(), RoleType.ADMIN);
+    }
+
+    @Test
+    public void testReadersAreShared() {
+        Assert.assertSame(JsonCodecs.reader(Course.class), JsonCodecs.reader(Course.class));
+        Assert.assertSame(JsonCodecs.writer(Student.class), JsonCodecs.writer(Student.class));
+        Assert.assertSame(JsonCodecs.listReader(User.class), JsonCodecs.listReader(User.class));
+    }
+}
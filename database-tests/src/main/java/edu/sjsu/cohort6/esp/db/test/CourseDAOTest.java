@@ -16,7 +16,12 @@ package edu.sjsu.cohort6.esp.db.test;
 
 import edu.sjsu.cohort6.esp.common.Course;
 import edu.sjsu.cohort6.esp.dao.DBException;
+import edu.sjsu.cohort6.esp.dao.filter.FilterParser;
+import edu.sjsu.cohort6.esp.dao.filter.FilterSchema;
+import edu.sjsu.cohort6.esp.dao.filter.InvalidFilterException;
 import edu.sjsu.cohort6.esp.dao.mongodb.CourseDAO;
+import edu.sjsu.cohort6.esp.dao.mongodb.EntityCursor;
+import org.bson.types.ObjectId;
 import org.testng.Assert;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
@@ -24,7 +29,19 @@ import org.testng.annotations.Test;
 import java.lang.reflect.Method;
 import java.text.MessageFormat;
 import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 /**
@@ -103,4 +120,107 @@ public class CourseDAOTest extends DBTest<CourseDAO, Course> {
         Assert.assertTrue(courses.size() >= expectedCount,
                 MessageFormat.format("Test failed for query: {0}, found records [{1}], expected count {2}", query, courses.size(), expectedCount));
     }
+
+    @DataProvider(name = "filters")
+    public Object[][] createFilterData(Method m) {
+        System.out.println(m.getName());  // print test method name
+        return new Object[][]{
+                {"price ge 100", 1},
+                {"price ge 100 and keywords has 'REST' and keywords has 'Java'", 1},
+                {"price ge 100 and keywords has 'Java1'", 0},
+                {"courseName eq 'Cloud Technologies' and location eq 'Santa Clara, CA'", 1},
+                {"startTime ge '2015-10-01' or price lt 500", 1}
+        };
+    }
+
+    @Test(dataProvider = "filters")
+    public void testFetchFiltered(String filter, int expectedCount) throws ParseException, DBException, InvalidFilterException {
+        testCreateCourse();
+        List<Course> courses = dao.fetch(FilterParser.parse(filter, FilterSchema.COURSE));
+        log.info(courses.toString());
+        Assert.assertTrue(courses.size() >= expectedCount,
+                MessageFormat.format("Test failed for filter: {0}, found records [{1}], expected count {2}", filter, courses.size(), expectedCount));
+    }
+
+    @Test
+    public void testCursor() throws Exception {
+        List<String> insertedIds = testCreateCourse();
+        int count = 0;
+        boolean found = false;
+        try (EntityCursor<Course> cursor = dao.cursor()) {
+            while (cursor.hasNext()) {
+                Course course = cursor.next();
+                found |= insertedIds.contains(course.getId());
+                count++;
+            }
+        }
+        Assert.assertTrue(found);
+        Assert.assertEquals(count, dao.fetchById(null).size());
+    }
+
+    @Test
+    public void testLastUpdatedAndChangeStamp() throws Exception {
+        List<String> insertedIds = testCreateCourse();
+        Date created = dao.fetchLastUpdated(insertedIds.get(0));
+        Assert.assertNotNull(created);
+        Assert.assertNull(dao.fetchLastUpdated(new ObjectId().toHexString()));
+
+        long stamp = dao.getChanges().current();
+        Thread.sleep(5);
+        dao.update(dao.fetchById(insertedIds));
+        Assert.assertTrue(dao.getChanges().current() > stamp, "update must advance the change stamp");
+        Assert.assertTrue(dao.fetchLastUpdated(insertedIds.get(0)).after(created), "update must touch lastUpdated");
+    }
+
+    @Test
+    public void testFetchCoursesByName() throws Exception {
+        Course first = dao.fetchById(testCreateCourse()).get(0);
+        Course second = getTestCourse();
+        second.setCourseName(first.getCourseName() + " II");
+        dao.add(Collections.singletonList(second));
+        Map<String, Course> courses = dao.fetchCoursesByName(
+                Arrays.asList(first.getCourseName(), second.getCourseName(), first.getCourseName(), "No such course"));
+        Assert.assertEquals(courses.size(), 2);
+        Assert.assertEquals(courses.get(first.getCourseName()).getId(), first.getId());
+        Assert.assertEquals(courses.get(second.getCourseName()).getId(), second.getId());
+        Assert.assertTrue(dao.fetchCoursesByName(Collections.<String>emptyList()).isEmpty());
+    }
+
+    @Test
+    public void testConcurrentReadsCoalesced() throws Exception {
+        final String id = testCreateCourse().get(0);
+        final int readers = 16;
+        final CyclicBarrier start = new CyclicBarrier(readers);
+        ExecutorService executor = Executors.newFixedThreadPool(readers);
+        long before = dao.getReads().getTotal().getExecuted() + dao.getReads().getTotal().getShared();
+        try {
+            List<Future<Course>> reads = new ArrayList<>();
+            for (int i = 0; i < readers; i++) {
+                reads.add(executor.submit(new Callable<Course>() {
+                    @Override
+                    public Course call() throws Exception {
+                        start.await();
+                        return dao.fetchById(Collections.singletonList(id)).get(0);
+                    }
+                }));
+            }
+            Set<Course> distinct = Collections.newSetFromMap(new IdentityHashMap<Course, Boolean>());
+            for (Future<Course> read : reads) {
+                Course course = read.get();
+                Assert.assertEquals(course.getId(), id);
+                distinct.add(course);
+            }
+            Assert.assertEquals(distinct.size(), readers, "each caller must get its own entity");
+        } finally {
+            executor.shutdownNow();
+        }
+        long after = dao.getReads().getTotal().getExecuted() + dao.getReads().getTotal().getShared();
+        Assert.assertEquals(after - before, readers);
+
+        Course course = dao.fetchById(Collections.singletonList(id)).get(0);
+        course.setCourseName(course.getCourseName() + " (updated)");
+        dao.update(Collections.singletonList(course));
+        Assert.assertEquals(dao.fetchById(Collections.singletonList(id)).get(0).getCourseName(), course.getCourseName(),
+                "a read after a write must not get a result read before it");
+    }
 }
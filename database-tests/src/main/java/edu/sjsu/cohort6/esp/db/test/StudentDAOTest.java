@@ -17,12 +17,14 @@ package edu.sjsu.cohort6.esp.db.test;
 import edu.sjsu.cohort6.esp.common.Course;
 import edu.sjsu.cohort6.esp.common.Student;
 import edu.sjsu.cohort6.esp.dao.mongodb.CourseDAO;
+import edu.sjsu.cohort6.esp.dao.mongodb.NamedQuery;
 import edu.sjsu.cohort6.esp.dao.mongodb.StudentDAO;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
 
 /**
@@ -114,4 +116,33 @@ public class StudentDAOTest extends DBTest<StudentDAO, Student> {
         log.info("Student updated in DB: " + students);
     }
 
+    @Test
+    public void testEnrollCohort() throws Exception {
+        List<String> studentIds = new ArrayList<>();
+        studentIds.addAll(testCreateStudents());
+        studentIds.addAll(testCreateStudents());
+        studentIds.addAll(testCreateStudents());
+        CourseDAO courseDAO = (CourseDAO) client.getDAO(CourseDAO.class);
+        Course course = courseDAO.fetchById(testCreateCourse()).get(0);
+        course.setMaxCapacity(2);
+
+        List<String> cohort = new ArrayList<>(studentIds);
+        cohort.add("000000000000000000000000");
+        Map<String, StudentDAO.Enrollment> outcomes = dao.enroll(course, cohort);
+        Assert.assertEquals(outcomes.get(studentIds.get(0)), StudentDAO.Enrollment.ENROLLED);
+        Assert.assertEquals(outcomes.get(studentIds.get(1)), StudentDAO.Enrollment.ENROLLED);
+        Assert.assertEquals(outcomes.get(studentIds.get(2)), StudentDAO.Enrollment.COURSE_FULL);
+        Assert.assertEquals(outcomes.get("000000000000000000000000"), StudentDAO.Enrollment.NOT_FOUND);
+
+        outcomes = dao.enroll(course, studentIds.subList(0, 1));
+        Assert.assertEquals(outcomes.get(studentIds.get(0)), StudentDAO.Enrollment.ALREADY_ENROLLED);
+
+        // the seats taken by earlier enrollments are counted
+        outcomes = dao.enroll(course, studentIds.subList(2, 3));
+        Assert.assertEquals(outcomes.get(studentIds.get(2)), StudentDAO.Enrollment.COURSE_FULL);
+        course.setMaxCapacity(3);
+        outcomes = dao.enroll(course, studentIds.subList(2, 3));
+        Assert.assertEquals(outcomes.get(studentIds.get(2)), StudentDAO.Enrollment.ENROLLED);
+        Assert.assertEquals(dao.fetch(NamedQuery.STUDENTS_BY_COURSE_REF, course.getId()).size(), 3);
+    }
 }
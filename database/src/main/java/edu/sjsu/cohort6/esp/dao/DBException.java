@@ -21,6 +21,9 @@ package edu.sjsu.cohort6.esp.dao;
  */
 public class DBException extends Exception {
 
+    public DBException(String message) {
+        super(message);
+    }
 
     public DBException(String message, Throwable t) {
         super(message, t);
@@ -21,4 +21,15 @@ import com.google.inject.assistedinject.Assisted;
  */
 public interface DBFactory {
     DBClient create(@Assisted("server") String server, @Assisted("port") int port, @Assisted("dbName") String dbName);
+
+    /**
+     * Creates a client with a bounded connection pool and bounded waits.
+     *
+     * @param connectionsPerHost    size of the connection pool
+     * @param maxWaitTimeMS         longest time a DAO call waits for a pooled connection
+     * @param socketTimeoutMS       socket read timeout, 0 for none
+     */
+    DBClient create(@Assisted("server") String server, @Assisted("port") int port, @Assisted("dbName") String dbName,
+                    @Assisted("connectionsPerHost") int connectionsPerHost,
+                    @Assisted("maxWaitTimeMS") int maxWaitTimeMS, @Assisted("socketTimeoutMS") int socketTimeoutMS);
 }
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.dao;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deadline of the request being served by the current thread.
+ *
+ * The web service starts a deadline when a request arrives and clears it when the response is written. DAO
+ * calls made in between use the time that is left as their mongodb time limit, and fail fast with
+ * {@link DeadlineExceededException} once it is used up, so no more work is spent on a request whose client has
+ * already given up. Threads without a deadline are not limited.
+ */
+public final class Deadline {
+    private static final ThreadLocal<Long> EXPIRES_AT_NANOS = new ThreadLocal<>();
+
+    private Deadline() {
+    }
+
+    /**
+     * Starts a deadline for the current thread.
+     *
+     * @param timeoutMillis time from now until the deadline
+     */
+    public static void start(long timeoutMillis) {
+        EXPIRES_AT_NANOS.set(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis));
+    }
+
+    public static void clear() {
+        EXPIRES_AT_NANOS.remove();
+    }
+
+    public static boolean isSet() {
+        return EXPIRES_AT_NANOS.get() != null;
+    }
+
+    /**
+     * @return milliseconds left until the deadline, 0 or less once it passed, or Long.MAX_VALUE when none is set
+     */
+    public static long remainingMillis() {
+        Long expiresAt = EXPIRES_AT_NANOS.get();
+        if (expiresAt == null) {
+            return Long.MAX_VALUE;
+        }
+        return TimeUnit.NANOSECONDS.toMillis(expiresAt - System.nanoTime());
+    }
+
+    public static boolean isExpired() {
+        return remainingMillis() <= 0;
+    }
+
+    /**
+     * Fails if the deadline of the current thread has passed.
+     *
+     * @throws DeadlineExceededException if the deadline has passed
+     */
+    public static void check() throws DeadlineExceededException {
+        if (isExpired()) {
+            throw new DeadlineExceededException();
+        }
+    }
+}
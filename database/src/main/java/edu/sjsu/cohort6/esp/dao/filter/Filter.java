@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+
+package edu.sjsu.cohort6.esp.dao.filter;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Parsed filter expression.
+ *
+ * A filter is a tree of field comparisons joined with and/or. It is produced by {@link FilterParser}, which also
+ * checks it against a {@link FilterSchema}, and is turned into a database query by the DAO layer.
+ */
+public abstract class Filter {
+
+    public enum Operator {
+        EQ("eq"), NE("ne"), GT("gt"), GE("ge"), LT("lt"), LE("le"), HAS("has"), IN("in");
+
+        private final String token;
+
+        Operator(String token) {
+            this.token = token;
+        }
+
+        public String getToken() {
+            return token;
+        }
+
+        public boolean isRange() {
+            return this == GT || this == GE || this == LT || this == LE;
+        }
+
+        public static Operator fromToken(String token) {
+            for (Operator op : values()) {
+                if (op.token.equalsIgnoreCase(token)) {
+                    return op;
+                }
+            }
+            return null;
+        }
+    }
+
+    public interface Visitor<R> {
+        R visitComparison(Comparison comparison);
+        R visitAnd(And and);
+        R visitOr(Or or);
+    }
+
+    public abstract <R> R accept(Visitor<R> visitor);
+
+    /**
+     * A single field comparison such as {@code price ge 100}.
+     * For the IN operator the value is a list of values.
+     */
+    public static class Comparison extends Filter {
+        private final FilterSchema.FilterField field;
+        private final Operator operator;
+        private final Object value;
+
+        public Comparison(FilterSchema.FilterField field, Operator operator, Object value) {
+            this.field = field;
+            this.operator = operator;
+            this.value = value;
+        }
+
+        public FilterSchema.FilterField getField() {
+            return field;
+        }
+
+        public Operator getOperator() {
+            return operator;
+        }
+
+        public Object getValue() {
+            return value;
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitComparison(this);
+        }
+
+        @Override
+        public String toString() {
+            return field.getName() + " " + operator.getToken() + " " + value;
+        }
+    }
+
+    public static class And extends Filter {
+        private final List<Filter> operands;
+
+        public And(List<Filter> operands) {
+            this.operands = Collections.unmodifiableList(operands);
+        }
+
+        public List<Filter> getOperands() {
+            return operands;
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitAnd(this);
+        }
+
+        @Override
+        public String toString() {
+            return "and" + operands;
+        }
+    }
+
+    public static class Or extends Filter {
+        private final List<Filter> operands;
+
+        public Or(List<Filter> operands) {
+            this.operands = Collections.unmodifiableList(operands);
+        }
+
+        public List<Filter> getOperands() {
+            return operands;
+        }
+
+        @Override
+        public <R> R accept(Visitor<R> visitor) {
+            return visitor.visitOr(this);
+        }
+
+        @Override
+        public String toString() {
+            return "or" + operands;
+        }
+    }
+}
@@ -0,0 +1,368 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+
+package edu.sjsu.cohort6.esp.dao.filter;
+
+import edu.sjsu.cohort6.esp.common.CommonUtils;
+
+import java.text.MessageFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * Parses filter expressions into a {@link Filter} tree checked against a {@link FilterSchema}.
+ *
+ * Grammar (keywords are case insensitive):
+ * <pre>
+ *     filter     := andExpr ( 'or' andExpr )*
+ *     andExpr    := primary ( 'and' primary )*
+ *     primary    := '(' filter ')' | comparison
+ *     comparison := field op value | field 'in' '(' value ( ',' value )* ')'
+ *     op         := 'eq' | 'ne' | 'gt' | 'ge' | 'lt' | 'le' | 'has'
+ *     value      := 'quoted string' | number
+ * </pre>
+ * Dates are given as quoted strings in yyyy-MM-dd, yyyy-MM-dd'T'HH:mm (UTC) or M-dd-yyyy HH:mm form.
+ * <p>
+ * Examples:
+ * <pre>
+ *     price ge 100 and price lt 500
+ *     keywords has 'Java' and startTime ge '2015-10-01'
+ *     courseName eq 'Cloud Technologies' or maxCapacity gt 50
+ * </pre>
+ * A filter is only accepted when the database can answer it from an index: every branch of an 'or' must
+ * contain at least one equality, range or membership condition on an indexed field.
+ */
+public class FilterParser {
+    /** Upper bound on the number of comparisons in one filter. */
+    public static final int MAX_COMPARISONS = 32;
+
+    /** Upper bound on the number of values of one 'in' comparison. */
+    public static final int MAX_IN_VALUES = 100;
+
+    private final FilterSchema schema;
+    private final List<Token> tokens;
+    private int pos = 0;
+    private int comparisons = 0;
+
+    private FilterParser(String text, FilterSchema schema) throws InvalidFilterException {
+        this.schema = schema;
+        this.tokens = tokenize(text);
+    }
+
+    /**
+     * Parses and validates the filter text.
+     *
+     * @param text      filter expression
+     * @param schema    schema of the entity being filtered
+     * @return filter tree
+     * @throws InvalidFilterException if the text is malformed, refers to unknown fields, uses operators or values
+     *                                that do not fit the field type, or cannot be served by an index
+     */
+    public static Filter parse(String text, FilterSchema schema) throws InvalidFilterException {
+        if (text == null || text.trim().isEmpty()) {
+            throw new InvalidFilterException("Filter is empty");
+        }
+        FilterParser parser = new FilterParser(text, schema);
+        Filter filter = parser.parseOr();
+        if (parser.pos < parser.tokens.size()) {
+            throw new InvalidFilterException("Unexpected " + parser.tokens.get(parser.pos) + " in filter");
+        }
+        if (!isIndexable(filter)) {
+            throw new InvalidFilterException(MessageFormat.format(
+                    "Filter would scan all {0} documents; each alternative needs a condition on one of {1}",
+                    schema.getEntityName(), schema.getIndexedFieldNames()));
+        }
+        return filter;
+    }
+
+    /**
+     * A filter can use an index if it constrains an indexed field with anything other than 'ne'. For 'and'
+     * one indexable operand is enough; for 'or' every operand needs to be indexable.
+     */
+    static boolean isIndexable(Filter filter) {
+        return filter.accept(new Filter.Visitor<Boolean>() {
+            @Override
+            public Boolean visitComparison(Filter.Comparison c) {
+                return c.getField().isIndexed() && c.getOperator() != Filter.Operator.NE;
+            }
+
+            @Override
+            public Boolean visitAnd(Filter.And and) {
+                for (Filter f : and.getOperands()) {
+                    if (f.accept(this)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            @Override
+            public Boolean visitOr(Filter.Or or) {
+                for (Filter f : or.getOperands()) {
+                    if (!f.accept(this)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        });
+    }
+
+    private Filter parseOr() throws InvalidFilterException {
+        List<Filter> operands = new ArrayList<>();
+        operands.add(parseAnd());
+        while (acceptKeyword("or")) {
+            operands.add(parseAnd());
+        }
+        return operands.size() == 1 ? operands.get(0) : new Filter.Or(operands);
+    }
+
+    private Filter parseAnd() throws InvalidFilterException {
+        List<Filter> operands = new ArrayList<>();
+        operands.add(parsePrimary());
+        while (acceptKeyword("and")) {
+            operands.add(parsePrimary());
+        }
+        return operands.size() == 1 ? operands.get(0) : new Filter.And(operands);
+    }
+
+    private Filter parsePrimary() throws InvalidFilterException {
+        if (accept(TokenType.LPAREN)) {
+            Filter inner = parseOr();
+            expect(TokenType.RPAREN);
+            return inner;
+        }
+        return parseComparison();
+    }
+
+    private Filter parseComparison() throws InvalidFilterException {
+        Token fieldToken = expect(TokenType.WORD);
+        FilterSchema.FilterField field = schema.getField(fieldToken.text);
+        if (field == null) {
+            throw new InvalidFilterException(MessageFormat.format("Unknown {0} field ''{1}''",
+                    schema.getEntityName(), fieldToken.text));
+        }
+        Token opToken = expect(TokenType.WORD);
+        Filter.Operator op = Filter.Operator.fromToken(opToken.text);
+        if (op == null) {
+            throw new InvalidFilterException("Unknown operator '" + opToken.text + "'");
+        }
+        if (!field.getType().supports(op)) {
+            throw new InvalidFilterException(MessageFormat.format("Operator ''{0}'' is not supported for {1}; use one of {2}",
+                    op.getToken(), field.getName(), field.getType().getOperators()));
+        }
+        if (++comparisons > MAX_COMPARISONS) {
+            throw new InvalidFilterException("Filter has more than " + MAX_COMPARISONS + " conditions");
+        }
+
+        Object value;
+        if (op == Filter.Operator.IN) {
+            List<Object> values = new ArrayList<>();
+            expect(TokenType.LPAREN);
+            do {
+                if (values.size() == MAX_IN_VALUES) {
+                    throw new InvalidFilterException("'in' has more than " + MAX_IN_VALUES + " values");
+                }
+                values.add(parseValue(field));
+            } while (accept(TokenType.COMMA));
+            expect(TokenType.RPAREN);
+            value = values;
+        } else {
+            value = parseValue(field);
+        }
+        return new Filter.Comparison(field, op, value);
+    }
+
+    private Object parseValue(FilterSchema.FilterField field) throws InvalidFilterException {
+        Token t = next();
+        switch (field.getType()) {
+            case STRING:
+            case STRING_LIST:
+                if (t.type != TokenType.STRING) {
+                    throw typeMismatch(field, t, "a quoted string");
+                }
+                return t.text;
+            case INTEGER:
+                if (t.type != TokenType.NUMBER) {
+                    throw typeMismatch(field, t, "an integer");
+                }
+                try {
+                    return Integer.parseInt(t.text);
+                } catch (NumberFormatException e) {
+                    throw typeMismatch(field, t, "an integer");
+                }
+            case NUMBER:
+                if (t.type != TokenType.NUMBER) {
+                    throw typeMismatch(field, t, "a number");
+                }
+                return Double.parseDouble(t.text);
+            case DATE:
+                if (t.type != TokenType.STRING) {
+                    throw typeMismatch(field, t, "a quoted date");
+                }
+                return parseDate(field, t.text);
+            default:
+                throw new InvalidFilterException("Field " + field.getName() + " cannot be filtered");
+        }
+    }
+
+    private static Date parseDate(FilterSchema.FilterField field, String text) throws InvalidFilterException {
+        for (String pattern : new String[]{"yyyy-MM-dd'T'HH:mm", "yyyy-MM-dd"}) {
+            SimpleDateFormat sdf = new SimpleDateFormat(pattern);
+            sdf.setTimeZone(TimeZone.getTimeZone("UTC"));
+            sdf.setLenient(false);
+            try {
+                if (text.length() == pattern.replace("'", "").length()) {
+                    return sdf.parse(text);
+                }
+            } catch (ParseException ignored) {
+                // try the next pattern
+            }
+        }
+        try {
+            return CommonUtils.getDateFromString(text);
+        } catch (ParseException e) {
+            throw new InvalidFilterException(MessageFormat.format("Invalid date ''{0}'' for {1}", text, field.getName()), e);
+        }
+    }
+
+    private static InvalidFilterException typeMismatch(FilterSchema.FilterField field, Token t, String expected) {
+        return new InvalidFilterException(MessageFormat.format("Expected {0} for {1} but found {2}",
+                expected, field.getName(), t));
+    }
+
+    /*
+     * Token handling.
+     */
+
+    private enum TokenType { WORD, STRING, NUMBER, LPAREN, RPAREN, COMMA }
+
+    private static class Token {
+        private final TokenType type;
+        private final String text;
+
+        private Token(TokenType type, String text) {
+            this.type = type;
+            this.text = text;
+        }
+
+        @Override
+        public String toString() {
+            return "'" + text + "'";
+        }
+    }
+
+    private Token next() throws InvalidFilterException {
+        if (pos >= tokens.size()) {
+            throw new InvalidFilterException("Unexpected end of filter");
+        }
+        return tokens.get(pos++);
+    }
+
+    private Token expect(TokenType type) throws InvalidFilterException {
+        Token t = next();
+        if (t.type != type) {
+            throw new InvalidFilterException("Unexpected " + t + " in filter");
+        }
+        return t;
+    }
+
+    private boolean accept(TokenType type) {
+        if (pos < tokens.size() && tokens.get(pos).type == type) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private boolean acceptKeyword(String keyword) {
+        if (pos < tokens.size() && tokens.get(pos).type == TokenType.WORD
+                && tokens.get(pos).text.equalsIgnoreCase(keyword)) {
+            pos++;
+            return true;
+        }
+        return false;
+    }
+
+    private static List<Token> tokenize(String text) throws InvalidFilterException {
+        List<Token> tokens = new ArrayList<>();
+        int i = 0;
+        int n = text.length();
+        while (i < n) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '(') {
+                tokens.add(new Token(TokenType.LPAREN, "("));
+                i++;
+            } else if (c == ')') {
+                tokens.add(new Token(TokenType.RPAREN, ")"));
+                i++;
+            } else if (c == ',') {
+                tokens.add(new Token(TokenType.COMMA, ","));
+                i++;
+            } else if (c == '\'' || c == '"') {
+                // Quoted string; the quote character is escaped by doubling it.
+                StringBuilder sb = new StringBuilder();
+                i++;
+                boolean closed = false;
+                while (i < n) {
+                    char d = text.charAt(i);
+                    if (d == c) {
+                        if (i + 1 < n && text.charAt(i + 1) == c) {
+                            sb.append(c);
+                            i += 2;
+                            continue;
+                        }
+                        closed = true;
+                        i++;
+                        break;
+                    }
+                    sb.append(d);
+                    i++;
+                }
+                if (!closed) {
+                    throw new InvalidFilterException("Unterminated string in filter");
+                }
+                tokens.add(new Token(TokenType.STRING, sb.toString()));
+            } else if (c == '-' || Character.isDigit(c)) {
+                int start = i++;
+                while (i < n && (Character.isDigit(text.charAt(i)) || text.charAt(i) == '.')) {
+                    i++;
+                }
+                String num = text.substring(start, i);
+                try {
+                    Double.parseDouble(num);
+                } catch (NumberFormatException e) {
+                    throw new InvalidFilterException("Invalid number '" + num + "' in filter");
+                }
+                tokens.add(new Token(TokenType.NUMBER, num));
+            } else if (Character.isLetter(c) || c == '_') {
+                int start = i++;
+                while (i < n && (Character.isLetterOrDigit(text.charAt(i)) || text.charAt(i) == '_')) {
+                    i++;
+                }
+                tokens.add(new Token(TokenType.WORD, text.substring(start, i)));
+            } else {
+                throw new InvalidFilterException(MessageFormat.format("Unexpected character ''{0}'' at position {1}", c, i));
+            }
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+
+package edu.sjsu.cohort6.esp.dao.filter;
+
+import edu.sjsu.cohort6.esp.common.Course;
+import org.mongodb.morphia.annotations.Id;
+import org.mongodb.morphia.annotations.Index;
+import org.mongodb.morphia.annotations.Indexed;
+import org.mongodb.morphia.annotations.Indexes;
+import org.mongodb.morphia.mapping.Mapper;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.*;
+
+/**
+ * The fields of an entity that may appear in a filter, with their types and whether they are indexed.
+ *
+ * The schema is read from the entity class itself so that it stays in step with the model: every persistent
+ * field of a supported type is filterable, and a field counts as indexed when it has {@link Indexed} or leads
+ * one of the class level {@link Indexes}.
+ */
+public class FilterSchema {
+
+    public static final FilterSchema COURSE = forEntity(Course.class);
+
+    public enum FieldType {
+        STRING(EnumSet.of(Filter.Operator.EQ, Filter.Operator.NE, Filter.Operator.IN)),
+        INTEGER(EnumSet.of(Filter.Operator.EQ, Filter.Operator.NE, Filter.Operator.GT, Filter.Operator.GE,
+                Filter.Operator.LT, Filter.Operator.LE, Filter.Operator.IN)),
+        NUMBER(INTEGER.operators),
+        DATE(EnumSet.of(Filter.Operator.EQ, Filter.Operator.GT, Filter.Operator.GE,
+                Filter.Operator.LT, Filter.Operator.LE)),
+        STRING_LIST(EnumSet.of(Filter.Operator.HAS, Filter.Operator.IN));
+
+        private final Set<Filter.Operator> operators;
+
+        FieldType(Set<Filter.Operator> operators) {
+            this.operators = operators;
+        }
+
+        public boolean supports(Filter.Operator op) {
+            return operators.contains(op);
+        }
+
+        public Set<Filter.Operator> getOperators() {
+            return operators;
+        }
+    }
+
+    public static class FilterField {
+        private final String name;
+        private final String dbName;
+        private final FieldType type;
+        private final boolean indexed;
+
+        public FilterField(String name, String dbName, FieldType type, boolean indexed) {
+            this.name = name;
+            this.dbName = dbName;
+            this.type = type;
+            this.indexed = indexed;
+        }
+
+        /**
+         * @return name used in filter expressions (same as the JSON property)
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return name of the field in the stored document
+         */
+        public String getDbName() {
+            return dbName;
+        }
+
+        public FieldType getType() {
+            return type;
+        }
+
+        public boolean isIndexed() {
+            return indexed;
+        }
+    }
+
+    private final String entityName;
+    private final Map<String, FilterField> fields;
+
+    public FilterSchema(String entityName, Collection<FilterField> fields) {
+        this.entityName = entityName;
+        Map<String, FilterField> map = new LinkedHashMap<>();
+        for (FilterField f : fields) {
+            map.put(f.getName(), f);
+        }
+        this.fields = Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * Builds the schema of a morphia entity class.
+     *
+     * @param clazz entity class
+     * @return schema
+     */
+    public static FilterSchema forEntity(Class<?> clazz) {
+        Set<String> indexedFields = new HashSet<>();
+        Indexes indexes = clazz.getAnnotation(Indexes.class);
+        if (indexes != null) {
+            for (Index index : indexes.value()) {
+                String leading = leadingField(index);
+                if (leading != null) {
+                    indexedFields.add(leading);
+                }
+            }
+        }
+
+        List<FilterField> fields = new ArrayList<>();
+        for (Field f : clazz.getDeclaredFields()) {
+            if (Modifier.isStatic(f.getModifiers()) || Modifier.isTransient(f.getModifiers())) {
+                continue;
+            }
+            FieldType type = typeOf(f);
+            if (type == null) {
+                continue;
+            }
+            if (f.isAnnotationPresent(Id.class)) {
+                fields.add(new FilterField(f.getName(), Mapper.ID_KEY, type, true));
+            } else {
+                boolean indexed = f.isAnnotationPresent(Indexed.class) || indexedFields.contains(f.getName());
+                fields.add(new FilterField(f.getName(), f.getName(), type, indexed));
+            }
+        }
+        return new FilterSchema(clazz.getSimpleName(), fields);
+    }
+
+    private static String leadingField(Index index) {
+        return index.fields().length > 0 ? index.fields()[0].value() : null;
+    }
+
+    private static FieldType typeOf(Field f) {
+        Class<?> type = f.getType();
+        if (type == String.class) {
+            return FieldType.STRING;
+        } else if (type == Integer.class || type == int.class || type == Long.class || type == long.class) {
+            return FieldType.INTEGER;
+        } else if (type == Double.class || type == double.class || type == Float.class || type == float.class) {
+            return FieldType.NUMBER;
+        } else if (type == Date.class) {
+            return FieldType.DATE;
+        } else if (List.class.isAssignableFrom(type) && f.getGenericType() instanceof ParameterizedType) {
+            Type[] args = ((ParameterizedType) f.getGenericType()).getActualTypeArguments();
+            return args.length == 1 && args[0] == String.class ? FieldType.STRING_LIST : null;
+        }
+        return null;
+    }
+
+    public String getEntityName() {
+        return entityName;
+    }
+
+    public FilterField getField(String name) {
+        return fields.get(name);
+    }
+
+    public Collection<FilterField> getFields() {
+        return fields.values();
+    }
+
+    public List<String> getIndexedFieldNames() {
+        List<String> names = new ArrayList<>();
+        for (FilterField f : fields.values()) {
+            if (f.isIndexed()) {
+                names.add(f.getName());
+            }
+        }
+        return names;
+    }
+}
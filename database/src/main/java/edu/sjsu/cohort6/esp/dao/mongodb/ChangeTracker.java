@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.dao.mongodb;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Change stamp of a collection, advanced by every write its DAO makes.
+ *
+ * Callers that keep data derived from the collection (such as encoded responses) remember the stamp they read it
+ * at, or register a listener to drop it on the next write. The stamp starts at the current time so that stamps
+ * from before a restart are never reused. Only writes made through this process are seen; a
+ * {@link CollectionVersion} listener carries them over to a version every instance sees.
+ */
+public class ChangeTracker {
+
+    /**
+     * Notified after each write.
+     */
+    public interface Listener {
+        void changed(long stamp);
+    }
+
+    private final AtomicLong stamp = new AtomicLong(System.currentTimeMillis());
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * @return stamp of the last write
+     */
+    public long current() {
+        return stamp.get();
+    }
+
+    /**
+     * Advances the stamp and notifies the listeners.
+     *
+     * @return the new stamp
+     */
+    public long changed() {
+        long current = stamp.incrementAndGet();
+        for (Listener listener : listeners) {
+            listener.changed(current);
+        }
+        return current;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+}
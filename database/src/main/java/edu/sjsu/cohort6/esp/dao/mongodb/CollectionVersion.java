@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+
+package edu.sjsu.cohort6.esp.dao.mongodb;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.mongodb.MongoException;
+import org.mongodb.morphia.mapping.Mapper;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Version of a collection kept in the database, so that every instance sees the writes of the others. It is the
+ * database side of a {@link ChangeTracker}: registered as its listener, it increments the version after each write
+ * the DAO makes. Response validators such as list ETags are derived from it.
+ *
+ * {
+ *   "_id" : "courses",      // collection name
+ *   "version" : 42
+ * }
+ *
+ * Writes made without the DAOs (from the shell, for instance) do not change the version.
+ */
+public class CollectionVersion implements ChangeTracker.Listener {
+    public static final String COLLECTION = "versions";
+    private static final Logger log = Logger.getLogger(CollectionVersion.class.getName());
+
+    private final DBCollection versions;
+    private final String name;
+
+    /**
+     * @param versions  collection the versions are kept in
+     * @param name      name of the versioned collection
+     */
+    public CollectionVersion(DBCollection versions, String name) {
+        this.versions = versions;
+        this.name = name;
+    }
+
+    /**
+     * Increments the version. A failure is logged rather than failing the write that already happened; until the
+     * next write the version then lags behind the data.
+     */
+    @Override
+    public void changed(long stamp) {
+        try {
+            versions.update(new BasicDBObject(Mapper.ID_KEY, name),
+                    new BasicDBObject("$inc", new BasicDBObject("version", 1L)), true, false);
+        } catch (MongoException e) {
+            log.log(Level.WARNING, "Failed to increment the version of " + name, e);
+        }
+    }
+
+    /**
+     * @return current version, 0 if the collection was never written through a DAO
+     */
+    public long fetch() {
+        DBObject document = versions.findOne(new BasicDBObject(Mapper.ID_KEY, name));
+        return document != null ? ((Number) document.get("version")).longValue() : 0L;
+    }
+}
@@ -14,6 +14,7 @@
 
 package edu.sjsu.cohort6.esp.dao.mongodb;
 
+import com.mongodb.BasicDBObject;
 import com.mongodb.DBCursor;
 import com.mongodb.DBObject;
 import com.mongodb.MongoClient;
@@ -21,16 +22,25 @@ import com.mongodb.util.JSON;
 import edu.sjsu.cohort6.esp.common.Course;
 import edu.sjsu.cohort6.esp.dao.BaseDAO;
 import edu.sjsu.cohort6.esp.dao.DBException;
-import org.mongodb.morphia.Key;
+import edu.sjsu.cohort6.esp.dao.Deadline;
+import edu.sjsu.cohort6.esp.dao.filter.Filter;
+import edu.sjsu.cohort6.esp.dao.mongodb.codec.EntityCodec;
+import edu.sjsu.cohort6.esp.dao.mongodb.codec.MorphiaCodec;
 import org.mongodb.morphia.Morphia;
 import org.mongodb.morphia.dao.BasicDAO;
 import org.mongodb.morphia.mapping.Mapper;
 import org.mongodb.morphia.query.Query;
-import org.mongodb.morphia.query.QueryResults;
 import org.mongodb.morphia.query.UpdateOperations;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Course DAO.
@@ -40,106 +50,419 @@ import java.util.List;
  * @author rwatsh
  */
 public class CourseDAO extends BasicDAO<Course, String> implements BaseDAO<Course> {
+    private static final int MAX_TRACKED_READS = 1000;
+
     private Morphia morphia;
-    protected CourseDAO(MongoClient mongoClient, Morphia morphia, String dbName) {
+    private final QueryGuard queryGuard;
+    private final IndexAdvisor indexAdvisor;
+    private volatile EntityCodec<Course> codec;
+    private final ChangeTracker changes = new ChangeTracker();
+    private final CollectionVersion version;
+    private final SingleFlight<String> reads = new SingleFlight<>(MAX_TRACKED_READS);
+    private final MembershipFilter ids;
+    private final MembershipFilter names;
+    protected CourseDAO(MongoClient mongoClient, Morphia morphia, String dbName, QueryGuard queryGuard, IndexAdvisor indexAdvisor) {
         super(mongoClient, morphia, dbName);
         this.morphia = morphia;
+        this.queryGuard = queryGuard;
+        this.indexAdvisor = indexAdvisor;
+        this.codec = new MorphiaCodec<>(morphia, Course.class);
+        this.ids = new MembershipFilter(this.getCollection(), Mapper.ID_KEY, changes);
+        this.names = new MembershipFilter(this.getCollection(), "courseName", changes);
+        this.version = new CollectionVersion(this.getCollection().getDB().getCollection(CollectionVersion.COLLECTION),
+                this.getCollection().getName());
+        changes.addListener(version);
     }
 
     @Override
     public synchronized List<String> add(List<Course> entityList) throws DBException {
+        Deadline.check();
         try {
             //morphiaDatastore.save(courseList);
             List<String> insertedIds = new ArrayList<>();
             if (entityList != null) {
                 for (Course course : entityList) {
-                    Key<Course> key = this.save(course);
-                    insertedIds.add(key.getId().toString());
+                    this.getCollection().save(codec.encode(course));
+                    ids.put(course.getId());
+                    names.put(course.getCourseName());
+                    insertedIds.add(course.getId());
                 }
             }
             return insertedIds;
         } catch (Exception e) {
             throw new DBException(e);
+        } finally {
+            changes.changed();
         }
     }
 
     @Override
     public synchronized long remove(List<String> courseIdsList) {
+        Deadline.check();
         List<String> objectIds = new ArrayList<>();
         for (String id : courseIdsList) {
             objectIds.add(id);
         }
         Query<Course> query = this.createQuery().field(Mapper.ID_KEY).in(objectIds);
-        return this.deleteByQuery(query).getN();
+        try {
+            return this.deleteByQuery(query).getN();
+        } finally {
+            changes.changed();
+        }
     }
 
     @Override
     public synchronized void update(List<Course> courseList) {
-        for (Course course : courseList) {
-            UpdateOperations<Course> ops = this.createUpdateOperations()
-                    .set("courseName", course.getCourseName())
-                    .set("availabilityStatus", course.getAvailabilityStatus())
-                            //.set("endDate", course.getEndDate())
-                    .set("endTime", course.getEndTime())
-                    .set("instructors", course.getInstructors())
-                    .set("keywords", course.getKeywords())
-                    .set("location", course.getLocation())
-                    .set("maxCapacity", course.getMaxCapacity())
-                    .set("price", course.getPrice())
-                            //.set("startDate", course.getStartDate())
-                    .set("startTime", course.getStartTime());
+        Deadline.check();
+        try {
+            for (Course course : courseList) {
+                course.setLastUpdated(new Date());
+                UpdateOperations<Course> ops = this.createUpdateOperations()
+                        .set("courseName", course.getCourseName())
+                        .set("availabilityStatus", course.getAvailabilityStatus())
+                                //.set("endDate", course.getEndDate())
+                        .set("endTime", course.getEndTime())
+                        .set("instructors", course.getInstructors())
+                        .set("keywords", course.getKeywords())
+                        .set("location", course.getLocation())
+                        .set("maxCapacity", course.getMaxCapacity())
+                        .set("price", course.getPrice())
+                                //.set("startDate", course.getStartDate())
+                        .set("startTime", course.getStartTime())
+                        .set("lastUpdated", course.getLastUpdated());
 
-            Query<Course> updateQuery = this.createQuery().field(Mapper.ID_KEY).equal(course.getId());
-            this.update(updateQuery, ops);
+                Query<Course> updateQuery = this.createQuery().field(Mapper.ID_KEY).equal(course.getId());
+                this.update(updateQuery, ops);
+                names.put(course.getCourseName());
+            }
+        } finally {
+            changes.changed();
         }
     }
 
+    /**
+     * Not synchronized: the read uses no DAO state, so the chunks of a multi-get can be read in parallel.
+     * Concurrent reads of the same ids share one query, each caller decoding its own copy of the documents.
+     * Ids that are definitely absent are not queried.
+     */
     @Override
-    public synchronized List<Course> fetchById(List<String> courseIdsList) {
-        List<String> objectIds = new ArrayList<>();
+    public List<Course> fetchById(List<String> courseIdsList) {
+        final List<String> objectIds = new ArrayList<>();
         if (courseIdsList != null) {
             for (String id : courseIdsList) {
-                objectIds.add(id);
+                if (ids.mightContain(id)) {
+                    objectIds.add(id);
+                }
+            }
+            if (objectIds.isEmpty() && !courseIdsList.isEmpty()) {
+                return new ArrayList<>();
             }
         }
 
-        if (!objectIds.isEmpty()) {
-            Query<Course> query = this.createQuery().field(Mapper.ID_KEY).in(objectIds);
-            QueryResults<Course> results = this.find(query);
-            return results.asList();
-        } else {
-            Query<Course> query = this.createQuery();
-            QueryResults<Course> results = this.find(query);
-            return results.asList();
+        long stamp = changes.current();
+        String key = objectIds.isEmpty() ? "all" : "ids:" + String.join(",", objectIds);
+        List<DBObject> documents = reads.execute(key, stamp, () -> {
+            if (!objectIds.isEmpty()) {
+                Query<Course> query = this.createQuery().field(Mapper.ID_KEY).in(objectIds);
+                indexAdvisor.record(this.getCollection(), query.getQueryObject());
+                return readAll(query.getQueryObject());
+            }
+            return readAll(new BasicDBObject());
+        });
+        if (!objectIds.isEmpty() && documents.size() < objectIds.size()) {
+            Set<String> found = new HashSet<>();
+            for (DBObject document : documents) {
+                found.add(String.valueOf(document.get(Mapper.ID_KEY)));
+            }
+            for (String id : objectIds) {
+                if (!found.contains(id)) {
+                    ids.recordMiss(id, stamp);
+                }
+            }
         }
+        return decodeAll(documents);
     }
 
     @Override
-    public synchronized List<Course> fetch(String query) {
+    public synchronized List<Course> fetch(String query) throws DBException {
+        DBObject dbObjQuery = query != null ? (DBObject) JSON.parse(query) : null;
+        return fetch(cursor(dbObjQuery));
+    }
+
+    /**
+     * Fetches courses matching a named query shape bound to the given parameters.
+     *
+     * @param query     named query shape
+     * @param params    values for the query placeholders
+     * @return all matching courses, not capped by the query guard's default limit
+     */
+    public synchronized List<Course> fetch(NamedQuery query, Object... params) throws DBException {
+        return fetch(cursorAll(query.bind(params)));
+    }
+
+    /**
+     * Fetches courses matching a filter parsed by {@link edu.sjsu.cohort6.esp.dao.filter.FilterParser}.
+     *
+     * @param filter    validated course filter
+     * @return matching courses
+     */
+    public synchronized List<Course> fetch(Filter filter) throws DBException {
+        return fetch(cursor(FilterCompiler.compile(filter)));
+    }
+
+    private List<Course> fetch(EntityCursor<Course> entities) {
         List<Course> courses = new ArrayList<>();
-        DBObject dbObjQuery;
-        DBCursor cursor;
-        if (!(query == null)) {
-            dbObjQuery = (DBObject) JSON.parse(query);
-            cursor = this.getCollection().find(dbObjQuery);
-        } else {
-            cursor = this.getCollection().find();
+        try (EntityCursor<Course> cursor = entities) {
+            while (cursor.hasNext()) {
+                courses.add(cursor.next());
+            }
         }
+        return courses;
+    }
+
+    /**
+     * Opens a cursor over all courses, for callers that process them one at a time. The cursor streams the
+     * collection, so unlike the fetch methods it is not shared with concurrent callers.
+     *
+     * @return cursor that the caller must close
+     */
+    public synchronized EntityCursor<Course> cursor() {
+        return EntityCursor.of(queryGuard.limitTime(this.getCollection().find()), codec);
+    }
+
+    /**
+     * Opens a cursor over the courses matching a filter.
+     *
+     * @param filter    validated course filter
+     * @return cursor that the caller must close
+     */
+    public synchronized EntityCursor<Course> cursor(Filter filter) throws DBException {
+        return cursor(FilterCompiler.compile(filter));
+    }
+
+    /**
+     * @param filter    validated course filter
+     * @return true if more courses match the filter than a filtered cursor returns
+     */
+    public boolean exceedsLimit(Filter filter) {
+        return queryGuard.exceedsLimit(this.getCollection(), FilterCompiler.compile(filter));
+    }
+
+    /**
+     * Opens a cursor over the raw documents of all courses, for read-only callers that write them out as they are
+     * (see {@link edu.sjsu.cohort6.esp.dao.mongodb.codec.CourseJsonTranscoder}).
+     *
+     * @return cursor that the caller must close
+     */
+    public synchronized EntityCursor<DBObject> rawCursor() {
+        return EntityCursor.raw(queryGuard.limitTime(this.getCollection().find()));
+    }
+
+    /**
+     * Opens a cursor over the raw documents of the courses matching a filter.
+     *
+     * @param filter    validated course filter
+     * @return cursor that the caller must close
+     */
+    public synchronized EntityCursor<DBObject> rawCursor(Filter filter) throws DBException {
+        DBObject dbObjQuery = FilterCompiler.compile(filter);
+        indexAdvisor.record(this.getCollection(), dbObjQuery);
+        return EntityCursor.raw(queryGuard.find(this.getCollection(), dbObjQuery));
+    }
 
-        List<DBObject> dbObjects = cursor.toArray();
-        for (DBObject dbObject: dbObjects) {
-            Course course = morphia.fromDBObject(Course.class, dbObject);
-            courses.add(course);
+    /**
+     * Fetches the raw document of a course. Concurrent reads of the same course share one query and its
+     * document, which must not be modified.
+     *
+     * @param id    course id
+     * @return the document, or null if there is no such course
+     */
+    public DBObject fetchRawById(final String id) {
+        if (!ids.mightContain(id)) {
+            return null;
+        }
+        long stamp = changes.current();
+        DBObject document = reads.execute("raw:" + id, stamp, () -> {
+            DBObject dbObjQuery = new BasicDBObject(Mapper.ID_KEY, id);
+            indexAdvisor.record(this.getCollection(), dbObjQuery);
+            try (DBCursor cursor = queryGuard.limitTime(this.getCollection().find(dbObjQuery).limit(1))) {
+                return cursor.hasNext() ? cursor.next() : null;
+            }
+        });
+        if (document == null) {
+            ids.recordMiss(id, stamp);
+        }
+        return document;
+    }
+
+    /**
+     * @return counts of the reads run and of those shared by concurrent callers, per kind of read
+     */
+    public SingleFlight<String> getReads() {
+        return reads;
+    }
+
+    /**
+     * @return filter of the course ids
+     */
+    public MembershipFilter getIdFilter() {
+        return ids;
+    }
+
+    /**
+     * @return filter of the course names
+     */
+    public MembershipFilter getNameFilter() {
+        return names;
+    }
+
+    /**
+     * Rebuilds the id and name filters from the collection.
+     */
+    public void rebuildFilters() {
+        ids.rebuild();
+        names.rebuild();
+    }
+
+    private List<DBObject> readAll(DBObject dbObjQuery) {
+        List<DBObject> documents = new ArrayList<>();
+        try (DBCursor cursor = queryGuard.limitTime(this.getCollection().find(dbObjQuery))) {
+            while (cursor.hasNext()) {
+                documents.add(cursor.next());
+            }
+        }
+        return documents;
+    }
+
+    private List<Course> decodeAll(List<DBObject> documents) {
+        List<Course> courses = new ArrayList<>(documents.size());
+        for (DBObject document : copyAll(documents)) {
+            courses.add(codec.decode(document));
         }
         return courses;
+    }
+
+    /**
+     * Copies shared documents before they are decoded, as decoding may modify them.
+     */
+    private static List<DBObject> copyAll(List<DBObject> documents) {
+        List<DBObject> copies = new ArrayList<>(documents.size());
+        for (DBObject document : documents) {
+            copies.add(document instanceof BasicDBObject ? (DBObject) ((BasicDBObject) document).copy() : document);
+        }
+        return copies;
+    }
 
+    private EntityCursor<Course> cursor(DBObject dbObjQuery) throws DBException {
+        indexAdvisor.record(this.getCollection(), dbObjQuery);
+        return EntityCursor.of(queryGuard.find(this.getCollection(), dbObjQuery), codec);
     }
 
-    public synchronized Course fetchCourseByName(String name) {
-        List<Course> courses =  this.fetch("{courseName: \"" + name + "\"}");
+    private EntityCursor<Course> cursorAll(DBObject dbObjQuery) throws DBException {
+        indexAdvisor.record(this.getCollection(), dbObjQuery);
+        return EntityCursor.of(queryGuard.findAll(this.getCollection(), dbObjQuery), codec);
+    }
+
+    public synchronized Course fetchCourseByName(String name) throws DBException {
+        if (!names.mightContain(name)) {
+            return null;
+        }
+        long stamp = changes.current();
+        List<Course> courses = this.fetch(NamedQuery.COURSE_BY_NAME, name);
         if (!courses.isEmpty()) {
             return courses.get(0);
         }
+        names.recordMiss(name, stamp);
         return null;
     }
+
+    /**
+     * Fetches the courses with any of the given names, with one query on the unique courseName index.
+     *
+     * @param courseNames course names, duplicates and nulls are ignored, names definitely absent are not queried
+     * @return courses by name, names with no course are left out
+     */
+    public synchronized Map<String, Course> fetchCoursesByName(Collection<String> courseNames) throws DBException {
+        Set<String> distinct = new LinkedHashSet<>();
+        for (String name : courseNames) {
+            if (names.mightContain(name)) {
+                distinct.add(name);
+            }
+        }
+        Map<String, Course> courses = new LinkedHashMap<>();
+        if (distinct.isEmpty()) {
+            return courses;
+        }
+        long stamp = changes.current();
+        DBObject dbObjQuery = new BasicDBObject("courseName", new BasicDBObject("$in", new ArrayList<>(distinct)));
+        try (EntityCursor<Course> cursor = cursorAll(dbObjQuery)) {
+            while (cursor.hasNext()) {
+                Course course = cursor.next();
+                courses.put(course.getCourseName(), course);
+            }
+        }
+        for (String name : distinct) {
+            if (!courses.containsKey(name)) {
+                names.recordMiss(name, stamp);
+            }
+        }
+        return courses;
+    }
+
+    /**
+     * Fetches only the lastUpdated field of a course, which is enough to validate a cached copy.
+     *
+     * @param id    course id
+     * @return when the course was last written (epoch if never stamped), or null if there is no such course
+     */
+    public Date fetchLastUpdated(final String id) {
+        if (!ids.mightContain(id)) {
+            return null;
+        }
+        long stamp = changes.current();
+        Long lastUpdated = reads.execute("lastUpdated:" + id, stamp, () -> {
+            DBObject dbObjQuery = new BasicDBObject(Mapper.ID_KEY, id);
+            indexAdvisor.record(this.getCollection(), dbObjQuery);
+            DBObject projection = new BasicDBObject("lastUpdated", 1);
+            try (DBCursor cursor = queryGuard.limitTime(this.getCollection().find(dbObjQuery, projection).limit(1))) {
+                if (!cursor.hasNext()) {
+                    return null;
+                }
+                Object value = cursor.next().get("lastUpdated");
+                return value instanceof Date ? ((Date) value).getTime() : 0L;
+            }
+        });
+        if (lastUpdated == null) {
+            ids.recordMiss(id, stamp);
+            return null;
+        }
+        return new Date(lastUpdated);
+    }
+
+    /**
+     * @return change stamp of the courses collection, advanced by every add, remove and update
+     */
+    public ChangeTracker getChanges() {
+        return changes;
+    }
+
+    /**
+     * @return version of the collection as stored in the database, advanced by the writes of every instance
+     */
+    public long fetchVersion() {
+        return version.fetch();
+    }
+
+    public EntityCodec<Course> getCodec() {
+        return codec;
+    }
+
+    /**
+     * Selects how documents of this DAO are converted, see {@link CodecType}.
+     *
+     * @param codec codec to read and write courses with
+     */
+    public void setCodec(EntityCodec<Course> codec) {
+        this.codec = codec;
+    }
 }
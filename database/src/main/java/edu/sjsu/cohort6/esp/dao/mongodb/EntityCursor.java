@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.dao.mongodb;
+
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import edu.sjsu.cohort6.esp.dao.mongodb.codec.EntityCodec;
+
+import java.util.Iterator;
+
+/**
+ * Entities read one by one from an open mongodb cursor.
+ *
+ * Unlike the fetch methods, which return the whole result as a list, a cursor holds only the current batch in
+ * memory. It must be closed once it is no longer needed, even if it was not read to the end.
+ */
+public class EntityCursor<T> implements Iterator<T>, AutoCloseable {
+    private final Iterator<T> entities;
+    private final DBCursor cursor;
+
+    private EntityCursor(Iterator<T> entities, DBCursor cursor) {
+        this.entities = entities;
+        this.cursor = cursor;
+    }
+
+    /**
+     * @param cursor    open mongodb cursor
+     * @param codec     codec converting each document
+     */
+    static <T> EntityCursor<T> of(final DBCursor cursor, final EntityCodec<T> codec) {
+        return new EntityCursor<>(new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return cursor.hasNext();
+            }
+
+            @Override
+            public T next() {
+                return codec.decode(cursor.next());
+            }
+        }, cursor);
+    }
+
+    /**
+     * @param cursor    open mongodb cursor whose documents are returned as they are read
+     */
+    static EntityCursor<DBObject> raw(DBCursor cursor) {
+        return new EntityCursor<>(cursor, cursor);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return entities.hasNext();
+    }
+
+    @Override
+    public T next() {
+        return entities.next();
+    }
+
+    @Override
+    public void close() {
+        cursor.close();
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+
+package edu.sjsu.cohort6.esp.dao.mongodb;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import edu.sjsu.cohort6.esp.dao.filter.Filter;
+
+import java.util.Collection;
+
+/**
+ * Compiles a {@link Filter} tree into a mongodb query document.
+ *
+ * Comparisons map onto the matching query operators ($gt, $in, ...), 'has' becomes an equality match against the
+ * array field, and and/or become $and/$or so that the query planner can combine index bounds.
+ */
+public final class FilterCompiler implements Filter.Visitor<DBObject> {
+    private static final FilterCompiler INSTANCE = new FilterCompiler();
+
+    private FilterCompiler() {
+    }
+
+    public static DBObject compile(Filter filter) {
+        return filter.accept(INSTANCE);
+    }
+
+    @Override
+    public DBObject visitComparison(Filter.Comparison c) {
+        String field = c.getField().getDbName();
+        Object value = c.getValue();
+        switch (c.getOperator()) {
+            case EQ:
+            case HAS:
+                return new BasicDBObject(field, value);
+            case NE:
+                return new BasicDBObject(field, new BasicDBObject("$ne", value));
+            case GT:
+                return new BasicDBObject(field, new BasicDBObject("$gt", value));
+            case GE:
+                return new BasicDBObject(field, new BasicDBObject("$gte", value));
+            case LT:
+                return new BasicDBObject(field, new BasicDBObject("$lt", value));
+            case LE:
+                return new BasicDBObject(field, new BasicDBObject("$lte", value));
+            case IN:
+                BasicDBList values = new BasicDBList();
+                values.addAll((Collection<?>) value);
+                return new BasicDBObject(field, new BasicDBObject("$in", values));
+            default:
+                throw new IllegalArgumentException("Unsupported operator " + c.getOperator());
+        }
+    }
+
+    @Override
+    public DBObject visitAnd(Filter.And and) {
+        return new BasicDBObject("$and", compileAll(and.getOperands()));
+    }
+
+    @Override
+    public DBObject visitOr(Filter.Or or) {
+        return new BasicDBObject("$or", compileAll(or.getOperands()));
+    }
+
+    private BasicDBList compileAll(Collection<Filter> operands) {
+        BasicDBList list = new BasicDBList();
+        for (Filter f : operands) {
+            list.add(f.accept(this));
+        }
+        return list;
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.dao.mongodb;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.mongodb.DuplicateKeyException;
+import edu.sjsu.cohort6.esp.dao.Deadline;
+import org.mongodb.morphia.mapping.Mapper;
+
+import java.util.Date;
+
+/**
+ * Responses of requests sent with an idempotency key, so that a retried request is answered with the stored
+ * response instead of being run again.
+ *
+ * A request first claims its key, which stores a pending record. Once the response is written the record is
+ * completed with it; if the request fails the claim is released so that a retry can run it. Records expire
+ * through a TTL index on expiresAt: completed ones after the retention time, pending ones after a short time, so
+ * the key of a request that died half way does not stay locked.
+ *
+ * {
+ *   "_id" : "9f86d081...",           // hash of the caller, the request line and the key
+ *   "fingerprint" : "2c26b46b...",   // hash of the request body
+ *   "completed" : true,
+ *   "status" : 201,
+ *   "contentType" : "application/json",
+ *   "location" : "/api/v1.0/students/5652...",
+ *   "body" : BinData(...),
+ *   "expiresAt" : ISODate("2015-11-29T10:23:26.128Z")
+ * }
+ */
+public class IdempotencyStore {
+    public static final String COLLECTION = "idempotencyKeys";
+
+    private final DBCollection collection;
+
+    /**
+     * @param collection    collection the records are kept in
+     */
+    public IdempotencyStore(DBCollection collection) {
+        this.collection = collection;
+        ensureIndexes();
+    }
+
+    /**
+     * Creates the TTL index that removes expired records.
+     */
+    void ensureIndexes() {
+        collection.createIndex(new BasicDBObject("expiresAt", 1), new BasicDBObject("expireAfterSeconds", 0));
+    }
+
+    /**
+     * Claims a key for a request about to run.
+     *
+     * @param id            record id, see the class comment
+     * @param fingerprint   hash of the request body
+     * @param pendingMillis how long the claim holds if the request never completes or releases it
+     * @return null if the key was claimed, otherwise the record that holds it
+     */
+    public Record claim(String id, String fingerprint, long pendingMillis) {
+        Deadline.check();
+        Date expiresAt = new Date(System.currentTimeMillis() + pendingMillis);
+        DBObject pending = new BasicDBObject(Mapper.ID_KEY, id)
+                .append("fingerprint", fingerprint)
+                .append("completed", false)
+                .append("expiresAt", expiresAt);
+        try {
+            collection.insert(pending);
+            return null;
+        } catch (DuplicateKeyException e) {
+            // take over a pending claim that has run out but not been removed by the TTL monitor yet
+            DBObject stale = new BasicDBObject(Mapper.ID_KEY, id)
+                    .append("completed", false)
+                    .append("expiresAt", new BasicDBObject("$lt", new Date()));
+            if (collection.update(stale, pending).getN() > 0) {
+                return null;
+            }
+            DBObject existing = collection.findOne(new BasicDBObject(Mapper.ID_KEY, id));
+            return existing != null ? new Record(existing) : claim(id, fingerprint, pendingMillis);
+        }
+    }
+
+    /**
+     * Stores the response of a claimed request.
+     *
+     * @param id            record id
+     * @param fingerprint   hash of the request body
+     * @param status        response status
+     * @param contentType   response content type, null if there is no body
+     * @param location      Location header, null if none
+     * @param body          response body
+     * @param retainMillis  how long the response is kept for retries
+     * @return the completed record
+     */
+    public Record complete(String id, String fingerprint, int status, String contentType, String location, byte[] body, long retainMillis) {
+        DBObject update = new BasicDBObject("fingerprint", fingerprint)
+                .append("completed", true)
+                .append("status", status)
+                .append("body", body)
+                .append("expiresAt", new Date(System.currentTimeMillis() + retainMillis));
+        if (contentType != null) {
+            update.put("contentType", contentType);
+        }
+        if (location != null) {
+            update.put("location", location);
+        }
+        collection.update(new BasicDBObject(Mapper.ID_KEY, id), new BasicDBObject("$set", update));
+        return new Record(update);
+    }
+
+    /**
+     * Drops the claim of a request that failed, so it can be retried.
+     *
+     * @param id    record id
+     */
+    public void release(String id) {
+        collection.remove(new BasicDBObject(Mapper.ID_KEY, id).append("completed", false));
+    }
+
+    /**
+     * A claimed key, pending or completed.
+     */
+    public static final class Record {
+        private final String fingerprint;
+        private final boolean completed;
+        private final int status;
+        private final String contentType;
+        private final String location;
+        private final byte[] body;
+        private final long expiresAtMillis;
+
+        Record(DBObject document) {
+            this.fingerprint = (String) document.get("fingerprint");
+            this.completed = Boolean.TRUE.equals(document.get("completed"));
+            Object status = document.get("status");
+            this.status = status instanceof Number ? ((Number) status).intValue() : 0;
+            this.contentType = (String) document.get("contentType");
+            this.location = (String) document.get("location");
+            Object body = document.get("body");
+            this.body = body instanceof byte[] ? (byte[]) body : new byte[0];
+            Object expiresAt = document.get("expiresAt");
+            this.expiresAtMillis = expiresAt instanceof Date ? ((Date) expiresAt).getTime() : 0;
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        public boolean isCompleted() {
+            return completed;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getLocation() {
+            return location;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        /**
+         * @return time left until the record expires, at least 1 ms
+         */
+        public long getRemainingMillis() {
+            return Math.max(1, expiresAtMillis - System.currentTimeMillis());
+        }
+    }
+}
@@ -0,0 +1,300 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.dao.mongodb;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records the shapes of the queries the DAOs run and compares them with the indexes that exist.
+ *
+ * A shape is the collection plus the fields a query filters on, split into equality fields and range fields.
+ * From the recorded shapes the advisor reports
+ * <ul>
+ *     <li>missing indexes: shapes whose fields do not lead any index, with a suggested key (equality fields
+ *     first, then range fields)</li>
+ *     <li>unused indexes: indexes whose leading field no recorded shape filters on</li>
+ * </ul>
+ * Unused indexes are only meaningful once representative traffic has been seen, so the report carries the
+ * number of queries observed since the advisor was started or reset.
+ */
+public class IndexAdvisor {
+    private static final String ID_INDEX = "_id_";
+    private static final Set<String> RANGE_OPERATORS = new HashSet<>(Arrays.asList(
+            "$gt", "$gte", "$lt", "$lte", "$ne", "$nin", "$exists", "$regex"));
+
+    private final ConcurrentMap<Shape, AtomicLong> shapes = new ConcurrentHashMap<>();
+    private final AtomicLong observed = new AtomicLong();
+    private volatile int maxShapes = 256;
+    private volatile Date since = new Date();
+
+    /**
+     * Records one query against a collection. Empty queries read everything and are not recorded.
+     *
+     * @param collection    queried collection
+     * @param query         query document
+     */
+    public void record(DBCollection collection, DBObject query) {
+        if (query == null || query.keySet().isEmpty()) {
+            return;
+        }
+        observed.incrementAndGet();
+        for (Shape shape : shapesOf(collection.getName(), query)) {
+            AtomicLong count = shapes.get(shape);
+            if (count == null) {
+                if (shapes.size() >= maxShapes) {
+                    continue;
+                }
+                AtomicLong existing = shapes.putIfAbsent(shape, count = new AtomicLong());
+                if (existing != null) {
+                    count = existing;
+                }
+            }
+            count.incrementAndGet();
+        }
+    }
+
+    /**
+     * Splits a query into the shapes that need an index. Each $or branch is planned on its own, so each branch
+     * becomes its own shape; $and terms are merged into the enclosing shape.
+     */
+    public static List<Shape> shapesOf(String collection, DBObject query) {
+        SortedSet<String> equality = new TreeSet<>();
+        SortedSet<String> range = new TreeSet<>();
+        List<Shape> result = new ArrayList<>();
+        collect(collection, query, equality, range, result);
+        if (!equality.isEmpty() || !range.isEmpty()) {
+            result.add(0, new Shape(collection, equality, range));
+        }
+        return result;
+    }
+
+    private static void collect(String collection, DBObject query, SortedSet<String> equality,
+                                SortedSet<String> range, List<Shape> result) {
+        for (String key : query.keySet()) {
+            Object value = query.get(key);
+            if ("$and".equals(key) && value instanceof BasicDBList) {
+                for (Object term : (BasicDBList) value) {
+                    collect(collection, (DBObject) term, equality, range, result);
+                }
+            } else if (("$or".equals(key) || "$nor".equals(key)) && value instanceof BasicDBList) {
+                for (Object branch : (BasicDBList) value) {
+                    result.addAll(shapesOf(collection, (DBObject) branch));
+                }
+            } else if (!key.startsWith("$")) {
+                if (isRange(value)) {
+                    range.add(key);
+                } else {
+                    equality.add(key);
+                }
+            }
+        }
+    }
+
+    private static boolean isRange(Object value) {
+        if (value instanceof DBObject && !(value instanceof BasicDBList)) {
+            for (String op : ((DBObject) value).keySet()) {
+                if (RANGE_OPERATORS.contains(op)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compares the recorded shapes with the indexes in the db.
+     *
+     * @param db        db the DAOs run against
+     * @param collections names of the collections to report on
+     * @return advisor report
+     */
+    public Report report(DB db, Collection<String> collections) {
+        Report report = new Report(observed.get(), since);
+        for (String name : collections) {
+            List<List<String>> indexes = new ArrayList<>();
+            List<String> indexNames = new ArrayList<>();
+            for (DBObject info : db.getCollection(name).getIndexInfo()) {
+                indexes.add(new ArrayList<>(((DBObject) info.get("key")).keySet()));
+                indexNames.add((String) info.get("name"));
+            }
+
+            Set<String> queriedFields = new HashSet<>();
+            for (Map.Entry<Shape, AtomicLong> entry : shapes.entrySet()) {
+                Shape shape = entry.getKey();
+                if (!shape.collection.equals(name)) {
+                    continue;
+                }
+                queriedFields.addAll(shape.fields());
+                boolean served = false;
+                for (List<String> index : indexes) {
+                    if (shape.fields().contains(index.get(0))) {
+                        served = true;
+                        break;
+                    }
+                }
+                if (!served) {
+                    report.missing.add(new Suggestion(name, shape.suggestedKey(), entry.getValue().get()));
+                }
+            }
+            for (int i = 0; i < indexes.size(); i++) {
+                if (!ID_INDEX.equals(indexNames.get(i)) && !queriedFields.contains(indexes.get(i).get(0))) {
+                    report.unused.add(new Suggestion(name, indexes.get(i), 0));
+                }
+            }
+        }
+        Collections.sort(report.missing);
+        return report;
+    }
+
+    /**
+     * Forgets all recorded shapes.
+     */
+    public void reset() {
+        shapes.clear();
+        observed.set(0);
+        since = new Date();
+    }
+
+    public int getMaxShapes() {
+        return maxShapes;
+    }
+
+    public void setMaxShapes(int maxShapes) {
+        this.maxShapes = maxShapes;
+    }
+
+    public static final class Shape {
+        private final String collection;
+        private final SortedSet<String> equality;
+        private final SortedSet<String> range;
+
+        Shape(String collection, SortedSet<String> equality, SortedSet<String> range) {
+            this.collection = collection;
+            this.equality = equality;
+            this.range = range;
+        }
+
+        public String getCollection() {
+            return collection;
+        }
+
+        Set<String> fields() {
+            Set<String> fields = new HashSet<>(equality);
+            fields.addAll(range);
+            return fields;
+        }
+
+        /**
+         * @return index key serving this shape: equality fields first, then range fields
+         */
+        public List<String> suggestedKey() {
+            List<String> key = new ArrayList<>(equality);
+            key.addAll(range);
+            return key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Shape)) {
+                return false;
+            }
+            Shape other = (Shape) o;
+            return collection.equals(other.collection) && equality.equals(other.equality) && range.equals(other.range);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(collection, equality, range);
+        }
+
+        @Override
+        public String toString() {
+            return collection + " eq" + equality + " range" + range;
+        }
+    }
+
+    public static final class Suggestion implements Comparable<Suggestion> {
+        private final String collection;
+        private final List<String> key;
+        private final long count;
+
+        Suggestion(String collection, List<String> key, long count) {
+            this.collection = collection;
+            this.key = key;
+            this.count = count;
+        }
+
+        public String getCollection() {
+            return collection;
+        }
+
+        public List<String> getKey() {
+            return key;
+        }
+
+        /**
+         * @return number of queries of this shape seen (always 0 for unused indexes)
+         */
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public int compareTo(Suggestion o) {
+            return Long.compare(o.count, count);
+        }
+
+        @Override
+        public String toString() {
+            return collection + " " + key + (count > 0 ? " (" + count + " queries)" : "");
+        }
+    }
+
+    public static final class Report {
+        private final long observed;
+        private final Date since;
+        private final List<Suggestion> missing = new ArrayList<>();
+        private final List<Suggestion> unused = new ArrayList<>();
+
+        Report(long observed, Date since) {
+            this.observed = observed;
+            this.since = since;
+        }
+
+        public long getObserved() {
+            return observed;
+        }
+
+        public Date getSince() {
+            return since;
+        }
+
+        public List<Suggestion> getMissing() {
+            return missing;
+        }
+
+        public List<Suggestion> getUnused() {
+            return unused;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.dao.mongodb;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import org.mongodb.morphia.Datastore;
+import org.mongodb.morphia.Morphia;
+import org.mongodb.morphia.annotations.Field;
+import org.mongodb.morphia.annotations.Id;
+import org.mongodb.morphia.annotations.Index;
+import org.mongodb.morphia.annotations.Indexed;
+import org.mongodb.morphia.annotations.Indexes;
+import org.mongodb.morphia.mapping.MappedClass;
+
+import java.text.MessageFormat;
+import java.util.*;
+import java.util.logging.Logger;
+
+/**
+ * Keeps the indexes in mongodb aligned with the index annotations on the entities.
+ *
+ * The entities are the single place where indexes are declared ({@link Indexed} on a field, {@link Indexes} on
+ * the class). At startup {@link #reconcile(Datastore)} creates any declared index that is missing and then lists
+ * the indexes that exist in a collection but are not declared on its entity. Those are only logged unless
+ * dropUndeclared is set, in which case they are dropped.
+ */
+public class IndexManager {
+    private static final Logger log = Logger.getLogger(IndexManager.class.getName());
+    private static final String ID_INDEX = "_id_";
+
+    private final Morphia morphia;
+    private volatile boolean dropUndeclared = false;
+
+    public IndexManager(Morphia morphia) {
+        this.morphia = morphia;
+    }
+
+    /**
+     * Creates the declared indexes and reports (or drops) the undeclared ones.
+     *
+     * @param datastore datastore bound to the db to reconcile
+     * @return names of the undeclared indexes found, keyed by collection
+     */
+    public Map<String, List<String>> reconcile(Datastore datastore) {
+        datastore.ensureIndexes();
+        Map<String, List<String>> undeclared = new TreeMap<>();
+        for (MappedClass mc : morphia.getMapper().getMappedClasses()) {
+            if (mc.getEntityAnnotation() == null) {
+                continue;
+            }
+            DBCollection collection = datastore.getCollection(mc.getClazz());
+            Set<String> declared = new HashSet<>();
+            for (DBObject keys : declaredIndexes(mc.getClazz())) {
+                declared.add(signature(keys));
+            }
+            for (DBObject info : collection.getIndexInfo()) {
+                String name = (String) info.get("name");
+                if (ID_INDEX.equals(name) || declared.contains(signature((DBObject) info.get("key")))) {
+                    continue;
+                }
+                if (!undeclared.containsKey(collection.getName())) {
+                    undeclared.put(collection.getName(), new ArrayList<String>());
+                }
+                undeclared.get(collection.getName()).add(name);
+                if (dropUndeclared) {
+                    log.warning(MessageFormat.format("Dropping undeclared index {0} on {1}", name, collection.getName()));
+                    collection.dropIndex(name);
+                } else {
+                    log.warning(MessageFormat.format("Index {0} on {1} is not declared on {2}", name,
+                            collection.getName(), mc.getClazz().getSimpleName()));
+                }
+            }
+        }
+        return undeclared;
+    }
+
+    /**
+     * Returns the index keys declared on an entity, in declaration order.
+     *
+     * @param entity  entity class
+     * @return one key document per declared index
+     */
+    public static List<DBObject> declaredIndexes(Class<?> entity) {
+        List<DBObject> indexes = new ArrayList<>();
+        Indexes classIndexes = entity.getAnnotation(Indexes.class);
+        if (classIndexes != null) {
+            for (Index index : classIndexes.value()) {
+                BasicDBObject keys = new BasicDBObject();
+                for (Field field : index.fields()) {
+                    keys.put(field.value(), field.type().toIndexValue());
+                }
+                indexes.add(keys);
+            }
+        }
+        for (Class<?> c = entity; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (java.lang.reflect.Field field : c.getDeclaredFields()) {
+                Indexed indexed = field.getAnnotation(Indexed.class);
+                if (indexed != null && field.getAnnotation(Id.class) == null) {
+                    indexes.add(new BasicDBObject(field.getName(), indexed.value().toIndexValue()));
+                }
+            }
+        }
+        return indexes;
+    }
+
+    /**
+     * Returns a comparable form of an index key document. Field order matters for compound indexes, and
+     * numeric directions are normalized since the shell stores them as doubles.
+     */
+    static String signature(DBObject keys) {
+        StringBuilder sb = new StringBuilder();
+        for (String key : keys.keySet()) {
+            Object value = keys.get(key);
+            if (value instanceof Number) {
+                value = ((Number) value).intValue();
+            }
+            sb.append(key).append(':').append(value).append(',');
+        }
+        return sb.toString();
+    }
+
+    public boolean isDropUndeclared() {
+        return dropUndeclared;
+    }
+
+    public void setDropUndeclared(boolean dropUndeclared) {
+        this.dropUndeclared = dropUndeclared;
+    }
+}
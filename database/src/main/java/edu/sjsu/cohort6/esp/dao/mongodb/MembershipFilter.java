@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.dao.mongodb;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Answers "definitely absent" for the values of one field of a collection (course ids, course names) without a
+ * database round trip.
+ *
+ * A Bloom filter holds every value written through the DAO since the filter was last rebuilt from the collection:
+ * a value it does not hold is definitely absent, one it holds may be present. Values removed from the collection
+ * stay in the filter until the next rebuild, which only costs a query. Values found absent by a query are also
+ * remembered for a short time, as long as the collection has not been written to since, so repeated lookups of
+ * the same bad value are answered from memory even when the filter holds it.
+ *
+ * The DAO must {@link #put} a value after writing it, and query the collection whenever {@link #mightContain}
+ * returns true. Like the {@link ChangeTracker}, only writes made through this process are seen: values written by
+ * another process are found once the filter is rebuilt. So that they are not missed for long, the filter is only
+ * trusted for a bounded time after its last rebuild (see {@link #setMaxAge}); until it is first built, once it is
+ * older than that, and once it holds more values than it was sized for, every lookup queries the collection.
+ */
+public class MembershipFilter {
+    private static final int MIN_EXPECTED = 10000;
+    private static final double FPP = 0.01;
+    private static final long NEGATIVE_TTL_SECONDS = 5;
+    private static final int NEGATIVE_CACHE_SIZE = 10000;
+    private static final long DEFAULT_MAX_AGE_MINUTES = 10;
+
+    private final DBCollection collection;
+    private final String field;
+    private final ChangeTracker changes;
+    private final Cache<String, Long> misses = CacheBuilder.newBuilder()
+            .maximumSize(NEGATIVE_CACHE_SIZE)
+            .expireAfterWrite(NEGATIVE_TTL_SECONDS, TimeUnit.SECONDS)
+            .build();
+
+    private volatile BloomFilter<CharSequence> filter;
+    private volatile BloomFilter<CharSequence> building;
+    private volatile long expected;
+    private final AtomicLong count = new AtomicLong();
+    private volatile boolean built;
+    private volatile long builtAt;
+    private volatile long maxAgeNanos = TimeUnit.MINUTES.toNanos(DEFAULT_MAX_AGE_MINUTES);
+
+    private final AtomicLong definiteMisses = new AtomicLong();
+    private final AtomicLong cachedMisses = new AtomicLong();
+    private final AtomicLong falsePositives = new AtomicLong();
+
+    /**
+     * @param collection    collection holding the values
+     * @param field         field holding the values, _id included
+     * @param changes       change stamp of the collection, which invalidates the remembered misses
+     */
+    public MembershipFilter(DBCollection collection, String field, ChangeTracker changes) {
+        this.collection = collection;
+        this.field = field;
+        this.changes = changes;
+        this.expected = MIN_EXPECTED;
+        this.filter = create(expected);
+    }
+
+    /**
+     * @param value looked up value
+     * @return false if the value is definitely not in the collection, true if it must be queried
+     */
+    public boolean mightContain(String value) {
+        if (value == null) {
+            return false;
+        }
+        if (isStale()) {
+            return true;
+        }
+        if (!filter.mightContain(value)) {
+            definiteMisses.incrementAndGet();
+            return false;
+        }
+        Long stamp = misses.getIfPresent(value);
+        if (stamp != null && stamp == changes.current()) {
+            cachedMisses.incrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Remembers that a query found no such value.
+     *
+     * @param value looked up value
+     * @param stamp change stamp read before the query, so that a write made meanwhile discards the miss
+     */
+    public void recordMiss(String value, long stamp) {
+        if (value != null) {
+            falsePositives.incrementAndGet();
+            misses.put(value, stamp);
+        }
+    }
+
+    /**
+     * Adds a value written to the collection. When the filter holds more values than it was sized for, it is marked
+     * stale, so lookups query until the next rebuild sizes it for the collection.
+     */
+    public void put(String value) {
+        if (value == null) {
+            return;
+        }
+        // read building first: if it is still null the write came before the rebuild's scan, which sees it
+        BloomFilter<CharSequence> next = building;
+        filter.put(value);
+        if (next != null) {
+            next.put(value);
+        }
+        if (count.incrementAndGet() > expected && next == null) {
+            // rebuilding here would scan the collection on the caller's write
+            built = false;
+        }
+    }
+
+    /**
+     * Rebuilds the filter from the values in the collection. Values put while the collection is scanned go to
+     * both the old and the new filter; if the scan fails the old filter is kept.
+     */
+    public synchronized void rebuild() {
+        long started = System.nanoTime();
+        long size = Math.max(MIN_EXPECTED, 2 * collection.count());
+        BloomFilter<CharSequence> next = create(size);
+        building = next;
+        try {
+            long values = 0;
+            DBObject projection = new BasicDBObject(field, 1);
+            try (DBCursor cursor = collection.find(new BasicDBObject(), projection)) {
+                while (cursor.hasNext()) {
+                    Object value = cursor.next().get(field);
+                    if (value != null) {
+                        next.put(value.toString());
+                        values++;
+                    }
+                }
+            }
+            expected = size;
+            count.set(values);
+            filter = next;
+            builtAt = started;
+            built = true;
+        } finally {
+            building = null;
+        }
+    }
+
+    /**
+     * Sets how long after a rebuild the filter is trusted. It should exceed the interval between rebuilds.
+     */
+    public void setMaxAge(long maxAge, TimeUnit unit) {
+        this.maxAgeNanos = unit.toNanos(maxAge);
+    }
+
+    /**
+     * @return true if the filter was never built, outgrew its size or is older than the max age, in which case
+     *         every lookup queries
+     */
+    public boolean isStale() {
+        return !built || System.nanoTime() - builtAt >= maxAgeNanos;
+    }
+
+    /**
+     * @return lookups answered by the filter
+     */
+    public long getDefiniteMisses() {
+        return definiteMisses.get();
+    }
+
+    /**
+     * @return lookups answered by a remembered miss
+     */
+    public long getCachedMisses() {
+        return cachedMisses.get();
+    }
+
+    /**
+     * @return lookups the filter let through that found nothing
+     */
+    public long getFalsePositives() {
+        return falsePositives.get();
+    }
+
+    @Override
+    public String toString() {
+        return field + ": stale=" + isStale() + ", definiteMisses=" + getDefiniteMisses() + ", cachedMisses=" + getCachedMisses()
+                + ", falsePositives=" + getFalsePositives() + ", expectedFpp=" + filter.expectedFpp();
+    }
+
+    private static BloomFilter<CharSequence> create(long expected) {
+        return BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), (int) Math.min(Integer.MAX_VALUE, expected), FPP);
+    }
+}
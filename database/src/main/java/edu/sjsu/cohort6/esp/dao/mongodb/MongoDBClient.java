@@ -14,18 +14,25 @@
 
 package edu.sjsu.cohort6.esp.dao.mongodb;
 
-import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
+import com.google.inject.assistedinject.AssistedInject;
 import com.mongodb.MongoClient;
+import com.mongodb.MongoClientOptions;
+import com.mongodb.ServerAddress;
 import edu.sjsu.cohort6.esp.common.*;
 import edu.sjsu.cohort6.esp.dao.BaseDAO;
 import edu.sjsu.cohort6.esp.dao.DBClient;
+import edu.sjsu.cohort6.esp.dao.mongodb.codec.*;
 import org.mongodb.morphia.Datastore;
 import org.mongodb.morphia.Morphia;
+import org.mongodb.morphia.mapping.MappedClass;
 import org.mongodb.morphia.query.Query;
 
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A concrete DB Client implementation for MongoDB.
@@ -48,6 +55,10 @@ public class MongoDBClient implements DBClient {
     private Datastore morphiaDatastore;
     private StudentDAO studentDAO;
     private UserDAO userDAO;
+    private final QueryGuard queryGuard = new QueryGuard();
+    private final IndexAdvisor indexAdvisor = new IndexAdvisor();
+    private IndexManager indexManager;
+    private IdempotencyStore idempotencyStore;
 
     public static void main(String[] args) {
 
@@ -84,30 +95,107 @@ public class MongoDBClient implements DBClient {
      * @param port      port number for mongodb service
      * @param dbName    name of db to use
      */
-    @Inject
+    @AssistedInject
     private MongoDBClient(@Assisted("server") String server, @Assisted("port") int port, @Assisted("dbName") String dbName) {
+        this(server, port, dbName, MongoClientOptions.builder().build());
+    }
+
+    /**
+     * Constructs a MongoDB client instance with a pool of connectionsPerHost connections, whose DAO calls wait at
+     * most maxWaitTimeMS for one.
+     *
+     * @param server                server hostname or ip
+     * @param port                  port number for mongodb service
+     * @param dbName                name of db to use
+     * @param connectionsPerHost    size of the connection pool
+     * @param maxWaitTimeMS         longest wait for a pooled connection
+     * @param socketTimeoutMS       socket read timeout, 0 for none
+     */
+    @AssistedInject
+    private MongoDBClient(@Assisted("server") String server, @Assisted("port") int port, @Assisted("dbName") String dbName,
+                          @Assisted("connectionsPerHost") int connectionsPerHost,
+                          @Assisted("maxWaitTimeMS") int maxWaitTimeMS, @Assisted("socketTimeoutMS") int socketTimeoutMS) {
+        this(server, port, dbName, MongoClientOptions.builder()
+                .connectionsPerHost(connectionsPerHost)
+                .maxWaitTime(maxWaitTimeMS)
+                .socketTimeout(socketTimeoutMS)
+                .build());
+    }
+
+    private MongoDBClient(String server, int port, String dbName, MongoClientOptions options) {
         this.server = server;
         this.port = port;
         this.dbName = dbName;
-        mongoClient = new MongoClient(server, port);
+        mongoClient = new MongoClient(new ServerAddress(server, port), options);
         morphia = new Morphia();
         morphia.mapPackageFromClass(Student.class);
         morphiaDatastore = morphia.createDatastore(mongoClient, dbName);
-        morphiaDatastore.ensureIndexes();
-        studentDAO = new StudentDAO(mongoClient, morphia, dbName);
-        courseDAO = new CourseDAO(mongoClient, morphia, dbName);
-        userDAO = new UserDAO(mongoClient, morphia, dbName);
+        indexManager = new IndexManager(morphia);
+        reconcileIndexes();
+        studentDAO = new StudentDAO(mongoClient, morphia, dbName, queryGuard, indexAdvisor);
+        courseDAO = new CourseDAO(mongoClient, morphia, dbName, queryGuard, indexAdvisor);
+        userDAO = new UserDAO(mongoClient, morphia, dbName, queryGuard, indexAdvisor);
+        idempotencyStore = new IdempotencyStore(morphiaDatastore.getDB().getCollection(IdempotencyStore.COLLECTION));
     }
 
     @Override
     public void dropDB(String dbName) {
         morphiaDatastore.getDB().dropDatabase();
+        courseDAO.getChanges().changed();
+        studentDAO.getChanges().changed();
+        userDAO.getChanges().changed();
+        idempotencyStore.ensureIndexes();
+        rebuildFilters();
+    }
+
+    /**
+     * Rebuilds the filters answering lookups of course ids and course names that are definitely absent, from the
+     * current collection. The filters are not built when the client is created: until the first rebuild every
+     * lookup queries.
+     */
+    public void rebuildFilters() {
+        courseDAO.rebuildFilters();
+    }
+
+    /**
+     * Sets how long after a rebuild the filters are trusted, past which lookups query again.
+     */
+    public void setFilterMaxAge(long maxAge, TimeUnit unit) {
+        courseDAO.getIdFilter().setMaxAge(maxAge, unit);
+        courseDAO.getNameFilter().setMaxAge(maxAge, unit);
     }
 
     @Override
     public void useDB(String dbName) {
         morphiaDatastore = morphia.createDatastore(mongoClient, dbName);
-        morphiaDatastore.ensureIndexes();
+        reconcileIndexes();
+    }
+
+    /**
+     * Aligns the indexes of the current db with the entity declarations. Cached plan decisions are dropped
+     * since they may have been made before an index existed.
+     *
+     * @return undeclared indexes found, keyed by collection
+     */
+    public Map<String, List<String>> reconcileIndexes() {
+        Map<String, List<String>> undeclared = indexManager.reconcile(morphiaDatastore);
+        queryGuard.clearExplainCache();
+        return undeclared;
+    }
+
+    /**
+     * Reports missing and unused indexes based on the queries the DAOs have run so far.
+     *
+     * @return advisor report
+     */
+    public IndexAdvisor.Report getIndexReport() {
+        List<String> collections = new ArrayList<>();
+        for (MappedClass mc : morphia.getMapper().getMappedClasses()) {
+            if (mc.getEntityAnnotation() != null) {
+                collections.add(mc.getCollectionName());
+            }
+        }
+        return indexAdvisor.report(morphiaDatastore.getDB(), collections);
     }
 
     @Override
@@ -144,6 +232,65 @@ public class MongoDBClient implements DBClient {
         return morphia;
     }
 
+    /**
+     * Gets the guard shared by all DAOs of this client, so its limits can be configured.
+     *
+     * @return query guard
+     */
+    public QueryGuard getQueryGuard() {
+        return queryGuard;
+    }
+
+    /**
+     * Selects the codec of each DAO, keyed by collection name (courses, students, users). DAOs not listed keep
+     * their current codec. The student codec resolves references through the course and user codecs.
+     *
+     * @param codecTypes    codec type per collection
+     */
+    public void useCodecs(Map<String, CodecType> codecTypes) {
+        for (String collection : codecTypes.keySet()) {
+            if (!collection.equals(courseDAO.getCollection().getName())
+                    && !collection.equals(studentDAO.getCollection().getName())
+                    && !collection.equals(userDAO.getCollection().getName())) {
+                throw new IllegalArgumentException("Unknown collection " + collection);
+            }
+        }
+        CodecType courseCodec = codecTypes.get(courseDAO.getCollection().getName());
+        if (courseCodec != null) {
+            courseDAO.setCodec(courseCodec == CodecType.DIRECT
+                    ? new CourseCodec() : new MorphiaCodec<>(morphia, Course.class));
+        }
+        CodecType userCodec = codecTypes.get(userDAO.getCollection().getName());
+        if (userCodec != null) {
+            userDAO.setCodec(userCodec == CodecType.DIRECT
+                    ? new UserCodec() : new MorphiaCodec<>(morphia, User.class));
+        }
+        CodecType studentCodec = codecTypes.get(studentDAO.getCollection().getName());
+        if (studentCodec != null) {
+            studentDAO.setCodec(studentCodec == CodecType.DIRECT
+                    ? new StudentCodec(userDAO.getCollection(), courseDAO.getCollection(),
+                            userDAO.getCodec(), courseDAO.getCodec())
+                    : new MorphiaCodec<>(morphia, Student.class));
+        }
+    }
+
+    /**
+     * Gets the store of responses to requests sent with an idempotency key.
+     *
+     * @return idempotency store
+     */
+    public IdempotencyStore getIdempotencyStore() {
+        return idempotencyStore;
+    }
+
+    public IndexAdvisor getIndexAdvisor() {
+        return indexAdvisor;
+    }
+
+    public IndexManager getIndexManager() {
+        return indexManager;
+    }
+
     @Override
     public void close() throws Exception {
         mongoClient.close();
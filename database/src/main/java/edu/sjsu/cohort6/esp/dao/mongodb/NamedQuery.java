@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+
+package edu.sjsu.cohort6.esp.dao.mongodb;
+
+import com.mongodb.DBObject;
+
+/**
+ * Query shapes used by the DAOs and resources.
+ *
+ * Each shape is compiled to a {@link QueryTemplate} once when the enum is loaded; callers only bind values, e.g.
+ * <pre>
+ *     courseDAO.fetch(NamedQuery.COURSE_BY_NAME, name);
+ * </pre>
+ */
+public enum NamedQuery {
+    COURSE_BY_NAME("{ courseName : \"?0\" }"),
+    USER_BY_USER_NAME("{ userName : \"?0\" }"),
+    STUDENTS_BY_COURSE_REF("{ \"courseRefs.$id\" : \"?0\" }"),
+    STUDENTS_BY_USER_REF("{ \"user.$id\" : \"?0\" }");
+
+    private final QueryTemplate template;
+
+    NamedQuery(String json) {
+        this.template = QueryTemplate.compile(json);
+    }
+
+    public QueryTemplate getTemplate() {
+        return template;
+    }
+
+    public DBObject bind(Object... params) {
+        return template.bind(params);
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+
+package edu.sjsu.cohort6.esp.dao.mongodb;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.mongodb.*;
+import com.mongodb.util.JSON;
+import edu.sjsu.cohort6.esp.dao.Deadline;
+import edu.sjsu.cohort6.esp.dao.DeadlineExceededException;
+import org.mongodb.morphia.query.Query;
+
+import java.text.MessageFormat;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Guards the free-form fetch queries that the DAOs run against mongodb.
+ *
+ * Every guarded query gets a server side time limit (maxTimeMS). Queries built from client input ({@link #find})
+ * also get a default result limit; the DAOs' own queries ({@link #findAll}), such as the students of a course
+ * being deleted, must see every match and are not limited. In addition the plan
+ * of each query shape is explained once and cached; a shape whose winning plan is a collection scan is then
+ * handled according to the configured {@link ScanPolicy}.
+ *
+ * A query shape is the query document with all values replaced by a marker, so {courseName: "A"} and
+ * {courseName: "B"} share one cached plan decision.
+ *
+ * When the calling thread has a {@link Deadline}, the time limit is the smaller of maxTimeMS and the time left,
+ * and no query is started once the deadline has passed.
+ */
+public class QueryGuard {
+    private static final Logger log = Logger.getLogger(QueryGuard.class.getName());
+    private static final String VALUE_MARKER = "?";
+
+    public enum ScanPolicy {
+        /** Do not explain queries. */
+        OFF,
+        /** Run collection scans but log them. */
+        LOG,
+        /** Run collection scans on a secondary so the primary stays responsive. */
+        SECONDARY,
+        /** Refuse to run collection scans. */
+        REJECT
+    }
+
+    private volatile long maxTimeMS = 5000;
+    private volatile int defaultLimit = 1000;
+    private volatile ScanPolicy scanPolicy = ScanPolicy.LOG;
+    private volatile Cache<String, Boolean> scanDecisions = newCache(512);
+
+    /**
+     * Creates a cursor for a query built from client input, with the guard limits applied.
+     *
+     * @param collection    collection to query
+     * @param query         query document, or null for all documents
+     * @return cursor ready to be iterated, returning at most the default limit of documents
+     * @throws QueryRejectedException if the query would scan the collection and the policy is REJECT
+     * @throws DeadlineExceededException if the deadline of the current request has passed
+     */
+    public DBCursor find(DBCollection collection, DBObject query) throws QueryRejectedException {
+        return find(collection, query, defaultLimit);
+    }
+
+    /**
+     * Tells whether a query built from client input matches more documents than {@link #find} returns, by
+     * counting at most one more than the default limit.
+     *
+     * @param collection    collection to query
+     * @param query         query document, or null for all documents
+     * @return true if a cursor from find would leave out matches
+     * @throws DeadlineExceededException if the deadline of the current request has passed
+     */
+    public boolean exceedsLimit(DBCollection collection, DBObject query) {
+        effectiveMaxTimeMS();
+        int limit = defaultLimit;
+        return limit > 0 && collection.getCount(query, null, limit + 1L, 0) > limit;
+    }
+
+    /**
+     * Creates a cursor for a query of the DAO itself, with the time limit and scan policy applied but no result
+     * limit, so callers that act on every match (cascades, lookups by a bounded list of keys) see them all.
+     *
+     * @param collection    collection to query
+     * @param query         query document
+     * @return cursor ready to be iterated
+     * @throws QueryRejectedException if the query would scan the collection and the policy is REJECT
+     * @throws DeadlineExceededException if the deadline of the current request has passed
+     */
+    public DBCursor findAll(DBCollection collection, DBObject query) throws QueryRejectedException {
+        return find(collection, query, 0);
+    }
+
+    private DBCursor find(DBCollection collection, DBObject query, int limit) throws QueryRejectedException {
+        long maxTime = effectiveMaxTimeMS();
+        DBCursor cursor = query != null ? collection.find(query) : collection.find();
+        if (maxTime > 0) {
+            cursor.maxTime(maxTime, TimeUnit.MILLISECONDS);
+        }
+        if (limit > 0) {
+            cursor.limit(limit);
+        }
+
+        /*
+         * An empty query is an explicit request for everything, so it is only capped and not explained.
+         */
+        if (scanPolicy != ScanPolicy.OFF && query != null && !query.keySet().isEmpty()
+                && isCollectionScan(collection, query, maxTime)) {
+            String msg = MessageFormat.format("Query {0} on {1} scans the whole collection",
+                    JSON.serialize(query), collection.getName());
+            switch (scanPolicy) {
+                case REJECT:
+                    throw new QueryRejectedException(msg);
+                case SECONDARY:
+                    log.info(msg + ", running it on a secondary");
+                    cursor.setReadPreference(ReadPreference.secondaryPreferred());
+                    break;
+                default:
+                    log.warning(msg);
+            }
+        }
+        return cursor;
+    }
+
+    /**
+     * Applies the server side time limit to a morphia query.
+     *
+     * @param query morphia query
+     * @return the same query
+     * @throws DeadlineExceededException if the deadline of the current request has passed
+     */
+    public <T> Query<T> limitTime(Query<T> query) {
+        long maxTime = effectiveMaxTimeMS();
+        if (maxTime > 0) {
+            query.maxTime(maxTime, TimeUnit.MILLISECONDS);
+        }
+        return query;
+    }
+
+    /**
+     * Applies the server side time limit to a cursor that is meant to read the whole result, so no default limit
+     * is set and the query is not explained.
+     *
+     * @param cursor    unread cursor
+     * @return the same cursor
+     * @throws DeadlineExceededException if the deadline of the current request has passed
+     */
+    public DBCursor limitTime(DBCursor cursor) {
+        long maxTime = effectiveMaxTimeMS();
+        if (maxTime > 0) {
+            cursor.maxTime(maxTime, TimeUnit.MILLISECONDS);
+        }
+        return cursor;
+    }
+
+    /**
+     * Returns the time limit for a query started now, or 0 for no limit.
+     *
+     * @throws DeadlineExceededException if the deadline of the current request has passed
+     */
+    long effectiveMaxTimeMS() {
+        long remaining = Deadline.remainingMillis();
+        if (remaining <= 0) {
+            throw new DeadlineExceededException();
+        }
+        if (remaining == Long.MAX_VALUE) {
+            return maxTimeMS;
+        }
+        return maxTimeMS > 0 ? Math.min(maxTimeMS, remaining) : remaining;
+    }
+
+    private boolean isCollectionScan(DBCollection collection, DBObject query, long maxTime) {
+        String key = collection.getName() + ":" + shapeOf(query);
+        Boolean scan = scanDecisions.getIfPresent(key);
+        if (scan == null) {
+            try {
+                DBCursor explainCursor = collection.find(query);
+                if (maxTime > 0) {
+                    explainCursor.maxTime(maxTime, TimeUnit.MILLISECONDS);
+                }
+                scan = containsCollectionScan(explainCursor.explain());
+            } catch (MongoException e) {
+                log.log(Level.WARNING, "Could not explain query on " + collection.getName(), e);
+                return false;
+            }
+            scanDecisions.put(key, scan);
+        }
+        return scan;
+    }
+
+    /**
+     * Looks for a COLLSCAN stage (mongodb 3.x) or a BasicCursor (mongodb 2.x) anywhere in the winning plan.
+     */
+    public static boolean containsCollectionScan(Object plan) {
+        if (plan instanceof DBObject) {
+            DBObject obj = (DBObject) plan;
+            if ("COLLSCAN".equals(obj.get("stage"))) {
+                return true;
+            }
+            Object cursor = obj.get("cursor");
+            if (cursor instanceof String && ((String) cursor).startsWith("BasicCursor")) {
+                return true;
+            }
+            for (String key : obj.keySet()) {
+                if ("rejectedPlans".equals(key) || "allPlans".equals(key) || "allPlansExecution".equals(key)) {
+                    continue;
+                }
+                if (containsCollectionScan(obj.get(key))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the query with every value replaced by a marker. Operators and field names are kept, and the
+     * branches of $and/$or/$nor are shaped individually.
+     */
+    public static String shapeOf(DBObject query) {
+        return JSON.serialize(shape(query));
+    }
+
+    private static Object shape(Object value) {
+        if (value instanceof BasicDBList) {
+            return VALUE_MARKER;
+        }
+        if (value instanceof DBObject) {
+            BasicDBObject shaped = new BasicDBObject();
+            for (String key : ((DBObject) value).keySet()) {
+                Object v = ((DBObject) value).get(key);
+                if (("$and".equals(key) || "$or".equals(key) || "$nor".equals(key)) && v instanceof BasicDBList) {
+                    BasicDBList branches = new BasicDBList();
+                    for (Object branch : (BasicDBList) v) {
+                        branches.add(shape(branch));
+                    }
+                    shaped.put(key, branches);
+                } else {
+                    shaped.put(key, shape(v));
+                }
+            }
+            return shaped;
+        }
+        if (value instanceof Map) {
+            return shape(new BasicDBObject((Map) value));
+        }
+        return VALUE_MARKER;
+    }
+
+    private static Cache<String, Boolean> newCache(int size) {
+        return CacheBuilder.newBuilder().maximumSize(size).build();
+    }
+
+    public long getMaxTimeMS() {
+        return maxTimeMS;
+    }
+
+    public void setMaxTimeMS(long maxTimeMS) {
+        this.maxTimeMS = maxTimeMS;
+    }
+
+    public int getDefaultLimit() {
+        return defaultLimit;
+    }
+
+    public void setDefaultLimit(int defaultLimit) {
+        this.defaultLimit = defaultLimit;
+    }
+
+    public ScanPolicy getScanPolicy() {
+        return scanPolicy;
+    }
+
+    public void setScanPolicy(ScanPolicy scanPolicy) {
+        this.scanPolicy = scanPolicy;
+    }
+
+    /**
+     * Resizes the explain cache; cached plan decisions are dropped.
+     *
+     * @param size  maximum number of query shapes to remember
+     */
+    public void setExplainCacheSize(int size) {
+        this.scanDecisions = newCache(size);
+    }
+
+    /**
+     * Forgets cached plan decisions, e.g. after indexes have changed.
+     */
+    public void clearExplainCache() {
+        scanDecisions.invalidateAll();
+    }
+}
@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+
+package edu.sjsu.cohort6.esp.dao.mongodb;
+
+import edu.sjsu.cohort6.esp.dao.DBException;
+
+/**
+ * Thrown when the query guard refuses to run a query that would scan a whole collection.
+ */
+public class QueryRejectedException extends DBException {
+
+    public QueryRejectedException(String message) {
+        super(message);
+    }
+}
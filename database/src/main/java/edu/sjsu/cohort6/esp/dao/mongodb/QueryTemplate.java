@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+
+package edu.sjsu.cohort6.esp.dao.mongodb;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import com.mongodb.util.JSON;
+
+import java.text.MessageFormat;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A query shape parsed once and bound to parameter values per call.
+ *
+ * The template is written in the same JSON syntax that the DAO fetch methods accept, with positional
+ * placeholders given as quoted strings, for example:
+ * <pre>
+ *     { courseName : "?0" }
+ * </pre>
+ * Binding copies the compiled tree and drops the parameter values in as-is, so values are never
+ * re-parsed and a name containing quotes cannot change the shape of the query.
+ */
+public final class QueryTemplate {
+    private static final Pattern PLACEHOLDER = Pattern.compile("^\\?(\\d+)$");
+
+    private final String source;
+    private final Object root;
+    private final int paramCount;
+
+    private QueryTemplate(String source, Object root, int paramCount) {
+        this.source = source;
+        this.root = root;
+        this.paramCount = paramCount;
+    }
+
+    /**
+     * Parses the template text into a reusable template.
+     *
+     * @param json  query template in mongodb JSON syntax
+     * @return compiled template
+     * @throws IllegalArgumentException if the template is not a JSON document or its placeholders are not contiguous
+     */
+    public static QueryTemplate compile(String json) {
+        Object parsed = JSON.parse(json);
+        if (!(parsed instanceof DBObject)) {
+            throw new IllegalArgumentException("Query template must be a JSON document: " + json);
+        }
+        BitSet indexes = new BitSet();
+        Object root = compileNode(parsed, indexes);
+        int paramCount = indexes.length();
+        if (indexes.cardinality() != paramCount) {
+            throw new IllegalArgumentException(MessageFormat.format(
+                    "Query template {0} uses ?{1} but not ?{2}", json, paramCount - 1, indexes.nextClearBit(0)));
+        }
+        return new QueryTemplate(json, root, paramCount);
+    }
+
+    /**
+     * Binds the positional parameters into a fresh query object.
+     *
+     * @param params    values for ?0, ?1, ... in order
+     * @return query ready to be passed to the driver
+     */
+    public DBObject bind(Object... params) {
+        int count = params == null ? 0 : params.length;
+        if (count != paramCount) {
+            throw new IllegalArgumentException(MessageFormat.format(
+                    "Query template {0} expects {1} parameter(s) but got {2}", source, paramCount, count));
+        }
+        return (DBObject) bindNode(root, params);
+    }
+
+    public int getParamCount() {
+        return paramCount;
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    private static Object compileNode(Object node, BitSet indexes) {
+        if (node instanceof BasicDBList) {
+            List<?> list = (List<?>) node;
+            Object[] values = new Object[list.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = compileNode(list.get(i), indexes);
+            }
+            return new ArrayNode(values);
+        } else if (node instanceof DBObject) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> map = ((DBObject) node).toMap();
+            String[] keys = new String[map.size()];
+            Object[] values = new Object[map.size()];
+            int i = 0;
+            for (Map.Entry<String, Object> entry : map.entrySet()) {
+                keys[i] = entry.getKey();
+                values[i] = compileNode(entry.getValue(), indexes);
+                i++;
+            }
+            return new ObjectNode(keys, values);
+        } else if (node instanceof String) {
+            Matcher m = PLACEHOLDER.matcher((String) node);
+            if (m.matches()) {
+                int index = Integer.parseInt(m.group(1));
+                indexes.set(index);
+                return new Param(index);
+            }
+        }
+        return node;
+    }
+
+    private static Object bindNode(Object node, Object[] params) {
+        if (node instanceof Param) {
+            return params[((Param) node).index];
+        } else if (node instanceof ObjectNode) {
+            ObjectNode obj = (ObjectNode) node;
+            BasicDBObject result = new BasicDBObject(obj.keys.length);
+            for (int i = 0; i < obj.keys.length; i++) {
+                result.put(obj.keys[i], bindNode(obj.values[i], params));
+            }
+            return result;
+        } else if (node instanceof ArrayNode) {
+            ArrayNode arr = (ArrayNode) node;
+            BasicDBList result = new BasicDBList();
+            for (Object value : arr.values) {
+                result.add(bindNode(value, params));
+            }
+            return result;
+        }
+        return node;
+    }
+
+    private static final class Param {
+        private final int index;
+
+        private Param(int index) {
+            this.index = index;
+        }
+    }
+
+    private static final class ObjectNode {
+        private final String[] keys;
+        private final Object[] values;
+
+        private ObjectNode(String[] keys, Object[] values) {
+            this.keys = keys;
+            this.values = values;
+        }
+    }
+
+    private static final class ArrayNode {
+        private final Object[] values;
+
+        private ArrayNode(Object[] values) {
+            this.values = values;
+        }
+    }
+}
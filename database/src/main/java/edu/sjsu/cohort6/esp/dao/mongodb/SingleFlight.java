@@ -0,0 +1,221 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.dao.mongodb;
+
+import com.mongodb.MongoExecutionTimeoutException;
+import edu.sjsu.cohort6.esp.dao.Deadline;
+import edu.sjsu.cohort6.esp.dao.DeadlineExceededException;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent identical reads: the first caller of a key runs the read, callers arriving while it is in
+ * flight wait for it and get the same result, or the same exception. Nothing is kept once the read returns, so
+ * unlike a cache this never serves a result read before the caller arrived.
+ *
+ * Each read carries the version of the data it reads (a {@link ChangeTracker} stamp): a caller only joins a flight
+ * of the same version, so reads that start after a write never get a result read before it. Results are shared
+ * between threads and must not be modified. A waiting caller gives up when its {@link Deadline} passes.
+ *
+ * The read runs under the deadline of the caller that started it. When it fails because that deadline passed
+ * (in the process or as a server side maxTimeMS), a waiting caller whose own deadline has not passed does not take
+ * the failure: it runs the read again, or joins the caller that already did.
+ *
+ * Counts of reads run and shared are kept in total and per key, for up to maxTrackedKeys keys.
+ */
+public class SingleFlight<K> {
+    private final ConcurrentMap<K, Flight> flights = new ConcurrentHashMap<>();
+    private final ConcurrentMap<K, Stats> stats = new ConcurrentHashMap<>();
+    private final int maxTrackedKeys;
+    private final Stats total = new Stats();
+
+    public SingleFlight(int maxTrackedKeys) {
+        this.maxTrackedKeys = maxTrackedKeys;
+    }
+
+    /**
+     * Runs the read, or joins the one in flight for the same key and version.
+     *
+     * @param key       what is read
+     * @param version   version of the data read
+     * @param read      the read
+     * @return result of the read
+     */
+    @SuppressWarnings("unchecked")
+    public <V> V execute(K key, long version, Supplier<V> read) {
+        Stats keyStats = statsFor(key);
+        while (true) {
+            Flight flight = flights.get(key);
+            if (flight != null && flight.version == version) {
+                total.shared.incrementAndGet();
+                if (keyStats != null) {
+                    keyStats.shared.incrementAndGet();
+                }
+                flight.await();
+                if (flight.timedOut() && !Deadline.isExpired()) {
+                    total.shared.decrementAndGet();
+                    if (keyStats != null) {
+                        keyStats.shared.decrementAndGet();
+                    }
+                    flights.remove(key, flight);
+                    continue;
+                }
+                return (V) flight.get();
+            }
+            Flight mine = new Flight(version);
+            boolean leading = flight == null ? flights.putIfAbsent(key, mine) == null : flights.replace(key, flight, mine);
+            if (!leading) {
+                continue;
+            }
+            total.executed.incrementAndGet();
+            if (keyStats != null) {
+                keyStats.executed.incrementAndGet();
+            }
+            try {
+                V result = read.get();
+                mine.complete(result, null);
+                return result;
+            } catch (RuntimeException e) {
+                mine.complete(null, e);
+                throw e;
+            } catch (Error e) {
+                mine.complete(null, e);
+                throw e;
+            } finally {
+                flights.remove(key, mine);
+            }
+        }
+    }
+
+    /**
+     * @return reads run and shared, across all keys
+     */
+    public Stats getTotal() {
+        return total;
+    }
+
+    /**
+     * @return reads run and shared per tracked key, busiest first
+     */
+    public Map<K, Stats> getStats() {
+        Map<K, Stats> sorted = new LinkedHashMap<>();
+        stats.entrySet().stream()
+                .sorted((a, b) -> Long.compare(b.getValue().getShared() + b.getValue().getExecuted(),
+                        a.getValue().getShared() + a.getValue().getExecuted()))
+                .forEachOrdered(e -> sorted.put(e.getKey(), e.getValue()));
+        return Collections.unmodifiableMap(sorted);
+    }
+
+    public void reset() {
+        stats.clear();
+        total.executed.set(0);
+        total.shared.set(0);
+    }
+
+    private Stats statsFor(K key) {
+        Stats keyStats = stats.get(key);
+        if (keyStats == null && stats.size() < maxTrackedKeys) {
+            Stats created = new Stats();
+            keyStats = stats.putIfAbsent(key, created);
+            if (keyStats == null) {
+                keyStats = created;
+            }
+        }
+        return keyStats;
+    }
+
+    public static class Stats {
+        private final AtomicLong executed = new AtomicLong();
+        private final AtomicLong shared = new AtomicLong();
+
+        /**
+         * @return reads run against the database
+         */
+        public long getExecuted() {
+            return executed.get();
+        }
+
+        /**
+         * @return callers that got the result of a read already in flight
+         */
+        public long getShared() {
+            return shared.get();
+        }
+
+        @Override
+        public String toString() {
+            return "executed=" + getExecuted() + ", shared=" + getShared();
+        }
+    }
+
+    private static final class Flight {
+        private final long version;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private Object result;
+        private Throwable failure;
+
+        Flight(long version) {
+            this.version = version;
+        }
+
+        void complete(Object result, Throwable failure) {
+            this.result = result;
+            this.failure = failure;
+            done.countDown();
+        }
+
+        /**
+         * Waits for the read to complete, until the deadline of the waiting caller.
+         */
+        void await() {
+            try {
+                long remaining = Deadline.remainingMillis();
+                if (remaining == Long.MAX_VALUE) {
+                    done.await();
+                } else if (remaining <= 0 || !done.await(remaining, TimeUnit.MILLISECONDS)) {
+                    throw new DeadlineExceededException();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DeadlineExceededException();
+            }
+        }
+
+        /**
+         * @return true if the read failed because the deadline of the caller that ran it passed
+         */
+        boolean timedOut() {
+            return failure instanceof DeadlineExceededException || failure instanceof MongoExecutionTimeoutException;
+        }
+
+        Object get() {
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+            return result;
+        }
+    }
+}
@@ -14,22 +14,30 @@
 
 package edu.sjsu.cohort6.esp.dao.mongodb;
 
+import com.mongodb.BasicDBObject;
 import com.mongodb.DBCursor;
 import com.mongodb.DBObject;
+import com.mongodb.DBRef;
 import com.mongodb.MongoClient;
 import com.mongodb.util.JSON;
+import edu.sjsu.cohort6.esp.common.Course;
 import edu.sjsu.cohort6.esp.common.Student;
 import edu.sjsu.cohort6.esp.dao.BaseDAO;
-import org.mongodb.morphia.Key;
+import edu.sjsu.cohort6.esp.dao.DBException;
+import edu.sjsu.cohort6.esp.dao.Deadline;
+import edu.sjsu.cohort6.esp.dao.mongodb.codec.EntityCodec;
+import edu.sjsu.cohort6.esp.dao.mongodb.codec.MorphiaCodec;
 import org.mongodb.morphia.Morphia;
 import org.mongodb.morphia.dao.BasicDAO;
 import org.mongodb.morphia.mapping.Mapper;
 import org.mongodb.morphia.query.Query;
-import org.mongodb.morphia.query.QueryResults;
 import org.mongodb.morphia.query.UpdateOperations;
 
 import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Student DAO.
@@ -40,10 +48,21 @@ import java.util.List;
  */
 public class StudentDAO extends BasicDAO<Student, String> implements BaseDAO<Student> {
     private Morphia morphia;
+    private final QueryGuard queryGuard;
+    private final IndexAdvisor indexAdvisor;
+    private volatile EntityCodec<Student> codec;
+    private final ChangeTracker changes = new ChangeTracker();
+    private final CollectionVersion version;
 
-    protected StudentDAO(MongoClient mongoClient, Morphia morphia, String dbName) {
+    protected StudentDAO(MongoClient mongoClient, Morphia morphia, String dbName, QueryGuard queryGuard, IndexAdvisor indexAdvisor) {
         super(mongoClient, morphia, dbName);
         this.morphia = morphia;
+        this.queryGuard = queryGuard;
+        this.indexAdvisor = indexAdvisor;
+        this.codec = new MorphiaCodec<>(morphia, Student.class);
+        this.version = new CollectionVersion(this.getCollection().getDB().getCollection(CollectionVersion.COLLECTION),
+                this.getCollection().getName());
+        changes.addListener(version);
     }
 
     /**
@@ -54,41 +73,132 @@ public class StudentDAO extends BasicDAO<Student, String> implements BaseDAO<Stu
      */
     @Override
     public synchronized List<String> add(List<Student> entityList) {
-        List<String> insertedIds = new ArrayList<>();
+        Deadline.check();
+        try {
+            List<String> insertedIds = new ArrayList<>();
 
-        if (entityList != null) {
-            for (Student student: entityList) {
-                Key<Student> key = this.save(student);
-                insertedIds.add(key.getId().toString());
+            if (entityList != null) {
+                for (Student student: entityList) {
+                    this.getCollection().save(codec.encode(student));
+                    insertedIds.add(student.getId());
+                }
             }
+            return insertedIds;
+        } finally {
+            changes.changed();
         }
-        return insertedIds;
     }
 
     @Override
     public synchronized long remove(List<String> entityIdsList) {
-        List<String> objectIds = new ArrayList<>();
-        for (String id : entityIdsList) {
-            objectIds.add(id);
+        Deadline.check();
+        try {
+            List<String> objectIds = new ArrayList<>();
+            for (String id : entityIdsList) {
+                objectIds.add(id);
+            }
+            Query<Student> query = this.createQuery().field(Mapper.ID_KEY).in(objectIds);
+            return this.deleteByQuery(query).getN();
+        } finally {
+            changes.changed();
         }
-        Query<Student> query = this.createQuery().field(Mapper.ID_KEY).in(objectIds);
-        return this.deleteByQuery(query).getN();
     }
 
     @Override
     public synchronized void update(List<Student> studentList) {
-        for (Student s : studentList) {
-            UpdateOperations<Student> ops = this.createUpdateOperations()
-                    .set("courseRefs", s.getCourseRefs())
-                    .set("user", s.getUser());
+        Deadline.check();
+        try {
+            for (Student s : studentList) {
+                s.setLastUpdated(new Date());
+                UpdateOperations<Student> ops = this.createUpdateOperations()
+                        .set("courseRefs", s.getCourseRefs())
+                        .set("user", s.getUser())
+                        .set("lastUpdated", s.getLastUpdated());
+
+                Query<Student> updateQuery = this.createQuery().field(Mapper.ID_KEY).equal(s.getId());
+                this.update(updateQuery, ops);
+            }
+        } finally {
+            changes.changed();
+        }
+    }
+
+    /**
+     * Enrolls students in a course with one update, which adds a reference to the course to each listed student
+     * that is not enrolled yet.
+     *
+     * Capacity is checked once for the whole list: the students already enrolled are counted, and the students
+     * beyond the free seats, in list order, are turned away. The count and the update are separate operations; the
+     * DAO lock only keeps concurrent enrollments through this DAO instance from both taking the last seats. Other
+     * instances, and writes that replace a student's courseRefs (such as {@link #update(List)}), are not checked
+     * against it, so capacity is best effort rather than guaranteed.
+     *
+     * @param course        course to enroll in, a null maxCapacity means no limit
+     * @param studentIds    students to enroll, duplicates are ignored
+     * @return outcome per student id, in list order
+     */
+    public synchronized Map<String, Enrollment> enroll(Course course, List<String> studentIds) {
+        Deadline.check();
+        Map<String, Enrollment> outcomes = new LinkedHashMap<>();
+        for (String id : studentIds) {
+            outcomes.put(id, Enrollment.NOT_FOUND);
+        }
+        List<String> ids = new ArrayList<>(outcomes.keySet());
+        DBObject listed = new BasicDBObject(Mapper.ID_KEY, new BasicDBObject("$in", ids));
+        DBObject enrolled = new BasicDBObject("courseRefs.$id", course.getId());
+        DBObject idOnly = new BasicDBObject(Mapper.ID_KEY, 1);
+
+        indexAdvisor.record(this.getCollection(), listed);
+        try (DBCursor cursor = queryGuard.limitTime(this.getCollection().find(listed, idOnly))) {
+            while (cursor.hasNext()) {
+                outcomes.put(String.valueOf(cursor.next().get(Mapper.ID_KEY)), Enrollment.ENROLLED);
+            }
+        }
+        DBObject listedAndEnrolled = new BasicDBObject(listed.toMap());
+        listedAndEnrolled.putAll(enrolled);
+        try (DBCursor cursor = queryGuard.limitTime(this.getCollection().find(listedAndEnrolled, idOnly))) {
+            while (cursor.hasNext()) {
+                outcomes.put(String.valueOf(cursor.next().get(Mapper.ID_KEY)), Enrollment.ALREADY_ENROLLED);
+            }
+        }
+
+        long seats = Long.MAX_VALUE;
+        if (course.getMaxCapacity() != null) {
+            indexAdvisor.record(this.getCollection(), enrolled);
+            try (DBCursor cursor = queryGuard.limitTime(this.getCollection().find(enrolled))) {
+                seats = Math.max(0, course.getMaxCapacity() - cursor.count());
+            }
+        }
+        List<String> toEnroll = new ArrayList<>();
+        for (Map.Entry<String, Enrollment> outcome : outcomes.entrySet()) {
+            if (outcome.getValue() == Enrollment.ENROLLED) {
+                if (toEnroll.size() < seats) {
+                    toEnroll.add(outcome.getKey());
+                } else {
+                    outcome.setValue(Enrollment.COURSE_FULL);
+                }
+            }
+        }
+        if (toEnroll.isEmpty()) {
+            return outcomes;
+        }
 
-            Query<Student> updateQuery = this.createQuery().field(Mapper.ID_KEY).equal(s.getId());
-            this.update(updateQuery, ops);
+        try {
+            DBRef courseRef = new DBRef(morphia.getMapper().getCollectionName(Course.class), course.getId());
+            DBObject update = new BasicDBObject("$addToSet", new BasicDBObject("courseRefs", courseRef))
+                    .append("$set", new BasicDBObject("lastUpdated", new Date()));
+            this.getCollection().updateMulti(new BasicDBObject(Mapper.ID_KEY, new BasicDBObject("$in", toEnroll)), update);
+        } finally {
+            changes.changed();
         }
+        return outcomes;
     }
 
+    /**
+     * Not synchronized: the read uses no DAO state, so the chunks of a multi-get can be read in parallel.
+     */
     @Override
-    public synchronized List<Student> fetchById(List<String> studentIdsList) {
+    public List<Student> fetchById(List<String> studentIdsList) {
         List<String> objectIds = new ArrayList<>();
         Query<Student> query =  null;
 
@@ -103,30 +213,78 @@ public class StudentDAO extends BasicDAO<Student, String> implements BaseDAO<Stu
         query = objectIds != null && !objectIds.isEmpty()
                 ? this.createQuery().field(Mapper.ID_KEY).in(objectIds)
                 : this.createQuery();
-        QueryResults<Student> results = this.find(query);
-        return results.asList();
+        indexAdvisor.record(this.getCollection(), query.getQueryObject());
+        return list(query);
     }
 
     @Override
-    public synchronized List<Student> fetch(String query) {
+    public synchronized List<Student> fetch(String query) throws DBException {
+        DBObject dbObjQuery = query != null ? (DBObject) JSON.parse(query) : null;
+        return fetch(cursor(dbObjQuery));
+    }
+
+    /**
+     * Fetches students matching a named query shape bound to the given parameters.
+     *
+     * @param query     named query shape
+     * @param params    values for the query placeholders
+     * @return all matching students, not capped by the query guard's default limit
+     */
+    public synchronized List<Student> fetch(NamedQuery query, Object... params) throws DBException {
+        return fetch(cursorAll(query.bind(params)));
+    }
+
+    private List<Student> fetch(EntityCursor<Student> entities) {
         List<Student> students = new ArrayList<>();
-        DBObject dbObjQuery;
-        DBCursor cursor;
-        if (!(query == null)) {
-            dbObjQuery = (DBObject) JSON.parse(query);
-            cursor = this.getCollection().find(dbObjQuery);
-        } else {
-            cursor = this.getCollection().find();
+        try (EntityCursor<Student> cursor = entities) {
+            while (cursor.hasNext()) {
+                students.add(cursor.next());
+            }
         }
+        return students;
+    }
 
-        List<DBObject> dbObjects = cursor.toArray();
-        for (DBObject dbObject: dbObjects) {
-            Student student = morphia.fromDBObject(Student.class, dbObject);
-            students.add(student);
+    /**
+     * Opens a cursor over all students, for callers that process them one at a time.
+     *
+     * @return cursor that the caller must close
+     */
+    public synchronized EntityCursor<Student> cursor() {
+        return EntityCursor.of(queryGuard.limitTime(this.getCollection().find()), codec);
+    }
+
+    /**
+     * Opens a cursor over the students matching a named query shape.
+     *
+     * @param query     named query shape
+     * @param params    values for the query placeholders
+     * @return cursor that the caller must close
+     */
+    public synchronized EntityCursor<Student> cursor(NamedQuery query, Object... params) throws DBException {
+        return cursorAll(query.bind(params));
+    }
+
+    private List<Student> list(Query<Student> query) {
+        List<Student> students = new ArrayList<>();
+        DBCursor cursor = queryGuard.limitTime(this.getCollection().find(query.getQueryObject()));
+        try (EntityCursor<Student> entities = EntityCursor.of(cursor, codec)) {
+            while (entities.hasNext()) {
+                students.add(entities.next());
+            }
         }
         return students;
     }
 
+    private EntityCursor<Student> cursor(DBObject dbObjQuery) throws DBException {
+        indexAdvisor.record(this.getCollection(), dbObjQuery);
+        return EntityCursor.of(queryGuard.find(this.getCollection(), dbObjQuery), codec);
+    }
+
+    private EntityCursor<Student> cursorAll(DBObject dbObjQuery) throws DBException {
+        indexAdvisor.record(this.getCollection(), dbObjQuery);
+        return EntityCursor.of(queryGuard.findAll(this.getCollection(), dbObjQuery), codec);
+    }
+
 
 
     /*@Override
@@ -141,4 +299,59 @@ public class StudentDAO extends BasicDAO<Student, String> implements BaseDAO<Stu
         studentDAO.update(query, ops);
     }*/
 
+    /**
+     * Fetches only the lastUpdated field of a student, which is enough to validate a cached copy.
+     *
+     * @param id    student id
+     * @return when the student was last written (epoch if never stamped), or null if there is no such student
+     */
+    public Date fetchLastUpdated(String id) {
+        DBObject dbObjQuery = new BasicDBObject(Mapper.ID_KEY, id);
+        indexAdvisor.record(this.getCollection(), dbObjQuery);
+        DBObject projection = new BasicDBObject("lastUpdated", 1);
+        try (DBCursor cursor = queryGuard.limitTime(this.getCollection().find(dbObjQuery, projection).limit(1))) {
+            if (!cursor.hasNext()) {
+                return null;
+            }
+            Object lastUpdated = cursor.next().get("lastUpdated");
+            return lastUpdated instanceof Date ? (Date) lastUpdated : new Date(0);
+        }
+    }
+
+    /**
+     * Outcome of enrolling a student with {@link #enroll(Course, List)}.
+     */
+    public enum Enrollment {
+        ENROLLED,
+        ALREADY_ENROLLED,
+        NOT_FOUND,
+        COURSE_FULL
+    }
+
+    /**
+     * @return change stamp of the students collection, advanced by every add, remove and update
+     */
+    public ChangeTracker getChanges() {
+        return changes;
+    }
+
+    /**
+     * @return version of the collection as stored in the database, advanced by the writes of every instance
+     */
+    public long fetchVersion() {
+        return version.fetch();
+    }
+
+    public EntityCodec<Student> getCodec() {
+        return codec;
+    }
+
+    /**
+     * Selects how documents of this DAO are converted, see {@link CodecType}.
+     *
+     * @param codec codec to read and write students with
+     */
+    public void setCodec(EntityCodec<Student> codec) {
+        this.codec = codec;
+    }
 }
@@ -15,21 +15,25 @@
 package edu.sjsu.cohort6.esp.dao.mongodb;
 
 import com.google.common.base.Optional;
+import com.mongodb.BasicDBObject;
 import com.mongodb.DBCursor;
 import com.mongodb.DBObject;
 import com.mongodb.MongoClient;
 import com.mongodb.util.JSON;
 import edu.sjsu.cohort6.esp.common.User;
 import edu.sjsu.cohort6.esp.dao.BaseDAO;
-import org.mongodb.morphia.Key;
+import edu.sjsu.cohort6.esp.dao.DBException;
+import edu.sjsu.cohort6.esp.dao.Deadline;
+import edu.sjsu.cohort6.esp.dao.mongodb.codec.EntityCodec;
+import edu.sjsu.cohort6.esp.dao.mongodb.codec.MorphiaCodec;
 import org.mongodb.morphia.Morphia;
 import org.mongodb.morphia.dao.BasicDAO;
 import org.mongodb.morphia.mapping.Mapper;
 import org.mongodb.morphia.query.Query;
-import org.mongodb.morphia.query.QueryResults;
 import org.mongodb.morphia.query.UpdateOperations;
 
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -42,47 +46,75 @@ import java.util.List;
 public class UserDAO extends BasicDAO<User, String> implements BaseDAO<User> {
 
     private Morphia morphia;
+    private final QueryGuard queryGuard;
+    private final IndexAdvisor indexAdvisor;
+    private volatile EntityCodec<User> codec;
+    private final ChangeTracker changes = new ChangeTracker();
+    private final CollectionVersion version;
 
-    protected UserDAO(MongoClient mongoClient, Morphia morphia, String dbName) {
+    protected UserDAO(MongoClient mongoClient, Morphia morphia, String dbName, QueryGuard queryGuard, IndexAdvisor indexAdvisor) {
         super(mongoClient, morphia, dbName);
         this.morphia = morphia;
+        this.queryGuard = queryGuard;
+        this.indexAdvisor = indexAdvisor;
+        this.codec = new MorphiaCodec<>(morphia, User.class);
+        this.version = new CollectionVersion(this.getCollection().getDB().getCollection(CollectionVersion.COLLECTION),
+                this.getCollection().getName());
+        changes.addListener(version);
     }
 
     @Override
     public List<String> add(List<User> entityList) {
-        List<String> insertedIds = new ArrayList<>();
+        Deadline.check();
+        try {
+            List<String> insertedIds = new ArrayList<>();
 
-        if (entityList != null) {
-            for (User user: entityList) {
-                Key<User> key = this.save(user);
-                insertedIds.add(key.getId().toString());
+            if (entityList != null) {
+                for (User user: entityList) {
+                    this.getCollection().save(codec.encode(user));
+                    insertedIds.add(user.getId());
+                }
             }
+            return insertedIds;
+        } finally {
+            changes.changed();
         }
-        return insertedIds;
     }
 
     @Override
     public long remove(List<String> entityIdsList) {
-        List<String> objectIds = new ArrayList<>();
-        for (String id : entityIdsList) {
-            objectIds.add(id);
+        Deadline.check();
+        try {
+            List<String> objectIds = new ArrayList<>();
+            for (String id : entityIdsList) {
+                objectIds.add(id);
+            }
+            Query<User> query = this.createQuery().field(Mapper.ID_KEY).in(objectIds);
+            return this.deleteByQuery(query).getN();
+        } finally {
+            changes.changed();
         }
-        Query<User> query = this.createQuery().field(Mapper.ID_KEY).in(objectIds);
-        return this.deleteByQuery(query).getN();
     }
 
     @Override
     public void update(List<User> entityList) {
-        for (User u : entityList) {
-            UpdateOperations<User> ops = this.createUpdateOperations()
-                    .set("emailId", u.getEmailId())
-                    .set("lastName", u.getLastName())
-                    .set("firstName", u.getFirstName())
-                    .set("userName", u.getUserName())
-                    .set("token", u.getToken());
-
-            Query<User> updateQuery = this.createQuery().field(Mapper.ID_KEY).equal(u.getId());
-            this.update(updateQuery, ops);
+        Deadline.check();
+        try {
+            for (User u : entityList) {
+                u.setLastUpdated(new Date());
+                UpdateOperations<User> ops = this.createUpdateOperations()
+                        .set("emailId", u.getEmailId())
+                        .set("lastName", u.getLastName())
+                        .set("firstName", u.getFirstName())
+                        .set("userName", u.getUserName())
+                        .set("token", u.getToken())
+                        .set("lastUpdated", u.getLastUpdated());
+
+                Query<User> updateQuery = this.createQuery().field(Mapper.ID_KEY).equal(u.getId());
+                this.update(updateQuery, ops);
+            }
+        } finally {
+            changes.changed();
         }
     }
 
@@ -102,30 +134,67 @@ public class UserDAO extends BasicDAO<User, String> implements BaseDAO<User> {
         query = objectIds != null && !objectIds.isEmpty()
                 ? this.createQuery().field(Mapper.ID_KEY).in(objectIds)
                 : this.createQuery();
-        QueryResults<User> results = this.find(query);
-        return results.asList();
+        indexAdvisor.record(this.getCollection(), query.getQueryObject());
+        return list(query);
     }
 
     @Override
-    public List<User> fetch(String query) {
+    public List<User> fetch(String query) throws DBException {
+        DBObject dbObjQuery = query != null ? (DBObject) JSON.parse(query) : null;
+        return fetch(cursor(dbObjQuery));
+    }
+
+    /**
+     * Fetches users matching a named query shape bound to the given parameters.
+     *
+     * @param query     named query shape
+     * @param params    values for the query placeholders
+     * @return all matching users, not capped by the query guard's default limit
+     */
+    public List<User> fetch(NamedQuery query, Object... params) throws DBException {
+        return fetch(cursorAll(query.bind(params)));
+    }
+
+    private List<User> fetch(EntityCursor<User> entities) {
         List<User> users = new ArrayList<>();
-        DBObject dbObjQuery;
-        DBCursor cursor;
-        if (!(query == null)) {
-            dbObjQuery = (DBObject) JSON.parse(query);
-            cursor = this.getCollection().find(dbObjQuery);
-        } else {
-            cursor = this.getCollection().find();
+        try (EntityCursor<User> cursor = entities) {
+            while (cursor.hasNext()) {
+                users.add(cursor.next());
+            }
         }
+        return users;
+    }
+
+    /**
+     * Opens a cursor over all users, for callers that process them one at a time.
+     *
+     * @return cursor that the caller must close
+     */
+    public EntityCursor<User> cursor() {
+        return EntityCursor.of(queryGuard.limitTime(this.getCollection().find()), codec);
+    }
 
-        List<DBObject> dbObjects = cursor.toArray();
-        for (DBObject dbObject: dbObjects) {
-            User user = morphia.fromDBObject(User.class, dbObject);
-            users.add(user);
+    private List<User> list(Query<User> query) {
+        List<User> users = new ArrayList<>();
+        DBCursor cursor = queryGuard.limitTime(this.getCollection().find(query.getQueryObject()));
+        try (EntityCursor<User> entities = EntityCursor.of(cursor, codec)) {
+            while (entities.hasNext()) {
+                users.add(entities.next());
+            }
         }
         return users;
     }
 
+    private EntityCursor<User> cursor(DBObject dbObjQuery) throws DBException {
+        indexAdvisor.record(this.getCollection(), dbObjQuery);
+        return EntityCursor.of(queryGuard.find(this.getCollection(), dbObjQuery), codec);
+    }
+
+    private EntityCursor<User> cursorAll(DBObject dbObjQuery) throws DBException {
+        indexAdvisor.record(this.getCollection(), dbObjQuery);
+        return EntityCursor.of(queryGuard.findAll(this.getCollection(), dbObjQuery), codec);
+    }
+
     /**
      * This method is required for basic authentication upon every API call.
      *
@@ -135,11 +204,55 @@ public class UserDAO extends BasicDAO<User, String> implements BaseDAO<User> {
      */
     public Optional<User> getUserByCredentials(String username, String password) throws RuntimeException {
         Query<User> query =  this.createQuery().field("userName").equal(username).field("token").equal(password);
-        QueryResults<User> results = this.find(query);
-        if (results != null) {
-            return Optional.fromNullable(results.get());
-        } else {
-            throw new RuntimeException("No user exists, please create an admin user account");
+        indexAdvisor.record(this.getCollection(), query.getQueryObject());
+        DBCursor cursor = queryGuard.limitTime(this.getCollection().find(query.getQueryObject()).limit(1));
+        try (EntityCursor<User> users = EntityCursor.of(cursor, codec)) {
+            return Optional.fromNullable(users.hasNext() ? users.next() : null);
+        }
+    }
+    /**
+     * Fetches only the lastUpdated field of a user, which is enough to validate a cached copy.
+     *
+     * @param id    user id
+     * @return when the user was last written (epoch if never stamped), or null if there is no such user
+     */
+    public Date fetchLastUpdated(String id) {
+        DBObject dbObjQuery = new BasicDBObject(Mapper.ID_KEY, id);
+        indexAdvisor.record(this.getCollection(), dbObjQuery);
+        DBObject projection = new BasicDBObject("lastUpdated", 1);
+        try (DBCursor cursor = queryGuard.limitTime(this.getCollection().find(dbObjQuery, projection).limit(1))) {
+            if (!cursor.hasNext()) {
+                return null;
+            }
+            Object lastUpdated = cursor.next().get("lastUpdated");
+            return lastUpdated instanceof Date ? (Date) lastUpdated : new Date(0);
         }
     }
+
+    /**
+     * @return change stamp of the users collection, advanced by every add, remove and update
+     */
+    public ChangeTracker getChanges() {
+        return changes;
+    }
+
+    /**
+     * @return version of the collection as stored in the database, advanced by the writes of every instance
+     */
+    public long fetchVersion() {
+        return version.fetch();
+    }
+
+    public EntityCodec<User> getCodec() {
+        return codec;
+    }
+
+    /**
+     * Selects how documents of this DAO are converted, see {@link CodecType}.
+     *
+     * @param codec codec to read and write users with
+     */
+    public void setCodec(EntityCodec<User> codec) {
+        this.codec = codec;
+    }
 }
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.dao.mongodb.codec;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import edu.sjsu.cohort6.esp.common.Course;
+import org.mongodb.morphia.mapping.Mapper;
+
+import java.util.Date;
+
+import static edu.sjsu.cohort6.esp.dao.mongodb.codec.Documents.*;
+
+/**
+ * Hand-written codec for the courses collection.
+ */
+public class CourseCodec implements EntityCodec<Course> {
+
+    @Override
+    public Course decode(DBObject document) {
+        Course course = new Course();
+        course.setId(asString(document.get(Mapper.ID_KEY)));
+        course.setCourseName((String) document.get("courseName"));
+        course.setInstructors(asStringList(document.get("instructors")));
+        course.setStartTime((Date) document.get("startTime"));
+        course.setEndTime((Date) document.get("endTime"));
+        course.setAvailabilityStatus(asInteger(document.get("availabilityStatus")));
+        course.setMaxCapacity(asInteger(document.get("maxCapacity")));
+        course.setPrice(asDouble(document.get("price")));
+        course.setLocation((String) document.get("location"));
+        course.setKeywords(asStringList(document.get("keywords")));
+        course.setLastUpdated((Date) document.get("lastUpdated"));
+        return course;
+    }
+
+    @Override
+    public DBObject encode(Course course) {
+        course.setLastUpdated(new Date());
+        BasicDBObject document = new BasicDBObject(Mapper.ID_KEY, course.getId());
+        put(document, "courseName", course.getCourseName());
+        put(document, "instructors", course.getInstructors());
+        put(document, "startTime", course.getStartTime());
+        put(document, "endTime", course.getEndTime());
+        put(document, "availabilityStatus", course.getAvailabilityStatus());
+        put(document, "maxCapacity", course.getMaxCapacity());
+        put(document, "price", course.getPrice());
+        put(document, "location", course.getLocation());
+        put(document, "keywords", course.getKeywords());
+        put(document, "lastUpdated", course.getLastUpdated());
+        return document;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.dao.mongodb.codec;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.mongodb.DBObject;
+import edu.sjsu.cohort6.esp.common.Course;
+import org.mongodb.morphia.mapping.Mapper;
+
+import java.io.IOException;
+import java.text.DateFormat;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Writes course documents as JSON in the shape Jackson gives a {@link Course}, without creating the entity.
+ *
+ * Only the fields of the API are written, in the entity's order. {@code _id} becomes {@code id}, numbers take the
+ * type of the entity field (a price stored as an integer is written as a double), and dates and nulls follow the
+ * configuration of the mapper the transcoder was created from. A field added to Course has to be added here too.
+ */
+public class CourseJsonTranscoder {
+    private final boolean datesAsTimestamps;
+    private final boolean writeNulls;
+    private final DateFormat dateFormat;
+
+    /**
+     * @param mapper    mapper whose date and null handling the output must match
+     */
+    public CourseJsonTranscoder(ObjectMapper mapper) {
+        SerializationConfig config = mapper.getSerializationConfig();
+        this.datesAsTimestamps = config.isEnabled(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        this.writeNulls = config.getSerializationInclusion() == JsonInclude.Include.ALWAYS;
+        this.dateFormat = config.getDateFormat();
+    }
+
+    /**
+     * Writes one course document as a JSON object.
+     *
+     * @param generator generator positioned where the object goes
+     * @param document  document read from the courses collection
+     */
+    public void write(JsonGenerator generator, DBObject document) throws IOException {
+        generator.writeStartObject();
+        writeString(generator, "id", document.get(Mapper.ID_KEY));
+        writeString(generator, "courseName", document.get("courseName"));
+        writeStringList(generator, "instructors", document.get("instructors"));
+        writeDate(generator, "startTime", document.get("startTime"));
+        writeDate(generator, "endTime", document.get("endTime"));
+        writeInteger(generator, "availabilityStatus", document.get("availabilityStatus"));
+        writeInteger(generator, "maxCapacity", document.get("maxCapacity"));
+        writeDouble(generator, "price", document.get("price"));
+        writeString(generator, "location", document.get("location"));
+        writeStringList(generator, "keywords", document.get("keywords"));
+        writeDate(generator, "lastUpdated", document.get("lastUpdated"));
+        generator.writeEndObject();
+    }
+
+    private void writeString(JsonGenerator generator, String field, Object value) throws IOException {
+        if (value == null) {
+            writeNull(generator, field);
+        } else {
+            generator.writeStringField(field, value.toString());
+        }
+    }
+
+    private void writeInteger(JsonGenerator generator, String field, Object value) throws IOException {
+        if (value instanceof Number) {
+            generator.writeNumberField(field, ((Number) value).intValue());
+        } else {
+            writeNull(generator, field);
+        }
+    }
+
+    private void writeDouble(JsonGenerator generator, String field, Object value) throws IOException {
+        if (value instanceof Number) {
+            generator.writeNumberField(field, ((Number) value).doubleValue());
+        } else {
+            writeNull(generator, field);
+        }
+    }
+
+    private void writeDate(JsonGenerator generator, String field, Object value) throws IOException {
+        if (!(value instanceof Date)) {
+            writeNull(generator, field);
+        } else if (datesAsTimestamps) {
+            generator.writeNumberField(field, ((Date) value).getTime());
+        } else {
+            // DateFormat is not thread safe, Jackson clones its own the same way
+            generator.writeStringField(field, ((DateFormat) dateFormat.clone()).format((Date) value));
+        }
+    }
+
+    private void writeStringList(JsonGenerator generator, String field, Object value) throws IOException {
+        if (!(value instanceof List)) {
+            writeNull(generator, field);
+            return;
+        }
+        generator.writeArrayFieldStart(field);
+        for (Object item : (List<?>) value) {
+            if (item == null) {
+                generator.writeNull();
+            } else {
+                generator.writeString(item.toString());
+            }
+        }
+        generator.writeEndArray();
+    }
+
+    private void writeNull(JsonGenerator generator, String field) throws IOException {
+        if (writeNulls) {
+            generator.writeNullField(field);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.dao.mongodb.codec;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBRef;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Field conversions shared by the hand-written codecs.
+ *
+ * The codecs follow Morphia's default storage rules so that documents written by either path can be read by the
+ * other: null fields and empty lists are not stored, and references are stored as DBRefs.
+ */
+final class Documents {
+
+    private Documents() {
+    }
+
+    static String asString(Object value) {
+        return value != null ? value.toString() : null;
+    }
+
+    static Integer asInteger(Object value) {
+        return value instanceof Number ? ((Number) value).intValue() : null;
+    }
+
+    static Double asDouble(Object value) {
+        return value instanceof Number ? ((Number) value).doubleValue() : null;
+    }
+
+    static List<String> asStringList(Object value) {
+        if (!(value instanceof List)) {
+            return null;
+        }
+        List<?> values = (List<?>) value;
+        List<String> strings = new ArrayList<>(values.size());
+        for (Object v : values) {
+            strings.add(asString(v));
+        }
+        return strings;
+    }
+
+    static Object refId(Object value) {
+        return value instanceof DBRef ? ((DBRef) value).getId() : value;
+    }
+
+    static void put(BasicDBObject document, String field, Object value) {
+        if (value == null || (value instanceof Collection && ((Collection) value).isEmpty())) {
+            return;
+        }
+        if (value instanceof Collection && !(value instanceof BasicDBList)) {
+            BasicDBList list = new BasicDBList();
+            list.addAll((Collection<?>) value);
+            value = list;
+        }
+        document.put(field, value);
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.dao.mongodb.codec;
+
+import com.mongodb.DBObject;
+
+/**
+ * Converts an entity to and from its mongodb document.
+ *
+ * Each DAO reads and writes its documents through one codec, either the reflective {@link MorphiaCodec} or a
+ * hand-written one that accesses the fields directly (see {@link CodecType}).
+ */
+public interface EntityCodec<T> {
+
+    /**
+     * @param document  document read from the collection
+     * @return entity, with its references resolved
+     */
+    T decode(DBObject document);
+
+    /**
+     * Converts an entity for saving. Like Morphia's @PrePersist hooks, this stamps lastUpdated on the entity.
+     *
+     * @param entity    entity to save
+     * @return document to save
+     */
+    DBObject encode(T entity);
+}
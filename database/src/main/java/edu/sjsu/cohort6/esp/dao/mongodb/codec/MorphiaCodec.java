@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.dao.mongodb.codec;
+
+import com.mongodb.DBObject;
+import org.mongodb.morphia.Morphia;
+
+/**
+ * Codec backed by Morphia's reflective mapping.
+ */
+public class MorphiaCodec<T> implements EntityCodec<T> {
+    private final Morphia morphia;
+    private final Class<T> clazz;
+
+    public MorphiaCodec(Morphia morphia, Class<T> clazz) {
+        this.morphia = morphia;
+        this.clazz = clazz;
+    }
+
+    @Override
+    public T decode(DBObject document) {
+        return morphia.fromDBObject(clazz, document);
+    }
+
+    @Override
+    public DBObject encode(T entity) {
+        return morphia.toDBObject(entity);
+    }
+}
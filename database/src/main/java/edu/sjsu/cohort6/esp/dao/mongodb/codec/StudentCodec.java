@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.dao.mongodb.codec;
+
+import com.mongodb.*;
+import edu.sjsu.cohort6.esp.common.Course;
+import edu.sjsu.cohort6.esp.common.Student;
+import edu.sjsu.cohort6.esp.common.User;
+import org.mongodb.morphia.mapping.Mapper;
+
+import java.util.*;
+
+import static edu.sjsu.cohort6.esp.dao.mongodb.codec.Documents.*;
+
+/**
+ * Hand-written codec for the students collection.
+ *
+ * The user and course references are stored as DBRefs, as Morphia stores them. Decoding resolves them with one
+ * lookup for the user and a single $in query for all referenced courses, keeping the order of the references.
+ * References to documents that no longer exist are dropped.
+ */
+public class StudentCodec implements EntityCodec<Student> {
+    private final DBCollection users;
+    private final DBCollection courses;
+    private final EntityCodec<User> userCodec;
+    private final EntityCodec<Course> courseCodec;
+
+    public StudentCodec(DBCollection users, DBCollection courses,
+                        EntityCodec<User> userCodec, EntityCodec<Course> courseCodec) {
+        this.users = users;
+        this.courses = courses;
+        this.userCodec = userCodec;
+        this.courseCodec = courseCodec;
+    }
+
+    @Override
+    public Student decode(DBObject document) {
+        Student student = new Student();
+        student.setId(asString(document.get(Mapper.ID_KEY)));
+
+        Object userId = refId(document.get("user"));
+        if (userId != null) {
+            DBObject user = users.findOne(new BasicDBObject(Mapper.ID_KEY, userId));
+            if (user != null) {
+                student.setUser(userCodec.decode(user));
+            }
+        }
+
+        Object refs = document.get("courseRefs");
+        if (refs instanceof List) {
+            student.setCourseRefs(resolveCourses((List<?>) refs));
+        }
+        student.setLastUpdated((Date) document.get("lastUpdated"));
+        return student;
+    }
+
+    private List<Course> resolveCourses(List<?> refs) {
+        List<Object> ids = new ArrayList<>(refs.size());
+        for (Object ref : refs) {
+            ids.add(refId(ref));
+        }
+        Map<Object, Course> byId = new HashMap<>();
+        if (!ids.isEmpty()) {
+            DBCursor cursor = courses.find(new BasicDBObject(Mapper.ID_KEY, new BasicDBObject("$in", ids)));
+            try {
+                while (cursor.hasNext()) {
+                    DBObject course = cursor.next();
+                    byId.put(course.get(Mapper.ID_KEY), courseCodec.decode(course));
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+        List<Course> resolved = new ArrayList<>(ids.size());
+        for (Object id : ids) {
+            Course course = byId.get(id);
+            if (course != null) {
+                resolved.add(course);
+            }
+        }
+        return resolved;
+    }
+
+    @Override
+    public DBObject encode(Student student) {
+        student.setLastUpdated(new Date());
+        BasicDBObject document = new BasicDBObject(Mapper.ID_KEY, student.getId());
+        if (student.getUser() != null) {
+            document.put("user", new DBRef(users.getName(), student.getUser().getId()));
+        }
+        if (student.getCourseRefs() != null) {
+            List<DBRef> refs = new ArrayList<>(student.getCourseRefs().size());
+            for (Course course : student.getCourseRefs()) {
+                refs.add(new DBRef(courses.getName(), course.getId()));
+            }
+            put(document, "courseRefs", refs);
+        }
+        put(document, "lastUpdated", student.getLastUpdated());
+        return document;
+    }
+}
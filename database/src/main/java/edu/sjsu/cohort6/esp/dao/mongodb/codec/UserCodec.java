@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.dao.mongodb.codec;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import edu.sjsu.cohort6.esp.common.Role;
+import edu.sjsu.cohort6.esp.common.RoleType;
+import edu.sjsu.cohort6.esp.common.User;
+import org.mongodb.morphia.mapping.Mapper;
+
+import java.util.Date;
+
+import static edu.sjsu.cohort6.esp.dao.mongodb.codec.Documents.*;
+
+/**
+ * Hand-written codec for the users collection. The role is embedded as { role: "ADMIN" }.
+ */
+public class UserCodec implements EntityCodec<User> {
+
+    @Override
+    public User decode(DBObject document) {
+        User user = new User();
+        user.setId(asString(document.get(Mapper.ID_KEY)));
+        user.setEmailId((String) document.get("emailId"));
+        user.setUserName((String) document.get("userName"));
+        user.setToken((String) document.get("token"));
+        user.setFirstName((String) document.get("firstName"));
+        user.setLastName((String) document.get("lastName"));
+        Object role = document.get("role");
+        if (role instanceof DBObject) {
+            Object roleType = ((DBObject) role).get("role");
+            user.setRole(new Role(roleType != null ? RoleType.valueOf(roleType.toString()) : null));
+        }
+        user.setLastUpdated((Date) document.get("lastUpdated"));
+        return user;
+    }
+
+    @Override
+    public DBObject encode(User user) {
+        user.setLastUpdated(new Date());
+        BasicDBObject document = new BasicDBObject(Mapper.ID_KEY, user.getId());
+        put(document, "emailId", user.getEmailId());
+        put(document, "userName", user.getUserName());
+        put(document, "token", user.getToken());
+        put(document, "firstName", user.getFirstName());
+        put(document, "lastName", user.getLastName());
+        if (user.getRole() != null) {
+            BasicDBObject role = new BasicDBObject();
+            put(role, "role", user.getRole().getRole() != null ? user.getRole().getRole().name() : null);
+            document.put("role", role);
+        }
+        put(document, "lastUpdated", user.getLastUpdated());
+        return document;
+    }
+}
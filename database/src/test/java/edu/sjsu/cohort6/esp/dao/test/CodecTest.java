@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.dao.test;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DB;
+import com.mongodb.DBObject;
+import com.mongodb.DBRef;
+import com.mongodb.MongoClient;
+import edu.sjsu.cohort6.esp.common.*;
+import edu.sjsu.cohort6.esp.dao.mongodb.codec.CourseCodec;
+import edu.sjsu.cohort6.esp.dao.mongodb.codec.CourseJsonTranscoder;
+import edu.sjsu.cohort6.esp.dao.mongodb.codec.StudentCodec;
+import edu.sjsu.cohort6.esp.dao.mongodb.codec.UserCodec;
+import org.bson.types.ObjectId;
+import org.mongodb.morphia.Morphia;
+import org.mongodb.morphia.mapping.Mapper;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Hand-written codec tests.
+ */
+public class CodecTest {
+    private final Morphia morphia = new Morphia().map(Course.class, User.class, Student.class);
+    private MongoClient client;
+    private DB db;
+
+    @BeforeClass
+    public void setUp() {
+        // collections are only named here, nothing is sent to a server
+        client = new MongoClient();
+        db = new DB(client, "codec");
+    }
+
+    @AfterClass
+    public void tearDown() {
+        client.close();
+    }
+
+    @Test
+    public void testCourseRoundTrip() {
+        Course course = new Course.Builder("Cloud Technologies")
+                .maxCapacity(20)
+                .price(200.0)
+                .startTime(new Date(1444471800000L))
+                .keywords(Arrays.asList("Java", "REST"))
+                .instructors(new ArrayList<String>())
+                .build();
+        CourseCodec codec = new CourseCodec();
+        DBObject document = codec.encode(course);
+        Assert.assertEquals(document.get("_id"), course.getId());
+        Assert.assertFalse(document.containsField("instructors"), "empty lists are not stored");
+        Assert.assertFalse(document.containsField("location"), "null fields are not stored");
+        Assert.assertNotNull(document.get("lastUpdated"));
+
+        Course decoded = codec.decode(document);
+        Assert.assertEquals(decoded.getId(), course.getId());
+        Assert.assertEquals(decoded.getCourseName(), course.getCourseName());
+        Assert.assertEquals(decoded.getMaxCapacity(), course.getMaxCapacity());
+        Assert.assertEquals(decoded.getPrice(), course.getPrice());
+        Assert.assertEquals(decoded.getStartTime(), course.getStartTime());
+        Assert.assertEquals(decoded.getKeywords(), course.getKeywords());
+        Assert.assertEquals(decoded.getLastUpdated(), course.getLastUpdated());
+        Assert.assertNull(decoded.getInstructors());
+    }
+
+    @Test
+    public void testUserRoundTrip() {
+        User user = new User("a@b.com", "a", "A", "B", new Role(RoleType.ADMIN));
+        UserCodec codec = new UserCodec();
+        DBObject document = codec.encode(user);
+        Assert.assertEquals(((DBObject) document.get("role")).get("role"), "ADMIN");
+
+        User decoded = codec.decode(document);
+        Assert.assertEquals(decoded.getId(), user.getId());
+        Assert.assertEquals(decoded.getEmailId(), user.getEmailId());
+        Assert.assertEquals(decoded.getToken(), user.getToken());
+        Assert.assertEquals(decoded.getRole().getRole(), RoleType.ADMIN);
+    }
+
+    @Test
+    public void testCourseJsonTranscoder() throws IOException {
+        ObjectId id = new ObjectId();
+        DBObject document = new BasicDBObject("_id", id)
+                .append("courseName", "Cloud Technologies")
+                .append("instructors", Arrays.asList("Ahmad Nouri", "Aktouf"))
+                .append("startTime", new Date(1444471800000L))
+                .append("availabilityStatus", 1)
+                .append("maxCapacity", 20)
+                .append("price", 200)
+                .append("keywords", Arrays.asList("Java", "REST"))
+                .append("lastUpdated", new Date(1443090206102L))
+                .append("className", Course.class.getName());
+        Course course = new CourseCodec().decode(document);
+
+        ObjectMapper timestamps = new ObjectMapper();
+        ObjectMapper isoDates = new ObjectMapper().disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        for (ObjectMapper mapper : Arrays.asList(timestamps, isoDates)) {
+            StringWriter out = new StringWriter();
+            try (JsonGenerator generator = mapper.getFactory().createGenerator(out)) {
+                new CourseJsonTranscoder(mapper).write(generator, document);
+            }
+            Assert.assertEquals(mapper.readTree(out.toString()), mapper.valueToTree(course));
+        }
+    }
+
+    @Test
+    public void testCourseReadsMorphiaDocuments() {
+        Course course = testCourse();
+        Course decoded = new CourseCodec().decode(morphia.toDBObject(course));
+        assertSameCourse(decoded, course);
+
+        Course read = morphia.fromDBObject(Course.class, new CourseCodec().encode(course));
+        assertSameCourse(read, course);
+    }
+
+    @Test
+    public void testUserReadsMorphiaDocuments() {
+        User user = new User("a@b.com", "a", "A", "B", new Role(RoleType.STUDENT));
+        user.setToken("secret");
+        User decoded = new UserCodec().decode(morphia.toDBObject(user));
+        assertSameUser(decoded, user);
+
+        User read = morphia.fromDBObject(User.class, new UserCodec().encode(user));
+        assertSameUser(read, user);
+    }
+
+    @Test
+    public void testStudentReadsMorphiaDocuments() {
+        User user = new User("s@b.com", "s", "S", "B", new Role(RoleType.STUDENT));
+        Course first = testCourse();
+        Course second = testCourse();
+        second.setCourseName("Second");
+        Course removed = testCourse();
+        Student student = new Student(user);
+        student.setCourseRefs(Arrays.asList(second, removed, first));
+
+        InMemoryCollection users = new InMemoryCollection(db, "users");
+        InMemoryCollection courses = new InMemoryCollection(db, "courses");
+        users.add(morphia.toDBObject(user));
+        courses.add(morphia.toDBObject(first));
+        courses.add(morphia.toDBObject(second));
+        StudentCodec codec = new StudentCodec(users, courses, new UserCodec(), new CourseCodec());
+
+        DBObject written = morphia.toDBObject(student);
+        Student decoded = codec.decode(written);
+        Assert.assertEquals(decoded.getId(), student.getId());
+        assertSameUser(decoded.getUser(), user);
+        Assert.assertEquals(decoded.getCourseRefs().size(), 2, "references to missing courses are dropped");
+        Assert.assertEquals(decoded.getCourseRefs().get(0).getId(), second.getId(), "reference order is kept");
+        Assert.assertEquals(decoded.getCourseRefs().get(1).getId(), first.getId());
+
+        // what the codec writes must be what Morphia writes, for Morphia to resolve the references
+        DBObject encoded = codec.encode(student);
+        Assert.assertEquals(encoded.get(Mapper.ID_KEY), written.get(Mapper.ID_KEY));
+        Assert.assertEquals(refOf(encoded.get("user")), refOf(written.get("user")));
+        List<String> encodedRefs = new ArrayList<>();
+        List<String> writtenRefs = new ArrayList<>();
+        for (Object ref : (List<?>) encoded.get("courseRefs")) {
+            encodedRefs.add(refOf(ref));
+        }
+        for (Object ref : (List<?>) written.get("courseRefs")) {
+            writtenRefs.add(refOf(ref));
+        }
+        Assert.assertEquals(encodedRefs, writtenRefs);
+    }
+
+    private static Course testCourse() {
+        return new Course.Builder("Cloud Technologies")
+                .maxCapacity(20)
+                .price(200.0)
+                .startTime(new Date(1444471800000L))
+                .keywords(Arrays.asList("Java", "REST"))
+                .instructors(Arrays.asList("Ahmad Nouri"))
+                .build();
+    }
+
+    private static void assertSameCourse(Course actual, Course expected) {
+        Assert.assertEquals(actual.getId(), expected.getId());
+        Assert.assertEquals(actual.getCourseName(), expected.getCourseName());
+        Assert.assertEquals(actual.getMaxCapacity(), expected.getMaxCapacity());
+        Assert.assertEquals(actual.getPrice(), expected.getPrice());
+        Assert.assertEquals(actual.getStartTime(), expected.getStartTime());
+        Assert.assertEquals(actual.getKeywords(), expected.getKeywords());
+        Assert.assertEquals(actual.getInstructors(), expected.getInstructors());
+        Assert.assertEquals(actual.getAvailabilityStatus(), expected.getAvailabilityStatus());
+        Assert.assertEquals(actual.getLastUpdated(), expected.getLastUpdated());
+    }
+
+    private static void assertSameUser(User actual, User expected) {
+        Assert.assertEquals(actual.getId(), expected.getId());
+        Assert.assertEquals(actual.getEmailId(), expected.getEmailId());
+        Assert.assertEquals(actual.getUserName(), expected.getUserName());
+        Assert.assertEquals(actual.getFirstName(), expected.getFirstName());
+        Assert.assertEquals(actual.getLastName(), expected.getLastName());
+        Assert.assertEquals(actual.getToken(), expected.getToken());
+        Assert.assertEquals(actual.getRole().getRole(), expected.getRole().getRole());
+    }
+
+    private static String refOf(Object ref) {
+        Assert.assertTrue(ref instanceof DBRef, "references are stored as DBRefs");
+        return ((DBRef) ref).getCollectionName() + "/" + ((DBRef) ref).getId();
+    }
+}
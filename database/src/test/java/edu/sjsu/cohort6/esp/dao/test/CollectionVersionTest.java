@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+
+package edu.sjsu.cohort6.esp.dao.test;
+
+import com.mongodb.DB;
+import com.mongodb.MongoClient;
+import edu.sjsu.cohort6.esp.dao.mongodb.ChangeTracker;
+import edu.sjsu.cohort6.esp.dao.mongodb.CollectionVersion;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Collection version tests, run against an in-memory collection. These do not need a running database.
+ */
+public class CollectionVersionTest {
+    private MongoClient client;
+    private InMemoryCollection versions;
+
+    @BeforeClass
+    public void setUp() {
+        // collections are only named here, nothing is sent to a server
+        client = new MongoClient();
+    }
+
+    @AfterClass
+    public void tearDown() {
+        client.close();
+    }
+
+    @BeforeMethod
+    public void newCollection() {
+        versions = new InMemoryCollection(new DB(client, "versions"), CollectionVersion.COLLECTION);
+    }
+
+    @Test
+    public void testWritesAdvanceVersion() {
+        ChangeTracker changes = new ChangeTracker();
+        CollectionVersion version = new CollectionVersion(versions, "courses");
+        changes.addListener(version);
+        Assert.assertEquals(version.fetch(), 0);
+        changes.changed();
+        changes.changed();
+        Assert.assertEquals(version.fetch(), 2);
+    }
+
+    @Test
+    public void testWritesOfOtherInstancesSeen() {
+        // two instances, each with its own tracker, sharing the database
+        ChangeTracker here = new ChangeTracker();
+        here.addListener(new CollectionVersion(versions, "courses"));
+        ChangeTracker elsewhere = new ChangeTracker();
+        elsewhere.addListener(new CollectionVersion(versions, "courses"));
+        CollectionVersion version = new CollectionVersion(versions, "courses");
+
+        here.changed();
+        long before = version.fetch();
+        elsewhere.changed();
+        Assert.assertTrue(version.fetch() > before, "a write on another instance must change the version");
+    }
+
+    @Test
+    public void testCollectionsVersionedApart() {
+        ChangeTracker courses = new ChangeTracker();
+        courses.addListener(new CollectionVersion(versions, "courses"));
+        courses.changed();
+        Assert.assertEquals(new CollectionVersion(versions, "users").fetch(), 0);
+    }
+}
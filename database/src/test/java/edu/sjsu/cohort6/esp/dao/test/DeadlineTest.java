@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.dao.test;
+
+import edu.sjsu.cohort6.esp.dao.Deadline;
+import edu.sjsu.cohort6.esp.dao.DeadlineExceededException;
+import edu.sjsu.cohort6.esp.dao.mongodb.QueryGuard;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Request deadline tests.
+ */
+public class DeadlineTest {
+
+    @AfterMethod
+    public void tearDown() {
+        Deadline.clear();
+    }
+
+    @Test
+    public void testNoDeadline() {
+        Assert.assertFalse(Deadline.isSet());
+        Assert.assertEquals(Deadline.remainingMillis(), Long.MAX_VALUE);
+        Deadline.check();
+    }
+
+    @Test
+    public void testRemaining() {
+        Deadline.start(60000);
+        Assert.assertTrue(Deadline.isSet());
+        long remaining = Deadline.remainingMillis();
+        Assert.assertTrue(remaining > 0 && remaining <= 60000, "remaining " + remaining);
+        Deadline.check();
+    }
+
+    @Test(expectedExceptions = DeadlineExceededException.class)
+    public void testExpired() {
+        Deadline.start(0);
+        Assert.assertTrue(Deadline.isExpired());
+        Deadline.check();
+    }
+
+    @Test(expectedExceptions = DeadlineExceededException.class)
+    public void testGuardRefusesExpiredRequest() throws Exception {
+        Deadline.start(-1);
+        new QueryGuard().find(null, null);
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+
+package edu.sjsu.cohort6.esp.dao.test;
+
+import com.mongodb.DBObject;
+import edu.sjsu.cohort6.esp.dao.filter.Filter;
+import edu.sjsu.cohort6.esp.dao.filter.FilterParser;
+import edu.sjsu.cohort6.esp.dao.filter.FilterSchema;
+import edu.sjsu.cohort6.esp.dao.filter.InvalidFilterException;
+import edu.sjsu.cohort6.esp.dao.mongodb.FilterCompiler;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Course filter parsing and compilation tests. These do not need a running database.
+ */
+public class FilterParserTest {
+
+    @DataProvider(name = "valid")
+    public Object[][] validFilters() {
+        return new Object[][]{
+                {"price ge 100", "{ \"price\" : { \"$gte\" : 100.0}}"},
+                {"price ge 100 and price lt 500", "{ \"$and\" : [ { \"price\" : { \"$gte\" : 100.0}} , { \"price\" : { \"$lt\" : 500.0}}]}"},
+                {"keywords has 'Java' and location eq 'Santa Clara, CA'", "{ \"$and\" : [ { \"keywords\" : \"Java\"} , { \"location\" : \"Santa Clara, CA\"}]}"},
+                {"courseName eq 'Cloud' or maxCapacity gt 50", "{ \"$or\" : [ { \"courseName\" : \"Cloud\"} , { \"maxCapacity\" : { \"$gt\" : 50}}]}"},
+                {"keywords in ('Java', 'REST')", "{ \"keywords\" : { \"$in\" : [ \"Java\" , \"REST\"]}}"},
+                {"(price le 10 or price ge 1000) AND keywords HAS 'Java'", null},
+                {"courseName eq 'O''Reilly'", "{ \"courseName\" : \"O'Reilly\"}"},
+        };
+    }
+
+    @Test(dataProvider = "valid")
+    public void testValidFilter(String text, String expectedJson) throws InvalidFilterException {
+        Filter filter = FilterParser.parse(text, FilterSchema.COURSE);
+        DBObject query = FilterCompiler.compile(filter);
+        if (expectedJson != null) {
+            Assert.assertEquals(query.toString(), expectedJson);
+        }
+    }
+
+    @Test
+    public void testDateValue() throws InvalidFilterException {
+        Filter filter = FilterParser.parse("startTime ge '2015-10-01'", FilterSchema.COURSE);
+        DBObject query = FilterCompiler.compile(filter);
+        Assert.assertTrue(((DBObject) query.get("startTime")).get("$gte") instanceof Date);
+    }
+
+    @DataProvider(name = "invalid")
+    public Object[][] invalidFilters() {
+        return new Object[][]{
+                {"{ price: { $gte: 100}}"},                 // raw mongodb JSON is no longer accepted
+                {"location eq 'Santa Clara, CA'"},          // not indexed
+                {"price ne 100"},                           // ne cannot use the index
+                {"price ge 100 or location eq 'San Jose'"}, // one branch is a scan
+                {"nosuchfield eq 1"},
+                {"price has 10"},
+                {"price ge 'cheap'"},
+                {"maxCapacity gt 1.5"},
+                {"startTime ge 'tomorrow'"},
+                {"price ge 100 and"},
+                {"courseName eq 'unterminated"},
+                {"(price ge 100"},
+        };
+    }
+
+    @Test(dataProvider = "invalid", expectedExceptions = InvalidFilterException.class)
+    public void testInvalidFilter(String text) throws InvalidFilterException {
+        FilterParser.parse(text, FilterSchema.COURSE);
+    }
+
+    @Test
+    public void testInValuesBounded() throws InvalidFilterException {
+        StringBuilder values = new StringBuilder("'k0'");
+        for (int i = 1; i < FilterParser.MAX_IN_VALUES; i++) {
+            values.append(", 'k").append(i).append("'");
+        }
+        FilterParser.parse("keywords in (" + values + ")", FilterSchema.COURSE);
+        try {
+            FilterParser.parse("keywords in (" + values + ", 'one too many')", FilterSchema.COURSE);
+            Assert.fail("an 'in' over the limit must be rejected");
+        } catch (InvalidFilterException e) {
+            Assert.assertTrue(e.getMessage().contains("'in'"));
+        }
+    }
+
+    @Test
+    public void testCourseSchema() {
+        List<String> indexed = FilterSchema.COURSE.getIndexedFieldNames();
+        Assert.assertTrue(indexed.contains("courseName"));
+        Assert.assertTrue(indexed.contains("price"));
+        Assert.assertTrue(indexed.contains("startTime"));
+        Assert.assertTrue(indexed.contains("maxCapacity"));
+        Assert.assertTrue(indexed.contains("keywords"));
+        Assert.assertFalse(indexed.contains("location"));
+        Assert.assertEquals(FilterSchema.COURSE.getField("id").getDbName(), "_id");
+    }
+}
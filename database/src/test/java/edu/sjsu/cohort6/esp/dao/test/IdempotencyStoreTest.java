@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+
+package edu.sjsu.cohort6.esp.dao.test;
+
+import com.mongodb.DB;
+import com.mongodb.MongoClient;
+import edu.sjsu.cohort6.esp.dao.mongodb.IdempotencyStore;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Idempotency key claim tests, run against an in-memory collection. These do not need a running database.
+ */
+public class IdempotencyStoreTest {
+    private MongoClient client;
+    private IdempotencyStore store;
+
+    @BeforeClass
+    public void setUp() {
+        // collections are only named here, nothing is sent to a server
+        client = new MongoClient();
+    }
+
+    @AfterClass
+    public void tearDown() {
+        client.close();
+    }
+
+    @BeforeMethod
+    public void newStore() {
+        store = new IdempotencyStore(new InMemoryCollection(new DB(client, "idempotency"),
+                IdempotencyStore.COLLECTION));
+    }
+
+    @Test
+    public void testClaimOnce() {
+        Assert.assertNull(store.claim("a", "body", 60000));
+        IdempotencyStore.Record record = store.claim("a", "body", 60000);
+        Assert.assertNotNull(record);
+        Assert.assertFalse(record.isCompleted());
+        Assert.assertEquals(record.getFingerprint(), "body");
+        Assert.assertTrue(record.getRemainingMillis() > 0);
+    }
+
+    @Test
+    public void testCompletedResponseReturned() {
+        Assert.assertNull(store.claim("a", "body", 60000));
+        store.complete("a", "body", 201, "application/json", "/students/1", new byte[]{1, 2}, 60000);
+        IdempotencyStore.Record record = store.claim("a", "body", 60000);
+        Assert.assertTrue(record.isCompleted());
+        Assert.assertEquals(record.getStatus(), 201);
+        Assert.assertEquals(record.getContentType(), "application/json");
+        Assert.assertEquals(record.getLocation(), "/students/1");
+        Assert.assertEquals(record.getBody(), new byte[]{1, 2});
+    }
+
+    @Test
+    public void testReleaseAllowsRetry() {
+        Assert.assertNull(store.claim("a", "body", 60000));
+        store.release("a");
+        Assert.assertNull(store.claim("a", "body", 60000));
+    }
+
+    @Test
+    public void testReleaseKeepsCompletedResponse() {
+        Assert.assertNull(store.claim("a", "body", 60000));
+        store.complete("a", "body", 200, null, null, new byte[0], 60000);
+        store.release("a");
+        Assert.assertTrue(store.claim("a", "body", 60000).isCompleted());
+    }
+
+    @Test
+    public void testStaleClaimTakenOver() {
+        // a claim whose pending time ran out, not removed by the TTL monitor yet
+        Assert.assertNull(store.claim("a", "body", -1000));
+        Assert.assertNull(store.claim("a", "body", 60000));
+        Assert.assertFalse(store.claim("a", "body", 60000).isCompleted());
+    }
+
+    @Test
+    public void testCompletedResponseNotTakenOver() {
+        Assert.assertNull(store.claim("a", "body", 60000));
+        store.complete("a", "body", 200, null, null, new byte[0], -1000);
+        Assert.assertTrue(store.claim("a", "body", 60000).isCompleted());
+    }
+}
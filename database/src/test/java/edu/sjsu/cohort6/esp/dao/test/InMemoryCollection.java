@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+
+package edu.sjsu.cohort6.esp.dao.test;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import com.mongodb.DuplicateKeyException;
+import com.mongodb.ReadPreference;
+import com.mongodb.ServerAddress;
+import com.mongodb.WriteResult;
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.mongodb.morphia.mapping.Mapper;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collection kept in memory, for tests that must not need a running database. The DB only names it: create it with
+ * new DB(new MongoClient(), name), which connects to nothing as long as nothing is sent.
+ *
+ * Documents are keyed by _id. Queries match a field on equality, $lt (Comparable values) or $in; projections are
+ * ignored. Updates $set or $inc fields of one document, or replace it, and may upsert by _id. Only the operations the DAOs and stores under test
+ * issue are answered, anything else goes to the server and fails.
+ */
+public class InMemoryCollection extends DBCollection {
+    private final Map<Object, DBObject> documents = new LinkedHashMap<>();
+    private int finds;
+
+    public InMemoryCollection(DB db, String name) {
+        super(db, name);
+    }
+
+    /**
+     * Stores a document as is, replacing one with the same _id.
+     */
+    public void add(DBObject document) {
+        documents.put(document.get(Mapper.ID_KEY), document);
+    }
+
+    /**
+     * @return number of find calls, each of which would be a query
+     */
+    public int getFinds() {
+        return finds;
+    }
+
+    @Override
+    public void createIndex(DBObject keys, DBObject options) {
+    }
+
+    @Override
+    public WriteResult insert(DBObject... inserted) {
+        for (DBObject document : inserted) {
+            if (documents.containsKey(document.get(Mapper.ID_KEY))) {
+                throw new DuplicateKeyException(new BsonDocument("code", new BsonInt32(11000)),
+                        new ServerAddress(), null);
+            }
+            add(document);
+        }
+        return new WriteResult(inserted.length, false, null);
+    }
+
+    @Override
+    public WriteResult update(DBObject query, DBObject update) {
+        return update(query, update, false, false);
+    }
+
+    @Override
+    public WriteResult update(DBObject query, DBObject update, boolean upsert, boolean multi) {
+        DBObject document = findOne(query);
+        if (document == null) {
+            if (!upsert) {
+                return new WriteResult(0, false, null);
+            }
+            document = new BasicDBObject(Mapper.ID_KEY, query.get(Mapper.ID_KEY));
+            add(document);
+        }
+        if (update.containsField("$set") || update.containsField("$inc")) {
+            if (update.containsField("$set")) {
+                document.putAll((DBObject) update.get("$set"));
+            }
+            if (update.containsField("$inc")) {
+                DBObject increments = (DBObject) update.get("$inc");
+                for (String field : increments.keySet()) {
+                    Number current = (Number) document.get(field);
+                    long by = ((Number) increments.get(field)).longValue();
+                    document.put(field, (current != null ? current.longValue() : 0L) + by);
+                }
+            }
+        } else {
+            update.put(Mapper.ID_KEY, document.get(Mapper.ID_KEY));
+            add(update);
+        }
+        return new WriteResult(1, true, null);
+    }
+
+    @Override
+    public DBObject findOne(DBObject query) {
+        for (DBObject document : documents.values()) {
+            if (matches(document, query)) {
+                return document;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public WriteResult remove(DBObject query) {
+        int n = 0;
+        for (Iterator<DBObject> it = documents.values().iterator(); it.hasNext(); ) {
+            if (matches(it.next(), query)) {
+                it.remove();
+                n++;
+            }
+        }
+        return new WriteResult(n, false, null);
+    }
+
+    @Override
+    public long count() {
+        return documents.size();
+    }
+
+    @Override
+    public long getCount(DBObject query, DBObject projection, long limit, long skip) {
+        long n = 0;
+        for (DBObject document : documents.values()) {
+            if ((query == null || matches(document, query)) && (limit <= 0 || n < limit)) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    @Override
+    public DBCursor find(DBObject query) {
+        return find(query, null);
+    }
+
+    @Override
+    public DBCursor find(DBObject query, DBObject projection) {
+        finds++;
+        List<DBObject> found = new ArrayList<>();
+        for (DBObject document : documents.values()) {
+            if (matches(document, query)) {
+                found.add(document);
+            }
+        }
+        final Iterator<DBObject> it = found.iterator();
+        return new DBCursor(this, query, projection, ReadPreference.primary()) {
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public DBObject next() {
+                return it.next();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static boolean matches(DBObject document, DBObject query) {
+        for (String field : query.keySet()) {
+            Object expected = query.get(field);
+            Object actual = document.get(field);
+            if (expected instanceof DBObject) {
+                DBObject operators = (DBObject) expected;
+                if (operators.containsField("$lt")) {
+                    Comparable<Object> bound = (Comparable<Object>) operators.get("$lt");
+                    if (actual == null || bound.compareTo(actual) <= 0) {
+                        return false;
+                    }
+                }
+                if (operators.containsField("$in") && !((Collection<?>) operators.get("$in")).contains(actual)) {
+                    return false;
+                }
+            } else if (!expected.equals(actual)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.dao.test;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import com.mongodb.util.JSON;
+import edu.sjsu.cohort6.esp.common.Student;
+import edu.sjsu.cohort6.esp.common.User;
+import edu.sjsu.cohort6.esp.dao.mongodb.IndexAdvisor;
+import edu.sjsu.cohort6.esp.dao.mongodb.IndexManager;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Index declaration and advisor tests for the parts that do not need a running database.
+ */
+public class IndexAdvisorTest {
+
+    @Test
+    public void testShapeSplitsEqualityAndRange() {
+        DBObject query = (DBObject) JSON.parse("{ price: { $lt: 100 }, keywords: 'java', courseName: { $in: ['a'] } }");
+        List<IndexAdvisor.Shape> shapes = IndexAdvisor.shapesOf("courses", query);
+        Assert.assertEquals(shapes.size(), 1);
+        Assert.assertEquals(shapes.get(0).suggestedKey(), Arrays.asList("courseName", "keywords", "price"));
+    }
+
+    @Test
+    public void testShapePerOrBranch() {
+        DBObject query = (DBObject) JSON.parse("{ $and: [ { startTime: { $gte: 1 } }, "
+                + "{ $or: [ { price: 10 }, { maxCapacity: { $gt: 5 } } ] } ] }");
+        List<IndexAdvisor.Shape> shapes = IndexAdvisor.shapesOf("courses", query);
+        Assert.assertEquals(shapes.size(), 3);
+        Assert.assertEquals(shapes.get(0).suggestedKey(), Arrays.asList("startTime"));
+        Assert.assertEquals(shapes.get(1).suggestedKey(), Arrays.asList("price"));
+        Assert.assertEquals(shapes.get(2).suggestedKey(), Arrays.asList("maxCapacity"));
+    }
+
+    @Test
+    public void testDeclaredIndexes() {
+        List<DBObject> userIndexes = IndexManager.declaredIndexes(User.class);
+        Assert.assertTrue(userIndexes.contains(new BasicDBObject("userName", 1).append("token", 1)));
+        Assert.assertTrue(userIndexes.contains(new BasicDBObject("emailId", 1)));
+
+        List<DBObject> studentIndexes = IndexManager.declaredIndexes(Student.class);
+        Assert.assertTrue(studentIndexes.contains(new BasicDBObject("courseRefs.$id", 1)));
+        Assert.assertTrue(studentIndexes.contains(new BasicDBObject("user.$id", 1)));
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+
+package edu.sjsu.cohort6.esp.dao.test;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DB;
+import com.mongodb.MongoClient;
+import edu.sjsu.cohort6.esp.dao.mongodb.ChangeTracker;
+import edu.sjsu.cohort6.esp.dao.mongodb.MembershipFilter;
+import org.bson.types.ObjectId;
+import org.mongodb.morphia.mapping.Mapper;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Membership filter tests, run against an in-memory collection. These do not need a running database.
+ */
+public class MembershipFilterTest {
+    private MongoClient client;
+    private InMemoryCollection collection;
+    private ChangeTracker changes;
+    private MembershipFilter filter;
+
+    @BeforeClass
+    public void setUp() {
+        // collections are only named here, nothing is sent to a server
+        client = new MongoClient();
+    }
+
+    @AfterClass
+    public void tearDown() {
+        client.close();
+    }
+
+    @BeforeMethod
+    public void newFilter() {
+        collection = new InMemoryCollection(new DB(client, "membership"), "users");
+        add("a@sjsu.edu");
+        changes = new ChangeTracker();
+        filter = new MembershipFilter(collection, "emailId", changes);
+    }
+
+    @Test
+    public void testQueriesUntilBuilt() {
+        Assert.assertTrue(filter.isStale());
+        Assert.assertTrue(filter.mightContain("absent@sjsu.edu"));
+        Assert.assertEquals(collection.getFinds(), 0);
+    }
+
+    @Test
+    public void testAbsentAnsweredOnceBuilt() {
+        filter.rebuild();
+        Assert.assertFalse(filter.isStale());
+        Assert.assertEquals(collection.getFinds(), 1);
+        Assert.assertTrue(filter.mightContain("a@sjsu.edu"));
+        Assert.assertFalse(filter.mightContain("absent@sjsu.edu"));
+        Assert.assertEquals(filter.getDefiniteMisses(), 1);
+    }
+
+    @Test
+    public void testPutSeen() {
+        filter.rebuild();
+        filter.put("b@sjsu.edu");
+        Assert.assertTrue(filter.mightContain("b@sjsu.edu"));
+    }
+
+    @Test
+    public void testOtherWritesSeenAfterRebuild() {
+        filter.rebuild();
+        // written by another process, not put through this filter
+        add("c@sjsu.edu");
+        Assert.assertFalse(filter.mightContain("c@sjsu.edu"));
+        filter.rebuild();
+        Assert.assertTrue(filter.mightContain("c@sjsu.edu"));
+    }
+
+    @Test
+    public void testQueriesOnceOlderThanMaxAge() {
+        filter.rebuild();
+        add("c@sjsu.edu");
+        filter.setMaxAge(0, TimeUnit.MILLISECONDS);
+        Assert.assertTrue(filter.isStale());
+        Assert.assertTrue(filter.mightContain("c@sjsu.edu"));
+        Assert.assertTrue(filter.mightContain("absent@sjsu.edu"));
+        filter.setMaxAge(1, TimeUnit.HOURS);
+        Assert.assertFalse(filter.mightContain("absent@sjsu.edu"));
+    }
+
+    @Test
+    public void testOutgrownFilterStaleUntilRebuilt() {
+        filter.rebuild();
+        for (int i = 0; i <= 10000; i++) {
+            filter.put(i + "@sjsu.edu");
+        }
+        Assert.assertTrue(filter.isStale());
+        Assert.assertTrue(filter.mightContain("absent@sjsu.edu"));
+        Assert.assertEquals(collection.getFinds(), 1, "the write must not scan the collection");
+        filter.rebuild();
+        Assert.assertFalse(filter.isStale());
+    }
+
+    @Test
+    public void testMissRemembered() {
+        filter.rebuild();
+        filter.put("absent@sjsu.edu");
+        Assert.assertTrue(filter.mightContain("absent@sjsu.edu"));
+        filter.recordMiss("absent@sjsu.edu", changes.current());
+        Assert.assertFalse(filter.mightContain("absent@sjsu.edu"));
+        Assert.assertEquals(filter.getCachedMisses(), 1);
+    }
+
+    @Test
+    public void testMissFromOlderStampIgnored() {
+        filter.rebuild();
+        filter.put("absent@sjsu.edu");
+        // the collection was written to between the stamp and the query
+        filter.recordMiss("absent@sjsu.edu", changes.current() - 1);
+        Assert.assertTrue(filter.mightContain("absent@sjsu.edu"));
+    }
+
+    private void add(String email) {
+        collection.add(new BasicDBObject(Mapper.ID_KEY, new ObjectId()).append("emailId", email));
+    }
+}
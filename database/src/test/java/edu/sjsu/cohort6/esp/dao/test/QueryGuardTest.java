@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+
+package edu.sjsu.cohort6.esp.dao.test;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.mongodb.MongoClient;
+import com.mongodb.util.JSON;
+import edu.sjsu.cohort6.esp.dao.mongodb.NamedQuery;
+import edu.sjsu.cohort6.esp.dao.mongodb.QueryGuard;
+import org.mongodb.morphia.mapping.Mapper;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Query guard tests for the parts that do not need a running database.
+ */
+public class QueryGuardTest {
+
+    @Test
+    public void testShapeIgnoresValues() {
+        Assert.assertEquals(QueryGuard.shapeOf(NamedQuery.COURSE_BY_NAME.bind("A")),
+                QueryGuard.shapeOf(NamedQuery.COURSE_BY_NAME.bind("B")));
+        Assert.assertNotEquals(QueryGuard.shapeOf(NamedQuery.COURSE_BY_NAME.bind("A")),
+                QueryGuard.shapeOf(NamedQuery.USER_BY_USER_NAME.bind("A")));
+    }
+
+    @Test
+    public void testShapeKeepsOperatorsAndBranches() {
+        DBObject q1 = (DBObject) JSON.parse("{ $or: [ { price: { $gte: 100 } }, { keywords: { $in: ['a', 'b'] } } ] }");
+        DBObject q2 = (DBObject) JSON.parse("{ $or: [ { price: { $gte: 5 } }, { keywords: { $in: ['c'] } } ] }");
+        DBObject q3 = (DBObject) JSON.parse("{ $or: [ { price: { $lt: 5 } }, { keywords: { $in: ['c'] } } ] }");
+        Assert.assertEquals(QueryGuard.shapeOf(q1), QueryGuard.shapeOf(q2));
+        Assert.assertNotEquals(QueryGuard.shapeOf(q1), QueryGuard.shapeOf(q3));
+    }
+
+    @Test
+    public void testDetectCollectionScan() {
+        Object collScan = JSON.parse("{ queryPlanner: { winningPlan: { stage: 'LIMIT', inputStage: { stage: 'COLLSCAN' } } } }");
+        Object ixScan = JSON.parse("{ queryPlanner: { winningPlan: { stage: 'FETCH', inputStage: { stage: 'IXSCAN' } },"
+                + " rejectedPlans: [ { stage: 'COLLSCAN' } ] } }");
+        Object legacy = JSON.parse("{ cursor: 'BasicCursor', n: 3 }");
+        Assert.assertTrue(QueryGuard.containsCollectionScan(collScan));
+        Assert.assertFalse(QueryGuard.containsCollectionScan(ixScan));
+        Assert.assertTrue(QueryGuard.containsCollectionScan(legacy));
+    }
+
+    @Test
+    public void testDefaultLimitOnlyOnClientQueries() throws Exception {
+        // cursors are lazy, so no server is needed to inspect them
+        MongoClient client = new MongoClient();
+        try {
+            DBCollection collection = new DB(client, "guard").getCollection("courses");
+            QueryGuard guard = new QueryGuard();
+            guard.setScanPolicy(QueryGuard.ScanPolicy.OFF);
+            guard.setDefaultLimit(1000);
+            DBObject query = NamedQuery.COURSE_BY_NAME.bind("A");
+            Assert.assertEquals(guard.find(collection, query).getLimit(), 1000);
+            Assert.assertEquals(guard.findAll(collection, query).getLimit(), 0);
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void testExceedsLimit() {
+        MongoClient client = new MongoClient();
+        try {
+            InMemoryCollection courses = new InMemoryCollection(new DB(client, "guard"), "courses");
+            for (int i = 0; i < 3; i++) {
+                courses.add(new BasicDBObject(Mapper.ID_KEY, i).append("price", 100));
+            }
+            QueryGuard guard = new QueryGuard();
+            guard.setDefaultLimit(3);
+            DBObject query = new BasicDBObject("price", 100);
+            Assert.assertFalse(guard.exceedsLimit(courses, query), "all matches fit in the limit");
+            courses.add(new BasicDBObject(Mapper.ID_KEY, 3).append("price", 100));
+            Assert.assertTrue(guard.exceedsLimit(courses, query));
+            guard.setDefaultLimit(0);
+            Assert.assertFalse(guard.exceedsLimit(courses, query), "no limit, nothing left out");
+        } finally {
+            client.close();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+
+package edu.sjsu.cohort6.esp.dao.test;
+
+import com.mongodb.DBObject;
+import edu.sjsu.cohort6.esp.dao.mongodb.NamedQuery;
+import edu.sjsu.cohort6.esp.dao.mongodb.QueryTemplate;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Query template tests. These do not need a running database.
+ */
+public class QueryTemplateTest {
+
+    @Test
+    public void testBindNamedQuery() {
+        DBObject query = NamedQuery.COURSE_BY_NAME.bind("Cloud Technologies");
+        Assert.assertEquals(query.get("courseName"), "Cloud Technologies");
+    }
+
+    @Test
+    public void testBindValueWithQuotes() {
+        String name = "Cloud\", $where: \"sleep(1000)";
+        DBObject query = NamedQuery.COURSE_BY_NAME.bind(name);
+        Assert.assertEquals(query.keySet().size(), 1);
+        Assert.assertEquals(query.get("courseName"), name);
+    }
+
+    @Test
+    public void testBindNestedAndList() {
+        QueryTemplate template = QueryTemplate.compile("{ price : { $gte : \"?0\" }, keywords : { $in : \"?1\" } }");
+        List<String> keywords = Arrays.asList("Java", "REST");
+        DBObject query = template.bind(100, keywords);
+        Assert.assertEquals(((DBObject) query.get("price")).get("$gte"), 100);
+        Assert.assertEquals(((DBObject) query.get("keywords")).get("$in"), keywords);
+    }
+
+    @Test
+    public void testBindReturnsFreshCopies() {
+        DBObject first = NamedQuery.USER_BY_USER_NAME.bind("a");
+        DBObject second = NamedQuery.USER_BY_USER_NAME.bind("b");
+        Assert.assertEquals(first.get("userName"), "a");
+        Assert.assertEquals(second.get("userName"), "b");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testWrongParamCount() {
+        NamedQuery.STUDENTS_BY_COURSE_REF.bind();
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testPlaceholderGap() {
+        QueryTemplate.compile("{ courseName : \"?1\" }");
+    }
+
+    @Test
+    public void testRepeatedPlaceholder() {
+        QueryTemplate template = QueryTemplate.compile("{ $or : [ { courseName : \"?0\" }, { instructors : \"?0\" } ] }");
+        Assert.assertEquals(template.getParamCount(), 1);
+    }
+}
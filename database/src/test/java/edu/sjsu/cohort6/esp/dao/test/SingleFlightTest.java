@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+
+package edu.sjsu.cohort6.esp.dao.test;
+
+import edu.sjsu.cohort6.esp.dao.Deadline;
+import edu.sjsu.cohort6.esp.dao.DeadlineExceededException;
+import edu.sjsu.cohort6.esp.dao.mongodb.SingleFlight;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Read coalescing tests. These do not need a running database.
+ */
+public class SingleFlightTest {
+    private SingleFlight<String> flights;
+    private ExecutorService executor;
+    private CountDownLatch entered;
+    private CountDownLatch release;
+
+    @BeforeMethod
+    public void setUp() {
+        flights = new SingleFlight<>(2);
+        executor = Executors.newCachedThreadPool();
+        entered = new CountDownLatch(1);
+        release = new CountDownLatch(1);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+        Deadline.clear();
+    }
+
+    @Test
+    public void testConcurrentCallersShareOneRead() throws Exception {
+        Future<Object> leader = executor.submit(() -> flights.execute("k", 1, blockingRead(new Object())));
+        entered.await();
+        List<Future<Object>> followers = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            followers.add(executor.submit(() -> flights.execute("k", 1, () -> {
+                throw new AssertionError("a caller of the same version must not read again");
+            })));
+        }
+        awaitShared(8);
+        release.countDown();
+
+        Object result = leader.get(5, TimeUnit.SECONDS);
+        for (Future<Object> follower : followers) {
+            Assert.assertSame(follower.get(5, TimeUnit.SECONDS), result);
+        }
+        Assert.assertEquals(flights.getTotal().getExecuted(), 1);
+        Assert.assertEquals(flights.getTotal().getShared(), 8);
+    }
+
+    @Test
+    public void testNewerVersionReadsAgain() throws Exception {
+        Future<String> leader = executor.submit(() -> flights.execute("k", 1, blockingRead("before write")));
+        entered.await();
+        Assert.assertEquals(flights.execute("k", 2, () -> "after write"), "after write",
+                "a read after a write must not join a read from before it");
+        release.countDown();
+        Assert.assertEquals(leader.get(5, TimeUnit.SECONDS), "before write");
+        Assert.assertEquals(flights.getTotal().getExecuted(), 2);
+    }
+
+    @Test
+    public void testCompletedReadNotReused() {
+        Assert.assertEquals(flights.execute("k", 1, () -> "first"), "first");
+        Assert.assertEquals(flights.execute("k", 1, () -> "second"), "second", "only reads in flight are shared");
+        Assert.assertEquals(flights.getTotal().getShared(), 0);
+    }
+
+    @Test
+    public void testFailureSharedWithWaiters() throws Exception {
+        Future<Object> leader = executor.submit(() -> flights.execute("k", 1, () -> {
+            entered.countDown();
+            await(release);
+            throw new IllegalStateException("read failed");
+        }));
+        entered.await();
+        Future<Object> follower = executor.submit(() -> flights.execute("k", 1, () -> "unused"));
+        awaitShared(1);
+        release.countDown();
+        for (Future<Object> caller : Arrays.asList(leader, follower)) {
+            try {
+                caller.get(5, TimeUnit.SECONDS);
+                Assert.fail("the failure must reach every caller");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+        }
+        Assert.assertEquals(flights.execute("k", 1, () -> "retried"), "retried", "a failed read is not kept");
+    }
+
+    @Test
+    public void testLeaderTimeoutNotShared() throws Exception {
+        Future<Object> leader = executor.submit(() -> flights.execute("k", 1, () -> {
+            entered.countDown();
+            await(release);
+            throw new DeadlineExceededException();
+        }));
+        entered.await();
+        Future<Object> follower = executor.submit(() -> {
+            Deadline.start(5000);
+            try {
+                return flights.execute("k", 1, () -> "read again");
+            } finally {
+                Deadline.clear();
+            }
+        });
+        awaitShared(1);
+        release.countDown();
+        try {
+            leader.get(5, TimeUnit.SECONDS);
+            Assert.fail("the leader's own deadline passed");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof DeadlineExceededException);
+        }
+        Assert.assertEquals(follower.get(5, TimeUnit.SECONDS), "read again",
+                "a waiter with time left must not take the leader's timeout");
+        Assert.assertEquals(flights.getTotal().getExecuted(), 2);
+        Assert.assertEquals(flights.getTotal().getShared(), 0);
+    }
+
+    @Test
+    public void testWaiterGivesUpAtDeadline() throws Exception {
+        executor.submit(() -> flights.execute("k", 1, blockingRead("slow")));
+        entered.await();
+        Future<Object> follower = executor.submit(() -> {
+            Deadline.start(50);
+            try {
+                return flights.execute("k", 1, () -> "unused");
+            } finally {
+                Deadline.clear();
+            }
+        });
+        try {
+            follower.get(5, TimeUnit.SECONDS);
+            Assert.fail("the waiter must give up at its deadline");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof DeadlineExceededException);
+        }
+    }
+
+    @Test
+    public void testStatsBounded() {
+        flights.execute("a", 1, () -> 1);
+        flights.execute("a", 1, () -> 1);
+        flights.execute("b", 1, () -> 1);
+        flights.execute("c", 1, () -> 1);
+        Assert.assertEquals(flights.getStats().size(), 2, "keys beyond the max are not tracked");
+        Assert.assertEquals(flights.getStats().keySet().iterator().next(), "a", "busiest first");
+        Assert.assertEquals(flights.getTotal().getExecuted(), 4, "but still counted in the total");
+
+        flights.reset();
+        Assert.assertTrue(flights.getStats().isEmpty());
+        Assert.assertEquals(flights.getTotal().getExecuted(), 0);
+    }
+
+    private <V> Supplier<V> blockingRead(final V result) {
+        return () -> {
+            entered.countDown();
+            await(release);
+            return result;
+        };
+    }
+
+    private void awaitShared(long callers) throws InterruptedException {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (flights.getTotal().getShared() < callers && System.nanoTime() < end) {
+            Thread.sleep(1);
+        }
+        Assert.assertEquals(flights.getTotal().getShared(), callers);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -250,7 +250,11 @@ def list_course(hostPort, id):
 
 def query_courses(hostPort, query):
     """
-    Query a course. The query string is based on the query syntax for mongodb.
+    Query courses. The query is a filter expression such as:
+        price ge 100 and keywords has 'Java'
+        courseName eq 'Cloud Technologies' or startTime ge '2015-10-01'
+    Each alternative must include a condition on an indexed field
+    (courseName, price, startTime, maxCapacity or keywords).
 
     :param hostPort:
     :param query:
@@ -306,7 +310,7 @@ def main():
                     1.3 create-course
                     1.4 delete-course -i <course-id>
                     1.5 update-course -i <course-id> -f update_course.json
-                    1.6 query-courses -q <json query string>
+                    1.6 query-courses -q <filter expression>
 
     '''), formatter_class=argparse.RawDescriptionHelpFormatter)
     # Required args
@@ -320,7 +324,7 @@ def main():
     parser.add_argument('-v', '--version', action='version', version='%(prog)s 1.0')
 
     parser.add_argument('-i', '--id', help='Resource ID')
-    parser.add_argument('-q', '--query', help='Search query', default='{}')
+    parser.add_argument('-q', '--query', help="Course filter, e.g. \"price ge 100 and keywords has 'Java'\"", default='')
     parser.add_argument('-f', '--file', help='JSON payload file')
 
     parser.add_argument('-H', '--https', help='Use https, default=false', default='false')
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.service;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.validation.constraints.Min;
+
+/**
+ * Limits of the batch endpoint, see {@link edu.sjsu.cohort6.esp.service.rest.BatchResource}.
+ *
+ * batch:
+ *   maxOperations: 100     # larger batches are rejected with 400
+ *   threads: 8             # workers running independent operations of a batch in parallel
+ */
+public class BatchConfig {
+    @Min(1)
+    private int maxOperations = 100;
+
+    @Min(1)
+    private int threads = 8;
+
+    @JsonProperty
+    public int getMaxOperations() {
+        return maxOperations;
+    }
+
+    public void setMaxOperations(int maxOperations) {
+        this.maxOperations = maxOperations;
+    }
+
+    @JsonProperty
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.service;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.hibernate.validator.constraints.NotEmpty;
+
+import javax.validation.Valid;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compartments of API requests applied by {@link BulkheadFilter}. Each bounds the requests it matches to its own
+ * share of request threads and, as a DAO call holds one pooled connection at a time, of database connections.
+ *
+ * bulkheads:
+ *   enabled: true
+ *   compartments:              # first matching compartment wins, other requests are not bounded
+ *     - name: admin-reads
+ *       methods: [GET]
+ *       pattern: /api/v1\.0/(students|users)
+ *       maxConcurrent: 10      # threads, and connections, the compartment may hold
+ *       maxWaitMS: 100         # longest wait for one of them before answering 503
+ */
+public class BulkheadConfig {
+    private boolean enabled = true;
+
+    @Valid
+    @NotNull
+    private List<Compartment> compartments = new ArrayList<>();
+
+    @JsonProperty
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @JsonProperty
+    public List<Compartment> getCompartments() {
+        return compartments;
+    }
+
+    public void setCompartments(List<Compartment> compartments) {
+        this.compartments = compartments;
+    }
+
+    public static class Compartment {
+        @NotEmpty
+        private String name;
+
+        @NotNull
+        private List<String> methods = new ArrayList<>();
+
+        @NotEmpty
+        private String pattern;
+
+        @Min(1)
+        private int maxConcurrent = 10;
+
+        @Min(0)
+        private long maxWaitMS = 100;
+
+        @JsonProperty
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @return HTTP methods the compartment applies to, empty for any
+         */
+        @JsonProperty
+        public List<String> getMethods() {
+            return methods;
+        }
+
+        public void setMethods(List<String> methods) {
+            this.methods = methods;
+        }
+
+        /**
+         * @return regular expression the whole request path must match
+         */
+        @JsonProperty
+        public String getPattern() {
+            return pattern;
+        }
+
+        public void setPattern(String pattern) {
+            this.pattern = pattern;
+        }
+
+        @JsonProperty
+        public int getMaxConcurrent() {
+            return maxConcurrent;
+        }
+
+        public void setMaxConcurrent(int maxConcurrent) {
+            this.maxConcurrent = maxConcurrent;
+        }
+
+        @JsonProperty
+        public long getMaxWaitMS() {
+            return maxWaitMS;
+        }
+
+        public void setMaxWaitMS(long maxWaitMS) {
+            this.maxWaitMS = maxWaitMS;
+        }
+    }
+}
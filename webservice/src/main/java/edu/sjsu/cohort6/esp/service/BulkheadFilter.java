@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.service;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import javax.servlet.*;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Runs API requests in the compartments of a {@link BulkheadConfig}. A request takes a permit of the first
+ * compartment it matches for as long as it is served, waiting at most the compartment's max wait for one, and is
+ * answered with 503 and a Retry-After of one second if none frees up. A full compartment only holds back its own
+ * requests: a heavy admin report can use up the admin reads but never the threads or connections of enrollment
+ * writes.
+ *
+ * Metrics, under this class name and the compartment name: available, rejected, wait.
+ *
+ * @author rwatsh on 12/1/15.
+ */
+public class BulkheadFilter implements Filter {
+    private static final Logger log = Logger.getLogger(BulkheadFilter.class.getName());
+    private static final int SERVICE_UNAVAILABLE = 503;
+
+    private final List<Compartment> compartments = new ArrayList<>();
+
+    public BulkheadFilter(BulkheadConfig config, MetricRegistry metrics) {
+        for (BulkheadConfig.Compartment compartment : config.getCompartments()) {
+            compartments.add(new Compartment(compartment, metrics));
+        }
+    }
+
+    /**
+     * Logs a warning if the compartments may hold more connections than the pool has, in which case they no
+     * longer isolate each other's DAO calls.
+     *
+     * @param connectionsPerHost size of the database connection pool
+     */
+    public void checkConnectionQuotas(int connectionsPerHost) {
+        int total = 0;
+        for (Compartment compartment : compartments) {
+            total += compartment.maxConcurrent;
+        }
+        if (total > connectionsPerHost) {
+            log.warning("Bulkheads may hold " + total + " connections but the pool has " + connectionsPerHost
+                    + ", a full compartment can delay the others");
+        }
+    }
+
+    public void doFilter(ServletRequest request, ServletResponse response,
+                         FilterChain chain) throws IOException, ServletException {
+        HttpServletRequest req = (HttpServletRequest) request;
+        HttpServletResponse resp = (HttpServletResponse) response;
+        Compartment compartment = compartmentFor(req.getMethod(), req.getRequestURI());
+        if (compartment == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        boolean acquired;
+        Timer.Context waiting = compartment.wait.time();
+        try {
+            acquired = compartment.permits.tryAcquire(compartment.maxWaitNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        } finally {
+            waiting.stop();
+        }
+        if (!acquired) {
+            compartment.rejected.mark();
+            // a full compartment says nothing about the load of the others, keep it out of the adaptive limit
+            req.setAttribute(LoadSheddingFilter.SHED_ATTRIBUTE, compartment.name);
+            resp.setHeader("Retry-After", "1");
+            resp.sendError(SERVICE_UNAVAILABLE, "Service Unavailable");
+            return;
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            compartment.permits.release();
+        }
+    }
+
+    public void destroy() {}
+
+    public void init(FilterConfig arg0) throws ServletException {}
+
+    Compartment compartmentFor(String method, String path) {
+        for (Compartment compartment : compartments) {
+            if (compartment.matches(method, path)) {
+                return compartment;
+            }
+        }
+        return null;
+    }
+
+    static final class Compartment {
+        private final String name;
+        private final List<String> methods;
+        private final Pattern pattern;
+        private final int maxConcurrent;
+        private final long maxWaitNanos;
+        private final Semaphore permits;
+
+        private final Meter rejected;
+        private final Timer wait;
+
+        Compartment(BulkheadConfig.Compartment config, MetricRegistry metrics) {
+            this.name = config.getName();
+            this.methods = config.getMethods();
+            this.pattern = Pattern.compile(config.getPattern());
+            this.maxConcurrent = config.getMaxConcurrent();
+            this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(config.getMaxWaitMS());
+            this.permits = new Semaphore(maxConcurrent, true);
+
+            this.rejected = metrics.meter(MetricRegistry.name(BulkheadFilter.class, config.getName(), "rejected"));
+            this.wait = metrics.timer(MetricRegistry.name(BulkheadFilter.class, config.getName(), "wait"));
+            metrics.register(MetricRegistry.name(BulkheadFilter.class, config.getName(), "available"), new Gauge<Integer>() {
+                @Override
+                public Integer getValue() {
+                    return permits.availablePermits();
+                }
+            });
+        }
+
+        boolean matches(String method, String path) {
+            if (!methods.isEmpty()) {
+                boolean listed = false;
+                for (String m : methods) {
+                    listed |= m.equalsIgnoreCase(method);
+                }
+                if (!listed) {
+                    return false;
+                }
+            }
+            return pattern.matcher(path).matches();
+        }
+    }
+}
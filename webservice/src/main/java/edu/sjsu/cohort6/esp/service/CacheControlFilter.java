@@ -15,28 +15,143 @@
 package edu.sjsu.cohort6.esp.service;
 
 import javax.servlet.*;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
 import java.io.IOException;
-import java.util.Date;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
+ * Sets Cache-Control, Expires and Vary from the route rules of a {@link CachePolicyConfig}.
+ *
+ * Only successful GET and HEAD responses follow the rules. Other methods, and responses that turn out to be
+ * errors, are sent with no-store so that no cache keeps them. Expires is derived from max-age for HTTP/1.0 caches,
+ * and is left out for private or uncacheable responses.
+ *
  * @author rwatsh on 11/24/15.
  */
-public class CacheControlFilter implements Filter{
+public class CacheControlFilter implements Filter {
+    private static final String NO_STORE = "no-store";
+    private static final Pattern MAX_AGE = Pattern.compile("(?:^|[,\\s])max-age=(\\d+)");
+
+    private final List<Policy> policies = new ArrayList<>();
+    private final Policy defaultPolicy;
+
+    public CacheControlFilter(CachePolicyConfig config) {
+        for (CachePolicyConfig.Rule rule : config.getRules()) {
+            policies.add(new Policy(Pattern.compile(rule.getPattern()), rule.getCacheControl(), rule.getVary()));
+        }
+        defaultPolicy = new Policy(null, config.getDefaultCacheControl(), null);
+    }
 
     public void doFilter(ServletRequest request, ServletResponse response,
                          FilterChain chain) throws IOException, ServletException {
-
+        HttpServletRequest req = (HttpServletRequest) request;
         HttpServletResponse resp = (HttpServletResponse) response;
 
-        // Add whatever headers you want here
-        resp.setHeader("Cache-Control", "public, max-age=500000");
-        resp.setHeader("Expires", new Date().getTime()+500000 + "");
+        String method = req.getMethod();
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            resp.setHeader("Cache-Control", NO_STORE);
+            chain.doFilter(request, response);
+            return;
+        }
 
-        chain.doFilter(request, response);
+        Policy policy = policyFor(req.getRequestURI());
+        policy.apply(resp);
+        chain.doFilter(request, new ErrorsNotStored(resp));
+    }
+
+    Policy policyFor(String path) {
+        for (Policy policy : policies) {
+            if (policy.pattern.matcher(path).matches()) {
+                return policy;
+            }
+        }
+        return defaultPolicy;
     }
 
     public void destroy() {}
 
     public void init(FilterConfig arg0) throws ServletException {}
+
+    static final class Policy {
+        private final Pattern pattern;
+        private final String cacheControl;
+        private final String vary;
+        private final long maxAgeMillis;
+
+        Policy(Pattern pattern, String cacheControl, String vary) {
+            this.pattern = pattern;
+            this.cacheControl = cacheControl;
+            this.vary = vary;
+            this.maxAgeMillis = sharedMaxAgeMillis(cacheControl);
+        }
+
+        void apply(HttpServletResponse resp) {
+            resp.setHeader("Cache-Control", cacheControl);
+            if (maxAgeMillis >= 0) {
+                resp.setDateHeader("Expires", System.currentTimeMillis() + maxAgeMillis);
+            }
+            if (vary != null && !vary.isEmpty()) {
+                resp.addHeader("Vary", vary);
+            }
+        }
+
+        /**
+         * @return max-age in ms, or -1 if Expires must not be sent
+         */
+        private static long sharedMaxAgeMillis(String cacheControl) {
+            String directives = cacheControl.toLowerCase();
+            if (directives.contains("private") || directives.contains("no-store") || directives.contains("no-cache")) {
+                return -1;
+            }
+            Matcher m = MAX_AGE.matcher(directives);
+            return m.find() ? Long.parseLong(m.group(1)) * 1000 : -1;
+        }
+    }
+
+    /**
+     * Switches the response to no-store once the status says it is an error.
+     */
+    private static final class ErrorsNotStored extends HttpServletResponseWrapper {
+
+        ErrorsNotStored(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public void setStatus(int sc) {
+            notStoredIfError(sc);
+            super.setStatus(sc);
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public void setStatus(int sc, String sm) {
+            notStoredIfError(sc);
+            super.setStatus(sc, sm);
+        }
+
+        @Override
+        public void sendError(int sc) throws IOException {
+            notStoredIfError(sc);
+            super.sendError(sc);
+        }
+
+        @Override
+        public void sendError(int sc, String msg) throws IOException {
+            notStoredIfError(sc);
+            super.sendError(sc, msg);
+        }
+
+        private void notStoredIfError(int sc) {
+            if (sc >= 400 && !isCommitted()) {
+                setHeader("Cache-Control", NO_STORE);
+                setHeader("Expires", null);
+            }
+        }
+    }
 }
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.service;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.hibernate.validator.constraints.NotEmpty;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * HTTP cache policy per route, applied by {@link CacheControlFilter}.
+ *
+ * cachePolicy:
+ *   rules:                                  # first rule whose pattern matches the whole request path wins
+ *     - pattern: /api/v1\.0/courses(/.*)?
+ *       cacheControl: public, max-age=60
+ *       vary: Accept
+ *   defaultCacheControl: no-store           # paths no rule matches
+ *
+ * The policy only applies to successful GET and HEAD responses, everything else is sent with no-store.
+ */
+public class CachePolicyConfig {
+
+    @Valid
+    @NotNull
+    private List<Rule> rules = new ArrayList<>();
+
+    @NotEmpty
+    private String defaultCacheControl = "no-store";
+
+    @JsonProperty
+    public List<Rule> getRules() {
+        return rules;
+    }
+
+    public void setRules(List<Rule> rules) {
+        this.rules = rules;
+    }
+
+    @JsonProperty
+    public String getDefaultCacheControl() {
+        return defaultCacheControl;
+    }
+
+    public void setDefaultCacheControl(String defaultCacheControl) {
+        this.defaultCacheControl = defaultCacheControl;
+    }
+
+    public static class Rule {
+        @NotEmpty
+        private String pattern;
+
+        @NotEmpty
+        private String cacheControl;
+
+        private String vary;
+
+        @JsonProperty
+        public String getPattern() {
+            return pattern;
+        }
+
+        public void setPattern(String pattern) {
+            this.pattern = pattern;
+        }
+
+        @JsonProperty
+        public String getCacheControl() {
+            return cacheControl;
+        }
+
+        public void setCacheControl(String cacheControl) {
+            this.cacheControl = cacheControl;
+        }
+
+        /**
+         * @return request headers the response varies by, added to the Vary header; may be null
+         */
+        @JsonProperty
+        public String getVary() {
+            return vary;
+        }
+
+        public void setVary(String vary) {
+            this.vary = vary;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.service;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compression of API responses, applied by {@link CompressionFilter}.
+ *
+ * compression:
+ *   enabled: true
+ *   minimumSize: 1024          # smaller bodies are sent as they are
+ *   algorithm: GZIP            # GZIP or DEFLATE
+ *   level: 6                   # 1 (fastest) to 9 (smallest), -1 for the zlib default
+ *   mimeTypes:                 # compressed content types, parameters ignored
+ *     - application/json
+ */
+public class CompressionConfig {
+
+    /**
+     * Content codings the filter can produce.
+     */
+    public enum Algorithm {
+        GZIP("gzip"),
+        DEFLATE("deflate");
+
+        private final String coding;
+
+        Algorithm(String coding) {
+            this.coding = coding;
+        }
+
+        /**
+         * @return the Content-Encoding token
+         */
+        public String getCoding() {
+            return coding;
+        }
+    }
+
+    private boolean enabled = true;
+
+    @Min(0)
+    private int minimumSize = 1024;
+
+    @NotNull
+    private Algorithm algorithm = Algorithm.GZIP;
+
+    @Min(-1)
+    @Max(9)
+    private int level = 6;
+
+    @NotNull
+    private List<String> mimeTypes = Arrays.asList("application/json", "text/plain", "text/html");
+
+    @JsonProperty
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @JsonProperty
+    public int getMinimumSize() {
+        return minimumSize;
+    }
+
+    public void setMinimumSize(int minimumSize) {
+        this.minimumSize = minimumSize;
+    }
+
+    @JsonProperty
+    public Algorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    public void setAlgorithm(Algorithm algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    @JsonProperty
+    public int getLevel() {
+        return level;
+    }
+
+    public void setLevel(int level) {
+        this.level = level;
+    }
+
+    @JsonProperty
+    public List<String> getMimeTypes() {
+        return mimeTypes;
+    }
+
+    public void setMimeTypes(List<String> mimeTypes) {
+        this.mimeTypes = mimeTypes;
+    }
+}
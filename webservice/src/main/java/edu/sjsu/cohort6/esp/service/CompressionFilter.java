@@ -0,0 +1,431 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.service;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import edu.sjsu.cohort6.esp.service.rest.EndpointUtils;
+
+import javax.servlet.*;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses API responses with the algorithm and level of a {@link CompressionConfig}.
+ *
+ * The body is held back until it reaches the minimum size, so small responses go out as they are (with their
+ * Content-Length) and only larger ones pay for compression. A response is compressed when the client accepts the
+ * coding, the status is 2xx, the content type is listed and no Content-Encoding is set yet (bodies the response
+ * cache already gzipped are left alone). Compressed bodies are flushed with the stream so that streamed lists keep
+ * streaming.
+ *
+ * Metrics, under this class name:
+ *   ratio        uncompressed / compressed size, in percent (400 means a quarter of the size)
+ *   compress     time spent compressing a response, writes to the connection excluded
+ *   small        responses under the minimum size, sent uncompressed
+ *
+ * @author rwatsh on 11/26/15.
+ */
+public class CompressionFilter implements Filter {
+    private static final String ACCEPT_ENCODING = "Accept-Encoding";
+    private static final String CONTENT_ENCODING = "Content-Encoding";
+    private static final String CONTENT_LENGTH = "Content-Length";
+
+    private final CompressionConfig.Algorithm algorithm;
+    private final int level;
+    private final int minimumSize;
+    private final Set<String> mimeTypes = new HashSet<>();
+
+    private final Histogram ratio;
+    private final Timer compressTime;
+    private final Meter small;
+
+    public CompressionFilter(CompressionConfig config, MetricRegistry metrics) {
+        this.algorithm = config.getAlgorithm();
+        this.level = config.getLevel();
+        this.minimumSize = config.getMinimumSize();
+        for (String mimeType : config.getMimeTypes()) {
+            mimeTypes.add(mimeType.trim().toLowerCase(Locale.ENGLISH));
+        }
+        this.ratio = metrics.histogram(MetricRegistry.name(CompressionFilter.class, "ratio"));
+        this.compressTime = metrics.timer(MetricRegistry.name(CompressionFilter.class, "compress"));
+        this.small = metrics.meter(MetricRegistry.name(CompressionFilter.class, "small"));
+    }
+
+    public void doFilter(ServletRequest request, ServletResponse response,
+                         FilterChain chain) throws IOException, ServletException {
+        HttpServletRequest req = (HttpServletRequest) request;
+        HttpServletResponse resp = (HttpServletResponse) response;
+
+        resp.addHeader("Vary", ACCEPT_ENCODING);
+        if ("HEAD".equals(req.getMethod())
+                || !EndpointUtils.acceptsEncoding(req.getHeader(ACCEPT_ENCODING), algorithm.getCoding())) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        CompressingResponse compressing = new CompressingResponse(resp);
+        chain.doFilter(request, compressing);
+        compressing.finish();
+    }
+
+    public void destroy() {}
+
+    public void init(FilterConfig arg0) throws ServletException {}
+
+    private boolean compressible(HttpServletResponse resp) {
+        int status = resp.getStatus();
+        if (status < 200 || status >= 300 || status == HttpServletResponse.SC_NO_CONTENT
+                || resp.getHeader(CONTENT_ENCODING) != null) {
+            return false;
+        }
+        String contentType = resp.getContentType();
+        if (contentType == null) {
+            return false;
+        }
+        int params = contentType.indexOf(';');
+        String mimeType = params < 0 ? contentType : contentType.substring(0, params);
+        return mimeTypes.contains(mimeType.trim().toLowerCase(Locale.ENGLISH));
+    }
+
+    private OutputStream compressor(OutputStream out) throws IOException {
+        switch (algorithm) {
+            case DEFLATE:
+                return new DeflaterOutputStream(out, new Deflater(level), 8192, true) {
+                    @Override
+                    public void close() throws IOException {
+                        super.close();
+                        def.end();
+                    }
+                };
+            case GZIP:
+            default:
+                return new GZIPOutputStream(out, 8192, true) {
+                    {
+                        def.setLevel(level);
+                    }
+                };
+        }
+    }
+
+    /**
+     * Holds back Content-Length, which is only forwarded if the body is sent uncompressed.
+     */
+    private final class CompressingResponse extends HttpServletResponseWrapper {
+        private long contentLength = -1;
+        private CompressingStream stream;
+        private PrintWriter writer;
+
+        CompressingResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (writer != null) {
+                throw new IllegalStateException("getWriter() has already been called");
+            }
+            if (stream == null) {
+                stream = new CompressingStream(this);
+            }
+            return stream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                if (stream != null) {
+                    throw new IllegalStateException("getOutputStream() has already been called");
+                }
+                stream = new CompressingStream(this);
+                writer = new PrintWriter(new OutputStreamWriter(stream, getCharacterEncoding()));
+            }
+            return writer;
+        }
+
+        @Override
+        public void setContentLength(int len) {
+            contentLength = len;
+        }
+
+        @Override
+        public void setContentLengthLong(long len) {
+            contentLength = len;
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            if (CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                contentLength = value == null ? -1 : Long.parseLong(value.trim());
+            } else {
+                super.setHeader(name, value);
+            }
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            if (CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                setHeader(name, value);
+            } else {
+                super.addHeader(name, value);
+            }
+        }
+
+        @Override
+        public void setIntHeader(String name, int value) {
+            if (CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                contentLength = value;
+            } else {
+                super.setIntHeader(name, value);
+            }
+        }
+
+        @Override
+        public void addIntHeader(String name, int value) {
+            if (CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                contentLength = value;
+            } else {
+                super.addIntHeader(name, value);
+            }
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            if (stream == null || stream.decided()) {
+                if (stream != null) {
+                    stream.flush();
+                }
+                super.flushBuffer();
+            }
+        }
+
+        @Override
+        public void resetBuffer() {
+            if (stream != null && !stream.decided()) {
+                stream.count = 0;
+            }
+            super.resetBuffer();
+        }
+
+        @Override
+        public void reset() {
+            resetBuffer();
+            contentLength = -1;
+            super.reset();
+        }
+
+        void finish() throws IOException {
+            if (writer != null) {
+                writer.close();
+            } else if (stream != null) {
+                stream.close();
+            } else if (contentLength >= 0) {
+                super.setContentLengthLong(contentLength);
+            }
+        }
+    }
+
+    /**
+     * Buffers up to the minimum size, then either compresses or passes the body through.
+     */
+    private final class CompressingStream extends ServletOutputStream {
+        private final CompressingResponse response;
+        private byte[] buffer = new byte[Math.max(minimumSize, 1)];
+        private int count;
+
+        private OutputStream out;
+        private ConnectionStream connection;
+        private long uncompressed;
+        private long compressNanos;
+        private boolean closed;
+
+        CompressingStream(CompressingResponse response) {
+            this.response = response;
+        }
+
+        boolean decided() {
+            return out != null;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            if (out == null) {
+                if (count + len < buffer.length) {
+                    System.arraycopy(b, off, buffer, count, len);
+                    count += len;
+                    return;
+                }
+                decide();
+            }
+            send(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            // until the size is known to be worth compressing, flushing would commit an uncompressed response
+            if (out != null) {
+                long start = System.nanoTime();
+                long io = connection == null ? 0 : connection.nanos;
+                out.flush();
+                if (connection != null) {
+                    compressNanos += System.nanoTime() - start - (connection.nanos - io);
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (out == null) {
+                small.mark();
+                HttpServletResponse resp = (HttpServletResponse) response.getResponse();
+                resp.setContentLengthLong(response.contentLength >= 0 ? response.contentLength : count);
+                resp.getOutputStream().write(buffer, 0, count);
+                buffer = null;
+                return;
+            }
+            if (connection == null) {
+                out.close();
+                return;
+            }
+            long start = System.nanoTime();
+            long io = connection.nanos;
+            out.close();
+            compressNanos += System.nanoTime() - start - (connection.nanos - io);
+            compressTime.update(compressNanos, TimeUnit.NANOSECONDS);
+            if (connection.bytes > 0) {
+                ratio.update(uncompressed * 100 / connection.bytes);
+            }
+        }
+
+        @Override
+        public boolean isReady() {
+            try {
+                return out == null || response.getResponse().getOutputStream().isReady();
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            try {
+                response.getResponse().getOutputStream().setWriteListener(writeListener);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void decide() throws IOException {
+            HttpServletResponse resp = (HttpServletResponse) response.getResponse();
+            if (compressible(resp)) {
+                resp.setHeader(CONTENT_ENCODING, algorithm.getCoding());
+                connection = new ConnectionStream(resp.getOutputStream());
+                out = compressor(connection);
+            } else {
+                if (response.contentLength >= 0) {
+                    resp.setContentLengthLong(response.contentLength);
+                }
+                out = resp.getOutputStream();
+            }
+            byte[] buffered = buffer;
+            buffer = null;
+            send(buffered, 0, count);
+        }
+
+        private void send(byte[] b, int off, int len) throws IOException {
+            if (connection == null) {
+                out.write(b, off, len);
+                return;
+            }
+            long start = System.nanoTime();
+            long io = connection.nanos;
+            out.write(b, off, len);
+            compressNanos += System.nanoTime() - start - (connection.nanos - io);
+            uncompressed += len;
+        }
+    }
+
+    /**
+     * The connection side of the compressor, counting the bytes sent and the time spent sending them.
+     */
+    private static final class ConnectionStream extends OutputStream {
+        private final OutputStream out;
+        private long bytes;
+        private long nanos;
+
+        ConnectionStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            long start = System.nanoTime();
+            out.write(b);
+            nanos += System.nanoTime() - start;
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            long start = System.nanoTime();
+            out.write(b, off, len);
+            nanos += System.nanoTime() - start;
+            bytes += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            long start = System.nanoTime();
+            out.flush();
+            nanos += System.nanoTime() - start;
+        }
+
+        @Override
+        public void close() throws IOException {
+            long start = System.nanoTime();
+            out.close();
+            nanos += System.nanoTime() - start;
+        }
+    }
+}
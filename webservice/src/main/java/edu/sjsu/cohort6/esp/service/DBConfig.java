@@ -14,6 +14,8 @@
 
 package edu.sjsu.cohort6.esp.service;
 
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.inject.Guice;
@@ -22,17 +24,34 @@ import com.google.inject.Module;
 import edu.sjsu.cohort6.esp.dao.DBClient;
 import edu.sjsu.cohort6.esp.dao.DBFactory;
 import edu.sjsu.cohort6.esp.dao.DatabaseModule;
+import edu.sjsu.cohort6.esp.dao.mongodb.CourseDAO;
+import edu.sjsu.cohort6.esp.dao.mongodb.MongoDBClient;
+import edu.sjsu.cohort6.esp.dao.mongodb.SingleFlight;
+import edu.sjsu.cohort6.esp.dao.mongodb.codec.CodecType;
+import edu.sjsu.cohort6.esp.service.tasks.CoalescedReadsTask;
+import edu.sjsu.cohort6.esp.service.tasks.IndexAdvisorTask;
+import edu.sjsu.cohort6.esp.service.tasks.MembershipFilterTask;
 import io.dropwizard.lifecycle.Managed;
 import io.dropwizard.setup.Environment;
 import org.hibernate.validator.constraints.NotEmpty;
 
+import javax.validation.Valid;
 import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Created by rwatsh on 9/17/15.
  */
 public class DBConfig {
+    private static final Logger log = Logger.getLogger(DBConfig.class.getName());
+
     @Inject
     DBFactory dbFactory;
 
@@ -45,10 +64,60 @@ public class DBConfig {
 
     @NotEmpty
     private String dbName = "student_enrollment_db";
+
+    @Valid
+    @NotNull
+    private QueryGuardConfig queryGuard = new QueryGuardConfig();
+
+    /**
+     * Drop indexes that exist in the db but are not declared on an entity. Off by default, in which case they
+     * are only logged at startup.
+     */
+    private boolean dropUndeclaredIndexes = false;
+
+    /**
+     * Size of the connection pool, shared out between the bulkheads.
+     */
+    @Min(1)
+    private int connectionsPerHost = 100;
+
+    /**
+     * Longest time a DAO call waits for a pooled connection before failing.
+     */
+    @Min(0)
+    private int maxWaitTimeMS = 2000;
+
+    /**
+     * Socket read timeout, 0 for none. Reads are normally bounded by the request deadline through maxTimeMS.
+     */
+    @Min(0)
+    private int socketTimeoutMS = 0;
+
+    /**
+     * Codec used by each DAO, keyed by collection name. Collections not listed use Morphia's mapper.
+     */
+    @NotNull
+    private Map<String, CodecType> codecs = new HashMap<>();
+
+    /**
+     * Interval between rebuilds of the filters of course ids and course names, which picks up the writes of other
+     * instances. A filter not rebuilt for twice this long is no longer trusted.
+     */
+    @Min(1)
+    private int filterRebuildSeconds = 300;
+
     private DBClient dbClient;
 
+    /**
+     * Gets the client, creating it on first use so that it is built from the loaded configuration.
+     *
+     * @return db client
+     */
     @JsonIgnore
-    public DBClient getDbClient() {
+    public synchronized DBClient getDbClient() {
+        if (dbClient == null) {
+            dbClient = dbFactory.create(server, port, dbName, connectionsPerHost, maxWaitTimeMS, socketTimeoutMS);
+        }
         return dbClient;
     }
 
@@ -79,7 +148,93 @@ public class DBConfig {
         this.dbName = dbName;
     }
 
+    @JsonProperty
+    public QueryGuardConfig getQueryGuard() {
+        return queryGuard;
+    }
+
+    public void setQueryGuard(QueryGuardConfig queryGuard) {
+        this.queryGuard = queryGuard;
+    }
+
+    @JsonProperty
+    public boolean isDropUndeclaredIndexes() {
+        return dropUndeclaredIndexes;
+    }
+
+    public void setDropUndeclaredIndexes(boolean dropUndeclaredIndexes) {
+        this.dropUndeclaredIndexes = dropUndeclaredIndexes;
+    }
+
+    @JsonProperty
+    public int getConnectionsPerHost() {
+        return connectionsPerHost;
+    }
+
+    public void setConnectionsPerHost(int connectionsPerHost) {
+        this.connectionsPerHost = connectionsPerHost;
+    }
+
+    @JsonProperty
+    public int getMaxWaitTimeMS() {
+        return maxWaitTimeMS;
+    }
+
+    public void setMaxWaitTimeMS(int maxWaitTimeMS) {
+        this.maxWaitTimeMS = maxWaitTimeMS;
+    }
+
+    @JsonProperty
+    public int getSocketTimeoutMS() {
+        return socketTimeoutMS;
+    }
+
+    public void setSocketTimeoutMS(int socketTimeoutMS) {
+        this.socketTimeoutMS = socketTimeoutMS;
+    }
+
+    @JsonProperty
+    public Map<String, CodecType> getCodecs() {
+        return codecs;
+    }
+
+    public void setCodecs(Map<String, CodecType> codecs) {
+        this.codecs = codecs;
+    }
+
+    @JsonProperty
+    public int getFilterRebuildSeconds() {
+        return filterRebuildSeconds;
+    }
+
+    public void setFilterRebuildSeconds(int filterRebuildSeconds) {
+        this.filterRebuildSeconds = filterRebuildSeconds;
+    }
+
     public DBClient build(Environment environment) {
+        final DBClient dbClient = getDbClient();
+        if (dbClient instanceof MongoDBClient) {
+            MongoDBClient mongoDBClient = (MongoDBClient) dbClient;
+            queryGuard.configure(mongoDBClient.getQueryGuard());
+            mongoDBClient.getIndexManager().setDropUndeclared(dropUndeclaredIndexes);
+            mongoDBClient.useCodecs(codecs);
+            environment.admin().addTask(new IndexAdvisorTask(mongoDBClient));
+            final SingleFlight<String> courseReads = ((CourseDAO) mongoDBClient.getDAO(CourseDAO.class)).getReads();
+            environment.admin().addTask(new CoalescedReadsTask(courseReads));
+            environment.admin().addTask(new MembershipFilterTask(mongoDBClient));
+            environment.metrics().register(MetricRegistry.name(CourseDAO.class, "reads", "executed"), new Gauge<Long>() {
+                @Override
+                public Long getValue() {
+                    return courseReads.getTotal().getExecuted();
+                }
+            });
+            environment.metrics().register(MetricRegistry.name(CourseDAO.class, "reads", "shared"), new Gauge<Long>() {
+                @Override
+                public Long getValue() {
+                    return courseReads.getTotal().getShared();
+                }
+            });
+        }
         environment.lifecycle().manage(new Managed() {
             @Override
             public void start() throws Exception {
@@ -91,12 +246,44 @@ public class DBConfig {
                 dbClient.close();
             }
         });
+        if (dbClient instanceof MongoDBClient) {
+            scheduleFilterRebuilds(environment, (MongoDBClient) dbClient);
+        }
         return dbClient;
     }
 
+    /**
+     * Rebuilds the membership filters once the db is in use and then every filterRebuildSeconds, off the request
+     * threads. A failed rebuild is logged and retried at the next interval.
+     */
+    private void scheduleFilterRebuilds(Environment environment, final MongoDBClient mongoDBClient) {
+        mongoDBClient.setFilterMaxAge(2L * filterRebuildSeconds, TimeUnit.SECONDS);
+        final ScheduledExecutorService rebuilds = environment.lifecycle()
+                .scheduledExecutorService("membership-filters-%d")
+                .build();
+        environment.lifecycle().manage(new Managed() {
+            @Override
+            public void start() throws Exception {
+                rebuilds.scheduleWithFixedDelay(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            mongoDBClient.rebuildFilters();
+                        } catch (RuntimeException e) {
+                            log.log(Level.WARNING, "Failed to rebuild the membership filters", e);
+                        }
+                    }
+                }, 0, filterRebuildSeconds, TimeUnit.SECONDS);
+            }
+
+            @Override
+            public void stop() throws Exception {
+            }
+        });
+    }
+
     public DBConfig() {
         Module module = new DatabaseModule();
         Guice.createInjector(module).injectMembers(this);
-        dbClient = dbFactory.create(server, port, dbName);
     }
 }
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.service;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Time budget of an API request. Clients may ask for a shorter one with the X-Request-Timeout header.
+ *
+ * deadlines:
+ *   defaultTimeoutMS: 10000     # 0 disables deadlines
+ *   routes:                     # per endpoint overrides, keyed by the first path segment under /api/v1
+ *     courses: 5000
+ */
+public class DeadlineConfig {
+    @Min(0)
+    private long defaultTimeoutMS = 10000;
+
+    @NotNull
+    private Map<String, Long> routes = new HashMap<>();
+
+    @JsonProperty
+    public long getDefaultTimeoutMS() {
+        return defaultTimeoutMS;
+    }
+
+    public void setDefaultTimeoutMS(long defaultTimeoutMS) {
+        this.defaultTimeoutMS = defaultTimeoutMS;
+    }
+
+    @JsonProperty
+    public Map<String, Long> getRoutes() {
+        return routes;
+    }
+
+    public void setRoutes(Map<String, Long> routes) {
+        this.routes = routes;
+    }
+
+    /**
+     * @param route first path segment of the request
+     * @return configured timeout for the route, 0 for none
+     */
+    public long timeoutFor(String route) {
+        Long timeout = routes.get(route);
+        return timeout != null ? timeout : defaultTimeoutMS;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.service;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import edu.sjsu.cohort6.esp.dao.DBClient;
+import edu.sjsu.cohort6.esp.dao.mongodb.MongoDBClient;
+import edu.sjsu.cohort6.esp.service.rest.IdempotencyFilter;
+
+import javax.validation.constraints.Min;
+
+/**
+ * Replay of requests sent with an Idempotency-Key header, see {@link IdempotencyFilter}.
+ *
+ * idempotency:
+ *   enabled: true
+ *   retainSeconds: 86400      # how long a response is kept for retries
+ *   pendingSeconds: 60        # how long the key of a request that never finished stays locked
+ *   cacheSize: 10000          # responses also kept in memory
+ *   maxBodyBytes: 1048576     # largest request body accepted with a key
+ */
+public class IdempotencyConfig {
+    private boolean enabled = true;
+
+    @Min(1)
+    private long retainSeconds = 24 * 60 * 60;
+
+    @Min(1)
+    private long pendingSeconds = 60;
+
+    @Min(0)
+    private int cacheSize = 10000;
+
+    @Min(1)
+    private int maxBodyBytes = 1024 * 1024;
+
+    @JsonProperty
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @JsonProperty
+    public long getRetainSeconds() {
+        return retainSeconds;
+    }
+
+    public void setRetainSeconds(long retainSeconds) {
+        this.retainSeconds = retainSeconds;
+    }
+
+    @JsonProperty
+    public long getPendingSeconds() {
+        return pendingSeconds;
+    }
+
+    public void setPendingSeconds(long pendingSeconds) {
+        this.pendingSeconds = pendingSeconds;
+    }
+
+    @JsonProperty
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    public void setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    @JsonProperty
+    public int getMaxBodyBytes() {
+        return maxBodyBytes;
+    }
+
+    public void setMaxBodyBytes(int maxBodyBytes) {
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    /**
+     * @param client    database client, whose store keeps the responses
+     * @return the filter, or null if idempotency keys are disabled
+     */
+    public IdempotencyFilter build(DBClient client) {
+        if (!enabled) {
+            return null;
+        }
+        return new IdempotencyFilter(((MongoDBClient) client).getIdempotencyStore(),
+                retainSeconds * 1000, pendingSeconds * 1000, cacheSize, maxBodyBytes);
+    }
+}
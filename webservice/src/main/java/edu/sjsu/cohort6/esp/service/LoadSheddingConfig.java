@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.service;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.hibernate.validator.constraints.NotEmpty;
+
+import javax.validation.Valid;
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Adaptive concurrency limit of API requests, applied by {@link LoadSheddingFilter}.
+ *
+ * loadShedding:
+ *   enabled: true
+ *   initialLimit: 20           # concurrent requests admitted at startup
+ *   minLimit: 4
+ *   maxLimit: 200
+ *   latencyThresholdMS: 250    # slower NORMAL and CRITICAL requests shrink the limit, faster ones grow it
+ *   backoffRatio: 0.9          # factor applied to the limit on a slow or failed request
+ *   maxQueueDepth: 50          # Jetty queue length beyond which LOW requests are shed, 0 for no check
+ *   priorities:                # first matching rule wins, other requests are NORMAL
+ *     - method: GET
+ *       pattern: /api/v1\.0/courses(/.*)?
+ *       priority: LOW
+ */
+public class LoadSheddingConfig {
+
+    /**
+     * Share of the concurrency limit each priority may use, so lower priorities are shed first.
+     */
+    public enum Priority {
+        LOW(0.5),
+        NORMAL(0.8),
+        CRITICAL(1.0);
+
+        private final double share;
+
+        Priority(double share) {
+            this.share = share;
+        }
+
+        public double getShare() {
+            return share;
+        }
+    }
+
+    private boolean enabled = true;
+
+    @Min(1)
+    private int initialLimit = 20;
+
+    @Min(1)
+    private int minLimit = 4;
+
+    @Min(1)
+    private int maxLimit = 200;
+
+    @Min(1)
+    private long latencyThresholdMS = 250;
+
+    @DecimalMin("0.1")
+    @DecimalMax("0.99")
+    private double backoffRatio = 0.9;
+
+    @Min(0)
+    private int maxQueueDepth = 50;
+
+    @Valid
+    @NotNull
+    private List<Rule> priorities = new ArrayList<>();
+
+    @JsonProperty
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @JsonProperty
+    public int getInitialLimit() {
+        return initialLimit;
+    }
+
+    public void setInitialLimit(int initialLimit) {
+        this.initialLimit = initialLimit;
+    }
+
+    @JsonProperty
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    public void setMinLimit(int minLimit) {
+        this.minLimit = minLimit;
+    }
+
+    @JsonProperty
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    public void setMaxLimit(int maxLimit) {
+        this.maxLimit = maxLimit;
+    }
+
+    @JsonProperty
+    public long getLatencyThresholdMS() {
+        return latencyThresholdMS;
+    }
+
+    public void setLatencyThresholdMS(long latencyThresholdMS) {
+        this.latencyThresholdMS = latencyThresholdMS;
+    }
+
+    @JsonProperty
+    public double getBackoffRatio() {
+        return backoffRatio;
+    }
+
+    public void setBackoffRatio(double backoffRatio) {
+        this.backoffRatio = backoffRatio;
+    }
+
+    @JsonProperty
+    public int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    public void setMaxQueueDepth(int maxQueueDepth) {
+        this.maxQueueDepth = maxQueueDepth;
+    }
+
+    @JsonProperty
+    public List<Rule> getPriorities() {
+        return priorities;
+    }
+
+    public void setPriorities(List<Rule> priorities) {
+        this.priorities = priorities;
+    }
+
+    public static class Rule {
+        private String method;
+
+        @NotEmpty
+        private String pattern;
+
+        @NotNull
+        private Priority priority = Priority.NORMAL;
+
+        /**
+         * @return HTTP method the rule applies to, null for any
+         */
+        @JsonProperty
+        public String getMethod() {
+            return method;
+        }
+
+        public void setMethod(String method) {
+            this.method = method;
+        }
+
+        /**
+         * @return regular expression the whole request path must match
+         */
+        @JsonProperty
+        public String getPattern() {
+            return pattern;
+        }
+
+        public void setPattern(String pattern) {
+            this.pattern = pattern;
+        }
+
+        @JsonProperty
+        public Priority getPriority() {
+            return priority;
+        }
+
+        public void setPriority(Priority priority) {
+            this.priority = priority;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.service;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+import javax.servlet.*;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * Bounds the number of API requests in flight by a limit that adapts to how fast they are served
+ * (additive increase, multiplicative decrease). A request finished within the latency threshold grows the limit
+ * by 1 / limit, so by about one per limit's worth of requests; a slower or failed one, which is mostly a slow
+ * or timed out DAO call, multiplies it by the backoff ratio, at most once per round of requests in flight.
+ *
+ * Only NORMAL and CRITICAL requests move the limit. LOW ones, such as full lists, can be slow for their size
+ * alone and are the first to be shed anyway. A 503 that a filter further down marks with {@link #SHED_ATTRIBUTE},
+ * such as a full bulkhead compartment, is not a failure either: it only says that compartment is busy.
+ *
+ * Each request gets the priority of the first matching rule of the {@link LoadSheddingConfig} and is admitted
+ * while fewer requests than its share of the limit are in flight, so as the limit shrinks low priority requests
+ * (catalog browsing, admin lists) are shed first and enrollment writes last. While the Jetty queue is longer than
+ * the max queue depth low priority requests are shed regardless of the limit. Shed requests are answered with 503
+ * and a Retry-After of one second.
+ *
+ * Metrics, under this class name: limit, in-flight, admitted, shed-low, shed-normal, shed-critical.
+ *
+ * @author rwatsh on 12/1/15.
+ */
+public class LoadSheddingFilter implements Filter {
+    /**
+     * Request attribute set by a filter that sheds a request, so that its 503 is not taken for a failure.
+     */
+    public static final String SHED_ATTRIBUTE = LoadSheddingFilter.class.getName() + ".shed";
+    private static final int SERVICE_UNAVAILABLE = 503;
+
+    private final Limiter limiter;
+    private final List<Rule> rules = new ArrayList<>();
+    private final int maxQueueDepth;
+    private volatile QueuedThreadPool threadPool;
+
+    private final Meter admitted;
+    private final Map<LoadSheddingConfig.Priority, Meter> shed = new EnumMap<>(LoadSheddingConfig.Priority.class);
+
+    public LoadSheddingFilter(LoadSheddingConfig config, MetricRegistry metrics) {
+        this.limiter = new Limiter(config);
+        for (LoadSheddingConfig.Rule rule : config.getPriorities()) {
+            rules.add(new Rule(rule));
+        }
+        this.maxQueueDepth = config.getMaxQueueDepth();
+
+        this.admitted = metrics.meter(MetricRegistry.name(LoadSheddingFilter.class, "admitted"));
+        for (LoadSheddingConfig.Priority priority : LoadSheddingConfig.Priority.values()) {
+            shed.put(priority, metrics.meter(MetricRegistry.name(LoadSheddingFilter.class,
+                    "shed-" + priority.name().toLowerCase())));
+        }
+        metrics.register(MetricRegistry.name(LoadSheddingFilter.class, "limit"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return (int) limiter.getLimit();
+            }
+        });
+        metrics.register(MetricRegistry.name(LoadSheddingFilter.class, "in-flight"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return limiter.getInFlight();
+            }
+        });
+    }
+
+    /**
+     * Sets the pool whose queue length is checked before admitting low priority requests.
+     */
+    public void setThreadPool(ThreadPool threadPool) {
+        this.threadPool = threadPool instanceof QueuedThreadPool ? (QueuedThreadPool) threadPool : null;
+    }
+
+    public void doFilter(ServletRequest request, ServletResponse response,
+                         FilterChain chain) throws IOException, ServletException {
+        HttpServletRequest req = (HttpServletRequest) request;
+        HttpServletResponse resp = (HttpServletResponse) response;
+        LoadSheddingConfig.Priority priority = priorityFor(req.getMethod(), req.getRequestURI());
+
+        QueuedThreadPool pool = threadPool;
+        boolean queued = priority == LoadSheddingConfig.Priority.LOW && maxQueueDepth > 0
+                && pool != null && pool.getQueueSize() > maxQueueDepth;
+        if (queued || !limiter.tryAcquire(priority.getShare())) {
+            shed.get(priority).mark();
+            req.setAttribute(SHED_ATTRIBUTE, priority.name());
+            resp.setHeader("Retry-After", "1");
+            resp.sendError(SERVICE_UNAVAILABLE, "Service Unavailable");
+            return;
+        }
+        admitted.mark();
+
+        if (priority == LoadSheddingConfig.Priority.LOW) {
+            try {
+                chain.doFilter(request, response);
+            } finally {
+                limiter.release();
+            }
+            return;
+        }
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            chain.doFilter(request, response);
+            failed = resp.getStatus() == SERVICE_UNAVAILABLE && req.getAttribute(SHED_ATTRIBUTE) == null;
+        } finally {
+            limiter.release(start, System.nanoTime(), failed);
+        }
+    }
+
+    public void destroy() {}
+
+    public void init(FilterConfig arg0) throws ServletException {}
+
+    LoadSheddingConfig.Priority priorityFor(String method, String path) {
+        for (Rule rule : rules) {
+            if ((rule.method == null || rule.method.equalsIgnoreCase(method)) && rule.pattern.matcher(path).matches()) {
+                return rule.priority;
+            }
+        }
+        return LoadSheddingConfig.Priority.NORMAL;
+    }
+
+    static final class Rule {
+        private final String method;
+        private final Pattern pattern;
+        private final LoadSheddingConfig.Priority priority;
+
+        Rule(LoadSheddingConfig.Rule rule) {
+            this.method = rule.getMethod();
+            this.pattern = Pattern.compile(rule.getPattern());
+            this.priority = rule.getPriority();
+        }
+    }
+
+    /**
+     * The adaptive limit. Admission is a lock-free compare and set on the in-flight count; the limit itself is
+     * only updated as requests finish, under the limiter's lock.
+     */
+    public static final class Limiter {
+        private final double minLimit;
+        private final double maxLimit;
+        private final double backoffRatio;
+        private final long thresholdNanos;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private volatile double limit;
+        private long lastDecrease;
+
+        public Limiter(LoadSheddingConfig config) {
+            this(config, System.nanoTime());
+        }
+
+        /**
+         * @param now   time the limiter starts at, in ns; requests started before it do not decrease the limit
+         */
+        public Limiter(LoadSheddingConfig config, long now) {
+            this.lastDecrease = now;
+            this.minLimit = config.getMinLimit();
+            this.maxLimit = Math.max(config.getMinLimit(), config.getMaxLimit());
+            this.backoffRatio = config.getBackoffRatio();
+            this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(config.getLatencyThresholdMS());
+            this.limit = Math.min(maxLimit, Math.max(minLimit, config.getInitialLimit()));
+        }
+
+        /**
+         * @param share fraction of the limit the request may use
+         * @return true if the request was admitted, in which case it must be released
+         */
+        public boolean tryAcquire(double share) {
+            int allowed = Math.max(1, (int) (limit * share));
+            while (true) {
+                int current = inFlight.get();
+                if (current >= allowed) {
+                    return false;
+                }
+                if (inFlight.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Releases a request that is not measured, leaving the limit as it is.
+         */
+        public void release() {
+            inFlight.decrementAndGet();
+        }
+
+        /**
+         * Releases a request and adapts the limit to how it went.
+         *
+         * @param start     time the request was admitted, in ns
+         * @param end       time it finished, in ns
+         * @param failed    whether it failed for lack of capacity
+         */
+        public void release(long start, long end, boolean failed) {
+            int current = inFlight.getAndDecrement();
+            synchronized (this) {
+                if (failed || end - start > thresholdNanos) {
+                    // requests started before the last decrease saw the old limit, do not punish it twice
+                    if (start - lastDecrease > 0) {
+                        limit = Math.max(minLimit, limit * backoffRatio);
+                        lastDecrease = end;
+                    }
+                } else if (current * 2 >= limit) {
+                    // only grow a limit that is being used
+                    limit = Math.min(maxLimit, limit + 1 / limit);
+                }
+            }
+        }
+
+        public double getLimit() {
+            return limit;
+        }
+
+        public int getInFlight() {
+            return inFlight.get();
+        }
+    }
+}
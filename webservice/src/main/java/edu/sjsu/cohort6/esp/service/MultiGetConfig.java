@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.service;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import edu.sjsu.cohort6.esp.service.rest.MultiGet;
+import io.dropwizard.setup.Environment;
+
+import javax.validation.constraints.Min;
+
+/**
+ * Limits of the ids parameter of GET /courses, /students and /users, see {@link MultiGet}.
+ *
+ * multiGet:
+ *   maxIds: 1000       # longer lists are rejected with 400
+ *   chunkSize: 100     # ids per query
+ *   threads: 4         # workers reading the chunks of a long list in parallel
+ */
+public class MultiGetConfig {
+    @Min(1)
+    private int maxIds = 1000;
+
+    @Min(1)
+    private int chunkSize = 100;
+
+    @Min(1)
+    private int threads = 4;
+
+    @JsonProperty
+    public int getMaxIds() {
+        return maxIds;
+    }
+
+    public void setMaxIds(int maxIds) {
+        this.maxIds = maxIds;
+    }
+
+    @JsonProperty
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    @JsonProperty
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public MultiGet build(Environment environment) {
+        return new MultiGet(environment.lifecycle().executorService("multiget-%d")
+                .minThreads(threads).maxThreads(threads).build(), maxIds, chunkSize);
+    }
+}
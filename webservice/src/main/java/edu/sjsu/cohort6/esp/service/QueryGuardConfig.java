@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+
+package edu.sjsu.cohort6.esp.service;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import edu.sjsu.cohort6.esp.dao.mongodb.QueryGuard;
+
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Limits applied to the free-form fetch queries run by the DAOs.
+ *
+ * database:
+ *   queryGuard:
+ *     maxTimeMS: 5000
+ *     defaultLimit: 1000
+ *     scanPolicy: LOG         # OFF, LOG, SECONDARY or REJECT
+ *     explainCacheSize: 512
+ */
+public class QueryGuardConfig {
+    @Min(0)
+    private long maxTimeMS = 5000;
+
+    @Min(0)
+    private int defaultLimit = 1000;
+
+    @NotNull
+    private QueryGuard.ScanPolicy scanPolicy = QueryGuard.ScanPolicy.LOG;
+
+    @Min(1)
+    private int explainCacheSize = 512;
+
+    @JsonProperty
+    public long getMaxTimeMS() {
+        return maxTimeMS;
+    }
+
+    public void setMaxTimeMS(long maxTimeMS) {
+        this.maxTimeMS = maxTimeMS;
+    }
+
+    @JsonProperty
+    public int getDefaultLimit() {
+        return defaultLimit;
+    }
+
+    public void setDefaultLimit(int defaultLimit) {
+        this.defaultLimit = defaultLimit;
+    }
+
+    @JsonProperty
+    public QueryGuard.ScanPolicy getScanPolicy() {
+        return scanPolicy;
+    }
+
+    public void setScanPolicy(QueryGuard.ScanPolicy scanPolicy) {
+        this.scanPolicy = scanPolicy;
+    }
+
+    @JsonProperty
+    public int getExplainCacheSize() {
+        return explainCacheSize;
+    }
+
+    public void setExplainCacheSize(int explainCacheSize) {
+        this.explainCacheSize = explainCacheSize;
+    }
+
+    public void configure(QueryGuard guard) {
+        guard.setMaxTimeMS(maxTimeMS);
+        guard.setDefaultLimit(defaultLimit);
+        guard.setScanPolicy(scanPolicy);
+        guard.setExplainCacheSize(explainCacheSize);
+    }
+}
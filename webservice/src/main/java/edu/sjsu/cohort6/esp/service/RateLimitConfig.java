@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.service;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.hibernate.validator.constraints.NotEmpty;
+
+import javax.validation.Valid;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Token bucket limits of API requests, applied by {@link RateLimitFilter}.
+ *
+ * rateLimit:
+ *   enabled: true
+ *   global:                       # all requests together
+ *     capacity: 400               # burst
+ *     refillPerSecond: 200        # sustained rate
+ *   perPrincipal:                 # each verified user, otherwise each client address
+ *     capacity: 40
+ *     refillPerSecond: 20
+ *   routes:                       # each user on a route, first matching rule only
+ *     - method: PUT
+ *       pattern: /api/v1\.0/students/.+
+ *       capacity: 5
+ *       refillPerSecond: 1
+ *   maxTrackedPrincipals: 100000  # idle buckets are dropped beyond this
+ *
+ * A missing limit is not enforced.
+ */
+public class RateLimitConfig {
+    private boolean enabled = true;
+
+    @Valid
+    private Limit global;
+
+    @Valid
+    private Limit perPrincipal;
+
+    @Valid
+    @NotNull
+    private List<Rule> routes = new ArrayList<>();
+
+    @Min(1)
+    private int maxTrackedPrincipals = 100000;
+
+    @JsonProperty
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @JsonProperty
+    public Limit getGlobal() {
+        return global;
+    }
+
+    public void setGlobal(Limit global) {
+        this.global = global;
+    }
+
+    @JsonProperty
+    public Limit getPerPrincipal() {
+        return perPrincipal;
+    }
+
+    public void setPerPrincipal(Limit perPrincipal) {
+        this.perPrincipal = perPrincipal;
+    }
+
+    @JsonProperty
+    public List<Rule> getRoutes() {
+        return routes;
+    }
+
+    public void setRoutes(List<Rule> routes) {
+        this.routes = routes;
+    }
+
+    @JsonProperty
+    public int getMaxTrackedPrincipals() {
+        return maxTrackedPrincipals;
+    }
+
+    public void setMaxTrackedPrincipals(int maxTrackedPrincipals) {
+        this.maxTrackedPrincipals = maxTrackedPrincipals;
+    }
+
+    public static class Limit {
+        @Min(1)
+        private int capacity = 1;
+
+        @DecimalMin("0.001")
+        private double refillPerSecond = 1;
+
+        @JsonProperty
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public void setCapacity(int capacity) {
+            this.capacity = capacity;
+        }
+
+        @JsonProperty
+        public double getRefillPerSecond() {
+            return refillPerSecond;
+        }
+
+        public void setRefillPerSecond(double refillPerSecond) {
+            this.refillPerSecond = refillPerSecond;
+        }
+    }
+
+    public static class Rule extends Limit {
+        private String method;
+
+        @NotEmpty
+        private String pattern;
+
+        /**
+         * @return HTTP method the rule applies to, null for any
+         */
+        @JsonProperty
+        public String getMethod() {
+            return method;
+        }
+
+        public void setMethod(String method) {
+            this.method = method;
+        }
+
+        /**
+         * @return regular expression the whole request path must match
+         */
+        @JsonProperty
+        public String getPattern() {
+            return pattern;
+        }
+
+        public void setPattern(String pattern) {
+            this.pattern = pattern;
+        }
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.service;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+import io.dropwizard.auth.AuthenticationException;
+import io.dropwizard.auth.Authenticator;
+import io.dropwizard.auth.basic.BasicCredentials;
+
+import javax.servlet.*;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Admits API requests through the token buckets of a {@link RateLimitConfig}: the global one, the one of the
+ * principal, and the one of the principal on the matched route. A request takes a token from each; if any is
+ * empty the request is answered with 429 and a Retry-After of the time until a token is available, and the
+ * tokens taken from the other buckets are put back.
+ *
+ * The principal is the user name of the Basic credentials once the same credentials have been verified by the
+ * authenticator wrapped with {@link #verifying(Authenticator)}, otherwise the client address. Until then a request
+ * cannot spend another user's tokens by sending their name with a wrong password, nor get fresh buckets by
+ * making names up. Only a hash of verified credentials is kept. Buckets are lock-free: each is a single atomic timestamp, the time at which it would be full again (the generic cell rate
+ * algorithm). Full buckets carry no state, so they are dropped when too many principals are tracked.
+ *
+ * Metrics, under this class name: allowed, rejected, rejected-global, rejected-principal, rejected-route, and
+ * the principals gauge.
+ *
+ * @author rwatsh on 11/30/15.
+ */
+public class RateLimitFilter implements Filter {
+    private static final String BASIC = "Basic ";
+    private static final int VERIFIED_HOURS = 1;
+
+    private final Bucket global;
+    private final RateLimitConfig.Limit perPrincipal;
+    private final List<Route> routes = new ArrayList<>();
+    private final ConcurrentMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicInteger tracked = new AtomicInteger();
+    private final int maxTracked;
+    private final Cache<String, Boolean> verified;
+
+    private final Meter allowed;
+    private final Meter rejected;
+    private final Meter rejectedGlobal;
+    private final Meter rejectedPrincipal;
+    private final Meter rejectedRoute;
+
+    public RateLimitFilter(RateLimitConfig config, MetricRegistry metrics) {
+        this.global = config.getGlobal() != null ? new Bucket(config.getGlobal()) : null;
+        this.perPrincipal = config.getPerPrincipal();
+        for (RateLimitConfig.Rule rule : config.getRoutes()) {
+            routes.add(new Route(rule));
+        }
+        this.maxTracked = config.getMaxTrackedPrincipals();
+        this.verified = CacheBuilder.newBuilder()
+                .maximumSize(maxTracked)
+                .expireAfterAccess(VERIFIED_HOURS, TimeUnit.HOURS)
+                .build();
+
+        this.allowed = metrics.meter(MetricRegistry.name(RateLimitFilter.class, "allowed"));
+        this.rejected = metrics.meter(MetricRegistry.name(RateLimitFilter.class, "rejected"));
+        this.rejectedGlobal = metrics.meter(MetricRegistry.name(RateLimitFilter.class, "rejected-global"));
+        this.rejectedPrincipal = metrics.meter(MetricRegistry.name(RateLimitFilter.class, "rejected-principal"));
+        this.rejectedRoute = metrics.meter(MetricRegistry.name(RateLimitFilter.class, "rejected-route"));
+        metrics.register(MetricRegistry.name(RateLimitFilter.class, "principals"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return buckets.size();
+            }
+        });
+    }
+
+    public void doFilter(ServletRequest request, ServletResponse response,
+                         FilterChain chain) throws IOException, ServletException {
+        HttpServletRequest req = (HttpServletRequest) request;
+        HttpServletResponse resp = (HttpServletResponse) response;
+        long now = System.nanoTime();
+        String principal = principalOf(req);
+
+        List<Bucket> taken = new ArrayList<>(3);
+        long waitNanos = 0;
+        Meter rejectedBy = null;
+
+        Route route = routeFor(req.getMethod(), req.getRequestURI());
+        if (route != null) {
+            Bucket bucket = bucket(route.name + "\n" + principal, route.limit, now);
+            waitNanos = bucket.tryTake(now);
+            if (waitNanos == 0) {
+                taken.add(bucket);
+            } else {
+                rejectedBy = rejectedRoute;
+            }
+        }
+        if (rejectedBy == null && perPrincipal != null) {
+            Bucket bucket = bucket(principal, perPrincipal, now);
+            waitNanos = bucket.tryTake(now);
+            if (waitNanos == 0) {
+                taken.add(bucket);
+            } else {
+                rejectedBy = rejectedPrincipal;
+            }
+        }
+        if (rejectedBy == null && global != null) {
+            waitNanos = global.tryTake(now);
+            if (waitNanos != 0) {
+                rejectedBy = rejectedGlobal;
+            }
+        }
+
+        if (rejectedBy != null) {
+            for (Bucket bucket : taken) {
+                bucket.putBack();
+            }
+            rejected.mark();
+            rejectedBy.mark();
+            resp.setHeader("Retry-After", Long.toString(Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999999999L))));
+            resp.sendError(429, "Too Many Requests");
+            return;
+        }
+        allowed.mark();
+        chain.doFilter(request, response);
+    }
+
+    public void destroy() {}
+
+    public void init(FilterConfig arg0) throws ServletException {}
+
+    Route routeFor(String method, String path) {
+        for (Route route : routes) {
+            if ((route.method == null || route.method.equalsIgnoreCase(method)) && route.pattern.matcher(path).matches()) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    String principalOf(HttpServletRequest req) {
+        String authorization = req.getHeader("Authorization");
+        if (authorization != null && authorization.regionMatches(true, 0, BASIC, 0, BASIC.length())) {
+            try {
+                String credentials = new String(BaseEncoding.base64().decode(authorization.substring(BASIC.length()).trim()),
+                        StandardCharsets.UTF_8);
+                int colon = credentials.indexOf(':');
+                if (colon >= 0 && verified.getIfPresent(hash(credentials)) != null) {
+                    return "user:" + credentials.substring(0, colon);
+                }
+            } catch (IllegalArgumentException e) {
+                // malformed credentials are rejected later by authentication, limit them by address meanwhile
+            }
+        }
+        return "address:" + req.getRemoteAddr();
+    }
+
+    /**
+     * Wraps the authenticator of the API so that the credentials it accepts are remembered, and later requests
+     * sent with them are limited as their user rather than by client address.
+     *
+     * @param authenticator authenticator of Basic credentials
+     * @return authenticator that reports its successes to this filter
+     */
+    public <P> Authenticator<BasicCredentials, P> verifying(final Authenticator<BasicCredentials, P> authenticator) {
+        return new Authenticator<BasicCredentials, P>() {
+            @Override
+            public Optional<P> authenticate(BasicCredentials credentials) throws AuthenticationException {
+                Optional<P> principal = authenticator.authenticate(credentials);
+                if (principal.isPresent()) {
+                    verified.put(hash(credentials.getUsername() + ":" + credentials.getPassword()), Boolean.TRUE);
+                }
+                return principal;
+            }
+        };
+    }
+
+    private static String hash(String credentials) {
+        return Hashing.sha256().hashString(credentials, StandardCharsets.UTF_8).toString();
+    }
+
+    private Bucket bucket(String key, RateLimitConfig.Limit limit, long now) {
+        Bucket bucket = buckets.get(key);
+        if (bucket == null) {
+            if (tracked.incrementAndGet() % 1024 == 0 && buckets.size() >= maxTracked) {
+                dropFullBuckets(now);
+            }
+            Bucket created = new Bucket(limit);
+            bucket = buckets.putIfAbsent(key, created);
+            if (bucket == null) {
+                bucket = created;
+            }
+        }
+        return bucket;
+    }
+
+    private void dropFullBuckets(long now) {
+        for (Iterator<Bucket> it = buckets.values().iterator(); it.hasNext(); ) {
+            if (it.next().isFull(now)) {
+                it.remove();
+            }
+        }
+    }
+
+    static final class Route {
+        private final String name;
+        private final String method;
+        private final Pattern pattern;
+        private final RateLimitConfig.Limit limit;
+
+        Route(RateLimitConfig.Rule rule) {
+            this.method = rule.getMethod();
+            this.pattern = Pattern.compile(rule.getPattern());
+            this.name = (method != null ? method : "*") + " " + rule.getPattern();
+            this.limit = rule;
+        }
+    }
+
+    /**
+     * A token bucket kept as the time at which it will be full again. Taking a token moves that time one refill
+     * interval ahead; a token is available while it is at most capacity - 1 intervals ahead of now.
+     */
+    public static final class Bucket {
+        private final long intervalNanos;
+        private final long toleranceNanos;
+        private final AtomicLong fullAt;
+
+        public Bucket(RateLimitConfig.Limit limit) {
+            this(limit, System.nanoTime());
+        }
+
+        /**
+         * @param now   time the bucket is full at, in ns
+         */
+        public Bucket(RateLimitConfig.Limit limit, long now) {
+            this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / limit.getRefillPerSecond()));
+            this.toleranceNanos = (limit.getCapacity() - 1) * intervalNanos;
+            this.fullAt = new AtomicLong(now);
+        }
+
+        /**
+         * @return 0 if a token was taken, otherwise the time until one is available, in ns
+         */
+        public long tryTake(long now) {
+            while (true) {
+                long current = fullAt.get();
+                long start = current - now < 0 ? now : current;
+                long wait = start - now - toleranceNanos;
+                if (wait > 0) {
+                    return wait;
+                }
+                if (fullAt.compareAndSet(current, start + intervalNanos)) {
+                    return 0;
+                }
+            }
+        }
+
+        public void putBack() {
+            fullAt.addAndGet(-intervalNanos);
+        }
+
+        public boolean isFull(long now) {
+            return fullAt.get() - now <= 0;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.service;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import edu.sjsu.cohort6.esp.dao.mongodb.ChangeTracker;
+import edu.sjsu.cohort6.esp.service.rest.ResponseCache;
+
+import javax.validation.constraints.Min;
+
+/**
+ * Cache of encoded catalog responses, see {@link ResponseCache}.
+ *
+ * responseCache:
+ *   enabled: true
+ *   maxBytes: 16777216        # total size of the cached bodies
+ *   maxEntryBytes: 1048576    # larger responses are not cached
+ *   gzip: true                # also keep a gzipped copy, served to clients that accept it
+ *   offHeap: false            # keep the bodies in direct buffers
+ */
+public class ResponseCacheConfig {
+    private boolean enabled = true;
+
+    @Min(0)
+    private long maxBytes = 16 * 1024 * 1024;
+
+    @Min(0)
+    private int maxEntryBytes = 1024 * 1024;
+
+    private boolean gzip = true;
+
+    private boolean offHeap = false;
+
+    @JsonProperty
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @JsonProperty
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    @JsonProperty
+    public int getMaxEntryBytes() {
+        return maxEntryBytes;
+    }
+
+    public void setMaxEntryBytes(int maxEntryBytes) {
+        this.maxEntryBytes = maxEntryBytes;
+    }
+
+    @JsonProperty
+    public boolean isGzip() {
+        return gzip;
+    }
+
+    public void setGzip(boolean gzip) {
+        this.gzip = gzip;
+    }
+
+    @JsonProperty
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    public void setOffHeap(boolean offHeap) {
+        this.offHeap = offHeap;
+    }
+
+    /**
+     * @param changes   change stamp of the cached collection
+     * @return the cache, or null if it is disabled
+     */
+    public ResponseCache build(ChangeTracker changes) {
+        return enabled ? new ResponseCache(changes, maxBytes, maxEntryBytes, gzip, offHeap) : null;
+    }
+}
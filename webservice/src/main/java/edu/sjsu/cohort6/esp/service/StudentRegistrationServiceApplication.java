@@ -14,21 +14,27 @@
 
 package edu.sjsu.cohort6.esp.service;
 
+import com.fasterxml.jackson.jaxrs.smile.JacksonSmileProvider;
+import edu.sjsu.cohort6.esp.common.JsonCodecs;
 import edu.sjsu.cohort6.esp.common.User;
 import edu.sjsu.cohort6.esp.dao.DBClient;
+import edu.sjsu.cohort6.esp.dao.mongodb.CourseDAO;
+import edu.sjsu.cohort6.esp.service.assets.AssetCatalog;
+import edu.sjsu.cohort6.esp.service.assets.FingerprintedAssetServlet;
 import edu.sjsu.cohort6.esp.service.auth.SimpleAuthenticator;
 import edu.sjsu.cohort6.esp.service.cli.CreateUserCommand;
 import edu.sjsu.cohort6.esp.service.cli.ListUserCommand;
 import edu.sjsu.cohort6.esp.service.health.DBHealthCheck;
 import edu.sjsu.cohort6.esp.service.rest.*;
 import io.dropwizard.Application;
-import io.dropwizard.assets.AssetsBundle;
 import io.dropwizard.auth.AuthFactory;
 import io.dropwizard.auth.Authenticator;
 import io.dropwizard.auth.basic.BasicAuthFactory;
 import io.dropwizard.auth.basic.BasicCredentials;
+import io.dropwizard.lifecycle.ServerLifecycleListener;
 import io.dropwizard.setup.Bootstrap;
 import io.dropwizard.setup.Environment;
+import org.eclipse.jetty.server.Server;
 
 import javax.servlet.DispatcherType;
 import java.util.EnumSet;
@@ -53,10 +59,10 @@ public class StudentRegistrationServiceApplication extends Application<StudentRe
     @Override
     public void initialize(final Bootstrap<StudentRegistrationServiceConfiguration> bootstrap) {
         /*
-         * Register the static html contents to be served from /assets directory and accessible from browser from
-         * http://<host>:<port>/esp
+         * Share Dropwizard's mapper with CommonUtils so request bodies are parsed with the same configuration (and
+         * the same cached deserializers) that Jersey uses.
          */
-        bootstrap.addBundle(new AssetsBundle("/assets", "/esp", "index.html"));
+        JsonCodecs.useMapper(bootstrap.getObjectMapper());
 
         bootstrap.addCommand(new CreateUserCommand());
         bootstrap.addCommand(new ListUserCommand());
@@ -66,10 +72,25 @@ public class StudentRegistrationServiceApplication extends Application<StudentRe
     public void run(StudentRegistrationServiceConfiguration studentRegistrationServiceConfiguration, Environment environment) throws Exception {
         dbClient = studentRegistrationServiceConfiguration.getDbConfig().build(environment);
 
+        /*
+         * Serve the static html contents of the /assets directory from memory, accessible from browser from
+         * http://<host>:<port>/esp
+         */
+        AssetCatalog assets = AssetCatalog.load("/assets", "index.html");
+        environment.servlets().addServlet("assets", new FingerprintedAssetServlet(assets, "index.html"))
+                .addMapping("/esp/*");
+
         /*
          * Setup basic authentication against DB table.
          */
         Authenticator<BasicCredentials, User> simpleAuthenticator = new SimpleAuthenticator(dbClient);
+        RateLimitConfig rateLimit = studentRegistrationServiceConfiguration.getRateLimit();
+        RateLimitFilter rateLimitFilter = null;
+        if (rateLimit.isEnabled()) {
+            rateLimitFilter = new RateLimitFilter(rateLimit, environment.metrics());
+            // users are rate limited by name only once their credentials have been verified
+            simpleAuthenticator = rateLimitFilter.verifying(simpleAuthenticator);
+        }
         environment.jersey().register(AuthFactory.binder(new BasicAuthFactory<User>(simpleAuthenticator,
                 "studentreg", // realm name
                 User.class))); // backing DB object
@@ -81,21 +102,78 @@ public class StudentRegistrationServiceApplication extends Application<StudentRe
          */
         environment.jersey().register(new CORSFilter());
 
+        /*
+         * Offer Smile next to JSON, selected by the Accept and Content-Type headers.
+         */
+        environment.jersey().register(new JacksonSmileProvider(SmileFormat.getMapper()));
+        environment.jersey().register(new SmileRequestTranscoder());
+
+        /*
+         * Bound every API request, and the DAO calls made for it, by a deadline.
+         */
+        environment.jersey().register(new DeadlineFilter(studentRegistrationServiceConfiguration.getDeadlines()));
+
+        /*
+         * Answer retried creates and updates that carry an Idempotency-Key with the stored first response.
+         */
+        IdempotencyFilter idempotencyFilter = studentRegistrationServiceConfiguration.getIdempotency().build(dbClient);
+        if (idempotencyFilter != null) {
+            environment.jersey().register(idempotencyFilter);
+        }
+
         /*
          * Register resources with jersey.
          */
-        final StudentResource studentResource = new StudentResource(dbClient);
-        final CourseResource courseResource = new CourseResource(dbClient);
-        final UserResource userResource = new UserResource(dbClient);
+        final MultiGet multiGet = studentRegistrationServiceConfiguration.getMultiGet().build(environment);
+        final StudentResource studentResource = new StudentResource(dbClient, multiGet);
+        final CourseDAO courseDAO = (CourseDAO) dbClient.getDAO(CourseDAO.class);
+        final CourseResource courseResource = new CourseResource(dbClient,
+                studentRegistrationServiceConfiguration.isCatalogPassthrough(),
+                studentRegistrationServiceConfiguration.getResponseCache().build(courseDAO.getChanges()), multiGet);
+        final UserResource userResource = new UserResource(dbClient, multiGet);
+        final BatchConfig batch = studentRegistrationServiceConfiguration.getBatch();
+        final BatchResource batchResource = new BatchResource(studentResource, courseResource,
+                environment.lifecycle().executorService("batch-%d")
+                        .minThreads(batch.getThreads()).maxThreads(batch.getThreads()).build(),
+                batch.getMaxOperations());
 
         /*
          * Setup jersey environment.
          */
-        environment.servlets().addFilter("CacheControlFilter", new CacheControlFilter())
+        environment.servlets().addFilter("CacheControlFilter", new CacheControlFilter(studentRegistrationServiceConfiguration.getCachePolicy()))
                 .addMappingForUrlPatterns(EnumSet.of(DispatcherType.REQUEST), true, "/*");
+        if (rateLimitFilter != null) {
+            environment.servlets().addFilter("RateLimitFilter", rateLimitFilter)
+                    .addMappingForUrlPatterns(EnumSet.of(DispatcherType.REQUEST), true, EndpointUtils.ENDPOINT_ROOT + "/*");
+        }
+        LoadSheddingConfig loadShedding = studentRegistrationServiceConfiguration.getLoadShedding();
+        if (loadShedding.isEnabled()) {
+            final LoadSheddingFilter loadSheddingFilter = new LoadSheddingFilter(loadShedding, environment.metrics());
+            environment.lifecycle().addServerLifecycleListener(new ServerLifecycleListener() {
+                @Override
+                public void serverStarted(Server server) {
+                    loadSheddingFilter.setThreadPool(server.getThreadPool());
+                }
+            });
+            environment.servlets().addFilter("LoadSheddingFilter", loadSheddingFilter)
+                    .addMappingForUrlPatterns(EnumSet.of(DispatcherType.REQUEST), true, EndpointUtils.ENDPOINT_ROOT + "/*");
+        }
+        BulkheadConfig bulkheads = studentRegistrationServiceConfiguration.getBulkheads();
+        if (bulkheads.isEnabled()) {
+            BulkheadFilter bulkheadFilter = new BulkheadFilter(bulkheads, environment.metrics());
+            bulkheadFilter.checkConnectionQuotas(studentRegistrationServiceConfiguration.getDbConfig().getConnectionsPerHost());
+            environment.servlets().addFilter("BulkheadFilter", bulkheadFilter)
+                    .addMappingForUrlPatterns(EnumSet.of(DispatcherType.REQUEST), true, EndpointUtils.ENDPOINT_ROOT + "/*");
+        }
+        CompressionConfig compression = studentRegistrationServiceConfiguration.getCompression();
+        if (compression.isEnabled()) {
+            environment.servlets().addFilter("CompressionFilter", new CompressionFilter(compression, environment.metrics()))
+                    .addMappingForUrlPatterns(EnumSet.of(DispatcherType.REQUEST), true, EndpointUtils.ENDPOINT_ROOT + "/*");
+        }
         environment.jersey().setUrlPattern(EndpointUtils.ENDPOINT_ROOT + "/*");
         environment.jersey().register(studentResource);
         environment.jersey().register(courseResource);
+        environment.jersey().register(batchResource);
         /*
          * Not registering user resource on purpose as student resource should be used to add a student user.
          * Admin user can only be added through the command line not exposed to users.
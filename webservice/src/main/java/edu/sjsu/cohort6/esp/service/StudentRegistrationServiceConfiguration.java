@@ -29,6 +29,51 @@ public class StudentRegistrationServiceConfiguration extends Configuration {
     @NotNull
     private DBConfig dbConfig = new DBConfig();
 
+    @Valid
+    @NotNull
+    private DeadlineConfig deadlines = new DeadlineConfig();
+
+    /**
+     * Serve course reads by transcoding the stored documents to JSON, without building Course entities.
+     */
+    private boolean catalogPassthrough = false;
+
+    @Valid
+    @NotNull
+    private ResponseCacheConfig responseCache = new ResponseCacheConfig();
+
+    @Valid
+    @NotNull
+    private CachePolicyConfig cachePolicy = new CachePolicyConfig();
+
+    @Valid
+    @NotNull
+    private CompressionConfig compression = new CompressionConfig();
+
+    @Valid
+    @NotNull
+    private BatchConfig batch = new BatchConfig();
+
+    @Valid
+    @NotNull
+    private MultiGetConfig multiGet = new MultiGetConfig();
+
+    @Valid
+    @NotNull
+    private IdempotencyConfig idempotency = new IdempotencyConfig();
+
+    @Valid
+    @NotNull
+    private RateLimitConfig rateLimit = new RateLimitConfig();
+
+    @Valid
+    @NotNull
+    private LoadSheddingConfig loadShedding = new LoadSheddingConfig();
+
+    @Valid
+    @NotNull
+    private BulkheadConfig bulkheads = new BulkheadConfig();
+
     @JsonProperty("database")
     public DBConfig getDbConfig() {
         return dbConfig;
@@ -38,4 +83,114 @@ public class StudentRegistrationServiceConfiguration extends Configuration {
     public void setDbConfig(DBConfig dbConfig) {
         this.dbConfig = dbConfig;
     }
+
+    @JsonProperty
+    public DeadlineConfig getDeadlines() {
+        return deadlines;
+    }
+
+    @JsonProperty
+    public void setDeadlines(DeadlineConfig deadlines) {
+        this.deadlines = deadlines;
+    }
+
+    @JsonProperty
+    public boolean isCatalogPassthrough() {
+        return catalogPassthrough;
+    }
+
+    @JsonProperty
+    public void setCatalogPassthrough(boolean catalogPassthrough) {
+        this.catalogPassthrough = catalogPassthrough;
+    }
+
+    @JsonProperty
+    public ResponseCacheConfig getResponseCache() {
+        return responseCache;
+    }
+
+    @JsonProperty
+    public void setResponseCache(ResponseCacheConfig responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    @JsonProperty
+    public CachePolicyConfig getCachePolicy() {
+        return cachePolicy;
+    }
+
+    @JsonProperty
+    public void setCachePolicy(CachePolicyConfig cachePolicy) {
+        this.cachePolicy = cachePolicy;
+    }
+
+    @JsonProperty
+    public CompressionConfig getCompression() {
+        return compression;
+    }
+
+    @JsonProperty
+    public void setCompression(CompressionConfig compression) {
+        this.compression = compression;
+    }
+
+    @JsonProperty
+    public BatchConfig getBatch() {
+        return batch;
+    }
+
+    @JsonProperty
+    public void setBatch(BatchConfig batch) {
+        this.batch = batch;
+    }
+
+    @JsonProperty
+    public MultiGetConfig getMultiGet() {
+        return multiGet;
+    }
+
+    @JsonProperty
+    public void setMultiGet(MultiGetConfig multiGet) {
+        this.multiGet = multiGet;
+    }
+
+    @JsonProperty
+    public IdempotencyConfig getIdempotency() {
+        return idempotency;
+    }
+
+    @JsonProperty
+    public void setIdempotency(IdempotencyConfig idempotency) {
+        this.idempotency = idempotency;
+    }
+
+    @JsonProperty
+    public RateLimitConfig getRateLimit() {
+        return rateLimit;
+    }
+
+    @JsonProperty
+    public void setRateLimit(RateLimitConfig rateLimit) {
+        this.rateLimit = rateLimit;
+    }
+
+    @JsonProperty
+    public LoadSheddingConfig getLoadShedding() {
+        return loadShedding;
+    }
+
+    @JsonProperty
+    public void setLoadShedding(LoadSheddingConfig loadShedding) {
+        this.loadShedding = loadShedding;
+    }
+
+    @JsonProperty
+    public BulkheadConfig getBulkheads() {
+        return bulkheads;
+    }
+
+    @JsonProperty
+    public void setBulkheads(BulkheadConfig bulkheads) {
+        this.bulkheads = bulkheads;
+    }
 }
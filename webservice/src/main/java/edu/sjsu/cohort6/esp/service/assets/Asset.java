@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.service.assets;
+
+/**
+ * A static asset held in memory, with its precompressed variants.
+ */
+public class Asset {
+    private final String path;
+    private final String contentType;
+    private final String hash;
+    private final byte[] identity;
+    private final byte[] gzip;
+    private final byte[] brotli;
+
+    Asset(String path, String contentType, String hash, byte[] identity, byte[] gzip, byte[] brotli) {
+        this.path = path;
+        this.contentType = contentType;
+        this.hash = hash;
+        this.identity = identity;
+        this.gzip = gzip;
+        this.brotli = brotli;
+    }
+
+    /**
+     * @return path relative to the asset root, e.g. js/app.js
+     */
+    public String getPath() {
+        return path;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * @return hex content hash, used in the fingerprinted name and as the entity tag
+     */
+    public String getHash() {
+        return hash;
+    }
+
+    public byte[] getIdentity() {
+        return identity;
+    }
+
+    /**
+     * @return gzipped content, null if the type does not compress
+     */
+    public byte[] getGzip() {
+        return gzip;
+    }
+
+    /**
+     * @return brotli content, null unless a .br file was built next to the asset
+     */
+    public byte[] getBrotli() {
+        return brotli;
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.service.assets;
+
+import com.google.common.hash.Hashing;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * All static assets under a classpath directory, loaded into memory once at startup.
+ *
+ * Every asset except the HTML pages also gets a fingerprinted name that embeds a hash of its content
+ * (js/app.js becomes js/app.0123456789.js), so it can be cached forever under that name. References to
+ * fingerprinted assets in the HTML pages and in CSS url() values are rewritten to the fingerprinted names, which is
+ * why stylesheets are hashed after the files they refer to. Pages keep their names and are revalidated instead.
+ *
+ * Compressible assets are gzipped at the highest level. A .gz or .br file found next to an asset is used as is,
+ * which is how brotli variants get in: no brotli encoder is bundled.
+ */
+public class AssetCatalog {
+    private static final Logger log = Logger.getLogger(AssetCatalog.class.getName());
+
+    private static final int HASH_CHARS = 10;
+    private static final Pattern HTML_REF = Pattern.compile("(\\s(?:src|href)\\s*=\\s*\")([^\"]+)(\")");
+    private static final Pattern CSS_REF = Pattern.compile("(url\\(\\s*['\"]?)([^'\")]+?)(['\"]?\\s*\\))");
+    private static final Map<String, String> CONTENT_TYPES = new HashMap<>();
+    private static final Set<String> COMPRESSIBLE = new HashSet<>(Arrays.asList(
+            "html", "css", "js", "map", "json", "svg", "txt", "eot", "ttf"));
+
+    static {
+        CONTENT_TYPES.put("html", "text/html;charset=utf-8");
+        CONTENT_TYPES.put("css", "text/css;charset=utf-8");
+        CONTENT_TYPES.put("js", "application/javascript;charset=utf-8");
+        CONTENT_TYPES.put("map", "application/json;charset=utf-8");
+        CONTENT_TYPES.put("json", "application/json;charset=utf-8");
+        CONTENT_TYPES.put("svg", "image/svg+xml");
+        CONTENT_TYPES.put("txt", "text/plain;charset=utf-8");
+        CONTENT_TYPES.put("png", "image/png");
+        CONTENT_TYPES.put("gif", "image/gif");
+        CONTENT_TYPES.put("jpg", "image/jpeg");
+        CONTENT_TYPES.put("ico", "image/x-icon");
+        CONTENT_TYPES.put("eot", "application/vnd.ms-fontobject");
+        CONTENT_TYPES.put("ttf", "font/ttf");
+        CONTENT_TYPES.put("woff", "font/woff");
+        CONTENT_TYPES.put("woff2", "font/woff2");
+    }
+
+    private final Map<String, Asset> assets = new HashMap<>();
+    private final Map<String, String> fingerprinted = new HashMap<>();
+
+    private AssetCatalog() {
+    }
+
+    /**
+     * Loads the assets of a classpath directory.
+     *
+     * @param resourcePath  classpath directory, e.g. /assets
+     * @param indexFile     a file known to be in the directory, used to locate it inside a jar
+     * @return catalog of the directory
+     */
+    public static AssetCatalog load(String resourcePath, String indexFile) throws IOException {
+        String root = resourcePath.replaceAll("^/+|/+$", "");
+        URL index = AssetCatalog.class.getClassLoader().getResource(root + "/" + indexFile);
+        if (index == null) {
+            throw new IOException("No " + indexFile + " in classpath directory " + resourcePath);
+        }
+        try {
+            URI uri = index.toURI();
+            if ("jar".equals(uri.getScheme())) {
+                FileSystem jar;
+                try {
+                    jar = FileSystems.newFileSystem(uri, Collections.<String, Object>emptyMap());
+                } catch (FileSystemAlreadyExistsException e) {
+                    jar = FileSystems.getFileSystem(uri);
+                }
+                return load(jar.provider().getPath(uri).getParent());
+            }
+            return load(Paths.get(uri).getParent());
+        } catch (URISyntaxException e) {
+            throw new IOException(e);
+        }
+    }
+
+    static AssetCatalog load(Path dir) throws IOException {
+        Map<String, byte[]> files = new TreeMap<>();
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path file : paths.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                files.put(dir.relativize(file).toString().replace('\\', '/'), Files.readAllBytes(file));
+            }
+        }
+
+        AssetCatalog catalog = new AssetCatalog();
+        List<String> styles = new ArrayList<>();
+        List<String> pages = new ArrayList<>();
+        for (String path : files.keySet()) {
+            String ext = extension(path);
+            if (ext.equals("gz") || ext.equals("br")) {
+                continue;
+            }
+            if (ext.equals("html")) {
+                pages.add(path);
+            } else if (ext.equals("css")) {
+                styles.add(path);
+            } else {
+                catalog.add(path, files.get(path), files, true);
+            }
+        }
+        for (String path : styles) {
+            catalog.add(path, catalog.rewrite(path, files.get(path), CSS_REF), files, true);
+        }
+        for (String path : pages) {
+            catalog.add(path, catalog.rewrite(path, files.get(path), HTML_REF), files, false);
+        }
+        log.info("Loaded " + catalog.fingerprinted.size() + " fingerprinted and " + pages.size()
+                + " other assets from " + dir.toUri());
+        return catalog;
+    }
+
+    /**
+     * @param path  path relative to the asset root, plain or fingerprinted
+     * @return the asset, or null if there is none
+     */
+    public Asset get(String path) {
+        return assets.get(path);
+    }
+
+    /**
+     * @param path  plain path relative to the asset root
+     * @return the fingerprinted path, or null if the asset is not fingerprinted
+     */
+    public String fingerprintedPath(String path) {
+        return fingerprinted.get(path);
+    }
+
+    private void add(String path, byte[] content, Map<String, byte[]> files, boolean fingerprint) throws IOException {
+        String ext = extension(path);
+        String hash = Hashing.sha1().hashBytes(content).toString().substring(0, HASH_CHARS);
+        // a precompressed file only matches if the content was not rewritten here
+        boolean original = Arrays.equals(content, files.get(path));
+        byte[] gzip = original ? files.get(path + ".gz") : null;
+        if (gzip == null && COMPRESSIBLE.contains(ext)) {
+            gzip = gzip(content);
+            if (gzip.length >= content.length) {
+                gzip = null;
+            }
+        }
+        byte[] brotli = original ? files.get(path + ".br") : null;
+        String contentType = CONTENT_TYPES.containsKey(ext) ? CONTENT_TYPES.get(ext) : "application/octet-stream";
+
+        Asset asset = new Asset(path, contentType, hash, content, gzip, brotli);
+        assets.put(path, asset);
+        if (fingerprint) {
+            int dot = path.lastIndexOf('.');
+            String name = dot > path.lastIndexOf('/') ? path.substring(0, dot) + "." + hash + path.substring(dot)
+                    : path + "." + hash;
+            assets.put(name, asset);
+            fingerprinted.put(path, name);
+        }
+    }
+
+    /**
+     * Replaces the references of a text asset that point to fingerprinted assets.
+     */
+    private byte[] rewrite(String path, byte[] content, Pattern reference) {
+        String text = new String(content, StandardCharsets.UTF_8);
+        String dir = path.contains("/") ? path.substring(0, path.lastIndexOf('/') + 1) : "";
+        Matcher m = reference.matcher(text);
+        StringBuffer rewritten = new StringBuffer();
+        boolean changed = false;
+        while (m.find()) {
+            String ref = m.group(2);
+            String replacement = rewriteReference(dir, ref);
+            changed |= !replacement.equals(ref);
+            m.appendReplacement(rewritten, Matcher.quoteReplacement(m.group(1) + replacement + m.group(3)));
+        }
+        m.appendTail(rewritten);
+        return changed ? rewritten.toString().getBytes(StandardCharsets.UTF_8) : content;
+    }
+
+    private String rewriteReference(String dir, String ref) {
+        if (ref.startsWith("/") || ref.startsWith("#") || ref.contains(":")) {
+            return ref;
+        }
+        int suffixAt = ref.length();
+        for (char c : new char[]{'?', '#'}) {
+            int i = ref.indexOf(c);
+            if (i >= 0 && i < suffixAt) {
+                suffixAt = i;
+            }
+        }
+        String target;
+        try {
+            target = URI.create(dir).resolve(ref.substring(0, suffixAt)).normalize().toString();
+        } catch (IllegalArgumentException e) {
+            return ref;
+        }
+        String name = fingerprinted.get(target);
+        if (name == null) {
+            return ref;
+        }
+        // keep the reference relative: only its last segment changes
+        String refPath = ref.substring(0, suffixAt);
+        return refPath.substring(0, refPath.lastIndexOf('/') + 1) + name.substring(name.lastIndexOf('/') + 1)
+                + ref.substring(suffixAt);
+    }
+
+    private static String extension(String path) {
+        int dot = path.lastIndexOf('.');
+        return dot > path.lastIndexOf('/') ? path.substring(dot + 1).toLowerCase() : "";
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 3);
+        try (GZIPOutputStream gz = new GZIPOutputStream(out) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gz.write(content);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.service.assets;
+
+import edu.sjsu.cohort6.esp.service.rest.EndpointUtils;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Enumeration;
+
+/**
+ * Serves the assets of an {@link AssetCatalog} from memory, replacing Dropwizard's AssetServlet which reads them
+ * from the classpath on every request.
+ *
+ * The precompressed variant the client accepts is sent as is (brotli, then gzip), with Content-Encoding set so the
+ * server's gzip filter leaves it alone. Cache-Control comes from the route rules of the CacheControlFilter, which
+ * mark fingerprinted names immutable.
+ */
+public class FingerprintedAssetServlet extends HttpServlet {
+    private static final long serialVersionUID = 1L;
+
+    private final transient AssetCatalog catalog;
+    private final String indexFile;
+
+    /**
+     * @param catalog   assets to serve
+     * @param indexFile page served for the directory itself, e.g. index.html
+     */
+    public FingerprintedAssetServlet(AssetCatalog catalog, String indexFile) {
+        this.catalog = catalog;
+        this.indexFile = indexFile;
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+        String path = req.getPathInfo();
+        if (path == null) {
+            // without the trailing slash relative references would resolve against the parent
+            resp.sendRedirect(req.getRequestURI() + "/");
+            return;
+        }
+        path = path.substring(1);
+        if (path.isEmpty() || path.endsWith("/")) {
+            path = path + indexFile;
+        }
+        Asset asset = catalog.get(path);
+        if (asset == null) {
+            resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        String etag = "\"" + asset.getHash() + "\"";
+        resp.setHeader("ETag", etag);
+        resp.addHeader("Vary", "Accept-Encoding");
+        if (matches(req.getHeaders("If-None-Match"), etag)) {
+            resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        byte[] body = asset.getIdentity();
+        String acceptEncoding = req.getHeader("Accept-Encoding");
+        if (asset.getBrotli() != null && EndpointUtils.acceptsEncoding(acceptEncoding, "br")) {
+            body = asset.getBrotli();
+            resp.setHeader("Content-Encoding", "br");
+        } else if (asset.getGzip() != null && EndpointUtils.acceptsEncoding(acceptEncoding, "gzip")) {
+            body = asset.getGzip();
+            resp.setHeader("Content-Encoding", "gzip");
+        }
+        resp.setContentType(asset.getContentType());
+        resp.setContentLength(body.length);
+        resp.getOutputStream().write(body);
+    }
+
+    private static boolean matches(Enumeration<String> ifNoneMatch, String etag) {
+        while (ifNoneMatch != null && ifNoneMatch.hasMoreElements()) {
+            for (String tag : ifNoneMatch.nextElement().split(",")) {
+                tag = tag.trim();
+                if (tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -14,25 +14,34 @@
 
 package edu.sjsu.cohort6.esp.service.rest;
 
+import com.fasterxml.jackson.core.JsonFactory;
 import edu.sjsu.cohort6.esp.common.BaseModel;
+import edu.sjsu.cohort6.esp.common.JsonCodecs;
 import edu.sjsu.cohort6.esp.common.RoleType;
 import edu.sjsu.cohort6.esp.common.User;
 import edu.sjsu.cohort6.esp.dao.DBClient;
 import edu.sjsu.cohort6.esp.dao.mongodb.CourseDAO;
+import edu.sjsu.cohort6.esp.dao.mongodb.EntityCursor;
 import edu.sjsu.cohort6.esp.dao.mongodb.StudentDAO;
 import edu.sjsu.cohort6.esp.dao.mongodb.UserDAO;
 import edu.sjsu.cohort6.esp.service.rest.exception.InternalErrorException;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import io.dropwizard.auth.Auth;
 import io.dropwizard.servlets.assets.ResourceNotFoundException;
 
 import javax.validation.Valid;
 import javax.ws.rs.*;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.UriInfo;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 
 /**
@@ -44,9 +53,25 @@ public abstract class BaseResource<T extends BaseModel> {
     protected StudentDAO studentDAO;
     protected CourseDAO courseDAO;
     protected UserDAO userDAO;
+    protected final MultiGet multiGet;
+
+    @Context
+    protected HttpHeaders headers;
+
+    @Context
+    protected Request request;
 
     public BaseResource(DBClient client) {
+        this(client, new MultiGet());
+    }
+
+    /**
+     * @param client    database client
+     * @param multiGet  reads the entities listed by the ids parameter of list
+     */
+    public BaseResource(DBClient client, MultiGet multiGet) {
         this.dbClient = client;
+        this.multiGet = multiGet;
         this.userDAO = (UserDAO) client.getDAO(UserDAO.class);
         this.studentDAO = (StudentDAO) client.getDAO(StudentDAO.class);
         this.courseDAO = (CourseDAO) client.getDAO(CourseDAO.class);
@@ -65,31 +90,42 @@ public abstract class BaseResource<T extends BaseModel> {
      * @return
      */
     @POST
-    @Produces(MediaType.APPLICATION_JSON)
-    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, EndpointUtils.APPLICATION_SMILE})
+    @Consumes({MediaType.APPLICATION_JSON, EndpointUtils.APPLICATION_SMILE})
     abstract public Response create(@Auth User user, @Valid String modelJson, @Context UriInfo info);
 
 
+    /**
+     * List the resources. The JSON array is streamed from a DAO cursor (see {@link JsonArrayStream}).
+     *
+     * With ids, only the listed resources are returned, in the order of the ids (see {@link MultiGet}).
+     *
+     * @param user
+     * @param filter
+     * @param ids       comma separated ids, or null
+     * @return
+     */
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
-    abstract public List<T> list(@Auth User user, @QueryParam("filter") String filter) throws InternalErrorException;
+    @Produces({MediaType.APPLICATION_JSON, EndpointUtils.APPLICATION_SMILE})
+    abstract public Response list(@Auth User user, @QueryParam("filter") String filter,
+                                  @QueryParam("ids") String ids) throws InternalErrorException;
 
 
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, EndpointUtils.APPLICATION_SMILE})
     @Path("/{id}")
-    abstract public  T retrieve(@Auth User user, @PathParam("id") String id)
+    abstract public Response retrieve(@Auth User user, @PathParam("id") String id)
             throws ResourceNotFoundException, InternalErrorException;
 
     @PUT
-    @Produces(MediaType.APPLICATION_JSON)
-    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, EndpointUtils.APPLICATION_SMILE})
+    @Consumes({MediaType.APPLICATION_JSON, EndpointUtils.APPLICATION_SMILE})
     @Path("/{id}")
     abstract public T update(@Auth User user, @PathParam("id") String id,
                         @Valid String entity) throws ResourceNotFoundException, InternalErrorException, IOException;
 
     @DELETE
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, EndpointUtils.APPLICATION_SMILE})
     @Path("/{id}")
     abstract public Response delete(@Auth User user, @PathParam("id") String id)
             throws ResourceNotFoundException, InternalErrorException;
@@ -120,6 +156,97 @@ public abstract class BaseResource<T extends BaseModel> {
         return entitiesList;
     }
 
+    protected <E> Response streamList(EntityCursor<E> cursor, Class<E> type) {
+        MediaType mediaType = preferredMediaType();
+        return Response.ok(new JsonArrayStream<>(cursor, type, jsonFactory(mediaType)), mediaType).build();
+    }
+
+    /**
+     * Returns the factory of generators writing the given media type, JSON or Smile.
+     */
+    protected JsonFactory jsonFactory(MediaType mediaType) {
+        return SmileFormat.isSmile(mediaType) ? SmileFormat.getFactory() : JsonCodecs.getMapper().getFactory();
+    }
+
+    /**
+     * Returns JSON or Smile, whichever the client's Accept header prefers. JSON wins ties and wildcards.
+     */
+    protected MediaType preferredMediaType() {
+        for (MediaType accepted : headers.getAcceptableMediaTypes()) {
+            if (accepted.isCompatible(MediaType.APPLICATION_JSON_TYPE)) {
+                return MediaType.APPLICATION_JSON_TYPE;
+            }
+            if (SmileFormat.isSmile(accepted)) {
+                return EndpointUtils.APPLICATION_SMILE_TYPE;
+            }
+        }
+        return MediaType.APPLICATION_JSON_TYPE;
+    }
+
+    /**
+     * Builds a weak entity tag out of validators, such as a lastUpdated time or the versions of the collections a
+     * response is read from. JSON and Smile bodies of the same data share the tag.
+     *
+     * Collection versions are kept in the database (see {@link edu.sjsu.cohort6.esp.dao.mongodb.CollectionVersion}),
+     * so every instance behind a balancer builds the same tag for the same data.
+     *
+     * @param validators    values that change whenever the response body does
+     * @return entity tag
+     */
+    protected static EntityTag entityTag(Object... validators) {
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        for (Object validator : validators) {
+            hasher.putUnencodedChars(String.valueOf(validator)).putChar('\0');
+        }
+        return new EntityTag(hasher.hash().toString().substring(0, 16), true);
+    }
+
+    /**
+     * @return whether the request carries If-None-Match or If-Modified-Since. Only then is it worth reading an
+     *         entity's validators ahead of the entity itself; otherwise the tag is derived from the entity read for
+     *         the body.
+     */
+    protected boolean isConditional() {
+        return headers.getHeaderString(HttpHeaders.IF_NONE_MATCH) != null
+                || headers.getHeaderString(HttpHeaders.IF_MODIFIED_SINCE) != null;
+    }
+
+    /**
+     * @return milliseconds of a lastUpdated value, 0 for documents written before it was kept
+     */
+    protected static long timeOf(Date lastUpdated) {
+        return lastUpdated != null ? lastUpdated.getTime() : 0L;
+    }
+
+    /**
+     * Evaluates If-None-Match and If-Modified-Since for a GET.
+     *
+     * @param tag           current entity tag
+     * @param lastModified  current modification time, null if not known
+     * @return 304 Not Modified if the client's copy is current, null if the body has to be sent
+     */
+    protected Response notModified(EntityTag tag, Date lastModified) {
+        Response.ResponseBuilder builder = lastModified != null
+                ? request.evaluatePreconditions(lastModified, tag)
+                : request.evaluatePreconditions(tag);
+        return builder != null ? withValidators(builder, tag, lastModified).build() : null;
+    }
+
+    /**
+     * Adds ETag and Last-Modified to a response.
+     */
+    protected Response withValidators(Response response, EntityTag tag, Date lastModified) {
+        return withValidators(Response.fromResponse(response), tag, lastModified).build();
+    }
+
+    private Response.ResponseBuilder withValidators(Response.ResponseBuilder builder, EntityTag tag, Date lastModified) {
+        builder.tag(tag);
+        if (lastModified != null) {
+            builder.lastModified(lastModified);
+        }
+        return builder;
+    }
+
     protected boolean isAdminUser(@Auth User user) {
         return user.getRole().getRole().equals(RoleType.ADMIN);
     }
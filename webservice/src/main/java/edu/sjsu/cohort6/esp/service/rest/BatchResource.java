@@ -0,0 +1,520 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.service.rest;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mongodb.DuplicateKeyException;
+import edu.sjsu.cohort6.esp.common.CommonUtils;
+import edu.sjsu.cohort6.esp.common.Course;
+import edu.sjsu.cohort6.esp.common.Student;
+import edu.sjsu.cohort6.esp.common.User;
+import edu.sjsu.cohort6.esp.dao.mongodb.CourseDAO;
+import edu.sjsu.cohort6.esp.dao.mongodb.StudentDAO;
+import edu.sjsu.cohort6.esp.dao.mongodb.UserDAO;
+import edu.sjsu.cohort6.esp.service.rest.exception.AuthorizationException;
+import edu.sjsu.cohort6.esp.service.rest.exception.BadRequestException;
+import io.dropwizard.auth.Auth;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.UriBuilder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs many student and course operations in one request.
+ *
+ * The body is an ordered list of operations, each with a method, a path relative to the API root and, for POST
+ * and PUT, a body:
+ * <pre>
+ *     [{"method": "GET", "path": "/courses/5651..."},
+ *      {"method": "PUT", "path": "/students/5652...", "body": {"courseRef": {"enrollId": "5651..."}}}]
+ * </pre>
+ * The caller is authenticated once for the whole batch. The answer is 207 Multi-Status with one result per
+ * operation, in the same order, each with its own status and body or error.
+ *
+ * Operations run in phases, in order. Consecutive GETs form one phase, reading each collection with a single
+ * fetch. Consecutive writes of the same method to the same collection form one phase: course creates and student
+ * deletes are sent to the DAO as one bulk call, updates run one per id. A student create writes its user and then
+ * the student, and removes the user again if the student cannot be written. Within a phase, collections and ids run
+ * in parallel, so an operation that needs the outcome of an earlier one must come after a change of method or
+ * collection.
+ *
+ * @author rwatsh on 11/27/15.
+ */
+@Path(EndpointUtils.ENDPOINT_ROOT + "/batch")
+@Produces({MediaType.APPLICATION_JSON, EndpointUtils.APPLICATION_SMILE})
+public class BatchResource {
+
+    private static final Logger log = Logger.getLogger(BatchResource.class.getName());
+    private static final String STUDENTS = "students";
+    private static final String COURSES = "courses";
+
+    private final StudentResource studentResource;
+    private final CourseResource courseResource;
+    private final StudentDAO studentDAO;
+    private final CourseDAO courseDAO;
+    private final UserDAO userDAO;
+    private final ExecutorService executor;
+    private final int maxOperations;
+
+    /**
+     * @param studentResource   resource student updates and deletes are delegated to
+     * @param courseResource    resource course updates and deletes are delegated to
+     * @param executor          workers for the operations of a phase that can run in parallel
+     * @param maxOperations     largest accepted batch
+     */
+    public BatchResource(StudentResource studentResource, CourseResource courseResource,
+                         ExecutorService executor, int maxOperations) {
+        this.studentResource = studentResource;
+        this.courseResource = courseResource;
+        this.studentDAO = studentResource.studentDAO;
+        this.courseDAO = courseResource.courseDAO;
+        this.userDAO = studentResource.userDAO;
+        this.executor = executor;
+        this.maxOperations = maxOperations;
+    }
+
+    @POST
+    @Produces({MediaType.APPLICATION_JSON, EndpointUtils.APPLICATION_SMILE})
+    @Consumes({MediaType.APPLICATION_JSON, EndpointUtils.APPLICATION_SMILE})
+    public Response execute(@Auth User user, List<Operation> operations) {
+        if (operations == null || operations.isEmpty() || operations.size() > maxOperations) {
+            throw new BadRequestException(new IllegalArgumentException(
+                    "A batch takes 1 to " + maxOperations + " operations"));
+        }
+        Result[] results = new Result[operations.size()];
+        List<Step> steps = new ArrayList<>();
+        for (int i = 0; i < operations.size(); i++) {
+            try {
+                steps.add(new Step(i, operations.get(i)));
+            } catch (IllegalArgumentException e) {
+                results[i] = Result.error(Response.Status.BAD_REQUEST.getStatusCode(), e.getMessage());
+            }
+        }
+
+        for (List<Step> phase : phases(steps)) {
+            runPhase(user, phase, results);
+        }
+        return Response.status(EndpointUtils.MULTI_STATUS).entity(Arrays.asList(results)).build();
+    }
+
+    /**
+     * @return indexes of the operations in each phase, in the order the phases run; operations that are not valid
+     *         belong to none
+     */
+    public static List<List<Integer>> phasesOf(List<Operation> operations) {
+        List<Step> steps = new ArrayList<>();
+        for (int i = 0; i < operations.size(); i++) {
+            try {
+                steps.add(new Step(i, operations.get(i)));
+            } catch (IllegalArgumentException e) {
+                // not part of any phase
+            }
+        }
+        List<List<Integer>> indexes = new ArrayList<>();
+        for (List<Step> phase : phases(steps)) {
+            List<Integer> phaseIndexes = new ArrayList<>();
+            for (Step step : phase) {
+                phaseIndexes.add(step.index);
+            }
+            indexes.add(phaseIndexes);
+        }
+        return indexes;
+    }
+
+    private static List<List<Step>> phases(List<Step> steps) {
+        List<List<Step>> phases = new ArrayList<>();
+        int start = 0;
+        while (start < steps.size()) {
+            Step first = steps.get(start);
+            int end = start + 1;
+            while (end < steps.size() && samePhase(first, steps.get(end))) {
+                end++;
+            }
+            phases.add(steps.subList(start, end));
+            start = end;
+        }
+        return phases;
+    }
+
+    private static boolean samePhase(Step first, Step next) {
+        if (!first.method.equals(next.method)) {
+            return false;
+        }
+        return first.method.equals("GET") || first.collection.equals(next.collection);
+    }
+
+    private void runPhase(User user, List<Step> phase, Result[] results) {
+        Step first = phase.get(0);
+        List<Runnable> tasks = new ArrayList<>();
+        switch (first.method) {
+            case "GET":
+                for (Map.Entry<String, List<Step>> group : groupBy(phase, true).entrySet()) {
+                    tasks.add(guarded(group.getValue(), results, () -> retrieve(group.getKey(), group.getValue(), results)));
+                }
+                break;
+            case "POST":
+                tasks.add(guarded(phase, results, () -> {
+                    if (first.collection.equals(COURSES)) {
+                        createCourses(user, phase, results);
+                    } else {
+                        createStudents(phase, results);
+                    }
+                }));
+                break;
+            case "PUT":
+                for (List<Step> sameId : groupBy(phase, false).values()) {
+                    tasks.add(() -> {
+                        for (Step step : sameId) {
+                            guarded(Arrays.asList(step), results, () -> update(user, step, results)).run();
+                        }
+                    });
+                }
+                break;
+            default:
+                tasks.add(guarded(phase, results, () -> delete(user, phase, results)));
+                break;
+        }
+        Workers.runAll(executor, tasks);
+    }
+
+    /**
+     * Groups steps by collection, or by id, keeping the order in which they first appear.
+     */
+    private static Map<String, List<Step>> groupBy(List<Step> steps, boolean byCollection) {
+        Map<String, List<Step>> groups = new LinkedHashMap<>();
+        for (Step step : steps) {
+            String key = byCollection ? step.collection : step.id;
+            List<Step> group = groups.get(key);
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.put(key, group);
+            }
+            group.add(step);
+        }
+        return groups;
+    }
+
+    private void retrieve(String collection, List<Step> steps, Result[] results) {
+        List<String> ids = new ArrayList<>();
+        for (Step step : steps) {
+            if (!ids.contains(step.id)) {
+                ids.add(step.id);
+            }
+        }
+        Map<String, Object> byId = new HashMap<>();
+        if (collection.equals(COURSES)) {
+            for (Course course : courseDAO.fetchById(ids)) {
+                byId.put(course.getId(), course);
+            }
+        } else {
+            for (Student student : studentDAO.fetchById(ids)) {
+                byId.put(student.getId(), student);
+            }
+        }
+        for (Step step : steps) {
+            Object entity = byId.get(step.id);
+            results[step.index] = entity != null
+                    ? Result.ok(Response.Status.OK.getStatusCode(), entity, null)
+                    : Result.error(Response.Status.NOT_FOUND.getStatusCode(), Response.Status.NOT_FOUND.getReasonPhrase());
+        }
+    }
+
+    private void createCourses(User user, List<Step> steps, Result[] results) throws Exception {
+        if (!courseResource.isAdminUser(user)) {
+            throw new AuthorizationException("User " + user.getUserName() + " is not allowed to perform this operation");
+        }
+        List<Step> parsedSteps = new ArrayList<>();
+        List<Course> courses = new ArrayList<>();
+        for (Step step : steps) {
+            Course course = parse(step, Course.class, results);
+            if (course != null) {
+                parsedSteps.add(step);
+                courses.add(course);
+            }
+        }
+        if (!courses.isEmpty()) {
+            created(CourseResource.class, parsedSteps, courses, courseDAO.add(courses), results);
+        }
+    }
+
+    /**
+     * Creates the students one at a time, each with its user. Every step is validated before anything is written,
+     * and a student that fails to be written takes its user with it, so a failed step leaves no orphan user.
+     * Whether an email is already registered is left to the unique index on it, which unlike a lookup also holds
+     * against concurrent registrations.
+     */
+    private void createStudents(List<Step> steps, Result[] results) {
+        List<Step> validSteps = new ArrayList<>();
+        List<Student> students = new ArrayList<>();
+        Set<String> emails = new HashSet<>();
+        for (Step step : steps) {
+            Student student = parse(step, Student.class, results);
+            if (student == null) {
+                continue;
+            }
+            User user = student.getUser();
+            if (user == null || user.getEmailId() == null || user.getEmailId().isEmpty()) {
+                results[step.index] = Result.error(Response.Status.BAD_REQUEST.getStatusCode(),
+                        "A student needs a user with an email");
+            } else if (!emails.add(user.getEmailId())) {
+                results[step.index] = Result.error(Response.Status.BAD_REQUEST.getStatusCode(),
+                        "Email " + user.getEmailId() + " appears more than once in the batch");
+            } else {
+                validSteps.add(step);
+                students.add(student);
+            }
+        }
+        for (int i = 0; i < validSteps.size(); i++) {
+            Step step = validSteps.get(i);
+            Student student = students.get(i);
+            guarded(Arrays.asList(step), results, () -> createStudent(step, student, results)).run();
+        }
+    }
+
+    private void createStudent(Step step, Student student, Result[] results) throws Exception {
+        studentResource.findCoursesForStudent(student);
+        User user = student.getUser();
+        try {
+            userDAO.add(Arrays.asList(user));
+        } catch (DuplicateKeyException e) {
+            results[step.index] = Result.error(Response.Status.BAD_REQUEST.getStatusCode(),
+                    "Email " + user.getEmailId() + " is already registered");
+            return;
+        }
+        List<String> ids;
+        try {
+            ids = studentDAO.add(Arrays.asList(student));
+        } catch (RuntimeException e) {
+            userDAO.remove(Arrays.asList(user.getId()));
+            throw e;
+        }
+        created(StudentResource.class, Arrays.asList(step), Arrays.asList(student), ids, results);
+    }
+
+    private static <T> T parse(Step step, Class<T> type, Result[] results) {
+        try {
+            if (step.body == null || !step.body.isObject()) {
+                throw new IllegalArgumentException("A body is required");
+            }
+            return CommonUtils.convertJsonToObject(step.body.toString(), type);
+        } catch (Exception e) {
+            results[step.index] = Result.error(Response.Status.BAD_REQUEST.getStatusCode(), e.getMessage());
+            return null;
+        }
+    }
+
+    private static void created(Class<?> resource, List<Step> steps, List<?> entities, List<String> ids,
+                                Result[] results) {
+        for (int i = 0; i < steps.size(); i++) {
+            String location = UriBuilder.fromResource(resource).path("{id}").build(ids.get(i)).toString();
+            results[steps.get(i).index] = Result.ok(Response.Status.CREATED.getStatusCode(), entities.get(i), location);
+        }
+    }
+
+    private void update(User user, Step step, Result[] results) throws Exception {
+        String body = step.body != null ? step.body.toString() : "{}";
+        Object entity = step.collection.equals(COURSES)
+                ? courseResource.update(user, step.id, body)
+                : studentResource.update(user, step.id, body);
+        results[step.index] = Result.ok(Response.Status.OK.getStatusCode(), entity, null);
+    }
+
+    private void delete(User user, List<Step> steps, Result[] results) throws Exception {
+        if (steps.get(0).collection.equals(COURSES)) {
+            // each course is also removed from the students enrolled in it, which the course resource does per id
+            for (Step step : steps) {
+                guarded(Arrays.asList(step), results, () -> {
+                    courseResource.delete(user, step.id);
+                    results[step.index] = Result.ok(Response.Status.OK.getStatusCode(), null, null);
+                }).run();
+            }
+            return;
+        }
+        if (!studentResource.isAdminUser(user)) {
+            throw new AuthorizationException("User " + user.getUserName() + " is not allowed to perform this operation");
+        }
+        List<String> ids = new ArrayList<>();
+        for (Step step : steps) {
+            ids.add(step.id);
+        }
+        studentDAO.remove(ids);
+        for (Step step : steps) {
+            results[step.index] = Result.ok(Response.Status.OK.getStatusCode(), null, null);
+        }
+    }
+
+    private interface Work {
+        void run() throws Exception;
+    }
+
+    /**
+     * Turns a failure of the work into the result of each of the steps it was done for that has none yet.
+     */
+    private static Runnable guarded(List<Step> steps, Result[] results, Work work) {
+        return () -> {
+            try {
+                work.run();
+            } catch (Exception e) {
+                int status = e instanceof WebApplicationException
+                        ? ((WebApplicationException) e).getResponse().getStatus()
+                        : Response.Status.INTERNAL_SERVER_ERROR.getStatusCode();
+                if (status >= 500) {
+                    log.log(Level.SEVERE, "Batch operation failed", e);
+                }
+                for (Step step : steps) {
+                    if (results[step.index] == null) {
+                        results[step.index] = Result.error(status, e.getMessage());
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * An operation of the batch, validated.
+     */
+    private static final class Step {
+        private final int index;
+        private final String method;
+        private final String collection;
+        private final String id;
+        private final JsonNode body;
+
+        Step(int index, Operation operation) {
+            this.index = index;
+            this.method = operation.getMethod() != null ? operation.getMethod().toUpperCase() : "";
+            this.body = operation.getBody();
+
+            String path = operation.getPath() != null ? operation.getPath().trim() : "";
+            if (path.startsWith(EndpointUtils.ENDPOINT_ROOT)) {
+                path = path.substring(EndpointUtils.ENDPOINT_ROOT.length());
+            }
+            String[] segments = path.replaceAll("^/+|/+$", "").split("/");
+            this.collection = segments[0];
+            this.id = segments.length > 1 ? segments[1] : null;
+            if (segments.length > 2 || (!collection.equals(STUDENTS) && !collection.equals(COURSES))) {
+                throw new IllegalArgumentException("Unsupported path " + operation.getPath());
+            }
+            switch (method) {
+                case "POST":
+                    if (id != null) {
+                        throw new IllegalArgumentException("POST takes a collection path");
+                    }
+                    break;
+                case "GET":
+                case "PUT":
+                case "DELETE":
+                    if (id == null || id.isEmpty()) {
+                        throw new IllegalArgumentException(method + " takes an entity path");
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported method " + operation.getMethod());
+            }
+        }
+    }
+
+    /**
+     * An operation as sent by the client.
+     */
+    public static class Operation {
+        private String method;
+        private String path;
+        private JsonNode body;
+
+        public String getMethod() {
+            return method;
+        }
+
+        public void setMethod(String method) {
+            this.method = method;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public void setPath(String path) {
+            this.path = path;
+        }
+
+        public JsonNode getBody() {
+            return body;
+        }
+
+        public void setBody(JsonNode body) {
+            this.body = body;
+        }
+    }
+
+    /**
+     * Outcome of an operation, in the multi-status answer.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Result {
+        private int status;
+        private String location;
+        private Object body;
+        private String error;
+
+        static Result ok(int status, Object body, String location) {
+            Result result = new Result();
+            result.status = status;
+            result.body = body;
+            result.location = location;
+            return result;
+        }
+
+        static Result error(int status, String error) {
+            Result result = new Result();
+            result.status = status;
+            result.error = error;
+            return result;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public String getLocation() {
+            return location;
+        }
+
+        public Object getBody() {
+            return body;
+        }
+
+        public String getError() {
+            return error;
+        }
+    }
+}
@@ -14,11 +14,25 @@
 
 package edu.sjsu.cohort6.esp.service.rest;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.mongodb.DBObject;
 import edu.sjsu.cohort6.esp.common.CommonUtils;
 import edu.sjsu.cohort6.esp.common.Course;
+import edu.sjsu.cohort6.esp.common.JsonCodecs;
 import edu.sjsu.cohort6.esp.common.Student;
 import edu.sjsu.cohort6.esp.common.User;
 import edu.sjsu.cohort6.esp.dao.DBClient;
+import edu.sjsu.cohort6.esp.dao.DBException;
+import edu.sjsu.cohort6.esp.dao.filter.Filter;
+import edu.sjsu.cohort6.esp.dao.filter.FilterParser;
+import edu.sjsu.cohort6.esp.dao.filter.FilterSchema;
+import edu.sjsu.cohort6.esp.dao.filter.InvalidFilterException;
+import edu.sjsu.cohort6.esp.dao.mongodb.EntityCursor;
+import edu.sjsu.cohort6.esp.dao.mongodb.NamedQuery;
+import edu.sjsu.cohort6.esp.dao.mongodb.QueryRejectedException;
+import edu.sjsu.cohort6.esp.dao.mongodb.StudentDAO;
+import edu.sjsu.cohort6.esp.dao.mongodb.codec.CourseJsonTranscoder;
 import edu.sjsu.cohort6.esp.service.rest.exception.AuthorizationException;
 import edu.sjsu.cohort6.esp.service.rest.exception.BadRequestException;
 import edu.sjsu.cohort6.esp.service.rest.exception.InternalErrorException;
@@ -33,11 +47,14 @@ import javax.ws.rs.*;
 import javax.ws.rs.client.Entity;
 import javax.ws.rs.core.*;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URLDecoder;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -49,19 +66,47 @@ import java.util.logging.Logger;
  * @author rwatsh on 9/24/15.
  */
 @Path(EndpointUtils.ENDPOINT_ROOT + "/courses")
-@Produces(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, EndpointUtils.APPLICATION_SMILE})
 public class CourseResource extends BaseResource<Course> {
 
     private static final Logger log = Logger.getLogger(Course.class.getName());
 
+    /**
+     * Set to true on a filtered list that was cut at the query guard's default limit
+     * (database.queryGuard.defaultLimit) because more courses match the filter. A narrower filter gets them all.
+     */
+    public static final String TRUNCATED_HEADER = "X-Result-Truncated";
+
+    /**
+     * Writes course documents straight to the response in passthrough mode, null otherwise.
+     */
+    private final CourseJsonTranscoder transcoder;
+
+    /**
+     * Encoded course responses, null if caching is off.
+     */
+    private final ResponseCache responseCache;
+
     public CourseResource(DBClient client) {
-        super(client);
+        this(client, false, null, new MultiGet());
+    }
+
+    /**
+     * @param client        database client
+     * @param passthrough   whether course reads skip the entity and transcode the stored documents to JSON
+     * @param responseCache cache of encoded course responses, null for none
+     * @param multiGet      reads the courses listed by the ids parameter
+     */
+    public CourseResource(DBClient client, boolean passthrough, ResponseCache responseCache, MultiGet multiGet) {
+        super(client, multiGet);
+        this.transcoder = passthrough ? new CourseJsonTranscoder(JsonCodecs.getMapper()) : null;
+        this.responseCache = responseCache;
     }
 
     @Override
     @POST
-    @Produces(MediaType.APPLICATION_JSON)
-    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, EndpointUtils.APPLICATION_SMILE})
+    @Consumes({MediaType.APPLICATION_JSON, EndpointUtils.APPLICATION_SMILE})
     public Response create(@Auth User user, @Valid String courseJson, @Context UriInfo info) {
         try {
             if (isAdminUser(user)) {
@@ -83,59 +128,209 @@ public class CourseResource extends BaseResource<Course> {
 
     }
 
+    /**
+     * Lists the courses, all of them or those with the given ids or matching the given filter. A filtered list holds
+     * at most the query guard's default limit of courses; when more match, it carries {@link #TRUNCATED_HEADER}.
+     */
     @Override
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
-    public List<Course> list(@Auth User user, @QueryParam("filter") String filter) throws InternalErrorException {
-        List<Course> courseList = null;
+    @Produces({MediaType.APPLICATION_JSON, EndpointUtils.APPLICATION_SMILE})
+    public Response list(@Auth User user, @QueryParam("filter") String filter,
+                         @QueryParam("ids") String ids) throws InternalErrorException {
+        if (ids != null) {
+            return listByIds(ids, filter);
+        }
+        Filter courseFilter = null;
         if (filter != null && !filter.trim().isEmpty()) {
-            String query = null;
             try {
-                query = buildQueryJson(filter);
+                courseFilter = FilterParser.parse(decodeFilter(filter), FilterSchema.COURSE);
             } catch (UnsupportedEncodingException e) {
                 throw new InternalErrorException(e);
+            } catch (InvalidFilterException e) {
+                log.log(Level.INFO, "Rejected course filter: " + e.getMessage());
+                throw new BadRequestException(e);
             }
-            courseList = courseDAO.fetch(query);
+        }
+        long version = courseDAO.fetchVersion();
+        EntityTag tag = entityTag(version);
+        Response notModified = notModified(tag, null);
+        if (notModified != null) {
+            return notModified;
+        }
+        final Filter parsedFilter = courseFilter;
+        final MediaType mediaType = preferredMediaType();
+        Response response;
+        if (responseCache == null) {
+            response = Response.ok(listBody(parsedFilter, mediaType), mediaType).tag(tag).build();
         } else {
-            courseList = courseDAO.fetchById(null);
+            // the version keeps a body cached here from being sent under the tag of a later write made elsewhere
+            String key = "courses@" + version + "?filter=" + (parsedFilter != null ? filter.trim() : "");
+            response = withValidators(respondCached(key, mediaType, new StreamingOutput() {
+                @Override
+                public void write(OutputStream out) throws IOException {
+                    listBody(parsedFilter, mediaType).write(out);
+                }
+            }), tag, null);
+        }
+        if (parsedFilter != null && courseDAO.exceedsLimit(parsedFilter)) {
+            return Response.fromResponse(response).header(TRUNCATED_HEADER, true).build();
         }
-        return courseList;
+        return response;
     }
 
     /**
-     * Returns a decoded query string.
-     *
-     * TODO: We may also build a query as described in:
-     * https://americommerce.zendesk.com/hc/en-us/articles/202836800-Resource-Query-Filtering-Syntax
+     * Lists the courses with the given ids, read with one $in query per chunk of ids.
+     */
+    private Response listByIds(String ids, String filter) {
+        if (filter != null) {
+            throw new BadRequestException(new IllegalArgumentException("filter and ids cannot be combined"));
+        }
+        List<String> courseIds = multiGet.parseIds(ids);
+        EntityTag tag = entityTag(courseDAO.fetchVersion());
+        Response notModified = notModified(tag, null);
+        if (notModified != null) {
+            return notModified;
+        }
+        List<Course> courses = multiGet.fetch(courseIds, courseDAO::fetchById, Course::getId);
+        return Response.ok(courses, preferredMediaType()).tag(tag).build();
+    }
+
+    /**
+     * Opens the cursor for a course list and returns the body that streams it.
+     */
+    private StreamingOutput listBody(Filter courseFilter, MediaType mediaType) {
+        try {
+            if (transcoder != null) {
+                EntityCursor<DBObject> cursor = courseFilter != null ? courseDAO.rawCursor(courseFilter) : courseDAO.rawCursor();
+                return new JsonArrayStream<>(cursor, transcoder::write, jsonFactory(mediaType));
+            }
+            EntityCursor<Course> cursor = courseFilter != null ? courseDAO.cursor(courseFilter) : courseDAO.cursor();
+            return new JsonArrayStream<>(cursor, Course.class, jsonFactory(mediaType));
+        } catch (QueryRejectedException e) {
+            throw new BadRequestException(e);
+        } catch (DBException e) {
+            throw new InternalErrorException(e);
+        }
+    }
+
+    /**
+     * Returns the decoded filter expression.
      *
-     * Once we do that we can build the query string in JSON to be passed to mongodb.
+     * The filter syntax is described in {@link FilterParser}, for example:
+     * <pre>
+     *     /courses?filter=price ge 100 and keywords has 'Java'
+     * </pre>
+     * Only filters that can be answered from an index are accepted, anything else is rejected with 400.
      *
-     * @param query
+     * @param filter
      * @return
      */
-    private String buildQueryJson(String query) throws UnsupportedEncodingException {
+    private String decodeFilter(String filter) throws UnsupportedEncodingException {
 
-        return URLDecoder.decode(query, "UTF-8");
+        return URLDecoder.decode(filter, "UTF-8");
     }
 
     @Override
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, EndpointUtils.APPLICATION_SMILE})
     @Path("/{id}")
-    public Course retrieve(@Auth User user, @PathParam("id") String id) throws ResourceNotFoundException, InternalErrorException {
-        List<String> courseIdList = getListFromEntityId(id);
-        List<Course> courseList = courseDAO.fetchById(courseIdList);
-        if (courseList != null && !courseList.isEmpty()) {
-            return courseList.get(0);
-        } else {
+    public Response retrieve(@Auth User user, @PathParam("id") final String id) throws ResourceNotFoundException, InternalErrorException {
+        if (isConditional()) {
+            // the client holds a copy: a projection of lastUpdated is enough to answer 304
+            Date lastUpdated = id != null && !id.isEmpty() ? courseDAO.fetchLastUpdated(id) : null;
+            if (lastUpdated == null) {
+                throw new ResourceNotFoundException();
+            }
+            Response notModified = notModified(entityTag(lastUpdated.getTime()), lastUpdated);
+            if (notModified != null) {
+                return notModified;
+            }
+        }
+        final MediaType mediaType = preferredMediaType();
+        if (responseCache == null) {
+            CourseBody body = courseBody(id, mediaType);
+            return Response.ok(body, mediaType).tag(entityTag(timeOf(body.lastUpdated))).lastModified(body.lastUpdated)
+                    .build();
+        }
+        Response response = respondCached("courses/" + id, mediaType, new ResponseCache.Renderer() {
+            @Override
+            public Date render(OutputStream out) throws IOException {
+                CourseBody body = courseBody(id, mediaType);
+                body.write(out);
+                return body.lastUpdated;
+            }
+        });
+        return withValidators(response, entityTag(timeOf(response.getLastModified())), response.getLastModified());
+    }
+
+    /**
+     * Body of a single course, with the lastUpdated of the document it was read from.
+     */
+    private abstract static class CourseBody implements StreamingOutput {
+        final Date lastUpdated;
+
+        CourseBody(Date lastUpdated) {
+            this.lastUpdated = lastUpdated;
+        }
+    }
+
+    /**
+     * Reads a course and returns the body that writes it.
+     *
+     * @throws ResourceNotFoundException if there is no such course
+     */
+    private CourseBody courseBody(String id, MediaType mediaType) {
+        final JsonFactory factory = jsonFactory(mediaType);
+        if (transcoder != null) {
+            final DBObject document = id != null && !id.isEmpty() ? courseDAO.fetchRawById(id) : null;
+            if (document == null) {
+                throw new ResourceNotFoundException();
+            }
+            Object lastUpdated = document.get("lastUpdated");
+            return new CourseBody(lastUpdated instanceof Date ? (Date) lastUpdated : null) {
+                @Override
+                public void write(OutputStream out) throws IOException {
+                    try (JsonGenerator generator = factory.createGenerator(out)) {
+                        transcoder.write(generator, document);
+                    }
+                }
+            };
+        }
+        List<Course> courseList = courseDAO.fetchById(getListFromEntityId(id));
+        if (courseList == null || courseList.isEmpty()) {
             throw new ResourceNotFoundException();
         }
+        final Course course = courseList.get(0);
+        return new CourseBody(course.getLastUpdated()) {
+            @Override
+            public void write(OutputStream out) throws IOException {
+                try (JsonGenerator generator = factory.createGenerator(out)) {
+                    JsonCodecs.writer(Course.class).writeValue(generator, course);
+                }
+            }
+        };
+    }
+
+    private Response respondCached(String key, MediaType mediaType, StreamingOutput renderer) {
+        try {
+            return responseCache.respond(key + ";" + mediaType, mediaType, headers, renderer);
+        } catch (IOException e) {
+            throw new InternalErrorException(e);
+        }
+    }
+
+    private Response respondCached(String key, MediaType mediaType, ResponseCache.Renderer renderer) {
+        try {
+            return responseCache.respond(key + ";" + mediaType, mediaType, headers, renderer);
+        } catch (IOException e) {
+            throw new InternalErrorException(e);
+        }
     }
 
     @Override
     @PUT
-    @Produces(MediaType.APPLICATION_JSON)
-    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, EndpointUtils.APPLICATION_SMILE})
+    @Consumes({MediaType.APPLICATION_JSON, EndpointUtils.APPLICATION_SMILE})
     @Path("/{id}")
     public Course update(@Auth User user, @PathParam("id") String id, @Valid String courseJson) throws ResourceNotFoundException, InternalErrorException, IOException {
         try {
@@ -199,6 +394,79 @@ public class CourseResource extends BaseResource<Course> {
         }
     }
 
+    /**
+     * Enrolls a cohort of students in the course.
+     *
+     * The body is a list of student ids. Capacity is checked once and all enrollments are written with one update
+     * (see {@link StudentDAO#enroll}). The answer is 207 Multi-Status with the outcome of each student, in list
+     * order: 201 enrolled, 200 already enrolled, 404 no such student, 409 no seat left. Lists longer than
+     * multiGet.maxIds are rejected with 400.
+     *
+     * @param user
+     * @param id            course id
+     * @param studentIds    students to enroll
+     * @return outcome per student
+     */
+    @POST
+    @Produces({MediaType.APPLICATION_JSON, EndpointUtils.APPLICATION_SMILE})
+    @Consumes({MediaType.APPLICATION_JSON, EndpointUtils.APPLICATION_SMILE})
+    @Path("/{id}/enrollments")
+    public Response enroll(@Auth User user, @PathParam("id") String id, List<String> studentIds) {
+        if (!isAdminUser(user)) {
+            throw new AuthorizationException("User " + user.getUserName() + " is not allowed to perform this operation");
+        }
+        if (studentIds == null || studentIds.isEmpty() || studentIds.contains(null)) {
+            throw new BadRequestException(new IllegalArgumentException("A list of student ids is required"));
+        }
+        if (studentIds.size() > multiGet.getMaxIds()) {
+            throw new BadRequestException(new IllegalArgumentException(
+                    "At most " + multiGet.getMaxIds() + " students can be enrolled at once"));
+        }
+        List<Course> courses = courseDAO.fetchById(getListFromEntityId(id));
+        if (courses == null || courses.isEmpty()) {
+            throw new ResourceNotFoundException();
+        }
+        List<EnrollmentResult> results = new ArrayList<>();
+        for (Map.Entry<String, StudentDAO.Enrollment> outcome : studentDAO.enroll(courses.get(0), studentIds).entrySet()) {
+            results.add(new EnrollmentResult(outcome.getKey(), outcome.getValue()));
+        }
+        return Response.status(EndpointUtils.MULTI_STATUS).entity(results).build();
+    }
+
+    /**
+     * Outcome of enrolling one student, in the answer of {@link #enroll}.
+     */
+    public static class EnrollmentResult {
+        private final String studentId;
+        private final StudentDAO.Enrollment outcome;
+
+        EnrollmentResult(String studentId, StudentDAO.Enrollment outcome) {
+            this.studentId = studentId;
+            this.outcome = outcome;
+        }
+
+        public String getStudentId() {
+            return studentId;
+        }
+
+        public StudentDAO.Enrollment getOutcome() {
+            return outcome;
+        }
+
+        public int getStatus() {
+            switch (outcome) {
+                case ENROLLED:
+                    return Response.Status.CREATED.getStatusCode();
+                case ALREADY_ENROLLED:
+                    return Response.Status.OK.getStatusCode();
+                case COURSE_FULL:
+                    return Response.Status.CONFLICT.getStatusCode();
+                default:
+                    return Response.Status.NOT_FOUND.getStatusCode();
+            }
+        }
+    }
+
     /**
      * Delete course.
      *
@@ -210,7 +478,7 @@ public class CourseResource extends BaseResource<Course> {
      */
     @Override
     @DELETE
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, EndpointUtils.APPLICATION_SMILE})
     @Path("/{id}")
     public Response delete(@Auth User user, @PathParam("id") String id) throws ResourceNotFoundException, InternalErrorException {
         try {
@@ -227,8 +495,8 @@ public class CourseResource extends BaseResource<Course> {
         }
     }
 
-    private void updateStudentsForCourse(String id) {
-        List<Student> students = studentDAO.fetch("{\"courseRefs.$id\" : \"" + id + "\"}");
+    private void updateStudentsForCourse(String id) throws DBException {
+        List<Student> students = studentDAO.fetch(NamedQuery.STUDENTS_BY_COURSE_REF, id);
         for (Student s: students) {
             List<Course> courses = courseDAO.fetchById(getListFromEntityId(id));
             if (!courses.isEmpty()) {
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.service.rest;
+
+import edu.sjsu.cohort6.esp.dao.Deadline;
+import edu.sjsu.cohort6.esp.service.DeadlineConfig;
+
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.Provider;
+import java.io.IOException;
+
+/**
+ * Starts a {@link Deadline} for each API request so that every DAO call made for it, including the
+ * authentication lookup, is limited to the time that is left.
+ *
+ * The timeout comes from the route configuration and may be shortened (never extended) by the client with the
+ * X-Request-Timeout header, in milliseconds. A request that arrives with no time left is answered with 503
+ * without running it. If a request fails after its deadline has passed, the error is reported as 503 as well,
+ * since it was most likely caused by a timed out or refused DAO call.
+ */
+@Provider
+@Priority(Priorities.AUTHENTICATION - 100)
+public class DeadlineFilter implements ContainerRequestFilter, ContainerResponseFilter {
+    public static final String TIMEOUT_HEADER = "X-Request-Timeout";
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    private final DeadlineConfig config;
+
+    public DeadlineFilter(DeadlineConfig config) {
+        this.config = config;
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request) throws IOException {
+        String path = request.getUriInfo().getPath();
+        if (path.startsWith("/")) {
+            path = path.substring(1);
+        }
+        int slash = path.indexOf('/');
+        long timeout = config.timeoutFor(slash < 0 ? path : path.substring(0, slash));
+
+        String requested = request.getHeaderString(TIMEOUT_HEADER);
+        if (requested != null) {
+            try {
+                long clientTimeout = Long.parseLong(requested.trim());
+                if (clientTimeout <= 0) {
+                    request.abortWith(unavailable());
+                    return;
+                }
+                timeout = timeout > 0 ? Math.min(timeout, clientTimeout) : clientTimeout;
+            } catch (NumberFormatException e) {
+                // ignore a malformed header and use the configured timeout
+            }
+        }
+
+        if (timeout > 0) {
+            Deadline.start(timeout);
+        } else {
+            Deadline.clear();
+        }
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request, ContainerResponseContext response) throws IOException {
+        try {
+            if (Deadline.isSet() && Deadline.isExpired() && response.getStatus() >= 400) {
+                response.setStatus(Response.Status.SERVICE_UNAVAILABLE.getStatusCode());
+                response.setEntity(null);
+                response.getHeaders().remove(HttpHeaders.CONTENT_TYPE);
+                response.getHeaders().putSingle(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+            }
+        } finally {
+            Deadline.clear();
+        }
+    }
+
+    private static Response unavailable() {
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                .build();
+    }
+}
@@ -14,6 +14,7 @@
 
 package edu.sjsu.cohort6.esp.service.rest;
 
+import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.UriInfo;
 import java.net.URI;
 
@@ -24,6 +25,17 @@ public class EndpointUtils {
     public static final String ENDPOINT_VERSION_STRING= "v1.0";
     public static final String ENDPOINT_ROOT = "/api/" + ENDPOINT_VERSION_STRING;
 
+    /**
+     * Binary JSON (Smile) media type accepted and produced by all resources alongside JSON.
+     */
+    public static final String APPLICATION_SMILE = "application/x-jackson-smile";
+    public static final MediaType APPLICATION_SMILE_TYPE = MediaType.valueOf(APPLICATION_SMILE);
+
+    /**
+     * WebDAV 207 Multi-Status, for answers carrying a separate status per item.
+     */
+    public static final int MULTI_STATUS = 207;
+
     public static URI getCreatedResourceURI (UriInfo info,
                                              URI resourcePath, Long resourceId) {
         URI uri = info.getAbsolutePathBuilder()
@@ -33,4 +45,40 @@ public class EndpointUtils {
 
         return uri;
     }
+
+    /**
+     * Tells whether an Accept-Encoding header value allows a content coding, either by name or through *, with a
+     * non-zero quality.
+     *
+     * @param acceptEncoding    Accept-Encoding header value, may be null
+     * @param coding            content coding, e.g. gzip
+     * @return true if the coding may be used
+     */
+    public static boolean acceptsEncoding(String acceptEncoding, String coding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String accepted : acceptEncoding.split(",")) {
+            String[] parts = accepted.split(";");
+            String name = parts[0].trim();
+            if (!name.equalsIgnoreCase(coding) && !name.equals("*")) {
+                continue;
+            }
+            boolean refused = false;
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim().replace(" ", "");
+                if (param.startsWith("q=")) {
+                    try {
+                        refused = Double.parseDouble(param.substring(2)) == 0;
+                    } catch (NumberFormatException e) {
+                        refused = true;
+                    }
+                }
+            }
+            if (!refused) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.service.rest;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import edu.sjsu.cohort6.esp.dao.mongodb.IdempotencyStore;
+
+import javax.annotation.Priority;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Answers a retried POST or PUT with the response of the first attempt, when the client sends the same
+ * Idempotency-Key header with both. The retry does not reach the resource, so it does no DAO work and creates
+ * nothing twice.
+ *
+ * Keys are scoped to the caller's credentials and the request line. The first request with a key claims it in
+ * the {@link IdempotencyStore}; its response is stored once written, if it is a success. Failed requests release
+ * the key so that they can be retried. While the first request runs, a retry is answered with 409 and
+ * Retry-After. Reusing a key with a different body is answered with 422. Stored responses are also kept in memory
+ * for as long as they are retained, so replays are served without a database read.
+ *
+ * The body of a request with a key is read into memory to fingerprint it, so it is bounded: a larger one is
+ * answered with 413.
+ */
+@Provider
+@Priority(Priorities.AUTHENTICATION - 50)
+public class IdempotencyFilter implements ContainerRequestFilter, ContainerResponseFilter, WriterInterceptor {
+    public static final String KEY_HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final int UNPROCESSABLE_ENTITY = 422;
+    private static final String CLAIM = IdempotencyFilter.class.getName() + ".claim";
+    private static final String CAPTURE = IdempotencyFilter.class.getName() + ".capture";
+
+    private final IdempotencyStore store;
+    private final long retainMillis;
+    private final long pendingMillis;
+    private final int maxBodyBytes;
+    private final Cache<String, IdempotencyStore.Record> completed;
+
+    /**
+     * @param store         store of the responses
+     * @param retainMillis  how long a response is kept for retries
+     * @param pendingMillis how long the key of a request that never finished stays locked
+     * @param cacheSize     responses also kept in memory
+     * @param maxBodyBytes  largest request body accepted with a key
+     */
+    public IdempotencyFilter(IdempotencyStore store, long retainMillis, long pendingMillis, int cacheSize,
+                             int maxBodyBytes) {
+        this.store = store;
+        this.retainMillis = retainMillis;
+        this.pendingMillis = pendingMillis;
+        this.maxBodyBytes = maxBodyBytes;
+        this.completed = CacheBuilder.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(retainMillis, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request) throws IOException {
+        String key = request.getHeaderString(KEY_HEADER);
+        String method = request.getMethod();
+        if (key == null || !("POST".equals(method) || "PUT".equals(method))) {
+            return;
+        }
+        key = key.trim();
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH) {
+            request.abortWith(error(Response.Status.BAD_REQUEST.getStatusCode(),
+                    KEY_HEADER + " must have 1 to " + MAX_KEY_LENGTH + " characters"));
+            return;
+        }
+
+        byte[] body = ByteStreams.toByteArray(ByteStreams.limit(request.getEntityStream(), maxBodyBytes + 1L));
+        if (body.length > maxBodyBytes) {
+            request.abortWith(error(Response.Status.REQUEST_ENTITY_TOO_LARGE.getStatusCode(),
+                    "A request with an " + KEY_HEADER + " takes a body of at most " + maxBodyBytes + " bytes"));
+            return;
+        }
+        request.setEntityStream(new ByteArrayInputStream(body));
+        URI uri = request.getUriInfo().getRequestUri();
+        String id = hash(request.getHeaderString(HttpHeaders.AUTHORIZATION), method, uri.getRawPath(),
+                uri.getRawQuery(), key);
+        String fingerprint = Hashing.sha256().hashBytes(body).toString();
+
+        IdempotencyStore.Record record = completed.getIfPresent(id);
+        if (record == null) {
+            record = store.claim(id, fingerprint, pendingMillis);
+            if (record == null) {
+                request.setProperty(CLAIM, new Claim(id, fingerprint));
+                return;
+            }
+        }
+        if (!record.getFingerprint().equals(fingerprint)) {
+            request.abortWith(error(UNPROCESSABLE_ENTITY, KEY_HEADER + " was already used with another request body"));
+        } else if (!record.isCompleted()) {
+            request.abortWith(Response.status(Response.Status.CONFLICT)
+                    .header(HttpHeaders.RETRY_AFTER, Math.max(1, record.getRemainingMillis() / 1000))
+                    .build());
+        } else {
+            completed.put(id, record);
+            request.abortWith(replay(record));
+        }
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request, ContainerResponseContext response) throws IOException {
+        Claim claim = (Claim) request.getProperty(CLAIM);
+        if (claim == null) {
+            return;
+        }
+        request.removeProperty(CLAIM);
+        int status = response.getStatus();
+        if (status < 200 || status >= 300) {
+            store.release(claim.id);
+            return;
+        }
+        MediaType mediaType = response.getMediaType();
+        claim.status = status;
+        claim.contentType = mediaType != null ? mediaType.toString() : null;
+        claim.location = response.getHeaderString(HttpHeaders.LOCATION);
+        if (response.hasEntity()) {
+            // completed once the body is written, see aroundWriteTo
+            request.setProperty(CAPTURE, claim);
+        } else {
+            complete(claim, new byte[0]);
+        }
+    }
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+        Claim claim = (Claim) context.getProperty(CAPTURE);
+        if (claim == null) {
+            context.proceed();
+            return;
+        }
+        context.removeProperty(CAPTURE);
+        OutputStream out = context.getOutputStream();
+        ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        context.setOutputStream(new FilterOutputStream(out) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                copy.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                copy.write(b, off, len);
+            }
+        });
+        boolean written = false;
+        try {
+            context.proceed();
+            written = true;
+        } finally {
+            context.setOutputStream(out);
+            if (written) {
+                complete(claim, copy.toByteArray());
+            } else {
+                store.release(claim.id);
+            }
+        }
+    }
+
+    private void complete(Claim claim, byte[] body) {
+        completed.put(claim.id, store.complete(claim.id, claim.fingerprint, claim.status, claim.contentType,
+                claim.location, body, retainMillis));
+    }
+
+    private static Response replay(IdempotencyStore.Record record) {
+        Response.ResponseBuilder response = Response.status(record.getStatus()).header(REPLAYED_HEADER, "true");
+        if (record.getLocation() != null) {
+            response.header(HttpHeaders.LOCATION, record.getLocation());
+        }
+        if (record.getContentType() != null) {
+            response.entity(record.getBody()).type(record.getContentType());
+        }
+        return response.build();
+    }
+
+    private static Response error(int status, String message) {
+        return Response.status(status).entity(message).type(MediaType.TEXT_PLAIN_TYPE).build();
+    }
+
+    private static String hash(String... parts) {
+        Hasher hasher = Hashing.sha256().newHasher();
+        for (String part : parts) {
+            hasher.putUnencodedChars(String.valueOf(part)).putChar('\0');
+        }
+        return hasher.hash().toString();
+    }
+
+    /**
+     * A key claimed by the current request, and the response to store for it.
+     */
+    private static final class Claim {
+        private final String id;
+        private final String fingerprint;
+        private int status;
+        private String contentType;
+        private String location;
+
+        Claim(String id, String fingerprint) {
+            this.id = id;
+            this.fingerprint = fingerprint;
+        }
+    }
+}
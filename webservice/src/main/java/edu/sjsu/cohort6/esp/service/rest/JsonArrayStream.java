@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.service.rest;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import edu.sjsu.cohort6.esp.common.JsonCodecs;
+import edu.sjsu.cohort6.esp.dao.mongodb.EntityCursor;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes the entities of a DAO cursor to the response as a JSON (or Smile) array, one entity at a time.
+ *
+ * Only the current cursor batch and the generator buffer are held in memory, whatever the size of the result.
+ * Since the length is not known up front, Jersey sends the response with chunked transfer encoding once its
+ * buffer fills up. The cursor is closed when writing completes or fails.
+ */
+public class JsonArrayStream<T> implements StreamingOutput {
+    private static final Logger log = Logger.getLogger(JsonArrayStream.class.getName());
+
+    private final EntityCursor<T> cursor;
+    private final ElementWriter<T> elementWriter;
+    private final JsonFactory factory;
+
+    /**
+     * @param cursor    open cursor, closed by this stream
+     * @param type      entity type
+     * @param factory   factory of the generator for the negotiated format
+     */
+    public JsonArrayStream(EntityCursor<T> cursor, Class<T> type, JsonFactory factory) {
+        this.cursor = cursor;
+        this.elementWriter = JsonCodecs.writer(type)::writeValue;
+        this.factory = factory;
+    }
+
+    /**
+     * @param cursor        open cursor, closed by this stream
+     * @param elementWriter writes each element, e.g. a raw document transcoder
+     * @param factory       factory of the generator for the negotiated format
+     */
+    public JsonArrayStream(EntityCursor<T> cursor, ElementWriter<T> elementWriter, JsonFactory factory) {
+        this.cursor = cursor;
+        this.elementWriter = elementWriter;
+        this.factory = factory;
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException, WebApplicationException {
+        try (EntityCursor<T> entities = cursor;
+             JsonGenerator generator = factory.createGenerator(output)) {
+            generator.writeStartArray();
+            while (entities.hasNext()) {
+                elementWriter.write(generator, entities.next());
+            }
+            generator.writeEndArray();
+        } catch (RuntimeException e) {
+            /*
+             * Part of the array may already be on the wire, so the status can no longer change. Failing the write
+             * makes the container abort the response, and the client sees a truncated body rather than valid JSON.
+             */
+            log.log(Level.SEVERE, "Error while streaming list response", e);
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Writes one array element.
+     */
+    public interface ElementWriter<T> {
+        void write(JsonGenerator generator, T element) throws IOException;
+    }
+}
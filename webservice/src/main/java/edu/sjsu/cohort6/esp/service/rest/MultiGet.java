@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.service.rest;
+
+import edu.sjsu.cohort6.esp.service.rest.exception.BadRequestException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+
+/**
+ * Fetches entities for an ids query parameter, e.g. GET /courses?ids=a,b,c.
+ *
+ * The ids are read with one $in query per chunk. Large lists are split into chunks that are read in parallel,
+ * which keeps each query small enough for the query time limit. Results come back in the order of the ids.
+ */
+public class MultiGet {
+
+    /**
+     * Reads one chunk of ids, typically a DAO's fetchById.
+     */
+    public interface Fetch<T> {
+        List<T> fetch(List<String> ids);
+    }
+
+    private final ExecutorService executor;
+    private final int maxIds;
+    private final int chunkSize;
+
+    /**
+     * @param executor  workers for the chunks of a large list, null to read the chunks one after the other
+     * @param maxIds    largest accepted list
+     * @param chunkSize ids per query
+     */
+    public MultiGet(ExecutorService executor, int maxIds, int chunkSize) {
+        this.executor = executor;
+        this.maxIds = maxIds;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Sequential multi-get with the default limits.
+     */
+    public MultiGet() {
+        this(null, 1000, 100);
+    }
+
+    /**
+     * Parses a comma separated ids parameter. Blanks and repeated ids are dropped.
+     *
+     * @param ids   parameter value
+     * @return distinct ids in order
+     * @throws BadRequestException if the list is empty or longer than allowed
+     */
+    public List<String> parseIds(String ids) {
+        Set<String> distinct = new LinkedHashSet<>();
+        for (String id : ids.split(",")) {
+            if (!id.trim().isEmpty()) {
+                distinct.add(id.trim());
+            }
+        }
+        if (distinct.isEmpty() || distinct.size() > maxIds) {
+            throw new BadRequestException(new IllegalArgumentException("ids takes 1 to " + maxIds + " ids"));
+        }
+        return new ArrayList<>(distinct);
+    }
+
+    /**
+     * @return largest accepted list of ids
+     */
+    public int getMaxIds() {
+        return maxIds;
+    }
+
+    /**
+     * Fetches the entities with the given ids. Ids with no entity are left out.
+     *
+     * @param ids   distinct ids, see {@link #parseIds}
+     * @param fetch reads the entities of a chunk of ids
+     * @param idOf  id of an entity
+     * @return found entities, in the order of the ids
+     */
+    public <T> List<T> fetch(List<String> ids, Fetch<T> fetch, Function<T, String> idOf) {
+        List<List<String>> chunks = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += chunkSize) {
+            chunks.add(ids.subList(from, Math.min(ids.size(), from + chunkSize)));
+        }
+        List<List<T>> fetched = Collections.synchronizedList(new ArrayList<>());
+        List<Runnable> tasks = new ArrayList<>();
+        for (List<String> chunk : chunks) {
+            tasks.add(() -> fetched.add(fetch.fetch(chunk)));
+        }
+        Workers.runAll(executor, tasks);
+
+        Map<String, T> byId = new HashMap<>();
+        for (List<T> entities : fetched) {
+            for (T entity : entities) {
+                byId.put(idOf.apply(entity), entity);
+            }
+        }
+        List<T> found = new ArrayList<>(byId.size());
+        for (String id : ids) {
+            T entity = byId.get(id);
+            if (entity != null) {
+                found.add(entity);
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.service.rest;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import edu.sjsu.cohort6.esp.dao.mongodb.ChangeTracker;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Date;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cache of encoded response bodies, so that repeated reads of the same catalog data are copied out instead of
+ * being queried and serialized again.
+ *
+ * Entries are keyed by the caller (endpoint, filter and media type) and tagged with the change stamp of the
+ * collection they were read from. An entry whose stamp is no longer current is never served, so a write through the
+ * DAO invalidates every entry at once, including one that was being built while the write happened. Bodies are
+ * kept as encoded bytes, optionally with a gzipped copy for clients that accept it, and optionally in direct
+ * buffers outside the heap.
+ */
+public class ResponseCache {
+    private static final int GZIP_MIN_BYTES = 1024;
+
+    private final ChangeTracker changes;
+    private final Cache<String, Body> bodies;
+    private final int maxEntryBytes;
+    private final boolean gzip;
+    private final boolean offHeap;
+
+    /**
+     * @param changes       change stamp of the collection the responses are read from
+     * @param maxBytes      total size of the cached bodies
+     * @param maxEntryBytes size above which a response is not cached
+     * @param gzip          whether to keep a gzipped copy of each body
+     * @param offHeap       whether to keep the bodies in direct buffers
+     */
+    public ResponseCache(ChangeTracker changes, long maxBytes, int maxEntryBytes, boolean gzip, boolean offHeap) {
+        this.changes = changes;
+        this.maxEntryBytes = maxEntryBytes;
+        this.gzip = gzip;
+        this.offHeap = offHeap;
+        this.bodies = CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher(new Weigher<String, Body>() {
+                    @Override
+                    public int weigh(String key, Body body) {
+                        return body.size();
+                    }
+                })
+                .build();
+        changes.addListener(new ChangeTracker.Listener() {
+            @Override
+            public void changed(long stamp) {
+                bodies.invalidateAll();
+            }
+        });
+    }
+
+    /**
+     * Returns the cached body for the key, rendering and caching it first if needed.
+     *
+     * @param key           endpoint, filter and media type of the response
+     * @param mediaType     media type of the body
+     * @param headers       request headers, for Accept-Encoding
+     * @param renderer      writes the body; only called on a miss
+     * @return response carrying the cached body
+     */
+    public Response respond(String key, MediaType mediaType, HttpHeaders headers, final StreamingOutput renderer)
+            throws IOException {
+        return respond(key, mediaType, headers, new Renderer() {
+            @Override
+            public Date render(OutputStream out) throws IOException {
+                renderer.write(out);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Same as {@link #respond(String, MediaType, HttpHeaders, StreamingOutput)} for a body that knows when it was
+     * last modified. That time is kept with the cached body and sent as Last-Modified, so a hit needs no read to
+     * validate it.
+     */
+    public Response respond(String key, MediaType mediaType, HttpHeaders headers, Renderer renderer)
+            throws IOException {
+        long stamp = changes.current();
+        Body body = bodies.getIfPresent(key);
+        if (body == null || body.stamp != stamp) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            Date lastModified = renderer.render(out);
+            body = encode(out.toByteArray(), lastModified, stamp);
+            if (out.size() <= maxEntryBytes) {
+                bodies.put(key, body);
+            }
+        }
+
+        boolean gzipped = body.gzip != null
+                && EndpointUtils.acceptsEncoding(headers.getHeaderString(HttpHeaders.ACCEPT_ENCODING), "gzip");
+        ByteBuffer content = gzipped ? body.gzip : body.identity;
+        Response.ResponseBuilder response = Response.ok(new BufferOutput(content), mediaType)
+                .header(HttpHeaders.CONTENT_LENGTH, content.remaining());
+        if (body.gzip != null) {
+            response.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        if (body.lastModified != null) {
+            response.lastModified(body.lastModified);
+        }
+        if (gzipped) {
+            // also keeps the server's own gzip filter from compressing it again
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.build();
+    }
+
+    public void invalidateAll() {
+        bodies.invalidateAll();
+    }
+
+    public long size() {
+        return bodies.size();
+    }
+
+    private Body encode(byte[] bytes, Date lastModified, long stamp) throws IOException {
+        ByteBuffer gzipped = null;
+        if (gzip && bytes.length >= GZIP_MIN_BYTES) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4);
+            try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+                gz.write(bytes);
+            }
+            gzipped = toBuffer(out.toByteArray());
+        }
+        return new Body(toBuffer(bytes), gzipped, lastModified, stamp);
+    }
+
+    private ByteBuffer toBuffer(byte[] bytes) {
+        if (!offHeap) {
+            return ByteBuffer.wrap(bytes);
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        return buffer;
+    }
+
+    /**
+     * Writes a body on a miss.
+     */
+    public interface Renderer {
+        /**
+         * @return when the written data was last modified, null if not known
+         */
+        Date render(OutputStream out) throws IOException;
+    }
+
+    private static final class Body {
+        private final ByteBuffer identity;
+        private final ByteBuffer gzip;
+        private final Date lastModified;
+        private final long stamp;
+
+        private Body(ByteBuffer identity, ByteBuffer gzip, Date lastModified, long stamp) {
+            this.identity = identity;
+            this.gzip = gzip;
+            this.lastModified = lastModified;
+            this.stamp = stamp;
+        }
+
+        private int size() {
+            return identity.capacity() + (gzip != null ? gzip.capacity() : 0);
+        }
+    }
+
+    /**
+     * Writes a cached buffer to the response. The buffer is shared between requests and only read through
+     * duplicates.
+     */
+    private static final class BufferOutput implements StreamingOutput {
+        private static final int CHUNK_BYTES = 8192;
+
+        private final ByteBuffer content;
+
+        private BufferOutput(ByteBuffer content) {
+            this.content = content;
+        }
+
+        @Override
+        public void write(OutputStream output) throws IOException {
+            ByteBuffer buffer = content.duplicate();
+            if (buffer.hasArray()) {
+                output.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+                return;
+            }
+            // direct buffers have to pass through the heap, the container's stream only takes arrays
+            byte[] chunk = new byte[Math.min(CHUNK_BYTES, buffer.remaining())];
+            while (buffer.hasRemaining()) {
+                int n = Math.min(chunk.length, buffer.remaining());
+                buffer.get(chunk, 0, n);
+                output.write(chunk, 0, n);
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.service.rest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import edu.sjsu.cohort6.esp.common.JsonCodecs;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.ReaderInterceptor;
+import javax.ws.rs.ext.ReaderInterceptorContext;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+/**
+ * Lets the resources that take their request body as a JSON string accept Smile as well.
+ *
+ * A Smile body bound to a String parameter is decoded and handed on as the equivalent JSON text, so the resource
+ * code does not need to know which format the client sent. Bodies bound to typed parameters are left to the Smile
+ * provider.
+ */
+@Provider
+public class SmileRequestTranscoder implements ReaderInterceptor {
+
+    @Override
+    public Object aroundReadFrom(ReaderInterceptorContext context) throws IOException, WebApplicationException {
+        if (context.getType() == String.class && SmileFormat.isSmile(context.getMediaType())) {
+            JsonNode body = SmileFormat.getMapper().readTree(context.getInputStream());
+            context.setInputStream(new ByteArrayInputStream(JsonCodecs.getMapper().writeValueAsBytes(body)));
+            context.setMediaType(MediaType.APPLICATION_JSON_TYPE.withCharset("UTF-8"));
+        }
+        return context.proceed();
+    }
+}
@@ -16,6 +16,8 @@ package edu.sjsu.cohort6.esp.service.rest;
 
 import edu.sjsu.cohort6.esp.common.*;
 import edu.sjsu.cohort6.esp.dao.DBClient;
+import edu.sjsu.cohort6.esp.dao.DBException;
+import edu.sjsu.cohort6.esp.dao.mongodb.NamedQuery;
 import edu.sjsu.cohort6.esp.service.rest.exception.AuthorizationException;
 import edu.sjsu.cohort6.esp.service.rest.exception.BadRequestException;
 import edu.sjsu.cohort6.esp.service.rest.exception.InternalErrorException;
@@ -32,7 +34,9 @@ import java.io.IOException;
 import java.net.URI;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -40,7 +44,7 @@ import java.util.logging.Logger;
  * Created by rwatsh on 9/15/15.
  */
 @Path(EndpointUtils.ENDPOINT_ROOT + "/students")
-@Produces(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, EndpointUtils.APPLICATION_SMILE})
 public class StudentResource extends BaseResource<Student> {
 
     private static final Logger log = Logger.getLogger(StudentResource.class.getName());
@@ -52,6 +56,14 @@ public class StudentResource extends BaseResource<Student> {
         super(client);
     }
 
+    /**
+     * @param client    database client
+     * @param multiGet  reads the students listed by the ids parameter
+     */
+    public StudentResource(DBClient client, MultiGet multiGet) {
+        super(client, multiGet);
+    }
+
 
     /**
      * Used to validate the user's basic auth creds. If the user is valid then framework will let this method
@@ -83,8 +95,8 @@ public class StudentResource extends BaseResource<Student> {
      */
     @Override
     @POST
-    @Produces(MediaType.APPLICATION_JSON)
-    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, EndpointUtils.APPLICATION_SMILE})
+    @Consumes({MediaType.APPLICATION_JSON, EndpointUtils.APPLICATION_SMILE})
     public Response create(@Auth(required=false) User user, @Valid String studentJson, @Context UriInfo info) {
         try {
             Student s = CommonUtils.convertJsonToObject(studentJson, Student.class);
@@ -103,13 +115,21 @@ public class StudentResource extends BaseResource<Student> {
         }
     }
 
-    private void findCoursesForStudent(Student s) {
+    /**
+     * Replaces the requested courses of a new student, given by name, with the stored ones. Names with no course
+     * are dropped. All names are looked up with one query.
+     */
+    void findCoursesForStudent(Student s) throws DBException {
         List<Course> courses = s.getCourseRefs();
         List<Course> coursesFoundList = new ArrayList<>();
         if (courses != null && !courses.isEmpty()) {
-            // find course by name
+            List<String> names = new ArrayList<>();
             for (Course course : courses) {
-                Course c =  courseDAO.fetchCourseByName(course.getCourseName());
+                names.add(course.getCourseName());
+            }
+            Map<String, Course> coursesByName = courseDAO.fetchCoursesByName(names);
+            for (String name : names) {
+                Course c = coursesByName.get(name);
                 if (c != null) {
                     coursesFoundList.add(c);
                 }
@@ -128,44 +148,71 @@ public class StudentResource extends BaseResource<Student> {
 
     @Override
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
-    public List list(@Auth User user, @QueryParam("filter") String filter) {
+    @Produces({MediaType.APPLICATION_JSON, EndpointUtils.APPLICATION_SMILE})
+    public Response list(@Auth User user, @QueryParam("filter") String filter,
+                         @QueryParam("ids") String ids) throws InternalErrorException {
+        List<String> studentIds = ids != null ? multiGet.parseIds(ids) : null;
         /**
-         * This method can only be run by an ADMIN.
+         * An ADMIN gets all students, any other user only the student record that references their own user.
          */
-        List<String> studentIds = new ArrayList<>();
-        List<Student> studentList = studentDAO.fetchById(studentIds);
-        
+        // students embed their user and courses, so a write to any of the three collections changes the list
+        EntityTag tag = entityTag(studentDAO.fetchVersion(), courseDAO.fetchVersion(), userDAO.fetchVersion(),
+                user.getUserName());
+        Response notModified = notModified(tag, null);
+        if (notModified != null) {
+            return notModified;
+        }
+        if (studentIds != null) {
+            List<Student> students = multiGet.fetch(studentIds, studentDAO::fetchById, Student::getId);
+            if (!isAdminUser(user)) {
+                List<Student> own = new ArrayList<>();
+                for (Student s : students) {
+                    if (s.getUser() != null && user.getUserName().equals(s.getUser().getUserName())) {
+                        own.add(s);
+                    }
+                }
+                students = own;
+            }
+            return Response.ok(students, preferredMediaType()).tag(tag).build();
+        }
         if (isAdminUser(user)) {
-
-
-            return studentList;
-        } else {
-		    int myIndex = 0;
-		   
-		    for( int i = 0; i < studentList.size(); i++ ){
-				if(studentList.get(i).getUser().getId().equals(user.getId()))
-				{
-					myIndex = i;		
-					break;
-				}
-		    }
-		    
-	        List<Student> returnList = new ArrayList<>();
-	        returnList.add(studentList.get(myIndex));
-	        return returnList;
+            return withValidators(streamList(studentDAO.cursor(), Student.class), tag, null);
+        }
+        try {
+            return withValidators(streamList(studentDAO.cursor(NamedQuery.STUDENTS_BY_USER_REF, user.getId()),
+                    Student.class), tag, null);
+        } catch (DBException e) {
+            throw new InternalErrorException(e);
         }
     }
     
     @Override
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, EndpointUtils.APPLICATION_SMILE})
     @Path("/{id}")
-    public Student retrieve(@Auth User user, @PathParam("id") String studentId) throws ResourceNotFoundException {
+    public Response retrieve(@Auth User user, @PathParam("id") String studentId) throws ResourceNotFoundException {
+        /*
+         * The embedded user and courses can change without touching the student's lastUpdated, so the tag also
+         * covers their collections and no Last-Modified is sent.
+         */
+        long courseStamp = courseDAO.fetchVersion();
+        long userStamp = userDAO.fetchVersion();
+        if (isConditional()) {
+            // the client holds a copy: a projection of lastUpdated is enough to answer 304
+            Date lastUpdated = studentId != null && !studentId.isEmpty() ? studentDAO.fetchLastUpdated(studentId) : null;
+            if (lastUpdated == null) {
+                throw new ResourceNotFoundException();
+            }
+            Response notModified = notModified(entityTag(lastUpdated.getTime(), courseStamp, userStamp), null);
+            if (notModified != null) {
+                return notModified;
+            }
+        }
         List<String> studentIds = getListFromEntityId(studentId);
         List<Student> studentList = studentDAO.fetchById(studentIds);
         if (studentList != null && !studentList.isEmpty()) {
-            return studentList.get(0);
+            Student student = studentList.get(0);
+            return Response.ok(student).tag(entityTag(timeOf(student.getLastUpdated()), courseStamp, userStamp)).build();
         } else {
             throw new ResourceNotFoundException();
         }
@@ -173,8 +220,8 @@ public class StudentResource extends BaseResource<Student> {
     
     @Override
     @PUT
-    @Produces(MediaType.APPLICATION_JSON)
-    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, EndpointUtils.APPLICATION_SMILE})
+    @Consumes({MediaType.APPLICATION_JSON, EndpointUtils.APPLICATION_SMILE})
     @Path("/{id}")
     public Student update(@Auth User user, @PathParam("id") String id, @Valid String studentJson) throws ResourceNotFoundException, IOException {
         try {
@@ -200,7 +247,7 @@ public class StudentResource extends BaseResource<Student> {
                 if (userObj != null) {
                     String val = (String) userObj.get("userName");
                     if (val != null) {
-                        List<User> users = userDAO.fetch("{ userName: \"" + val + "\"}");
+                        List<User> users = userDAO.fetch(NamedQuery.USER_BY_USER_NAME, val);
                         if (!users.isEmpty()) {
                             student.setUser(users.get(0));
                         }
@@ -241,7 +288,7 @@ public class StudentResource extends BaseResource<Student> {
                     } else {
                         val = (String) courseObj.get("enrollCourseName");
                         if (val != null) {
-                            List<Course> courses = courseDAO.fetch("{courseName: \"" + val + "\"}");
+                            List<Course> courses = courseDAO.fetch(NamedQuery.COURSE_BY_NAME, val);
                             enrollToCourse(student, courses);
                         }
                     }
@@ -255,7 +302,7 @@ public class StudentResource extends BaseResource<Student> {
                     } else {
                         val = (String) courseObj.get("unEnrollCourseName");
                         if (val != null) {
-                            List<Course> courses = courseDAO.fetch("{courseName: \"" + val + "\"}");
+                            List<Course> courses = courseDAO.fetch(NamedQuery.COURSE_BY_NAME, val);
                             if (!courses.isEmpty()) {
                                 student.getCourseRefs().remove(courses.get(0));
                             }
@@ -303,7 +350,7 @@ public class StudentResource extends BaseResource<Student> {
      */
     @Override
     @DELETE
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, EndpointUtils.APPLICATION_SMILE})
     @Path("/{id}")
     public Response delete(@Auth User user, @PathParam("id") String id) throws ResourceNotFoundException {
         try {
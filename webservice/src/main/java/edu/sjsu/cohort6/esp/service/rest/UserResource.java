@@ -30,6 +30,7 @@ import javax.ws.rs.core.*;
 import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -38,7 +39,7 @@ import java.util.logging.Logger;
  * @author rwatsh on 9/24/15.
  */
 @Path(EndpointUtils.ENDPOINT_ROOT + "/users")
-@Produces(MediaType.APPLICATION_JSON)
+@Produces({MediaType.APPLICATION_JSON, EndpointUtils.APPLICATION_SMILE})
 public class UserResource extends BaseResource<User> {
 
     private static final Logger log = Logger.getLogger(UserResource.class.getName());
@@ -47,10 +48,18 @@ public class UserResource extends BaseResource<User> {
         super(client);
     }
 
+    /**
+     * @param client    database client
+     * @param multiGet  reads the users listed by the ids parameter
+     */
+    public UserResource(DBClient client, MultiGet multiGet) {
+        super(client, multiGet);
+    }
+
     @Override
     @POST
-    @Produces(MediaType.APPLICATION_JSON)
-    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, EndpointUtils.APPLICATION_SMILE})
+    @Consumes({MediaType.APPLICATION_JSON, EndpointUtils.APPLICATION_SMILE})
     public Response create(@Auth User user1, @Valid String userJson, @Context UriInfo info) {
         try {
             if (isAdminUser(user1)) {
@@ -73,12 +82,21 @@ public class UserResource extends BaseResource<User> {
 
     @Override
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
-    public List list(@Auth User user, @QueryParam("filter") String filter) throws InternalErrorException {
+    @Produces({MediaType.APPLICATION_JSON, EndpointUtils.APPLICATION_SMILE})
+    public Response list(@Auth User user, @QueryParam("filter") String filter,
+                         @QueryParam("ids") String ids) throws InternalErrorException {
         if (isAdminUser(user)) {
-            List<String> userIds = new ArrayList<>();
-            List<User> userList = userDAO.fetchById(userIds);
-            return userList;
+            List<String> userIds = ids != null ? multiGet.parseIds(ids) : null;
+            EntityTag tag = entityTag(userDAO.fetchVersion());
+            Response notModified = notModified(tag, null);
+            if (notModified != null) {
+                return notModified;
+            }
+            if (userIds != null) {
+                List<User> users = multiGet.fetch(userIds, userDAO::fetchById, User::getId);
+                return Response.ok(users, preferredMediaType()).tag(tag).build();
+            }
+            return withValidators(streamList(userDAO.cursor(), User.class), tag, null);
         } else {
             throw new AuthorizationException("User " + user.getUserName() + " is not allowed to perform this operation");
         }
@@ -86,14 +104,27 @@ public class UserResource extends BaseResource<User> {
 
     @Override
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, EndpointUtils.APPLICATION_SMILE})
     @Path("/{id}")
-    public User retrieve(@Auth User user, @PathParam("id") String id) throws ResourceNotFoundException, InternalErrorException {
+    public Response retrieve(@Auth User user, @PathParam("id") String id) throws ResourceNotFoundException, InternalErrorException {
         if (isAdminUser(user)) {
+            if (isConditional()) {
+                // the client holds a copy: a projection of lastUpdated is enough to answer 304
+                Date lastUpdated = id != null && !id.isEmpty() ? userDAO.fetchLastUpdated(id) : null;
+                if (lastUpdated == null) {
+                    throw new ResourceNotFoundException();
+                }
+                Response notModified = notModified(entityTag(lastUpdated.getTime()), lastUpdated);
+                if (notModified != null) {
+                    return notModified;
+                }
+            }
             List<String> userIdList = getListFromEntityId(id);
             List<User> userList = userDAO.fetchById(userIdList);
             if (userList != null && !userList.isEmpty()) {
-                return userList.get(0);
+                User found = userList.get(0);
+                return Response.ok(found).tag(entityTag(timeOf(found.getLastUpdated())))
+                        .lastModified(found.getLastUpdated()).build();
             } else {
                 throw new ResourceNotFoundException();
             }
@@ -118,8 +149,8 @@ public class UserResource extends BaseResource<User> {
      */
     @Override
     @PUT
-    @Produces(MediaType.APPLICATION_JSON)
-    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, EndpointUtils.APPLICATION_SMILE})
+    @Consumes({MediaType.APPLICATION_JSON, EndpointUtils.APPLICATION_SMILE})
     @Path("/{id}")
     public User update(@Auth User user1, @PathParam("id") String id, @Valid String userJson) throws ResourceNotFoundException, InternalErrorException, IOException {
         if (isAdminUser(user1)) {
@@ -142,7 +173,7 @@ public class UserResource extends BaseResource<User> {
 
     @Override
     @DELETE
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, EndpointUtils.APPLICATION_SMILE})
     @Path("/{id}")
     public Response delete(@Auth User user, @PathParam("id") String id) throws ResourceNotFoundException, InternalErrorException {
         try {
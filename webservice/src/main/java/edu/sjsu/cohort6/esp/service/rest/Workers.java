@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.service.rest;
+
+import edu.sjsu.cohort6.esp.dao.Deadline;
+import edu.sjsu.cohort6.esp.service.rest.exception.InternalErrorException;
+
+import javax.ws.rs.WebApplicationException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Runs parts of an API request in parallel.
+ *
+ * The parts run on a worker pool under the deadline of the request, so DAO calls made by the workers are limited
+ * as if the request thread made them.
+ */
+final class Workers {
+
+    private Workers() {
+    }
+
+    /**
+     * Runs the tasks and waits for all of them. A single task, or all tasks when there is no pool, run on the
+     * calling thread.
+     *
+     * @param executor  worker pool, null to run the tasks one after the other
+     * @param tasks     tasks to run
+     * @throws WebApplicationException the first failure of a task, other failures as 500
+     */
+    static void runAll(ExecutorService executor, List<Runnable> tasks) {
+        if (executor == null || tasks.size() == 1) {
+            for (Runnable task : tasks) {
+                task.run();
+            }
+            return;
+        }
+        final long remainingMillis = Deadline.remainingMillis();
+        List<Future<?>> futures = new ArrayList<>();
+        for (Runnable task : tasks) {
+            futures.add(executor.submit(() -> {
+                if (remainingMillis != Long.MAX_VALUE) {
+                    Deadline.start(remainingMillis);
+                }
+                try {
+                    task.run();
+                } finally {
+                    Deadline.clear();
+                }
+            }));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InternalErrorException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof WebApplicationException) {
+                throw (WebApplicationException) e.getCause();
+            }
+            throw new InternalErrorException(e.getCause());
+        }
+    }
+}
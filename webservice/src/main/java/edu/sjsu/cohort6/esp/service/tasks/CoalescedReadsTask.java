@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.service.tasks;
+
+import com.google.common.collect.ImmutableMultimap;
+import edu.sjsu.cohort6.esp.dao.mongodb.SingleFlight;
+import io.dropwizard.servlets.tasks.Task;
+
+import java.io.PrintWriter;
+import java.util.Map;
+
+/**
+ * Admin task reporting, per kind of read, how many course reads ran and how many were shared by concurrent callers.
+ *
+ * curl -X POST http://localhost:8081/tasks/coalesced-reads                 # report
+ * curl -X POST http://localhost:8081/tasks/coalesced-reads?action=reset    # reset the counts
+ */
+public class CoalescedReadsTask extends Task {
+    private final SingleFlight<String> reads;
+
+    public CoalescedReadsTask(SingleFlight<String> reads) {
+        super("coalesced-reads");
+        this.reads = reads;
+    }
+
+    @Override
+    public void execute(ImmutableMultimap<String, String> parameters, PrintWriter output) throws Exception {
+        String action = parameters.containsKey("action") ? parameters.get("action").iterator().next() : "report";
+        switch (action) {
+            case "reset":
+                reads.reset();
+                output.println("Read counts cleared");
+                break;
+            case "report":
+                output.println("Total: " + reads.getTotal());
+                for (Map.Entry<String, SingleFlight.Stats> entry : reads.getStats().entrySet()) {
+                    output.println("  " + entry.getKey() + ": " + entry.getValue());
+                }
+                break;
+            default:
+                output.println("Unknown action " + action + ", expected report or reset");
+        }
+        output.flush();
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.service.tasks;
+
+import com.google.common.collect.ImmutableMultimap;
+import edu.sjsu.cohort6.esp.dao.mongodb.IndexAdvisor;
+import edu.sjsu.cohort6.esp.dao.mongodb.MongoDBClient;
+import io.dropwizard.servlets.tasks.Task;
+
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Admin task reporting missing and unused indexes.
+ *
+ * curl -X POST http://localhost:8081/tasks/indexes                   # report
+ * curl -X POST http://localhost:8081/tasks/indexes?action=reset      # forget recorded query shapes
+ * curl -X POST http://localhost:8081/tasks/indexes?action=reconcile  # re-apply the entity index declarations
+ */
+public class IndexAdvisorTask extends Task {
+    private final MongoDBClient client;
+
+    public IndexAdvisorTask(MongoDBClient client) {
+        super("indexes");
+        this.client = client;
+    }
+
+    @Override
+    public void execute(ImmutableMultimap<String, String> parameters, PrintWriter output) throws Exception {
+        String action = parameters.containsKey("action") ? parameters.get("action").iterator().next() : "report";
+        switch (action) {
+            case "reset":
+                client.getIndexAdvisor().reset();
+                output.println("Recorded query shapes cleared");
+                break;
+            case "reconcile":
+                Map<String, List<String>> undeclared = client.reconcileIndexes();
+                output.println("Declared indexes ensured, undeclared indexes: " + undeclared);
+                break;
+            case "report":
+                IndexAdvisor.Report report = client.getIndexReport();
+                output.println("Queries observed since " + report.getSince() + ": " + report.getObserved());
+                output.println("Missing indexes:");
+                for (IndexAdvisor.Suggestion s : report.getMissing()) {
+                    output.println("  " + s);
+                }
+                output.println("Unused indexes:");
+                for (IndexAdvisor.Suggestion s : report.getUnused()) {
+                    output.println("  " + s);
+                }
+                break;
+            default:
+                output.println("Unknown action " + action + ", expected report, reset or reconcile");
+        }
+        output.flush();
+    }
+}
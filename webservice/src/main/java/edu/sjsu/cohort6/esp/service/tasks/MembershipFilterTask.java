@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+package edu.sjsu.cohort6.esp.service.tasks;
+
+import com.google.common.collect.ImmutableMultimap;
+import edu.sjsu.cohort6.esp.dao.mongodb.CourseDAO;
+import edu.sjsu.cohort6.esp.dao.mongodb.MongoDBClient;
+import io.dropwizard.servlets.tasks.Task;
+
+import java.io.PrintWriter;
+
+/**
+ * Admin task reporting how many lookups of course ids and course names were answered as definitely absent without
+ * a query, and rebuilding the filters, for instance after another process wrote to the collection.
+ *
+ * curl -X POST http://localhost:8081/tasks/membership                  # report
+ * curl -X POST http://localhost:8081/tasks/membership?action=rebuild   # rebuild from the collections
+ */
+public class MembershipFilterTask extends Task {
+    private final MongoDBClient client;
+
+    public MembershipFilterTask(MongoDBClient client) {
+        super("membership");
+        this.client = client;
+    }
+
+    @Override
+    public void execute(ImmutableMultimap<String, String> parameters, PrintWriter output) throws Exception {
+        String action = parameters.containsKey("action") ? parameters.get("action").iterator().next() : "report";
+        switch (action) {
+            case "rebuild":
+                client.rebuildFilters();
+                output.println("Filters rebuilt");
+                break;
+            case "report":
+                CourseDAO courseDAO = (CourseDAO) client.getDAO(CourseDAO.class);
+                output.println("courses " + courseDAO.getIdFilter());
+                output.println("courses " + courseDAO.getNameFilter());
+                break;
+            default:
+                output.println("Unknown action " + action + ", expected report or rebuild");
+        }
+        output.flush();
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+
+package edu.sjsu.cohort6.esp.service.test;
+
+import edu.sjsu.cohort6.esp.service.rest.BatchResource;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Batch phase grouping tests. These do not need a running server or database.
+ */
+public class BatchResourceTest {
+
+    @Test
+    public void testConsecutiveGetsShareAPhase() {
+        List<List<Integer>> phases = BatchResource.phasesOf(operations(
+                "GET /courses/1", "GET /students/2", "GET /api/v1.0/courses/3", "PUT /courses/1"));
+        Assert.assertEquals(phases, Arrays.asList(Arrays.asList(0, 1, 2), Arrays.asList(3)));
+    }
+
+    @Test
+    public void testWritesSplitOnMethodOrCollection() {
+        List<List<Integer>> phases = BatchResource.phasesOf(operations(
+                "POST /students", "POST /students", "POST /courses", "PUT /students/1", "PUT /students/2",
+                "DELETE /students/1", "POST /students"));
+        Assert.assertEquals(phases, Arrays.asList(
+                Arrays.asList(0, 1), Arrays.asList(2), Arrays.asList(3, 4), Arrays.asList(5), Arrays.asList(6)));
+    }
+
+    @Test
+    public void testInvalidOperationsBelongToNoPhase() {
+        List<List<Integer>> phases = BatchResource.phasesOf(operations(
+                "GET /courses/1", "PATCH /courses/1", "GET /users/2", "POST /courses/3", "GET /students",
+                "GET /students/4"));
+        Assert.assertEquals(phases, Arrays.asList(Arrays.asList(0, 5)));
+    }
+
+    private static List<BatchResource.Operation> operations(String... lines) {
+        List<BatchResource.Operation> operations = new ArrayList<>();
+        for (String line : lines) {
+            String[] parts = line.split(" ");
+            BatchResource.Operation operation = new BatchResource.Operation();
+            operation.setMethod(parts[0]);
+            operation.setPath(parts[1]);
+            operations.add(operation);
+        }
+        return operations;
+    }
+}
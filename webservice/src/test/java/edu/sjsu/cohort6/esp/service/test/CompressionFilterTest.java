@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+
+package edu.sjsu.cohort6.esp.service.test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.io.ByteStreams;
+import edu.sjsu.cohort6.esp.service.CompressionConfig;
+import edu.sjsu.cohort6.esp.service.CompressionFilter;
+import org.eclipse.jetty.http.HttpTester;
+import org.eclipse.jetty.servlet.FilterHolder;
+import org.eclipse.jetty.servlet.ServletTester;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Response compression tests. These do not need a running server or database.
+ */
+public class CompressionFilterTest {
+    private static final int MINIMUM_SIZE = 100;
+
+    private ServletTester tester;
+    private MetricRegistry metrics;
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        if (tester != null) {
+            tester.stop();
+            tester = null;
+        }
+    }
+
+    @Test
+    public void testSmallBodySentAsIs() throws Exception {
+        start(CompressionConfig.Algorithm.GZIP);
+        HttpTester.Response response = get("/?size=50", "gzip");
+        Assert.assertNull(response.get("Content-Encoding"));
+        Assert.assertEquals(response.get("Content-Length"), "50");
+        Assert.assertEquals(response.getContentBytes(), body(50));
+        Assert.assertEquals(response.get("Vary"), "Accept-Encoding");
+        Assert.assertEquals(metrics.meter(MetricRegistry.name(CompressionFilter.class, "small")).getCount(), 1);
+    }
+
+    @Test
+    public void testLargeBodyCompressed() throws Exception {
+        start(CompressionConfig.Algorithm.GZIP);
+        HttpTester.Response response = get("/?size=5000", "gzip, deflate");
+        Assert.assertEquals(response.get("Content-Encoding"), "gzip");
+        Assert.assertNull(response.get("Content-Length"), "the servlet's length is of the uncompressed body");
+        Assert.assertEquals(ByteStreams.toByteArray(new GZIPInputStream(
+                new ByteArrayInputStream(response.getContentBytes()))), body(5000));
+        Assert.assertEquals(metrics.histogram(MetricRegistry.name(CompressionFilter.class, "ratio")).getCount(), 1);
+        Assert.assertTrue(metrics.histogram(MetricRegistry.name(CompressionFilter.class, "ratio"))
+                .getSnapshot().getMax() > 100);
+    }
+
+    @Test
+    public void testDeflate() throws Exception {
+        start(CompressionConfig.Algorithm.DEFLATE);
+        HttpTester.Response response = get("/?size=5000", "deflate");
+        Assert.assertEquals(response.get("Content-Encoding"), "deflate");
+        Assert.assertEquals(ByteStreams.toByteArray(new InflaterInputStream(
+                new ByteArrayInputStream(response.getContentBytes()))), body(5000));
+    }
+
+    @Test
+    public void testCodingNotAccepted() throws Exception {
+        start(CompressionConfig.Algorithm.GZIP);
+        HttpTester.Response response = get("/?size=5000", "deflate");
+        Assert.assertNull(response.get("Content-Encoding"));
+        Assert.assertEquals(response.getContentBytes(), body(5000));
+        Assert.assertEquals(response.get("Vary"), "Accept-Encoding");
+    }
+
+    @Test
+    public void testEarlyFlushStillCompressed() throws Exception {
+        start(CompressionConfig.Algorithm.GZIP);
+        // a flush under the minimum size must not commit the response uncompressed
+        HttpTester.Response response = get("/?size=5000&flushAt=10", "gzip");
+        Assert.assertEquals(response.get("Content-Encoding"), "gzip");
+        Assert.assertEquals(ByteStreams.toByteArray(new GZIPInputStream(
+                new ByteArrayInputStream(response.getContentBytes()))), body(5000));
+    }
+
+    @Test
+    public void testUnlistedTypeSentAsIs() throws Exception {
+        start(CompressionConfig.Algorithm.GZIP);
+        HttpTester.Response response = get("/?size=5000&type=image/png", "gzip");
+        Assert.assertNull(response.get("Content-Encoding"));
+        Assert.assertEquals(response.get("Content-Length"), "5000");
+        Assert.assertEquals(response.getContentBytes(), body(5000));
+    }
+
+    @Test
+    public void testTypeParametersIgnored() throws Exception {
+        start(CompressionConfig.Algorithm.GZIP);
+        HttpTester.Response response = get("/?size=5000&type=Application/JSON;charset=UTF-8", "gzip");
+        Assert.assertEquals(response.get("Content-Encoding"), "gzip");
+    }
+
+    @Test
+    public void testErrorSentAsIs() throws Exception {
+        start(CompressionConfig.Algorithm.GZIP);
+        HttpTester.Response response = get("/?size=5000&status=500", "gzip");
+        Assert.assertEquals(response.getStatus(), 500);
+        Assert.assertNull(response.get("Content-Encoding"));
+        Assert.assertEquals(response.getContentBytes(), body(5000));
+    }
+
+    @Test
+    public void testEncodedBodyLeftAlone() throws Exception {
+        start(CompressionConfig.Algorithm.GZIP);
+        // as the response cache sends a body it already gzipped
+        HttpTester.Response response = get("/?size=5000&encoding=gzip", "gzip");
+        Assert.assertEquals(response.get("Content-Encoding"), "gzip");
+        Assert.assertEquals(response.getContentBytes(), body(5000));
+    }
+
+    @Test
+    public void testHeadPassesThrough() throws Exception {
+        start(CompressionConfig.Algorithm.GZIP);
+        HttpTester.Response response = request("HEAD", "/?size=5000", "gzip");
+        Assert.assertNull(response.get("Content-Encoding"));
+        Assert.assertEquals(response.get("Content-Length"), "5000");
+    }
+
+    private void start(CompressionConfig.Algorithm algorithm) throws Exception {
+        CompressionConfig config = new CompressionConfig();
+        config.setAlgorithm(algorithm);
+        config.setMinimumSize(MINIMUM_SIZE);
+        config.setMimeTypes(Arrays.asList("application/json", "text/plain"));
+        metrics = new MetricRegistry();
+        tester = new ServletTester();
+        tester.addFilter(new FilterHolder(new CompressionFilter(config, metrics)), "/*",
+                EnumSet.of(DispatcherType.REQUEST));
+        tester.addServlet(BodyServlet.class, "/*");
+        tester.start();
+    }
+
+    private HttpTester.Response get(String uri, String acceptEncoding) throws Exception {
+        return request("GET", uri, acceptEncoding);
+    }
+
+    private HttpTester.Response request(String method, String uri, String acceptEncoding) throws Exception {
+        String request = method + " " + uri + " HTTP/1.1\r\n"
+                + "Host: localhost\r\n"
+                + "Accept-Encoding: " + acceptEncoding + "\r\n"
+                + "Connection: close\r\n\r\n";
+        ByteBuffer response = tester.getResponses(ByteBuffer.wrap(request.getBytes(StandardCharsets.ISO_8859_1)));
+        return HttpTester.parseResponse(response);
+    }
+
+    private static byte[] body(int size) {
+        byte[] body = new byte[size];
+        for (int i = 0; i < size; i++) {
+            body[i] = (byte) ('a' + i % 26);
+        }
+        return body;
+    }
+
+    /**
+     * Writes a body of the size parameter with its Content-Length, in the content type, status and content coding
+     * of the type, status and encoding parameters, flushing after flushAt bytes when given.
+     */
+    public static class BodyServlet extends HttpServlet {
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            byte[] body = body(Integer.parseInt(req.getParameter("size")));
+            String type = req.getParameter("type");
+            resp.setContentType(type != null ? type : "application/json");
+            if (req.getParameter("status") != null) {
+                resp.setStatus(Integer.parseInt(req.getParameter("status")));
+            }
+            if (req.getParameter("encoding") != null) {
+                resp.setHeader("Content-Encoding", req.getParameter("encoding"));
+            }
+            resp.setContentLength(body.length);
+            ServletOutputStream out = resp.getOutputStream();
+            int flushAt = req.getParameter("flushAt") != null ? Integer.parseInt(req.getParameter("flushAt")) : 0;
+            if (flushAt > 0) {
+                out.write(body, 0, flushAt);
+                out.flush();
+                out.write(body, flushAt, body.length - flushAt);
+            } else {
+                out.write(body);
+            }
+        }
+    }
+}
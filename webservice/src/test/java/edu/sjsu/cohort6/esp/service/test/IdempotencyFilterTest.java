@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+
+package edu.sjsu.cohort6.esp.service.test;
+
+import com.google.common.io.ByteStreams;
+import com.mongodb.DB;
+import com.mongodb.MongoClient;
+import edu.sjsu.cohort6.esp.dao.mongodb.IdempotencyStore;
+import edu.sjsu.cohort6.esp.dao.test.InMemoryCollection;
+import edu.sjsu.cohort6.esp.service.rest.IdempotencyFilter;
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.glassfish.jersey.server.ContainerResponse;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Idempotency-Key replay tests, with the store kept in memory. These do not need a running server or database.
+ */
+public class IdempotencyFilterTest {
+    private static final URI BASE = URI.create("http://localhost/");
+    private static final URI STUDENTS = URI.create("http://localhost/api/v1.0/students");
+
+    private MongoClient client;
+    private IdempotencyStore store;
+    private IdempotencyFilter filter;
+
+    @BeforeClass
+    public void setUp() {
+        // collections are only named here, nothing is sent to a server
+        client = new MongoClient();
+    }
+
+    @AfterClass
+    public void tearDown() {
+        client.close();
+    }
+
+    @BeforeMethod
+    public void newFilter() {
+        store = new IdempotencyStore(new InMemoryCollection(new DB(client, "idempotency"),
+                IdempotencyStore.COLLECTION));
+        filter = new IdempotencyFilter(store, 60000, 60000, 100, 16);
+    }
+
+    @Test
+    public void testRequestWithoutKeyPasses() throws IOException {
+        ContainerRequest request = request(null, "{}");
+        filter.filter(request);
+        Assert.assertNull(request.getAbortResponse());
+    }
+
+    @Test
+    public void testRetryReplaysFirstResponse() throws IOException {
+        ContainerRequest first = request("k", "{\"a\":1}");
+        filter.filter(first);
+        Assert.assertNull(first.getAbortResponse());
+        Assert.assertEquals(new String(ByteStreams.toByteArray(first.getEntityStream()), StandardCharsets.UTF_8),
+                "{\"a\":1}", "the resource still reads the body");
+        filter.filter(first, new ContainerResponse(first,
+                Response.status(Response.Status.CREATED).location(URI.create("/api/v1.0/students/1")).build()));
+
+        ContainerRequest retry = request("k", "{\"a\":1}");
+        filter.filter(retry);
+        Response replay = retry.getAbortResponse();
+        Assert.assertNotNull(replay);
+        Assert.assertEquals(replay.getStatus(), Response.Status.CREATED.getStatusCode());
+        Assert.assertEquals(replay.getHeaderString(IdempotencyFilter.REPLAYED_HEADER), "true");
+        Assert.assertEquals(replay.getHeaderString(HttpHeaders.LOCATION), "/api/v1.0/students/1");
+    }
+
+    @Test
+    public void testRetryWhileRunningConflicts() throws IOException {
+        filter.filter(request("k", "{}"));
+        ContainerRequest retry = request("k", "{}");
+        filter.filter(retry);
+        Assert.assertEquals(retry.getAbortResponse().getStatus(), Response.Status.CONFLICT.getStatusCode());
+        Assert.assertNotNull(retry.getAbortResponse().getHeaderString(HttpHeaders.RETRY_AFTER));
+    }
+
+    @Test
+    public void testKeyReusedWithOtherBody() throws IOException {
+        filter.filter(request("k", "{\"a\":1}"));
+        ContainerRequest other = request("k", "{\"a\":2}");
+        filter.filter(other);
+        Assert.assertEquals(other.getAbortResponse().getStatus(), 422);
+    }
+
+    @Test
+    public void testFailureReleasesKey() throws IOException {
+        ContainerRequest first = request("k", "{}");
+        filter.filter(first);
+        filter.filter(first, new ContainerResponse(first, Response.serverError().build()));
+
+        ContainerRequest retry = request("k", "{}");
+        filter.filter(retry);
+        Assert.assertNull(retry.getAbortResponse(), "a failed request can be retried");
+    }
+
+    @Test
+    public void testAbandonedKeyTakenOver() throws IOException {
+        // the key of a request that never finished stays locked for no time at all
+        IdempotencyFilter abandoning = new IdempotencyFilter(store, 60000, -1000, 100, 16);
+        abandoning.filter(request("k", "{}"));
+        ContainerRequest retry = request("k", "{}");
+        abandoning.filter(retry);
+        Assert.assertNull(retry.getAbortResponse(), "a retry takes over a claim that has run out");
+    }
+
+    @Test
+    public void testKeysScopedToCaller() throws IOException {
+        filter.filter(request("k", "{}"));
+        ContainerRequest other = request("k", "{}");
+        other.header(HttpHeaders.AUTHORIZATION, "Basic b3RoZXI6dXNlcg==");
+        filter.filter(other);
+        Assert.assertNull(other.getAbortResponse());
+    }
+
+    @Test
+    public void testBodyBounded() throws IOException {
+        ContainerRequest request = request("k", "{\"name\":\"too long\"}");
+        filter.filter(request);
+        Assert.assertEquals(request.getAbortResponse().getStatus(),
+                Response.Status.REQUEST_ENTITY_TOO_LARGE.getStatusCode());
+    }
+
+    @Test
+    public void testKeyLengthChecked() throws IOException {
+        ContainerRequest request = request(" ", "{}");
+        filter.filter(request);
+        Assert.assertEquals(request.getAbortResponse().getStatus(), Response.Status.BAD_REQUEST.getStatusCode());
+    }
+
+    private static ContainerRequest request(String key, String body) {
+        ContainerRequest request = new ContainerRequest(BASE, STUDENTS, "POST", null, new MapPropertiesDelegate());
+        if (key != null) {
+            request.header(IdempotencyFilter.KEY_HEADER, key);
+        }
+        request.setEntityStream(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+        return request;
+    }
+}
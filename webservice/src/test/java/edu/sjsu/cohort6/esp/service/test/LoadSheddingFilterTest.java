@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+
+package edu.sjsu.cohort6.esp.service.test;
+
+import com.codahale.metrics.MetricRegistry;
+import edu.sjsu.cohort6.esp.service.LoadSheddingConfig;
+import edu.sjsu.cohort6.esp.service.LoadSheddingFilter;
+import org.eclipse.jetty.servlet.FilterHolder;
+import org.eclipse.jetty.servlet.ServletTester;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adaptive concurrency limit tests. These do not need a running server or database.
+ */
+public class LoadSheddingFilterTest {
+    private static final long SLOW = TimeUnit.SECONDS.toNanos(1);
+
+    private ServletTester tester;
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        if (tester != null) {
+            tester.stop();
+            tester = null;
+        }
+    }
+
+    @Test
+    public void testPrioritiesShareTheLimit() {
+        LoadSheddingFilter.Limiter limiter = new LoadSheddingFilter.Limiter(config(10, 250), 0);
+        for (int i = 0; i < 5; i++) {
+            Assert.assertTrue(limiter.tryAcquire(LoadSheddingConfig.Priority.LOW.getShare()));
+        }
+        Assert.assertFalse(limiter.tryAcquire(LoadSheddingConfig.Priority.LOW.getShare()), "low gets half");
+        for (int i = 0; i < 5; i++) {
+            Assert.assertTrue(limiter.tryAcquire(LoadSheddingConfig.Priority.CRITICAL.getShare()));
+        }
+        Assert.assertFalse(limiter.tryAcquire(LoadSheddingConfig.Priority.CRITICAL.getShare()));
+        Assert.assertEquals(limiter.getInFlight(), 10);
+    }
+
+    @Test
+    public void testFastRequestsGrowAUsedLimit() {
+        LoadSheddingFilter.Limiter limiter = new LoadSheddingFilter.Limiter(config(10, 250), 0);
+        limiter.tryAcquire(1.0);
+        limiter.release(1, 2, false);
+        Assert.assertEquals(limiter.getLimit(), 10.0, "a mostly idle limit is not grown");
+
+        for (int i = 0; i < 5; i++) {
+            limiter.tryAcquire(1.0);
+        }
+        limiter.release(1, 2, false);
+        Assert.assertEquals(limiter.getLimit(), 10.1, 1e-9);
+    }
+
+    @Test
+    public void testSlowRequestsDecreaseOncePerRound() {
+        LoadSheddingFilter.Limiter limiter = new LoadSheddingFilter.Limiter(config(10, 250), 0);
+        for (int i = 0; i < 3; i++) {
+            limiter.tryAcquire(1.0);
+        }
+        limiter.release(10, 10 + SLOW, false);
+        Assert.assertEquals(limiter.getLimit(), 9.0, 1e-9);
+        limiter.release(20, 20 + SLOW, false);
+        Assert.assertEquals(limiter.getLimit(), 9.0, 1e-9, "started before the decrease, already accounted for");
+        limiter.release(20 + SLOW, 30 + SLOW, true);
+        Assert.assertEquals(limiter.getLimit(), 8.1, 1e-9, "a failure decreases too");
+        Assert.assertEquals(limiter.getInFlight(), 0);
+    }
+
+    @Test
+    public void testLimitBounded() {
+        LoadSheddingFilter.Limiter limiter = new LoadSheddingFilter.Limiter(config(5, 250), 0);
+        long start = 1;
+        for (int i = 0; i < 50; i++) {
+            limiter.tryAcquire(1.0);
+            limiter.release(start, start + SLOW, false);
+            start += 2 * SLOW;
+        }
+        Assert.assertEquals(limiter.getLimit(), 4.0, "never below the min limit");
+    }
+
+    @Test
+    public void testUnmeasuredReleaseKeepsLimit() {
+        LoadSheddingFilter.Limiter limiter = new LoadSheddingFilter.Limiter(config(10, 250), 0);
+        limiter.tryAcquire(1.0);
+        limiter.release();
+        Assert.assertEquals(limiter.getInFlight(), 0);
+        Assert.assertEquals(limiter.getLimit(), 10.0);
+    }
+
+    @Test
+    public void testShedDownstreamIsNoFailure() throws Exception {
+        MetricRegistry metrics = start(config(10, 60000));
+        Assert.assertEquals(status("GET /api/v1.0/students?status=503&shed=true"), 503);
+        Assert.assertEquals(limit(metrics), 10, "a full compartment further down leaves the limit alone");
+        Assert.assertEquals(status("GET /api/v1.0/students?status=503"), 503);
+        Assert.assertEquals(limit(metrics), 9);
+    }
+
+    @Test
+    public void testLowPriorityLatencyIgnored() throws Exception {
+        MetricRegistry metrics = start(config(10, 0));
+        Assert.assertEquals(status("GET /api/v1.0/courses?sleep=5"), 200);
+        Assert.assertEquals(limit(metrics), 10, "slow low priority requests leave the limit alone");
+        Assert.assertEquals(status("GET /api/v1.0/students?sleep=5"), 200);
+        Assert.assertEquals(limit(metrics), 9);
+    }
+
+    private MetricRegistry start(LoadSheddingConfig config) throws Exception {
+        MetricRegistry metrics = new MetricRegistry();
+        tester = new ServletTester();
+        tester.addFilter(new FilterHolder(new LoadSheddingFilter(config, metrics)), "/*",
+                EnumSet.of(DispatcherType.REQUEST));
+        tester.addServlet(StatusServlet.class, "/*");
+        tester.start();
+        return metrics;
+    }
+
+    private int status(String requestLine) throws Exception {
+        String response = tester.getResponses(requestLine + " HTTP/1.1\r\n"
+                + "Host: localhost\r\n"
+                + "Connection: close\r\n\r\n");
+        return Integer.parseInt(response.substring(9, 12));
+    }
+
+    private static int limit(MetricRegistry metrics) {
+        return (Integer) metrics.getGauges().get(MetricRegistry.name(LoadSheddingFilter.class, "limit")).getValue();
+    }
+
+    private static LoadSheddingConfig config(int initialLimit, long latencyThresholdMS) {
+        LoadSheddingConfig config = new LoadSheddingConfig();
+        config.setInitialLimit(initialLimit);
+        config.setMinLimit(4);
+        config.setMaxLimit(200);
+        config.setLatencyThresholdMS(latencyThresholdMS);
+        config.setBackoffRatio(0.9);
+        config.setMaxQueueDepth(0);
+        LoadSheddingConfig.Rule low = new LoadSheddingConfig.Rule();
+        low.setMethod("GET");
+        low.setPattern("/api/v1\\.0/courses(/.*)?");
+        low.setPriority(LoadSheddingConfig.Priority.LOW);
+        config.setPriorities(Arrays.asList(low));
+        return config;
+    }
+
+    /**
+     * Answers with the status of the status parameter after sleeping the ms of the sleep parameter, and marks
+     * the request shed when asked to, as a full bulkhead does.
+     */
+    public static class StatusServlet extends HttpServlet {
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) {
+            if (req.getParameter("sleep") != null) {
+                try {
+                    Thread.sleep(Long.parseLong(req.getParameter("sleep")));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (req.getParameter("shed") != null) {
+                req.setAttribute(LoadSheddingFilter.SHED_ATTRIBUTE, "test");
+            }
+            String status = req.getParameter("status");
+            resp.setStatus(status != null ? Integer.parseInt(status) : HttpServletResponse.SC_OK);
+        }
+    }
+}
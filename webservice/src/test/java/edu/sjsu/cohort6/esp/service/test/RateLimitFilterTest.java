@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+
+package edu.sjsu.cohort6.esp.service.test;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Optional;
+import com.google.common.io.BaseEncoding;
+import edu.sjsu.cohort6.esp.service.RateLimitConfig;
+import edu.sjsu.cohort6.esp.service.RateLimitFilter;
+import io.dropwizard.auth.AuthenticationException;
+import io.dropwizard.auth.Authenticator;
+import io.dropwizard.auth.basic.BasicCredentials;
+import org.eclipse.jetty.servlet.FilterHolder;
+import org.eclipse.jetty.servlet.ServletTester;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket and principal tests of the rate limiter. These do not need a running server or database.
+ */
+public class RateLimitFilterTest {
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private RateLimitFilter filter;
+    private ServletTester tester;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        RateLimitConfig config = new RateLimitConfig();
+        config.setPerPrincipal(limit(2, 0.001));
+        filter = new RateLimitFilter(config, new MetricRegistry());
+        tester = new ServletTester();
+        tester.addFilter(new FilterHolder(filter), "/*", EnumSet.of(DispatcherType.REQUEST));
+        tester.addServlet(OkServlet.class, "/*");
+        tester.start();
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        tester.stop();
+    }
+
+    @Test
+    public void testBucketBurstThenRefill() {
+        long now = 0;
+        RateLimitFilter.Bucket bucket = new RateLimitFilter.Bucket(limit(3, 10), now);
+        Assert.assertTrue(bucket.isFull(now));
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(bucket.tryTake(now), 0, "burst of capacity");
+        }
+        Assert.assertEquals(bucket.tryTake(now), 100 * MS, "next token one interval later");
+        Assert.assertEquals(bucket.tryTake(now + 60 * MS), 40 * MS);
+        Assert.assertEquals(bucket.tryTake(now + 100 * MS), 0);
+        Assert.assertFalse(bucket.isFull(now + 100 * MS));
+        Assert.assertTrue(bucket.isFull(now + 400 * MS));
+    }
+
+    @Test
+    public void testBucketIdleTimeNotBanked() {
+        RateLimitFilter.Bucket bucket = new RateLimitFilter.Bucket(limit(2, 10), 0);
+        long later = TimeUnit.SECONDS.toNanos(60);
+        Assert.assertEquals(bucket.tryTake(later), 0);
+        Assert.assertEquals(bucket.tryTake(later), 0);
+        Assert.assertTrue(bucket.tryTake(later) > 0, "a long idle time still allows only capacity tokens");
+    }
+
+    @Test
+    public void testBucketPutBack() {
+        RateLimitFilter.Bucket bucket = new RateLimitFilter.Bucket(limit(1, 10), 0);
+        Assert.assertEquals(bucket.tryTake(0), 0);
+        Assert.assertTrue(bucket.tryTake(0) > 0);
+        bucket.putBack();
+        Assert.assertEquals(bucket.tryTake(0), 0);
+    }
+
+    @Test
+    public void testUnverifiedNamesShareTheAddressBucket() throws Exception {
+        Assert.assertEquals(status("alice", "guess"), 200);
+        Assert.assertEquals(status("bob", "guess"), 200);
+        Assert.assertEquals(status("carol", "guess"), 429, "made up names get no buckets of their own");
+    }
+
+    @Test
+    public void testWrongPasswordDoesNotSpendUserTokens() throws Exception {
+        filter.verifying(new PasswordAuthenticator()).authenticate(new BasicCredentials("alice", "secret"));
+        Assert.assertEquals(status("alice", "guess"), 200);
+        Assert.assertEquals(status("alice", "guess"), 200);
+        Assert.assertEquals(status("alice", "guess"), 429);
+        Assert.assertEquals(status("alice", "secret"), 200, "the user's own bucket is untouched");
+        Assert.assertEquals(status("alice", "secret"), 200);
+        Assert.assertEquals(status("alice", "secret"), 429);
+    }
+
+    @Test
+    public void testFailedAuthenticationNotRemembered() throws Exception {
+        filter.verifying(new PasswordAuthenticator()).authenticate(new BasicCredentials("alice", "guess"));
+        Assert.assertEquals(status("alice", "guess"), 200);
+        Assert.assertEquals(status("alice", "secret"), 200);
+        Assert.assertEquals(status("alice", "secret"), 429, "neither was verified, both count against the address");
+    }
+
+    private int status(String user, String password) throws Exception {
+        String credentials = BaseEncoding.base64().encode((user + ":" + password).getBytes(StandardCharsets.UTF_8));
+        String response = tester.getResponses("GET /api/v1.0/courses HTTP/1.1\r\n"
+                + "Host: localhost\r\n"
+                + "Authorization: Basic " + credentials + "\r\n"
+                + "Connection: close\r\n\r\n");
+        return Integer.parseInt(response.substring(9, 12));
+    }
+
+    private static RateLimitConfig.Limit limit(int capacity, double refillPerSecond) {
+        RateLimitConfig.Limit limit = new RateLimitConfig.Limit();
+        limit.setCapacity(capacity);
+        limit.setRefillPerSecond(refillPerSecond);
+        return limit;
+    }
+
+    private static class PasswordAuthenticator implements Authenticator<BasicCredentials, String> {
+        @Override
+        public Optional<String> authenticate(BasicCredentials credentials) throws AuthenticationException {
+            return "secret".equals(credentials.getPassword())
+                    ? Optional.of(credentials.getUsername())
+                    : Optional.<String>absent();
+        }
+    }
+
+    public static class OkServlet extends HttpServlet {
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) {
+            resp.setStatus(HttpServletResponse.SC_OK);
+        }
+    }
+}
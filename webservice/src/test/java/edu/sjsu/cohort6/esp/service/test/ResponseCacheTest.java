@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2015 San Jose State University.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ */
+
+
+package edu.sjsu.cohort6.esp.service.test;
+
+import com.google.common.io.ByteStreams;
+import edu.sjsu.cohort6.esp.dao.mongodb.ChangeTracker;
+import edu.sjsu.cohort6.esp.service.rest.ResponseCache;
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Encoded response cache tests. These do not need a running server or database.
+ */
+public class ResponseCacheTest {
+    private static final URI BASE = URI.create("http://localhost/");
+    private static final URI COURSES = URI.create("http://localhost/api/v1.0/courses");
+
+    private ChangeTracker changes;
+    private int renders;
+
+    @BeforeMethod
+    public void newTracker() {
+        changes = new ChangeTracker();
+        renders = 0;
+    }
+
+    @Test
+    public void testHitNotRendered() throws IOException {
+        ResponseCache cache = new ResponseCache(changes, 1 << 20, 1 << 16, false, false);
+        Assert.assertEquals(body(cache.respond("courses", MediaType.APPLICATION_JSON_TYPE, headers(null), renderer(10))),
+                content(10));
+        Assert.assertEquals(body(cache.respond("courses", MediaType.APPLICATION_JSON_TYPE, headers(null), renderer(10))),
+                content(10));
+        Assert.assertEquals(renders, 1);
+        Assert.assertEquals(cache.size(), 1);
+    }
+
+    @Test
+    public void testKeysKeptApart() throws IOException {
+        ResponseCache cache = new ResponseCache(changes, 1 << 20, 1 << 16, false, false);
+        cache.respond("courses", MediaType.APPLICATION_JSON_TYPE, headers(null), renderer(10));
+        Assert.assertEquals(body(cache.respond("courses/1", MediaType.APPLICATION_JSON_TYPE, headers(null),
+                renderer(20))), content(20));
+        Assert.assertEquals(renders, 2);
+    }
+
+    @Test
+    public void testWriteInvalidates() throws IOException {
+        ResponseCache cache = new ResponseCache(changes, 1 << 20, 1 << 16, false, false);
+        cache.respond("courses", MediaType.APPLICATION_JSON_TYPE, headers(null), renderer(10));
+        changes.changed();
+        Assert.assertEquals(cache.size(), 0);
+        cache.respond("courses", MediaType.APPLICATION_JSON_TYPE, headers(null), renderer(10));
+        Assert.assertEquals(renders, 2);
+    }
+
+    @Test
+    public void testEntryBuiltDuringWriteNotServed() throws IOException {
+        ResponseCache cache = new ResponseCache(changes, 1 << 20, 1 << 16, false, false);
+        // the body is read before the write lands, so it must not outlive the write
+        cache.respond("courses", MediaType.APPLICATION_JSON_TYPE, headers(null), new StreamingOutput() {
+            @Override
+            public void write(OutputStream output) throws IOException {
+                renders++;
+                output.write(content(10));
+                changes.changed();
+            }
+        });
+        cache.respond("courses", MediaType.APPLICATION_JSON_TYPE, headers(null), renderer(10));
+        Assert.assertEquals(renders, 2);
+    }
+
+    @Test
+    public void testLargeEntryNotCached() throws IOException {
+        ResponseCache cache = new ResponseCache(changes, 1 << 20, 100, false, false);
+        Assert.assertEquals(body(cache.respond("courses", MediaType.APPLICATION_JSON_TYPE, headers(null),
+                renderer(200))), content(200));
+        cache.respond("courses", MediaType.APPLICATION_JSON_TYPE, headers(null), renderer(200));
+        Assert.assertEquals(renders, 2);
+        Assert.assertEquals(cache.size(), 0);
+    }
+
+    @Test
+    public void testGzipServedWhenAccepted() throws IOException {
+        ResponseCache cache = new ResponseCache(changes, 1 << 20, 1 << 16, true, false);
+        Response gzipped = cache.respond("courses", MediaType.APPLICATION_JSON_TYPE, headers("gzip"), renderer(4096));
+        Assert.assertEquals(gzipped.getHeaderString(HttpHeaders.CONTENT_ENCODING), "gzip");
+        Assert.assertEquals(gzipped.getHeaderString(HttpHeaders.VARY), HttpHeaders.ACCEPT_ENCODING);
+        byte[] compressed = body(gzipped);
+        Assert.assertEquals(gzipped.getHeaderString(HttpHeaders.CONTENT_LENGTH), String.valueOf(compressed.length));
+        Assert.assertEquals(ByteStreams.toByteArray(new GZIPInputStream(new ByteArrayInputStream(compressed))),
+                content(4096));
+
+        Response identity = cache.respond("courses", MediaType.APPLICATION_JSON_TYPE, headers(null), renderer(4096));
+        Assert.assertNull(identity.getHeaderString(HttpHeaders.CONTENT_ENCODING));
+        Assert.assertEquals(identity.getHeaderString(HttpHeaders.VARY), HttpHeaders.ACCEPT_ENCODING);
+        Assert.assertEquals(body(identity), content(4096));
+        Assert.assertEquals(renders, 1);
+    }
+
+    @Test
+    public void testSmallBodyNotGzipped() throws IOException {
+        ResponseCache cache = new ResponseCache(changes, 1 << 20, 1 << 16, true, false);
+        Response response = cache.respond("courses", MediaType.APPLICATION_JSON_TYPE, headers("gzip"), renderer(10));
+        Assert.assertNull(response.getHeaderString(HttpHeaders.CONTENT_ENCODING));
+        Assert.assertNull(response.getHeaderString(HttpHeaders.VARY));
+        Assert.assertEquals(body(response), content(10));
+    }
+
+    @Test
+    public void testOffHeapBody() throws IOException {
+        ResponseCache cache = new ResponseCache(changes, 1 << 20, 1 << 16, false, true);
+        cache.respond("courses", MediaType.APPLICATION_JSON_TYPE, headers(null), renderer(20000));
+        Response response = cache.respond("courses", MediaType.APPLICATION_JSON_TYPE, headers(null), renderer(20000));
+        Assert.assertEquals(body(response), content(20000));
+        Assert.assertEquals(body(response), content(20000), "the cached buffer is not consumed");
+    }
+
+    @Test
+    public void testLastModifiedKept() throws IOException {
+        ResponseCache cache = new ResponseCache(changes, 1 << 20, 1 << 16, false, false);
+        final Date lastModified = new Date(1000000000000L);
+        ResponseCache.Renderer renderer = new ResponseCache.Renderer() {
+            @Override
+            public Date render(OutputStream out) throws IOException {
+                renders++;
+                out.write(content(10));
+                return lastModified;
+            }
+        };
+        cache.respond("courses", MediaType.APPLICATION_JSON_TYPE, headers(null), renderer);
+        Response hit = cache.respond("courses", MediaType.APPLICATION_JSON_TYPE, headers(null), renderer);
+        Assert.assertEquals(hit.getLastModified(), lastModified);
+        Assert.assertEquals(renders, 1);
+    }
+
+    private StreamingOutput renderer(final int size) {
+        return new StreamingOutput() {
+            @Override
+            public void write(OutputStream output) throws IOException {
+                renders++;
+                output.write(content(size));
+            }
+        };
+    }
+
+    private static HttpHeaders headers(String acceptEncoding) {
+        ContainerRequest request = new ContainerRequest(BASE, COURSES, "GET", null, new MapPropertiesDelegate());
+        if (acceptEncoding != null) {
+            request.header(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        }
+        return request;
+    }
+
+    private static byte[] body(Response response) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ((StreamingOutput) response.getEntity()).write(out);
+        return out.toByteArray();
+    }
+
+    private static byte[] content(int size) {
+        byte[] content = new byte[size];
+        Arrays.fill(content, (byte) 'x');
+        return content;
+    }
+}